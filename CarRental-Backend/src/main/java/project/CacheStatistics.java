@@ -0,0 +1,64 @@
+package project;
+
+/**
+ * Snapshot of counters of an entity cache
+ * @author Daniel Jurca
+ */
+public class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maxSize;
+
+    public CacheStatistics(long hits, long misses, long evictions, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of entities dropped because the cache was full
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return ratio of lookups answered from the cache, 0 when there was no lookup
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CacheStatistics{");
+        sb.append("hits=").append(hits);
+        sb.append(", misses=").append(misses);
+        sb.append(", evictions=").append(evictions);
+        sb.append(", size=").append(size);
+        sb.append(", maxSize=").append(maxSize);
+        sb.append('}');
+        return sb.toString();
+    }
+}
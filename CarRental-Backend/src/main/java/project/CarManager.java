@@ -4,7 +4,9 @@ import project.exception.IllegalEntityException;
 import project.exception.ValidationException;
 import project.impl.Car;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface with operations for cars
@@ -23,6 +25,15 @@ public interface CarManager {
      */
     void createCar(Car car) throws IllegalEntityException, ValidationException;
 
+    /**
+     * Save cars to database in one batch, either all cars are saved or none
+     * @param cars - cars you want to add to database, their ids are set when saved
+     * @throws IllegalArgumentException when list of cars or some car is null
+     * @throws IllegalEntityException when some car already exists (has id)
+     * @throws ValidationException when some car is not valid, like in {@link #createCar(Car)}
+     */
+    void createCars(List<Car> cars) throws IllegalEntityException, ValidationException;
+
     /**
      * Find car in the database by id
      * @param id - id of car you want to find
@@ -37,6 +48,48 @@ public interface CarManager {
      */
     List<Car> findAllCars();
 
+    /**
+     * Count cars in the database
+     * @return number of cars
+     */
+    int countCars();
+
+    /**
+     * Find cars at given positions when ordered by id
+     * @param offset - number of cars to skip
+     * @param limit - maximal number of cars returned
+     * @return list of at most limit cars
+     * @throws IllegalArgumentException when offset is negative or limit is not positive
+     */
+    List<Car> findCars(int offset, int limit);
+
+    /**
+     * Hand all cars in the database to the consumer one by one, ordered by id,
+     * without loading them all in memory. When the consumer throws an exception,
+     * reading stops, the connection is released and the exception is rethrown.
+     * @param consumer - called for every car
+     * @throws IllegalArgumentException when consumer is null
+     */
+    void streamAllCars(Consumer<Car> consumer);
+
+    /**
+     * Find page of cars ordered by id
+     * @param afterId - id of the last car of previous page, null for the first page
+     * @param pageSize - maximal number of cars on the page
+     * @return page of cars with id greater than afterId
+     * @throws IllegalArgumentException when page size is not positive
+     */
+    Page<Car> findCarsAfter(Long afterId, int pageSize);
+
+    /**
+     * Find page of cars preceding given id, ordered by id
+     * @param beforeId - id of the first car of following page
+     * @param pageSize - maximal number of cars on the page
+     * @return page of cars with id lower than beforeId
+     * @throws IllegalArgumentException when given id is null or page size is not positive
+     */
+    Page<Car> findCarsBefore(Long beforeId, int pageSize);
+
     /**
      * Update car in the database
      * @param car - car with updated properties
@@ -53,4 +106,26 @@ public interface CarManager {
      * @throws IllegalEntityException when car you want to delete has null id or car does not exists
      */
     void deleteCar(Car car) throws IllegalEntityException;
+
+    /**
+     * Delete cars from the database in one transaction
+     * @param cars - cars you want to delete
+     * @return cars which were not deleted, because they do not exist
+     * @throws IllegalArgumentException when collection of cars or some car is null
+     * @throws IllegalEntityException when some car has null id, then no car is deleted
+     */
+    List<Car> deleteCars(Collection<Car> cars) throws IllegalEntityException;
+
+    /**
+     * Register listener notified about every committed create, update and delete of a car.
+     * @param listener - listener to be notified
+     * @throws IllegalArgumentException when listener is null
+     */
+    void addChangeListener(EntityChangeListener<Car> listener);
+
+    /**
+     * Stop notifying the listener
+     * @param listener - listener registered before
+     */
+    void removeChangeListener(EntityChangeListener<Car> listener);
 }
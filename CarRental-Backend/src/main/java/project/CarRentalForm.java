@@ -130,6 +130,11 @@ public class CarRentalForm {
         DataSource dataSource = Main.connectDatabase();
         CarManager carManager = new CarManagerImpl(dataSource);
         CustomerManager customerManager = new CustomerManagerImpl(dataSource);
+        int cacheSize = Main.entityCacheSize();
+        if (cacheSize > 0) {
+            carManager = new CachingCarManager(carManager, cacheSize);
+            customerManager = new CachingCustomerManager(customerManager, cacheSize);
+        }
         LeaseManager leaseManager = new LeaseManagerImpl(dataSource, customerManager, carManager);
 
         carTable = new JTable();
@@ -4,7 +4,9 @@ import project.impl.Customer;
 import project.exception.IllegalEntityException;
 import project.exception.ValidationException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface with operations for customers
@@ -22,6 +24,16 @@ public interface CustomerManager {
      */
     void createCustomer(Customer customer) throws IllegalEntityException, ValidationException;
 
+    /**
+     * Save customers to database in one batch, either all customers are saved or none
+     *
+     * @param customers - customers you want to add to database, their ids are set when saved
+     * @throws IllegalArgumentException when list of customers or some customer is null
+     * @throws IllegalEntityException when some customer has already assigned id
+     * @throws ValidationException when some customer is not valid, like in {@link #createCustomer(Customer)}
+     */
+    void createCustomers(List<Customer> customers) throws IllegalEntityException, ValidationException;
+
     /**
      * Find customer in database by id
      *
@@ -38,6 +50,48 @@ public interface CustomerManager {
      */
     List<Customer> findAllCustomers();
 
+    /**
+     * Count customers in the database
+     * @return number of customers
+     */
+    int countCustomers();
+
+    /**
+     * Find customers at given positions when ordered by id
+     * @param offset - number of customers to skip
+     * @param limit - maximal number of customers returned
+     * @return list of at most limit customers
+     * @throws IllegalArgumentException when offset is negative or limit is not positive
+     */
+    List<Customer> findCustomers(int offset, int limit);
+
+    /**
+     * Hand all customers in the database to the consumer one by one, ordered by id,
+     * without loading them all in memory. When the consumer throws an exception,
+     * reading stops, the connection is released and the exception is rethrown.
+     * @param consumer - called for every customer
+     * @throws IllegalArgumentException when consumer is null
+     */
+    void streamAllCustomers(Consumer<Customer> consumer);
+
+    /**
+     * Find page of customers ordered by id
+     * @param afterId - id of the last customer of previous page, null for the first page
+     * @param pageSize - maximal number of customers on the page
+     * @return page of customers with id greater than afterId
+     * @throws IllegalArgumentException when page size is not positive
+     */
+    Page<Customer> findCustomersAfter(Long afterId, int pageSize);
+
+    /**
+     * Find page of customers preceding given id, ordered by id
+     * @param beforeId - id of the first customer of following page
+     * @param pageSize - maximal number of customers on the page
+     * @return page of customers with id lower than beforeId
+     * @throws IllegalArgumentException when given id is null or page size is not positive
+     */
+    Page<Customer> findCustomersBefore(Long beforeId, int pageSize);
+
     /**
      * Returns a list of all customers in database by fullName
      *
@@ -46,6 +100,18 @@ public interface CustomerManager {
      */
     List<Customer> findCustomerByName(String fullName);
 
+    /**
+     * Search customers by beginnings of words of their name, address or phone number,
+     * in lower case and without diacritics. Customers having a word starting with every
+     * word of the query come first, followed by customers with similar words.
+     *
+     * @param query - words typed by user, e.g. "nov brno"
+     * @param limit - maximal number of customers returned
+     * @return customers matching the query, best matches first
+     * @throws IllegalArgumentException when query is null or limit is not positive
+     */
+    List<Customer> searchCustomers(String query, int limit);
+
     /**
      * Updates customer in database
      *
@@ -64,4 +130,26 @@ public interface CustomerManager {
      * @throws IllegalEntityException when customer has null id or does not exist in database
      */
     void deleteCustomer(Customer customer) throws IllegalEntityException;
+
+    /**
+     * Delete customers from the database in one transaction
+     * @param customers - customers you want to delete
+     * @return customers which were not deleted, because they do not exist
+     * @throws IllegalArgumentException when collection of customers or some customer is null
+     * @throws IllegalEntityException when some customer has null id, then no customer is deleted
+     */
+    List<Customer> deleteCustomers(Collection<Customer> customers) throws IllegalEntityException;
+
+    /**
+     * Register listener notified about every committed create, update and delete of a customer.
+     * @param listener - listener to be notified
+     * @throws IllegalArgumentException when listener is null
+     */
+    void addChangeListener(EntityChangeListener<Customer> listener);
+
+    /**
+     * Stop notifying the listener
+     * @param listener - listener registered before
+     */
+    void removeChangeListener(EntityChangeListener<Customer> listener);
 }
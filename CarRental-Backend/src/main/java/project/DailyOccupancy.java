@@ -0,0 +1,58 @@
+package project;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Number of cars leased on one day and revenue of their leases for that day
+ * @author Daniel Jurca
+ */
+public class DailyOccupancy {
+    private final LocalDate day;
+    private final int leasedCars;
+    private final BigDecimal revenue;
+
+    public DailyOccupancy(LocalDate day, int leasedCars, BigDecimal revenue) {
+        this.day = day;
+        this.leasedCars = leasedCars;
+        this.revenue = revenue;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public int getLeasedCars() {
+        return leasedCars;
+    }
+
+    /**
+     * @return sum of prices of leases running on the day
+     */
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DailyOccupancy)) return false;
+        DailyOccupancy that = (DailyOccupancy) o;
+        return leasedCars == that.leasedCars && day.equals(that.day) && revenue.compareTo(that.revenue) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * day.hashCode() + leasedCars;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("DailyOccupancy{");
+        sb.append("day=").append(day);
+        sb.append(", leasedCars=").append(leasedCars);
+        sb.append(", revenue=").append(revenue);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package project;
+
+import org.apache.derby.jdbc.ClientDriver;
+import org.apache.derby.jdbc.EmbeddedDriver;
+
+import java.util.prefs.Preferences;
+
+/**
+ * Creates pooled data sources for the Car Rental database
+ * @author Daniel Jurca
+ */
+public class DataSourceFactory {
+    public static final String POOL_SIZE = "CRDatabase-PoolSize";
+    public static final String IDLE_TIMEOUT = "CRDatabase-IdleTimeoutMillis";
+    public static final String VALIDATION_QUERY = "CRDatabase-ValidationQuery";
+    public static final String STATEMENT_CACHE_SIZE = "CRDatabase-StatementCacheSize";
+    public static final String INITIAL_SIZE = "CRDatabase-InitialSize";
+
+    public static final int DEFAULT_POOL_SIZE = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+    public static final String DEFAULT_VALIDATION_QUERY = "VALUES 1";
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 50;
+    public static final int DEFAULT_INITIAL_SIZE = 0;
+
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT;
+    private String validationQuery = DEFAULT_VALIDATION_QUERY;
+    private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+    private int initialSize = DEFAULT_INITIAL_SIZE;
+
+    /**
+     * Read pool settings stored in preferences, missing settings keep defaults
+     * @param preferences - node written by {@link Main#saveDBPreferences()}
+     */
+    public static DataSourceFactory fromPreferences(Preferences preferences) {
+        DataSourceFactory factory = new DataSourceFactory();
+        factory.setPoolSize(preferences.getInt(POOL_SIZE, DEFAULT_POOL_SIZE));
+        factory.setIdleTimeoutMillis(preferences.getLong(IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
+        factory.setValidationQuery(preferences.get(VALIDATION_QUERY, DEFAULT_VALIDATION_QUERY));
+        factory.setStatementCacheSize(preferences.getInt(STATEMENT_CACHE_SIZE, DEFAULT_STATEMENT_CACHE_SIZE));
+        factory.setInitialSize(preferences.getInt(INITIAL_SIZE, DEFAULT_INITIAL_SIZE));
+        return factory;
+    }
+
+    /**
+     * Create data source connecting to Derby network server
+     */
+    public PooledDataSource createNetworkDataSource(String serverName, int portNumber, String databaseName) {
+        return createDataSource(ClientDriver.class.getName(),
+                "jdbc:derby://" + serverName + ":" + portNumber + "/" + databaseName);
+    }
+
+    /**
+     * Create data source of embedded Derby database stored in files, created when it does not exist
+     * @param databasePath - directory of the database, relative to derby.system.home
+     */
+    public PooledDataSource createEmbeddedDataSource(String databasePath) {
+        return createDataSource(EmbeddedDriver.class.getName(), "jdbc:derby:" + databasePath + ";create=true");
+    }
+
+    /**
+     * Create data source with pool configured by this factory
+     * @param driverClassName - JDBC driver
+     * @param url - JDBC url of database
+     */
+    public PooledDataSource createDataSource(String driverClassName, String url) {
+        PooledDataSource dataSource = new PooledDataSource();
+        dataSource.setDriverClassName(driverClassName);
+        dataSource.setUrl(url);
+        dataSource.setMaxTotal(poolSize);
+        dataSource.setMaxIdle(poolSize);
+        dataSource.setValidationQuery(validationQuery);
+        dataSource.setTestOnBorrow(false);
+        dataSource.setTestWhileIdle(validationQuery != null);
+        dataSource.setMinEvictableIdleTimeMillis(idleTimeoutMillis);
+        dataSource.setTimeBetweenEvictionRunsMillis(Math.max(idleTimeoutMillis / 2, 1000));
+        dataSource.setPoolPreparedStatements(statementCacheSize > 0);
+        dataSource.setMaxOpenPreparedStatements(statementCacheSize);
+        // connections are opened by the first request for a connection
+        dataSource.setInitialSize(initialSize);
+        return dataSource;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1) throw new IllegalArgumentException("Pool size must be positive!");
+        this.poolSize = poolSize;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery == null || validationQuery.isEmpty() ? null : validationQuery;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    /**
+     * @param initialSize - connections opened together with the first one, at most the pool size
+     */
+    public void setInitialSize(int initialSize) {
+        if (initialSize < 0) throw new IllegalArgumentException("Initial size must not be negative!");
+        this.initialSize = initialSize;
+    }
+}
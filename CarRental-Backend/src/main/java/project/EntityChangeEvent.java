@@ -0,0 +1,41 @@
+package project;
+
+/**
+ * Notification about committed change of one car, customer or lease
+ * @author Daniel Jurca
+ */
+public class EntityChangeEvent<T> {
+
+    public enum Type {
+        INSERTED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final T entity;
+
+    /**
+     * @param type - kind of the change
+     * @param entity - entity as it was saved, or as it was before delete
+     */
+    public EntityChangeEvent(Type type, T entity) {
+        this.type = type;
+        this.entity = entity;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public T getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntityChangeEvent{");
+        sb.append("type=").append(type);
+        sb.append(", entity=").append(entity);
+        sb.append('}');
+        return sb.toString();
+    }
+}
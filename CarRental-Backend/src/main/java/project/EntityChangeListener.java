@@ -0,0 +1,15 @@
+package project;
+
+/**
+ * Listener of changes made through a manager
+ * @author Daniel Jurca
+ */
+@FunctionalInterface
+public interface EntityChangeListener<T> {
+
+    /**
+     * Called after the change is committed, on the thread which made it
+     * @param event - what was changed
+     */
+    void entityChanged(EntityChangeEvent<T> event);
+}
@@ -0,0 +1,72 @@
+package project;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with buckets growing with the value, like
+ * HdrHistogram: values below 32 are counted exactly, greater values in 16 buckets per
+ * power of two, so a bucket is at most 1/16 of its values wide. Recording is one
+ * atomic increment without locks or allocation. Values from 2^40 ns (18 minutes)
+ * are counted in the last bucket.
+ * @author Daniel Jurca
+ */
+final class LatencyHistogram {
+    private static final int PRECISION_BITS = 5;
+    private static final int EXACT = 1 << PRECISION_BITS;
+    private static final int HALF = EXACT / 2;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+
+    void record(long value) {
+        counts.incrementAndGet(index(Math.min(Math.max(value, 0), MAX_VALUE)));
+    }
+
+    /**
+     * @return counts of buckets at one moment, increments made meanwhile may be missing
+     */
+    long[] snapshot() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param counts - snapshot of buckets
+     * @param quantile - between 0 and 1
+     * @return greatest value of the bucket holding the value at the quantile, 0 without values
+     */
+    static long valueAt(long[] counts, double quantile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return highestValue(i);
+        }
+        return 0;
+    }
+
+    static int index(long value) {
+        if (value < EXACT) return (int) value;
+        int level = 63 - Long.numberOfLeadingZeros(value) - PRECISION_BITS + 1;
+        return EXACT + (level - 1) * HALF + (int) (value >>> level) - HALF;
+    }
+
+    static long lowestValue(int index) {
+        if (index < EXACT) return index;
+        int level = (index - EXACT) / HALF + 1;
+        return (long) ((index - EXACT) % HALF + HALF) << level;
+    }
+
+    static long highestValue(int index) {
+        if (index < EXACT) return index;
+        int level = (index - EXACT) / HALF + 1;
+        return lowestValue(index) + (1L << level) - 1;
+    }
+}
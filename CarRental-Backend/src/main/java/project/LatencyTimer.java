@@ -0,0 +1,98 @@
+package project;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts calls, errors, misses and latencies of one manager method or SQL statement.
+ * Thread safe, recording takes no lock.
+ * @author Daniel Jurca
+ */
+public final class LatencyTimer implements LatencyTimerMXBean {
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyTimer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param nanos - duration of the call
+     * @param failed - whether the call ended by an exception
+     */
+    public void record(long nanos, boolean failed) {
+        histogram.record(nanos);
+        count.increment();
+        totalNanos.add(nanos);
+        if (failed) errors.increment();
+        if (nanos > maxNanos.get()) maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Counts a call which found nothing, e.g. getCarById of an id which does not exist
+     */
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public TimerStatistics getStatistics() {
+        long[] counts = histogram.snapshot();
+        return new TimerStatistics(count.sum(), errors.sum(), misses.sum(), totalNanos.sum(),
+                LatencyHistogram.valueAt(counts, 0.5), LatencyHistogram.valueAt(counts, 0.9),
+                LatencyHistogram.valueAt(counts, 0.99), maxNanos.get());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return millis(getStatistics().getMeanNanos());
+    }
+
+    @Override
+    public double getP50Millis() {
+        return millis(LatencyHistogram.valueAt(histogram.snapshot(), 0.5));
+    }
+
+    @Override
+    public double getP90Millis() {
+        return millis(LatencyHistogram.valueAt(histogram.snapshot(), 0.9));
+    }
+
+    @Override
+    public double getP99Millis() {
+        return millis(LatencyHistogram.valueAt(histogram.snapshot(), 0.99));
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return millis(maxNanos.get());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
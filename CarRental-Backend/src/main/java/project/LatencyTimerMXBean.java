@@ -0,0 +1,26 @@
+package project;
+
+/**
+ * Calls and latencies of one manager method or SQL statement in JMX, times in milliseconds
+ * @author Daniel Jurca
+ */
+public interface LatencyTimerMXBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrors();
+
+    long getMisses();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
@@ -1,12 +1,16 @@
 package project;
 
 import project.exception.IllegalEntityException;
+import project.exception.LeaseConflictException;
 import project.exception.ValidationException;
 import project.impl.Car;
 import project.impl.Customer;
 import project.impl.Lease;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface with operations for leases
@@ -22,9 +26,21 @@ public interface LeaseManager {
      * @throws IllegalEntityException when lease already exists (same id)
      * @throws ValidationException when lease has some null properties or end is before start
      * @throws ValidationException when price of lease is negative
+     * @throws IllegalEntityException when leased car does not exist
+     * @throws LeaseConflictException when the car has another lease sharing a day with this lease
      */
     void createLease(Lease lease);
 
+    /**
+     * Save leases to database in one batch, either all leases are saved or none
+     * @param leases - leases you want to add to database, their ids are set when saved
+     * @throws IllegalArgumentException when list of leases or some lease is null
+     * @throws IllegalEntityException when some lease already exists or its car does not exist
+     * @throws ValidationException when some lease is not valid, like in {@link #createLease(Lease)}
+     * @throws LeaseConflictException when leases of one car share a day, in the batch or with stored leases
+     */
+    void createLeases(List<Lease> leases);
+
     /**
      * Find lease in the database by id
      * @param id - id of lease you want to find
@@ -39,12 +55,56 @@ public interface LeaseManager {
      */
     List<Lease> findAllLeases();
 
+    /**
+     * Count leases in the database
+     * @return number of leases
+     */
+    int countLeases();
+
+    /**
+     * Find leases at given positions when ordered by id
+     * @param offset - number of leases to skip
+     * @param limit - maximal number of leases returned
+     * @return list of at most limit leases
+     * @throws IllegalArgumentException when offset is negative or limit is not positive
+     */
+    List<Lease> findLeases(int offset, int limit);
+
+    /**
+     * Hand all leases in the database to the consumer one by one, ordered by id,
+     * without loading them all in memory. When the consumer throws an exception,
+     * reading stops, the connection is released and the exception is rethrown.
+     * @param consumer - called for every lease
+     * @throws IllegalArgumentException when consumer is null
+     */
+    void streamAllLeases(Consumer<Lease> consumer);
+
+    /**
+     * Find page of leases ordered by id
+     * @param afterId - id of the last lease of previous page, null for the first page
+     * @param pageSize - maximal number of leases on the page
+     * @return page of leases with id greater than afterId
+     * @throws IllegalArgumentException when page size is not positive
+     */
+    Page<Lease> findLeasesAfter(Long afterId, int pageSize);
+
+    /**
+     * Find page of leases preceding given id, ordered by id
+     * @param beforeId - id of the first lease of following page
+     * @param pageSize - maximal number of leases on the page
+     * @return page of leases with id lower than beforeId
+     * @throws IllegalArgumentException when given id is null or page size is not positive
+     */
+    Page<Lease> findLeasesBefore(Long beforeId, int pageSize);
+
     /**
      * Update lease in the database
      * @param lease - lease with updated properties
      * @throws IllegalArgumentException when "updating" lease is null
      * @throws IllegalEntityException when lease has null id or lease does not exists
      * @throws ValidationException when lease has some null properties
+     * @throws IllegalEntityException when leased car does not exist
+     * @throws LeaseConflictException when the car has another lease sharing a day with this lease
      */
     void updateLease(Lease lease);
 
@@ -56,6 +116,15 @@ public interface LeaseManager {
      */
     void deleteLease(Lease lease);
 
+    /**
+     * Delete leases from the database in one transaction
+     * @param leases - leases you want to delete
+     * @return leases which were not deleted, because they do not exist
+     * @throws IllegalArgumentException when collection of leases or some lease is null
+     * @throws IllegalEntityException when some lease has null id, then no lease is deleted
+     */
+    List<Lease> deleteLeases(Collection<Lease> leases);
+
     /**
      * Find leases with given customer
      * @param customer - customer in leases you want to find
@@ -87,8 +156,32 @@ public interface LeaseManager {
      */
     List<Car> findLeasedCars();
 
+    /**
+     * Find cars which can be leased for the whole given period, i.e. cars
+     * without any lease sharing a day with the period
+     * @param from - first day of the period
+     * @param to - day after the last day of the period, like the end of lease
+     * @return Collection of cars available in the period
+     * @throws IllegalArgumentException when from or to is null or to is not after from
+     */
+    List<Car> findAvailableCars(LocalDate from, LocalDate to);
+
     CarManager getCarManager();
 
     CustomerManager getCustomerManager();
-}
 
+    /**
+     * Register listener notified about every committed create, update and delete of a lease.
+     * Leases deleted together with their car or customer are not announced,
+     * listen to the car and customer managers for those.
+     * @param listener - listener to be notified
+     * @throws IllegalArgumentException when listener is null
+     */
+    void addChangeListener(EntityChangeListener<Lease> listener);
+
+    /**
+     * Stop notifying the listener
+     * @param listener - listener registered before
+     */
+    void removeChangeListener(EntityChangeListener<Lease> listener);
+}
@@ -1,12 +1,14 @@
 package project;
 
 import org.apache.commons.dbcp2.BasicDataSource;
-import org.apache.derby.jdbc.ClientDataSource;
 import org.apache.derby.jdbc.EmbeddedDriver;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import project.impl.Car;
 import project.impl.CarManagerImpl;
+import project.impl.CustomerManagerImpl;
+import project.impl.LeaseManagerImpl;
+import project.impl.ReportManagerImpl;
 
 import javax.sql.DataSource;
 import javax.swing.*;
@@ -22,6 +24,10 @@ import java.util.prefs.Preferences;
  */
 public class Main {
     public static ResourceBundle local = ResourceBundle.getBundle("localization");
+    /** Number of cars and customers each kept in memory, 0 turns the cache off */
+    public static final String ENTITY_CACHE_SIZE = "CRDatabase-EntityCacheSize";
+    /** Argument which rebuilds occupancy of days in the configured database instead of starting the application */
+    public static final String REBUILD_OCCUPANCY = "--rebuild-occupancy";
 
     public static void saveDBPreferences() {
         Preferences databasePrefs = Preferences.userNodeForPackage(Main.class);
@@ -33,6 +39,12 @@ public class Main {
         databasePrefs.put("CRDatabase-Name", dbName);
         databasePrefs.put("CRDatabase-ServerName", dbServerName);
         databasePrefs.putInt("CRDatabase-PortNumber", dbPortNumber);
+        databasePrefs.putInt(DataSourceFactory.POOL_SIZE, DataSourceFactory.DEFAULT_POOL_SIZE);
+        databasePrefs.putLong(DataSourceFactory.IDLE_TIMEOUT, DataSourceFactory.DEFAULT_IDLE_TIMEOUT);
+        databasePrefs.put(DataSourceFactory.VALIDATION_QUERY, DataSourceFactory.DEFAULT_VALIDATION_QUERY);
+        databasePrefs.putInt(DataSourceFactory.STATEMENT_CACHE_SIZE, DataSourceFactory.DEFAULT_STATEMENT_CACHE_SIZE);
+        databasePrefs.putInt(DataSourceFactory.INITIAL_SIZE, DataSourceFactory.DEFAULT_INITIAL_SIZE);
+        databasePrefs.putInt(ENTITY_CACHE_SIZE, 0);
         try {
             databasePrefs.exportSubtree(System.out);
         } catch (IOException | BackingStoreException e) {
@@ -43,27 +55,43 @@ public class Main {
         BasicDataSource bds = new BasicDataSource();
         bds.setDriverClassName(EmbeddedDriver.class.getName());
         bds.setUrl("jdbc:derby:memory:CarRentalDB;create=true");
-        new ResourceDatabasePopulator(
-                new ClassPathResource("createTables.sql"),
-                new ClassPathResource("fillTables.sql")
-        ).execute(bds);
+        new SchemaMigration(bds).migrate();
+        new ResourceDatabasePopulator(new ClassPathResource("fillTables.sql")).execute(bds);
+        rebuildOccupancy(bds);
         return bds;
     }
 
-    public static DataSource connectDatabase() {
+    public static PooledDataSource connectDatabase() {
 
         Preferences databasePrefs = Preferences.userNodeForPackage(Main.class);
         String dbName = databasePrefs.get("CRDatabase-Name", "None");
         String dbServerName = databasePrefs.get("CRDatabase-ServerName", "None");
         int dbPortNumber = databasePrefs.getInt("CRDatabase-PortNumber", 0);
-        ClientDataSource ds = new ClientDataSource();
-        ds.setServerName(dbServerName);
-        ds.setPortNumber(dbPortNumber);
-        ds.setDatabaseName(dbName);
-        return ds;
+        PooledDataSource dataSource = DataSourceFactory.fromPreferences(databasePrefs)
+                .createNetworkDataSource(dbServerName, dbPortNumber, dbName);
+        new SchemaMigration(dataSource).migrate();
+        return dataSource;
+    }
+
+    /**
+     * Compute occupancy of days again from all leases
+     * @return number of days with a lease
+     */
+    public static int rebuildOccupancy(DataSource dataSource) {
+        LeaseManagerImpl leaseManager = new LeaseManagerImpl(dataSource,
+                new CustomerManagerImpl(dataSource), new CarManagerImpl(dataSource));
+        return new ReportManagerImpl(dataSource, leaseManager).rebuildOccupancy();
+    }
+
+    public static int entityCacheSize() {
+        return Preferences.userNodeForPackage(Main.class).getInt(ENTITY_CACHE_SIZE, 0);
     }
 
     public static void main(String[] args){
+        if (args.length > 0 && REBUILD_OCCUPANCY.equals(args[0])) {
+            System.out.println("Occupancy of " + rebuildOccupancy(connectDatabase()) + " days rebuilt");
+            return;
+        }
         EventQueue.invokeLater(() -> {
             JFrame frame = new JFrame("Car Rental");
             frame.setContentPane(new CarRentalForm().getTopPanel());
@@ -0,0 +1,92 @@
+package project;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Timers of manager methods and SQL statements by name. Timers can be published
+ * as MXBeans, those created later are published when they are created.
+ * @author Daniel Jurca
+ */
+public class Metrics {
+
+    private final static Logger log = LoggerFactory.getLogger(Metrics.class);
+
+    private final ConcurrentMap<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+    /** guarded by this */
+    private MBeanServer server;
+    /** guarded by this */
+    private String domain;
+    /** guarded by this */
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    /**
+     * @return timer of the name, created on first use
+     */
+    public LatencyTimer timer(String name) {
+        LatencyTimer timer = timers.get(name);
+        if (timer != null) return timer;
+        LatencyTimer created = new LatencyTimer(name);
+        timer = timers.putIfAbsent(name, created);
+        if (timer != null) return timer;
+        register(created);
+        return created;
+    }
+
+    /**
+     * @return statistics of all timers by name, ordered by name
+     */
+    public Map<String, TimerStatistics> snapshot() {
+        Map<String, TimerStatistics> snapshot = new TreeMap<>();
+        for (LatencyTimer timer : timers.values()) {
+            snapshot.put(timer.getName(), timer.getStatistics());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Publish all timers as MXBeans {domain}:type=Metrics,name={name}
+     */
+    public synchronized void registerMBeans(MBeanServer server, String domain) {
+        this.server = server;
+        this.domain = domain;
+        for (LatencyTimer timer : timers.values()) {
+            register(timer);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                log.debug("Cannot unregister {}", name, e);
+            }
+        }
+        registered.clear();
+        server = null;
+    }
+
+    private synchronized void register(LatencyTimer timer) {
+        if (server == null) return;
+        try {
+            ObjectName name = new ObjectName(domain + ":type=Metrics,name=" + ObjectName.quote(timer.getName()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(timer, name);
+                registered.add(name);
+            }
+        } catch (JMException e) {
+            log.error("Cannot register timer {}", timer.getName(), e);
+        }
+    }
+}
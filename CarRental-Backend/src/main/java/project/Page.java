@@ -0,0 +1,61 @@
+package project;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of entities ordered by id, with cursors of the neighbouring pages
+ * @author Daniel Jurca
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final Long nextCursor;
+    private final Long previousCursor;
+
+    /**
+     * @param items - entities on the page ordered by id
+     * @param nextCursor - id to find the next page after, null on the last page
+     * @param previousCursor - id to find the previous page before, null on the first page
+     */
+    public Page(List<T> items, Long nextCursor, Long previousCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return id to pass as "after" to get the next page, null when this is the last page
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return id to pass as "before" to get the previous page, null when this is the first page
+     */
+    public Long getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("Page{");
+        sb.append("items=").append(items.size());
+        sb.append(", nextCursor=").append(nextCursor);
+        sb.append(", previousCursor=").append(previousCursor);
+        sb.append('}');
+        return sb.toString();
+    }
+}
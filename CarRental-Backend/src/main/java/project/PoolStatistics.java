@@ -0,0 +1,86 @@
+package project;
+
+/**
+ * Snapshot of the state of a connection pool
+ * @author Daniel Jurca
+ */
+public class PoolStatistics {
+    private final int active;
+    private final int idle;
+    private final int maxTotal;
+    private final int waiting;
+    private final long borrowed;
+    private final long meanWaitMillis;
+    private final long maxWaitMillis;
+
+    public PoolStatistics(int active, int idle, int maxTotal, int waiting,
+                          long borrowed, long meanWaitMillis, long maxWaitMillis) {
+        this.active = active;
+        this.idle = idle;
+        this.maxTotal = maxTotal;
+        this.waiting = waiting;
+        this.borrowed = borrowed;
+        this.meanWaitMillis = meanWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * @return number of connections borrowed from the pool right now
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * @return number of open connections waiting in the pool
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @return number of threads blocked waiting for a connection
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * @return number of connections borrowed since the pool was created
+     */
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    /**
+     * @return mean time of waiting for a connection over recent borrows
+     */
+    public long getMeanWaitMillis() {
+        return meanWaitMillis;
+    }
+
+    /**
+     * @return longest time of waiting for a connection
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("PoolStatistics{");
+        sb.append("active=").append(active);
+        sb.append(", idle=").append(idle);
+        sb.append(", maxTotal=").append(maxTotal);
+        sb.append(", waiting=").append(waiting);
+        sb.append(", borrowed=").append(borrowed);
+        sb.append(", meanWaitMillis=").append(meanWaitMillis);
+        sb.append(", maxWaitMillis=").append(maxWaitMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
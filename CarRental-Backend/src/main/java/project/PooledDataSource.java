@@ -0,0 +1,25 @@
+package project;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * Pooled data source reporting statistics of its pool
+ * @author Daniel Jurca
+ */
+public class PooledDataSource extends BasicDataSource {
+
+    /**
+     * @return current state of the pool, all zero before first connection is requested
+     */
+    public PoolStatistics getStatistics() {
+        GenericObjectPool<PoolableConnection> pool = getConnectionPool();
+        if (pool == null) {
+            return new PoolStatistics(0, 0, getMaxTotal(), 0, 0, 0, 0);
+        }
+        return new PoolStatistics(pool.getNumActive(), pool.getNumIdle(), pool.getMaxTotal(),
+                pool.getNumWaiters(), pool.getBorrowedCount(),
+                pool.getMeanBorrowWaitTimeMillis(), pool.getMaxBorrowWaitTimeMillis());
+    }
+}
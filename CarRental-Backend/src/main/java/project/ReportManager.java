@@ -0,0 +1,85 @@
+package project;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface with revenue and utilization reports over leases.
+ * A period starts on its first day and ends on the day after its last day,
+ * like a lease. Revenue of a lease is its price times its days within the period.
+ * @author Daniel Jurca
+ */
+public interface ReportManager {
+
+    /**
+     * Usage of every car, cars are available all days of the period
+     * @param from - first day of the period
+     * @param to - day after the last day of the period
+     * @return usage of cars by their id, ordered by id
+     * @throws IllegalArgumentException when from or to is null or to is not after from
+     */
+    Map<Long, UsageReport> reportByCar(LocalDate from, LocalDate to);
+
+    /**
+     * Usage of the fleet by customers with a lease in the period,
+     * available days are the days of all cars in the period
+     * @param from - first day of the period
+     * @param to - day after the last day of the period
+     * @return usage by id of customer, ordered by id
+     * @throws IllegalArgumentException when from or to is null or to is not after from
+     */
+    Map<Long, UsageReport> reportByCustomer(LocalDate from, LocalDate to);
+
+    /**
+     * Usage of the fleet in every month sharing a day with the period,
+     * only days of the month within the period are counted
+     * @param from - first day of the period
+     * @param to - day after the last day of the period
+     * @return usage by month, ordered by month
+     * @throws IllegalArgumentException when from or to is null or to is not after from
+     */
+    Map<YearMonth, UsageReport> reportByMonth(LocalDate from, LocalDate to);
+
+    /**
+     * Usage of the whole fleet
+     * @param from - first day of the period
+     * @param to - day after the last day of the period
+     * @return usage of all cars in the period
+     * @throws IllegalArgumentException when from or to is null or to is not after from
+     */
+    UsageReport reportFleet(LocalDate from, LocalDate to);
+
+    /**
+     * Number of leased cars and revenue on every day of the period, read from
+     * a table of days together with the changes recorded by writes of leases since
+     * they were last folded into it
+     * @param from - first day of the period
+     * @param to - day after the last day of the period
+     * @return occupancy of every day, ordered by day
+     * @throws IllegalArgumentException when from or to is null or to is not after from
+     */
+    List<DailyOccupancy> findOccupancy(LocalDate from, LocalDate to);
+
+    /**
+     * Fold the changes recorded by writes of leases into occupancy of their days,
+     * done by {@link #findOccupancy} too once enough leases were written.
+     * Leases can not be written meanwhile.
+     * @return number of days changed
+     */
+    int compactOccupancy();
+
+    /**
+     * Compute occupancy of all days again from all leases, needed for leases
+     * written before the table existed or written other than by a lease manager.
+     * Leases can not be written meanwhile.
+     * @return number of days with a lease
+     */
+    int rebuildOccupancy();
+
+    /**
+     * @return counters of reports of periods kept in memory
+     */
+    CacheStatistics getCacheStatistics();
+}
@@ -0,0 +1,181 @@
+package project;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import project.impl.OccupancyTable;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Brings the database schema to the latest version by applying numbered scripts
+ * db/migration/V&lt;version&gt;__&lt;description&gt;.sql from the classpath.
+ * Every script runs in its own transaction together with recording its version
+ * in table SCHEMA_VERSION. A database created from createTables.sql before the
+ * schema was versioned is taken as version 1.
+ * <p>
+ * A script may be followed by a step filling its tables from existing data, run in
+ * the same transaction: version 3 counts the leases already in the database in
+ * table DAILY_OCCUPANCY, which its triggers keep up to date afterwards; since version 4
+ * the triggers record changes in table OCCUPANCY_CHANGES instead.
+ * @author Daniel Jurca
+ */
+public class SchemaMigration {
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigration.class);
+    private static final String SCRIPTS = "classpath*:db/migration/V*__*.sql";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    /** steps run after the script of their version */
+    private static final Map<Integer, Consumer<DataSource>> AFTER_SCRIPT;
+
+    static {
+        Map<Integer, Consumer<DataSource>> steps = new HashMap<>();
+        steps.put(3, dataSource -> log.info("Occupancy of {} days counted", OccupancyTable.count(dataSource)));
+        AFTER_SCRIPT = Collections.unmodifiableMap(steps);
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+
+    public SchemaMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Apply all scripts not applied yet
+     * @return version of the schema
+     */
+    public int migrate() {
+        return migrate(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Apply scripts not applied yet up to given version
+     * @param targetVersion - last version to apply
+     * @return version of the schema
+     */
+    public int migrate(int targetVersion) {
+        createVersionTable();
+        int version = currentVersion();
+        for (Script script : scripts()) {
+            if (script.version > version && script.version <= targetVersion) {
+                apply(script);
+                version = script.version;
+            }
+        }
+        log.debug("Schema is at version {}", version);
+        return version;
+    }
+
+    /**
+     * @return version of the schema, 0 for an empty database
+     */
+    public int currentVersion() {
+        if (!tableExists("SCHEMA_VERSION")) {
+            return 0;
+        }
+        Integer version = jdbc.queryForObject("SELECT MAX(version) FROM schema_version", Integer.class);
+        return version == null ? 0 : version;
+    }
+
+    private void createVersionTable() {
+        if (tableExists("SCHEMA_VERSION")) return;
+        try {
+            transaction.execute(status -> {
+                jdbc.execute("CREATE TABLE schema_version (" +
+                        "version INT PRIMARY KEY, " +
+                        "description VARCHAR(200) NOT NULL, " +
+                        "applied TIMESTAMP NOT NULL)");
+                if (tableExists("CARS")) {
+                    log.info("Existing schema taken as version 1");
+                    jdbc.update("INSERT INTO schema_version VALUES (1, 'baseline', CURRENT_TIMESTAMP)");
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            // another process may have created it meanwhile
+            if (!tableExists("SCHEMA_VERSION")) throw e;
+        }
+    }
+
+    private void apply(Script script) {
+        transaction.execute(status -> {
+            jdbc.execute("LOCK TABLE schema_version IN EXCLUSIVE MODE");
+            if (currentVersion() >= script.version) {
+                return null;
+            }
+            log.info("Applying schema version {}: {}", script.version, script.description);
+            ScriptUtils.executeSqlScript(DataSourceUtils.getConnection(dataSource),
+                    new EncodedResource(script.resource, "utf-8"));
+            Consumer<DataSource> step = AFTER_SCRIPT.get(script.version);
+            if (step != null) {
+                step.accept(dataSource);
+            }
+            jdbc.update("INSERT INTO schema_version VALUES (?, ?, CURRENT_TIMESTAMP)",
+                    script.version, script.description);
+            return null;
+        });
+    }
+
+    private boolean tableExists(String table) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM sys.systables t " +
+                "JOIN sys.sysschemas s ON s.schemaid = t.schemaid " +
+                "WHERE s.schemaname = CURRENT SCHEMA AND t.tablename = ?", Integer.class, table) > 0;
+    }
+
+    private static List<Script> scripts() {
+        Resource[] resources;
+        try {
+            resources = new PathMatchingResourcePatternResolver().getResources(SCRIPTS);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot list migration scripts", e);
+        }
+        List<Script> scripts = new ArrayList<>();
+        for (Resource resource : resources) {
+            Matcher name = SCRIPT_NAME.matcher(resource.getFilename());
+            if (!name.matches()) {
+                throw new IllegalStateException("Invalid name of migration script " + resource.getFilename());
+            }
+            scripts.add(new Script(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), resource));
+        }
+        scripts.sort(Comparator.comparingInt(script -> script.version));
+        for (int i = 1; i < scripts.size(); i++) {
+            if (scripts.get(i).version == scripts.get(i - 1).version) {
+                throw new IllegalStateException("Duplicate migration scripts of version " + scripts.get(i).version);
+            }
+        }
+        return scripts;
+    }
+
+    private static class Script {
+        private final int version;
+        private final String description;
+        private final Resource resource;
+
+        private Script(int version, String description, Resource resource) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package project;
+
+import java.util.List;
+
+/**
+ * SQL statement which took longer than the threshold of the slow query log
+ * @author Daniel Jurca
+ */
+public class SlowQuery {
+    private final String sql;
+    private final List<String> parameters;
+    private final long rows;
+    private final long nanos;
+    private final long timeMillis;
+    private final boolean failed;
+    private final String plan;
+
+    /**
+     * @param sql - statement as executed
+     * @param parameters - bound parameters in order, null for a parameter not set or set to null
+     * @param rows - rows read or written, -1 when unknown
+     * @param nanos - time from execution until the result set was closed
+     * @param timeMillis - time the statement ended at
+     * @param failed - whether the statement ended by an exception
+     * @param plan - runtime statistics of Derby, null when not captured
+     */
+    public SlowQuery(String sql, List<String> parameters, long rows, long nanos, long timeMillis, boolean failed,
+                     String plan) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.rows = rows;
+        this.nanos = nanos;
+        this.timeMillis = timeMillis;
+        this.failed = failed;
+        this.plan = plan;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery{" +
+                "sql='" + sql + '\'' +
+                ", parameters=" + parameters +
+                ", rows=" + rows +
+                ", millis=" + nanos / 1_000_000 +
+                ", failed=" + failed +
+                '}';
+    }
+}
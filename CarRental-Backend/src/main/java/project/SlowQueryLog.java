@@ -0,0 +1,81 @@
+package project;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs SQL statements slower than a threshold and keeps the slowest of them.
+ * Statements are reported to it by {@link project.impl.InstrumentedDataSource}.
+ * @author Daniel Jurca
+ */
+public class SlowQueryLog {
+
+    private final static Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+    private static final Comparator<SlowQuery> BY_TIME = Comparator.comparingLong(SlowQuery::getNanos);
+
+    private final long thresholdNanos;
+    private final int size;
+    private final boolean capturingPlans;
+    /** the fastest of the kept queries first, guarded by this */
+    private final PriorityQueue<SlowQuery> slowest;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * @param thresholdMillis - statements taking at least this long are slow
+     * @param size - number of the slowest statements kept
+     * @param capturingPlans - capture runtime statistics of slow statements on Derby, which
+     *                       turns them on for every connection and slows down all statements
+     */
+    public SlowQueryLog(long thresholdMillis, int size, boolean capturingPlans) {
+        if (thresholdMillis < 0) throw new IllegalArgumentException("Threshold must not be negative!");
+        if (size < 1) throw new IllegalArgumentException("Size must be positive!");
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.size = size;
+        this.capturingPlans = capturingPlans;
+        this.slowest = new PriorityQueue<>(size + 1, BY_TIME);
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    public boolean isCapturingPlans() {
+        return capturingPlans;
+    }
+
+    /**
+     * @return number of slow statements since start, also those no longer kept
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    public void record(SlowQuery query) {
+        count.increment();
+        if (log.isWarnEnabled()) {
+            log.warn("Slow statement {} ms, {} rows{}: {} {}{}", query.getNanos() / 1_000_000, query.getRows(),
+                    query.isFailed() ? ", failed" : "", query.getSql(), query.getParameters(),
+                    query.getPlan() == null ? "" : "\n" + query.getPlan());
+        }
+        synchronized (this) {
+            slowest.add(query);
+            if (slowest.size() > size) slowest.poll();
+        }
+    }
+
+    /**
+     * @return kept statements, the slowest first
+     */
+    public synchronized List<SlowQuery> getSlowest() {
+        List<SlowQuery> queries = new ArrayList<>(slowest);
+        queries.sort(BY_TIME.reversed());
+        return queries;
+    }
+}
@@ -0,0 +1,86 @@
+package project;
+
+/**
+ * Snapshot of calls of one manager method or SQL statement, times in nanoseconds.
+ * Percentiles are the greatest value of their histogram bucket, so they are at most
+ * 1/16 above the real value.
+ * @author Daniel Jurca
+ */
+public class TimerStatistics {
+    private final long count;
+    private final long errors;
+    private final long misses;
+    private final long totalNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    public TimerStatistics(long count, long errors, long misses, long totalNanos, long p50Nanos,
+                           long p90Nanos, long p99Nanos, long maxNanos) {
+        this.count = count;
+        this.errors = errors;
+        this.misses = misses;
+        this.totalNanos = totalNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of calls ended by an exception, they are counted in the times too
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return number of calls which found nothing, they are counted in the times too
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "TimerStatistics{" +
+                "count=" + count +
+                ", errors=" + errors +
+                ", misses=" + misses +
+                ", meanNanos=" + getMeanNanos() +
+                ", p50Nanos=" + p50Nanos +
+                ", p90Nanos=" + p90Nanos +
+                ", p99Nanos=" + p99Nanos +
+                ", maxNanos=" + maxNanos +
+                '}';
+    }
+}
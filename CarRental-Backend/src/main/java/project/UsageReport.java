@@ -0,0 +1,61 @@
+package project;
+
+import java.math.BigDecimal;
+
+/**
+ * Leases, leased days and revenue of a car, customer or month within a period
+ * @author Daniel Jurca
+ */
+public class UsageReport {
+    private final int leases;
+    private final long leasedDays;
+    private final BigDecimal revenue;
+    private final long availableDays;
+
+    /**
+     * @param leases - number of leases sharing a day with the period
+     * @param leasedDays - days of those leases within the period
+     * @param revenue - price of every lease times its days within the period
+     * @param availableDays - days cars could have been leased within the period
+     */
+    public UsageReport(int leases, long leasedDays, BigDecimal revenue, long availableDays) {
+        this.leases = leases;
+        this.leasedDays = leasedDays;
+        this.revenue = revenue;
+        this.availableDays = availableDays;
+    }
+
+    public int getLeases() {
+        return leases;
+    }
+
+    public long getLeasedDays() {
+        return leasedDays;
+    }
+
+    public BigDecimal getRevenue() {
+        return revenue;
+    }
+
+    public long getAvailableDays() {
+        return availableDays;
+    }
+
+    /**
+     * @return ratio of leased days to available days, 0 when no day was available
+     */
+    public double getUtilization() {
+        return availableDays == 0 ? 0 : (double) leasedDays / availableDays;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("UsageReport{");
+        sb.append("leases=").append(leases);
+        sb.append(", leasedDays=").append(leasedDays);
+        sb.append(", revenue=").append(revenue);
+        sb.append(", availableDays=").append(availableDays);
+        sb.append('}');
+        return sb.toString();
+    }
+}
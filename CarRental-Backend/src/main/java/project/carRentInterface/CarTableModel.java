@@ -9,34 +9,44 @@ import project.impl.CarManagerImpl;
 
 import javax.sql.DataSource;
 import javax.swing.*;
-import javax.swing.table.AbstractTableModel;
 import javax.swing.event.TableModelEvent;
 import java.awt.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.ResourceBundle;
 
 /**
  * @author Daniel Jurca
  */
-public class CarTableModel extends AbstractTableModel {
+public class CarTableModel extends EntityTableModel<Car> {
 
-    private List<Car> cars;
     private CarManager carManager;
 
     public CarTableModel(CarManager carManager) {
         this.carManager = carManager;
-        SwingWorker worker = new SwingWorker() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                cars = carManager.findAllCars();
-                fireTableDataChanged();
-                return null;
-            }
-        };
-        worker.execute();
+        carManager.addChangeListener(this);
+        reload();
+    }
+
+    @Override
+    int countRows() {
+        return carManager.countCars();
+    }
+
+    @Override
+    List<Car> findRows(int offset, int limit) {
+        return carManager.findCars(offset, limit);
+    }
+
+    @Override
+    List<Car> findRowsAfter(Long id, int limit) {
+        return carManager.findCarsAfter(id, limit).getItems();
+    }
+
+    @Override
+    Long idOf(Car car) {
+        return car.getId();
     }
 
     public void addCar(Car car) {
@@ -48,8 +58,6 @@ public class CarTableModel extends AbstractTableModel {
                 }catch(IllegalEntityException | ValidationException e){
                     e.printStackTrace();
                 }
-                cars = carManager.findAllCars();
-                fireTableDataChanged();
                 return null;
             }
         };
@@ -58,7 +66,10 @@ public class CarTableModel extends AbstractTableModel {
 
     @Override
     public void setValueAt(Object value, int rowIndex, int columnIndex) {
-        Car car = cars.get(rowIndex);
+        Car car = getRow(rowIndex);
+        if (car == null) {
+            return;
+        }
         switch (columnIndex) {
             case 0:
                 car.setId((Long) value);
@@ -82,9 +93,7 @@ public class CarTableModel extends AbstractTableModel {
                     carManager.updateCar(car);
                 }catch(IllegalEntityException | ValidationException e){
                     e.printStackTrace();
-                } finally {
-                    cars = carManager.findAllCars();
-                    fireTableDataChanged();
+                    reloaded(car, carManager.getCarById(car.getId()));
                 }
                 return null;
             }
@@ -107,12 +116,7 @@ public class CarTableModel extends AbstractTableModel {
     }
 
 
-    @Override
-    public int getRowCount() {
-        return cars.size();
-    }
-
-    public Car getCarAt(int row) {return cars.get(row);}
+    public Car getCarAt(int row) {return getRow(row);}
 
     @Override
     public Class<?> getColumnClass(int columnIndex) {
@@ -152,7 +156,10 @@ public class CarTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Car car = cars.get(rowIndex);
+        Car car = getRow(rowIndex);
+        if (car == null) {
+            return null;
+        }
         switch (columnIndex) {
             case 0:
                 return car.getId();
@@ -168,24 +175,6 @@ public class CarTableModel extends AbstractTableModel {
     }
 
     public void deleteCarsByRow(List<Integer> toDelete) {
-        SwingWorker worker = new SwingWorker() {
-            @Override
-            protected Void doInBackground() throws Exception {
-
-                toDelete.sort(Collections.reverseOrder());
-                for (int row : toDelete) {
-                    try{
-                        carManager.deleteCar(cars.get(row));
-                    }catch(IllegalEntityException e){
-                        e.printStackTrace();
-                    }
-                }
-                cars = carManager.findAllCars();
-                fireTableDataChanged();
-                return null;
-            }
-        };
-        worker.execute();
+        deleteRows(toDelete, carManager::deleteCars);
     }
 }
-
@@ -8,30 +8,40 @@ import project.impl.Customer;
 import project.impl.CustomerManagerImpl;
 import javax.sql.DataSource;
 import javax.swing.*;
-import javax.swing.table.AbstractTableModel;
-import java.util.Collections;
 import java.util.List;
 
 
 /**
  * @author Daniel Jurca
  */
-public class CustomerTableModel extends AbstractTableModel {
+public class CustomerTableModel extends EntityTableModel<Customer> {
 
-    private List<Customer> customers;
     private CustomerManager customerManager;
 
     public CustomerTableModel(CustomerManager customerManager) {
         this.customerManager = customerManager;
-        SwingWorker worker = new SwingWorker() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                customers = customerManager.findAllCustomers();
-                fireTableDataChanged();
-                return null;
-            }
-        };
-        worker.execute();
+        customerManager.addChangeListener(this);
+        reload();
+    }
+
+    @Override
+    int countRows() {
+        return customerManager.countCustomers();
+    }
+
+    @Override
+    List<Customer> findRows(int offset, int limit) {
+        return customerManager.findCustomers(offset, limit);
+    }
+
+    @Override
+    List<Customer> findRowsAfter(Long id, int limit) {
+        return customerManager.findCustomersAfter(id, limit).getItems();
+    }
+
+    @Override
+    Long idOf(Customer customer) {
+        return customer.getId();
     }
 
     public void addCustomer(Customer customer) {
@@ -43,8 +53,6 @@ public class CustomerTableModel extends AbstractTableModel {
                 }catch(IllegalEntityException | ValidationException e){
                     e.printStackTrace();
                 }
-                customers = customerManager.findAllCustomers();
-                fireTableDataChanged();
                 return null;
             }
         };
@@ -53,7 +61,10 @@ public class CustomerTableModel extends AbstractTableModel {
 
     @Override
     public void setValueAt(Object value, int rowIndex, int columnIndex) {
-        Customer customer = customers.get(rowIndex);
+        Customer customer = getRow(rowIndex);
+        if (customer == null) {
+            return;
+        }
         switch (columnIndex) {
             case 0:
                 customer.setId((Long) value);
@@ -77,9 +88,7 @@ public class CustomerTableModel extends AbstractTableModel {
                     customerManager.updateCustomer(customer);
                 }catch(IllegalEntityException | ValidationException e){
                     e.printStackTrace();
-                } finally {
-                    customers = customerManager.findAllCustomers();
-                    fireTableDataChanged();
+                    reloaded(customer, customerManager.getCustomerById(customer.getId()));
                 }
                 return null;
             }
@@ -102,12 +111,7 @@ public class CustomerTableModel extends AbstractTableModel {
     }
 
 
-    @Override
-    public int getRowCount() {
-        return customers.size();
-    }
-
-    public Customer getCustomerAt(int row) {return customers.get(row);}
+    public Customer getCustomerAt(int row) {return getRow(row);}
 
     @Override
     public Class<?> getColumnClass(int columnIndex) {
@@ -146,7 +150,10 @@ public class CustomerTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Customer customer = customers.get(rowIndex);
+        Customer customer = getRow(rowIndex);
+        if (customer == null) {
+            return null;
+        }
         switch (columnIndex) {
             case 0:
                 return customer.getId();
@@ -162,23 +169,6 @@ public class CustomerTableModel extends AbstractTableModel {
     }
 
     public void deleteCustomersByRow(List<Integer> toDelete) {
-        SwingWorker worker = new SwingWorker() {
-            @Override
-            protected Void doInBackground() throws Exception {
-
-                toDelete.sort(Collections.reverseOrder());
-                for (int row : toDelete) {
-                    try{
-                        customerManager.deleteCustomer(customers.get(row));
-                    }catch(IllegalEntityException e){
-                        e.printStackTrace();
-                    }
-                }
-                customers = customerManager.findAllCustomers();
-                fireTableDataChanged();
-                return null;
-            }
-        };
-        worker.execute();
+        deleteRows(toDelete, customerManager::deleteCustomers);
     }
-}
\ No newline at end of file
+}
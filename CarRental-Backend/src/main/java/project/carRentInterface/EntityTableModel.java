@@ -0,0 +1,305 @@
+package project.carRentInterface;
+
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
+import project.Main;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Table of entities ordered by id, which knows only the number of rows up front
+ * and loads blocks of rows in background as they are shown. Few recently shown
+ * blocks are kept, the block following a shown one is prefetched. Change events
+ * of a manager are applied to the row they concern, when it is loaded.
+ * Rows are read and changed only on the event dispatch thread, rows not loaded
+ * yet are null.
+ * @author Daniel Jurca
+ */
+abstract class EntityTableModel<T> extends AbstractTableModel implements EntityChangeListener<T> {
+    static final int BLOCK_SIZE = 200;
+    static final int CACHED_BLOCKS = 16;
+
+    private static final ExecutorService loader = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "table-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Integer, List<T>> blocks = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private int rowCount;
+    /** increased on every reload, blocks loaded for older generation are dropped */
+    private int generation;
+    private boolean counting;
+    private boolean changedWhileCounting;
+
+    /**
+     * Called in background
+     */
+    abstract int countRows();
+
+    /**
+     * Called in background, rows at given positions when ordered by id
+     */
+    abstract List<T> findRows(int offset, int limit);
+
+    /**
+     * Called in background, rows following given id
+     */
+    abstract List<T> findRowsAfter(Long id, int limit);
+
+    abstract Long idOf(T entity);
+
+    /**
+     * Forget loaded rows and count them again
+     */
+    void reload() {
+        generation++;
+        blocks.clear();
+        loading.clear();
+        counting = true;
+        changedWhileCounting = false;
+        SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return countRows();
+            }
+
+            @Override
+            protected void done() {
+                counting = false;
+                try {
+                    rowCount = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+                fireTableDataChanged();
+                if (changedWhileCounting) {
+                    // the count may or may not include the change
+                    reload();
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    @Override
+    public void entityChanged(EntityChangeEvent<T> event) {
+        onEventThread(() -> apply(event.getType(), event.getEntity()));
+    }
+
+    /**
+     * Run the change on the event dispatch thread, once the rows are counted
+     */
+    void onEventThread(Runnable change) {
+        SwingUtilities.invokeLater(() -> {
+            if (counting) {
+                changedWhileCounting = true;
+            } else {
+                change.run();
+            }
+        });
+    }
+
+    /**
+     * Put the row back in line with the database after its change failed
+     * @param stale - entity changed in the table
+     * @param current - entity as stored in the database, null when it does not exist
+     */
+    void reloaded(T stale, T current) {
+        if (current == null) {
+            onEventThread(() -> apply(EntityChangeEvent.Type.DELETED, stale));
+        } else {
+            onEventThread(() -> apply(EntityChangeEvent.Type.UPDATED, current));
+        }
+    }
+
+    private void apply(EntityChangeEvent.Type type, T entity) {
+        switch (type) {
+            case INSERTED:
+                // ids are increasing, so new entity is the last row
+                int block = rowCount / BLOCK_SIZE;
+                List<T> last = blocks.get(block);
+                if (last != null && last.size() == rowCount % BLOCK_SIZE) {
+                    last.add(entity);
+                }
+                rowCount++;
+                fireTableRowsInserted(rowCount - 1, rowCount - 1);
+                break;
+            case UPDATED:
+                int updated = rowOf(idOf(entity));
+                if (updated >= 0) {
+                    blocks.get(updated / BLOCK_SIZE).set(updated % BLOCK_SIZE, entity);
+                    fireTableRowsUpdated(updated, updated);
+                }
+                break;
+            case DELETED:
+                int row = rowOf(idOf(entity));
+                if (row < 0) {
+                    // position of the row is unknown
+                    reload();
+                } else {
+                    removeRow(row);
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return row of the entity among loaded rows, -1 when not loaded
+     */
+    private int rowOf(Long id) {
+        for (Map.Entry<Integer, List<T>> block : blocks.entrySet()) {
+            List<T> rows = block.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (idOf(rows.get(i)).equals(id)) {
+                    return block.getKey() * BLOCK_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return entity at the row, null when it is not loaded yet
+     */
+    T getRow(int row) {
+        int block = row / BLOCK_SIZE;
+        List<T> rows = blocks.get(block);
+        if (rows == null) {
+            request(block);
+            return null;
+        }
+        if ((block + 1) * BLOCK_SIZE < rowCount && !blocks.containsKey(block + 1)) {
+            request(block + 1);
+        }
+        int index = row % BLOCK_SIZE;
+        return index < rows.size() ? rows.get(index) : null;
+    }
+
+    /**
+     * Run the action for every loaded row with its index
+     */
+    void forEachLoadedRow(ObjIntConsumer<T> action) {
+        // the action may show rows, which reorders the blocks
+        for (Map.Entry<Integer, List<T>> block : new ArrayList<>(blocks.entrySet())) {
+            List<T> rows = block.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                action.accept(rows.get(i), block.getKey() * BLOCK_SIZE + i);
+            }
+        }
+    }
+
+    void removeRow(int row) {
+        int block = row / BLOCK_SIZE;
+        // following rows move up, the blocks are loaded again when shown
+        blocks.keySet().removeIf(cached -> cached >= block);
+        generation++;
+        loading.clear();
+        rowCount--;
+        fireTableRowsDeleted(row, row);
+    }
+
+    private void request(int block) {
+        if (loading.contains(block)) return;
+        loading.add(block);
+        int requested = generation;
+        List<T> previous = blocks.get(block - 1);
+        Long afterId = previous != null && previous.size() == BLOCK_SIZE
+                ? idOf(previous.get(BLOCK_SIZE - 1)) : null;
+        loader.execute(() -> {
+            List<T> rows = null;
+            try {
+                rows = afterId != null
+                        ? findRowsAfter(afterId, BLOCK_SIZE)
+                        : findRows(block * BLOCK_SIZE, BLOCK_SIZE);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            List<T> loaded = rows;
+            SwingUtilities.invokeLater(() -> loaded(block, loaded, requested));
+        });
+    }
+
+    private void loaded(int block, List<T> rows, int requested) {
+        // failed block stays marked as loading until reload, not to retry on every repaint
+        if (requested != generation || rows == null) return;
+        loading.remove(block);
+        blocks.put(block, new ArrayList<>(rows));
+        int first = block * BLOCK_SIZE;
+        int last = Math.min(first + rows.size(), rowCount) - 1;
+        if (first <= last) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * Delete entities at given rows in background and report those which could not be deleted,
+     * deleted rows are removed by change events
+     * @param delete - deletes given entities and returns those not deleted
+     */
+    void deleteRows(List<Integer> rowIndexes, Function<List<T>, List<T>> delete) {
+        List<T> entities = getRows(rowIndexes);
+        SwingWorker<List<T>, Void> worker = new SwingWorker<List<T>, Void>() {
+            @Override
+            protected List<T> doInBackground() {
+                return delete.apply(entities);
+            }
+
+            @Override
+            protected void done() {
+                List<T> notDeleted;
+                try {
+                    notDeleted = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                    notDeleted = entities;
+                }
+                if (!notDeleted.isEmpty()) {
+                    String ids = notDeleted.stream().map(entity -> String.valueOf(idOf(entity)))
+                            .collect(Collectors.joining(", "));
+                    JOptionPane.showMessageDialog(null, Main.local.getString("Not deleted") + ": " + ids,
+                            Main.local.getString("Delete"), JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * @return loaded entities at given rows, to be used outside the event dispatch thread
+     */
+    List<T> getRows(List<Integer> rowIndexes) {
+        List<T> entities = new ArrayList<>(rowIndexes.size());
+        for (int row : rowIndexes) {
+            T entity = getRow(row);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+}
@@ -1,6 +1,7 @@
 package project.carRentInterface;
 
 import project.CarRentalForm;
+import project.EntityChangeEvent;
 import project.LeaseManager;
 import project.Main;
 import project.exception.IllegalEntityException;
@@ -10,29 +11,65 @@ import project.impl.Customer;
 import project.impl.Lease;
 
 import javax.swing.*;
-import javax.swing.table.AbstractTableModel;
 import java.time.LocalDate;
-import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * @author Daniel Jurca
  */
-public class LeaseTableModel extends AbstractTableModel {
-    private List<Lease> leases;
+public class LeaseTableModel extends EntityTableModel<Lease> {
     private LeaseManager leaseManager;
 
     public LeaseTableModel(LeaseManager leaseManager) {
         this.leaseManager = leaseManager;
-        SwingWorker worker = new SwingWorker() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                leases = leaseManager.findAllLeases();
-                fireTableDataChanged();
-                return null;
-            }
-        };
-        worker.execute();
+        leaseManager.addChangeListener(this);
+        // leases show their car and customer and are deleted together with them
+        leaseManager.getCarManager().addChangeListener(event -> onEventThread(() ->
+                applyToLeases(event, Car::getId, lease -> lease.getLeasedCar().getId(), Lease::setLeasedCar)));
+        leaseManager.getCustomerManager().addChangeListener(event -> onEventThread(() ->
+                applyToLeases(event, Customer::getId, lease -> lease.getCustomer().getId(), Lease::setCustomer)));
+        reload();
+    }
+
+    @Override
+    int countRows() {
+        return leaseManager.countLeases();
+    }
+
+    @Override
+    List<Lease> findRows(int offset, int limit) {
+        return leaseManager.findLeases(offset, limit);
+    }
+
+    @Override
+    List<Lease> findRowsAfter(Long id, int limit) {
+        return leaseManager.findLeasesAfter(id, limit).getItems();
+    }
+
+    @Override
+    Long idOf(Lease lease) {
+        return lease.getId();
+    }
+
+    private <T> void applyToLeases(EntityChangeEvent<T> event, Function<T, Long> id,
+                                   Function<Lease, Long> leaseId, BiConsumer<Lease, T> setter) {
+        switch (event.getType()) {
+            case UPDATED:
+                Long changedId = id.apply(event.getEntity());
+                forEachLoadedRow((lease, row) -> {
+                    if (leaseId.apply(lease).equals(changedId)) {
+                        setter.accept(lease, event.getEntity());
+                        fireTableRowsUpdated(row, row);
+                    }
+                });
+                break;
+            case DELETED:
+                // leases deleted by cascade may not be loaded
+                reload();
+                break;
+        }
     }
 
     public void addLease(Lease lease) {
@@ -44,8 +81,6 @@ public class LeaseTableModel extends AbstractTableModel {
                 }catch(IllegalEntityException | ValidationException e){
                     e.printStackTrace();
                 }
-                leases = leaseManager.findAllLeases();
-                fireTableDataChanged();
                 return null;
             }
         };
@@ -54,7 +89,10 @@ public class LeaseTableModel extends AbstractTableModel {
 
     @Override
     public void setValueAt(Object value, int rowIndex, int columnIndex) {
-        Lease lease = leases.get(rowIndex);
+        Lease lease = getRow(rowIndex);
+        if (lease == null) {
+            return;
+        }
         switch (columnIndex) {
             case 0:
                 lease.setId((Long) value);
@@ -81,9 +119,7 @@ public class LeaseTableModel extends AbstractTableModel {
                     leaseManager.updateLease(lease);
                 }catch(IllegalEntityException | ValidationException e){
                     e.printStackTrace();
-                } finally {
-                    leases = leaseManager.findAllLeases();
-                    fireTableDataChanged();
+                    reloaded(lease, leaseManager.getLeaseById(lease.getId()));
                 }
                 return null;
             }
@@ -107,10 +143,6 @@ public class LeaseTableModel extends AbstractTableModel {
     }
 
 
-    @Override
-    public int getRowCount() {
-        return leases.size();
-    }
 
     @Override
     public Class<?> getColumnClass(int columnIndex) {
@@ -154,7 +186,10 @@ public class LeaseTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Lease lease = leases.get(rowIndex);
+        Lease lease = getRow(rowIndex);
+        if (lease == null) {
+            return null;
+        }
         switch (columnIndex) {
             case 0:
                 return lease.getId();
@@ -173,23 +208,6 @@ public class LeaseTableModel extends AbstractTableModel {
 
 
     public void deleteLeasesByRow(List<Integer> toDelete) {
-        SwingWorker worker = new SwingWorker() {
-            @Override
-            protected Void doInBackground() throws Exception {
-
-                toDelete.sort(Collections.reverseOrder());
-                for (int row : toDelete) {
-                    try{
-                        leaseManager.deleteLease(leases.get(row));
-                    }catch(IllegalEntityException e){
-                        e.printStackTrace();
-                    }
-                }
-                leases = leaseManager.findAllLeases();
-                fireTableDataChanged();
-                return null;
-            }
-        };
-        worker.execute();
+        deleteRows(toDelete, leaseManager::deleteLeases);
     }
 }
@@ -0,0 +1,15 @@
+package project.exception;
+
+/**
+ * This exception is thrown when a lease overlaps another lease of the same car.
+ * @author Daniel Jurca
+ */
+public class LeaseConflictException extends ValidationException {
+
+    public LeaseConflictException() {
+    }
+
+    public LeaseConflictException(String msg) {
+        super(msg);
+    }
+}
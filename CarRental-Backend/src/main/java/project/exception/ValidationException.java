@@ -1,16 +1,38 @@
 package project.exception;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * This exception is thrown when validation of entity fails.
  * @author Daniel Jurca
  */
 public class ValidationException extends RuntimeException {
+    private final List<String> errors;
 
     public ValidationException() {
+        this.errors = Collections.emptyList();
     }
 
     public ValidationException(String msg) {
         super(msg);
+        this.errors = Collections.singletonList(msg);
+    }
+
+    /**
+     * @param errors - all errors found, joined in the message
+     */
+    public ValidationException(List<String> errors) {
+        super(String.join("; ", errors));
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+    }
+
+    /**
+     * @return all errors found, one when validation stopped at the first error
+     */
+    public List<String> getErrors() {
+        return errors;
     }
 }
 
@@ -0,0 +1,34 @@
+package project.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes rows by id in chunks, one statement per chunk instead of one per row
+ * @author Daniel Jurca
+ */
+final class BatchDelete {
+    static final int CHUNK_SIZE = 500;
+
+    private BatchDelete() {
+    }
+
+    /**
+     * Should run in a transaction, so the rows found are the rows deleted
+     * @return ids of rows which existed and were deleted
+     */
+    static Set<Long> delete(JdbcTemplate jdbc, String table, List<Long> ids) {
+        Set<Long> deleted = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            Object[] chunk = ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size())).toArray();
+            String in = String.join(",", Collections.nCopies(chunk.length, "?"));
+            deleted.addAll(jdbc.queryForList("SELECT id FROM " + table + " WHERE id IN (" + in + ")", Long.class, chunk));
+            jdbc.update("DELETE FROM " + table + " WHERE id IN (" + in + ")", chunk);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,126 @@
+package project.impl;
+
+import project.CacheStatistics;
+import project.CarManager;
+import project.EntityChangeListener;
+import project.Page;
+import project.exception.IllegalEntityException;
+import project.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Car manager keeping recently found cars in memory, all other operations
+ * are passed to the decorated manager.
+ * @author Daniel Jurca
+ */
+public class CachingCarManager implements CarManager {
+    private final CarManager cars;
+    private final EntityCache<Car> cache;
+
+    /**
+     * @param cars - manager reading and writing cars in the database
+     * @param maxSize - maximal number of cached cars
+     */
+    public CachingCarManager(CarManager cars, int maxSize) {
+        this.cars = cars;
+        this.cache = new EntityCache<>(maxSize,
+                car -> new Car(car.getId(), car.getCarBrand(), car.getDescription(), car.getDailyPrice()));
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return cache.getStatistics();
+    }
+
+    public void createCar(Car car) throws IllegalEntityException, ValidationException {
+        cars.createCar(car);
+    }
+
+    public void createCars(List<Car> cars) throws IllegalEntityException, ValidationException {
+        this.cars.createCars(cars);
+    }
+
+    public Car getCarById(Long id) {
+        if(id == null) {
+            throw new IllegalArgumentException("Id is null!");
+        }
+        Car car = cache.get(id);
+        if(car == null) {
+            long stamp = cache.stamp();
+            car = cars.getCarById(id);
+            if(car != null) {
+                cache.put(id, car, stamp);
+            }
+        }
+        return car;
+    }
+
+    public List<Car> findAllCars() {
+        return cars.findAllCars();
+    }
+
+    public void streamAllCars(Consumer<Car> consumer) {
+        cars.streamAllCars(consumer);
+    }
+
+    public int countCars() {
+        return cars.countCars();
+    }
+
+    public List<Car> findCars(int offset, int limit) {
+        return cars.findCars(offset, limit);
+    }
+
+    public Page<Car> findCarsAfter(Long afterId, int pageSize) {
+        return cars.findCarsAfter(afterId, pageSize);
+    }
+
+    public Page<Car> findCarsBefore(Long beforeId, int pageSize) {
+        return cars.findCarsBefore(beforeId, pageSize);
+    }
+
+    public void updateCar(Car car) throws IllegalEntityException, ValidationException {
+        try {
+            cars.updateCar(car);
+        } finally {
+            invalidate(car);
+        }
+    }
+
+    public void deleteCar(Car car) throws IllegalEntityException {
+        try {
+            cars.deleteCar(car);
+        } finally {
+            invalidate(car);
+        }
+    }
+
+    public List<Car> deleteCars(Collection<Car> cars) throws IllegalEntityException {
+        try {
+            return this.cars.deleteCars(cars);
+        } finally {
+            if(cars != null) {
+                cars.forEach(this::invalidate);
+            }
+        }
+    }
+
+    public void addChangeListener(EntityChangeListener<Car> listener) {
+        cars.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(EntityChangeListener<Car> listener) {
+        cars.removeChangeListener(listener);
+    }
+
+    private void invalidate(Car car) {
+        if(car != null && car.getId() != null) {
+            Long id = car.getId();
+            cache.invalidate(id);
+            // readers could cache the old state again before the change is committed
+            Transactions.afterCommit(() -> cache.invalidate(id));
+        }
+    }
+}
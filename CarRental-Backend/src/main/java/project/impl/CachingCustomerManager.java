@@ -0,0 +1,134 @@
+package project.impl;
+
+import project.CacheStatistics;
+import project.CustomerManager;
+import project.EntityChangeListener;
+import project.Page;
+import project.exception.IllegalEntityException;
+import project.exception.ValidationException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Customer manager keeping recently found customers in memory, all other operations
+ * are passed to the decorated manager.
+ * @author Daniel Jurca
+ */
+public class CachingCustomerManager implements CustomerManager {
+    private final CustomerManager customers;
+    private final EntityCache<Customer> cache;
+
+    /**
+     * @param customers - manager reading and writing customers in the database
+     * @param maxSize - maximal number of cached customers
+     */
+    public CachingCustomerManager(CustomerManager customers, int maxSize) {
+        this.customers = customers;
+        this.cache = new EntityCache<>(maxSize,
+                customer -> new Customer(customer.getId(), customer.getFullName(), customer.getAddress(), customer.getPhoneNumber()));
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return cache.getStatistics();
+    }
+
+    public void createCustomer(Customer customer) throws IllegalEntityException, ValidationException {
+        customers.createCustomer(customer);
+    }
+
+    public void createCustomers(List<Customer> customers) throws IllegalEntityException, ValidationException {
+        this.customers.createCustomers(customers);
+    }
+
+    public Customer getCustomerById(Long id) {
+        if(id == null) {
+            throw new IllegalArgumentException("Id is null!");
+        }
+        Customer customer = cache.get(id);
+        if(customer == null) {
+            long stamp = cache.stamp();
+            customer = customers.getCustomerById(id);
+            if(customer != null) {
+                cache.put(id, customer, stamp);
+            }
+        }
+        return customer;
+    }
+
+    public List<Customer> findAllCustomers() {
+        return customers.findAllCustomers();
+    }
+
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        customers.streamAllCustomers(consumer);
+    }
+
+    public int countCustomers() {
+        return customers.countCustomers();
+    }
+
+    public List<Customer> findCustomers(int offset, int limit) {
+        return customers.findCustomers(offset, limit);
+    }
+
+    public Page<Customer> findCustomersAfter(Long afterId, int pageSize) {
+        return customers.findCustomersAfter(afterId, pageSize);
+    }
+
+    public Page<Customer> findCustomersBefore(Long beforeId, int pageSize) {
+        return customers.findCustomersBefore(beforeId, pageSize);
+    }
+
+    public List<Customer> findCustomerByName(String fullName) {
+        return customers.findCustomerByName(fullName);
+    }
+
+    public List<Customer> searchCustomers(String query, int limit) {
+        return customers.searchCustomers(query, limit);
+    }
+
+    public void updateCustomer(Customer customer) throws IllegalEntityException, ValidationException {
+        try {
+            customers.updateCustomer(customer);
+        } finally {
+            invalidate(customer);
+        }
+    }
+
+    public void deleteCustomer(Customer customer) throws IllegalEntityException {
+        try {
+            customers.deleteCustomer(customer);
+        } finally {
+            invalidate(customer);
+        }
+    }
+
+    public List<Customer> deleteCustomers(Collection<Customer> customers) throws IllegalEntityException {
+        try {
+            return this.customers.deleteCustomers(customers);
+        } finally {
+            if(customers != null) {
+                customers.forEach(this::invalidate);
+            }
+        }
+    }
+
+    public void addChangeListener(EntityChangeListener<Customer> listener) {
+        customers.addChangeListener(listener);
+    }
+
+    public void removeChangeListener(EntityChangeListener<Customer> listener) {
+        customers.removeChangeListener(listener);
+    }
+
+    private void invalidate(Customer customer) {
+        if(customer != null && customer.getId() != null) {
+            Long id = customer.getId();
+            cache.invalidate(id);
+            // readers could cache the old state again before the change is committed
+            Transactions.afterCommit(() -> cache.invalidate(id));
+        }
+    }
+}
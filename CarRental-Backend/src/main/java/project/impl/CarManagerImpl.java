@@ -5,16 +5,26 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import project.CarManager;
+import project.Page;
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
 import project.exception.IllegalEntityException;
 import project.exception.ValidationException;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of operations with Cars
@@ -22,109 +32,201 @@ import java.util.List;
  */
 public class CarManagerImpl implements CarManager {
     private JdbcTemplate jdbc;
+    private JdbcTemplate streamingJdbc;
+    private SimpleJdbcInsert insertCar;
+    private TransactionTemplate transaction;
+    private final ChangeListeners<Car> listeners = new ChangeListeners<>();
     final static Logger log = LoggerFactory.getLogger(CarManagerImpl.class);
+    private final static SampledLog sampledLog = new SampledLog(log);
 
     public CarManagerImpl(DataSource dataSource) {
         this.jdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc = Streaming.template(dataSource);
+        this.insertCar = new SimpleJdbcInsert(jdbc)
+                .withTableName("cars").usingGeneratedKeyColumns("id");
+        this.transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
     }
 
     public void createCar(Car car) throws IllegalEntityException, ValidationException {
-        log.debug("Creating car");
+        validateNewCar(car);
+
+        Number id = insertCar.executeAndReturnKey(carParameters(car));
+        car.setId(id.longValue());
+        listeners.publish(EntityChangeEvent.Type.INSERTED, car);
+        log.debug("createCar id={}", car.getId());
+    }
+
+    public void createCars(List<Car> cars) throws IllegalEntityException, ValidationException {
+        if(cars == null) {
+            log.error("createCars cars=null");
+            throw new IllegalArgumentException("List of cars can't be null!");
+        }
+        cars.forEach(this::checkNewCar);
+        Validators.CAR.checkAll(cars);
+        if(cars.isEmpty()) return;
+
+        long[] ids = transaction.execute(status -> {
+            // Derby reports one generated key per statement, that of the last row
+            // it inserted, so each car is inserted by its own statement; all of them
+            // in one transaction, which locks only the new rows
+            long[] keys = new long[cars.size()];
+            for(int i = 0; i < keys.length; i++) {
+                keys[i] = insertCar.executeAndReturnKey(carParameters(cars.get(i))).longValue();
+            }
+            return keys;
+        });
+        for(int i = 0; i < ids.length; i++) {
+            cars.get(i).setId(ids[i]);
+            listeners.publish(EntityChangeEvent.Type.INSERTED, cars.get(i));
+        }
+        if(log.isDebugEnabled()) log.debug("createCars count={} lastId={}", cars.size(), ids[ids.length - 1]);
+    }
+
+    private void validateNewCar(Car car) {
+        checkNewCar(car);
+        Validators.CAR.validate(car);
+    }
+
+    private void checkNewCar(Car car) {
         if(car == null) {
-            log.error("Car is null");
+            log.error("createCar car=null");
             throw new IllegalArgumentException("Car can't be null!");
         }
-        if(car.getCarBrand() == null || car.getDescription() == null || car.getDailyPrice()== null) {
-            log.error("Some of the properties are null");
-            throw new ValidationException("Some of the properties are null!");
-        }
         if(car.getId() != null) {
-            log.error("Car already exists");
+            log.error("createCar id={} car already exists", car.getId());
             throw new IllegalEntityException("Car already exists");
         }
-        if(car.getDailyPrice().compareTo(BigDecimal.ZERO) < 0) {
-            log.error("Price of car is negative");
-            throw new ValidationException("Price can't be lower than 0!");
-        }
-        if(car.getCarBrand().isEmpty()) {
-            log.error("Car has no name");
-            throw new ValidationException("Car Brand can't be empty!");
-        }
-
-        SimpleJdbcInsert insertCar = new SimpleJdbcInsert(jdbc)
-                .withTableName("cars").usingGeneratedKeyColumns("id");
+    }
 
-        SqlParameterSource parameters = new MapSqlParameterSource()
+    private SqlParameterSource carParameters(Car car) {
+        return new MapSqlParameterSource()
                 .addValue("carBrand", car.getCarBrand())
                 .addValue("description", car.getDescription())
                 .addValue("dailyPrice", car.getDailyPrice());
-
-        Number id = insertCar.executeAndReturnKey(parameters);
-        car.setId(id.longValue());
-        log.debug("Car created");
     }
 
     public Car getCarById(Long id) {
-        log.debug("Finding car");
         if(id == null) {
-            log.error("Id is null");
+            log.error("getCarById id=null");
             throw new IllegalArgumentException("Id is null!");
         }
 
+        Car car;
         try{
-            log.debug("Car found");
-            return jdbc.queryForObject("SELECT * FROM cars WHERE id=?", carMapper, id);
+            car = jdbc.queryForObject("SELECT * FROM cars WHERE id=?", carMapper, id);
         }catch(EmptyResultDataAccessException e){
-            log.error("Car not found");
-            return null;
+            // a miss is counted by Instrumented, it is no error
+            car = null;
         }
+        sampledLog.debug("getCarById id={} found={}", id, car != null);
+        return car;
     }
 
     public List<Car> findAllCars() {
-        log.debug("Finding all cars");
-        return jdbc.query("SELECT * FROM cars", carMapper);
+        List<Car> cars = jdbc.query("SELECT * FROM cars", carMapper);
+        if(sampledLog.isEnabled()) log.debug("findAllCars rows={}", cars.size());
+        return cars;
+    }
+
+    public void streamAllCars(Consumer<Car> consumer) {
+        log.debug("streamAllCars");
+        streamingJdbc.query("SELECT * FROM cars ORDER BY id", Streaming.handler(carMapper, consumer));
+    }
+
+    public int countCars() {
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM cars", Integer.class);
+        sampledLog.debug("countCars count={}", count);
+        return count;
+    }
+
+    public List<Car> findCars(int offset, int limit) {
+        if(sampledLog.isEnabled()) log.debug("findCars offset={} limit={}", offset, limit);
+        return Keyset.range(jdbc, "SELECT * FROM cars", "id", new RowMapperResultSetExtractor<>(carMapper),
+                offset, limit);
+    }
+
+    public Page<Car> findCarsAfter(Long afterId, int pageSize) {
+        if(sampledLog.isEnabled()) log.debug("findCarsAfter afterId={} pageSize={}", afterId, pageSize);
+        return Keyset.after(jdbc, "SELECT * FROM cars", "id", new RowMapperResultSetExtractor<>(carMapper),
+                Car::getId, afterId, pageSize);
+    }
+
+    public Page<Car> findCarsBefore(Long beforeId, int pageSize) {
+        if(sampledLog.isEnabled()) log.debug("findCarsBefore beforeId={} pageSize={}", beforeId, pageSize);
+        return Keyset.before(jdbc, "SELECT * FROM cars", "id", new RowMapperResultSetExtractor<>(carMapper),
+                Car::getId, beforeId, pageSize);
     }
 
 
     public void updateCar(Car car) throws IllegalEntityException, ValidationException {
-        log.debug("Updating car");
         if(car == null) {
-            log.error("Car is null");
+            log.error("updateCar car=null");
             throw new IllegalArgumentException("Car is null!");
         }
         if(car.getId() == null) {
-            log.error("Id is null");
+            log.error("updateCar id=null");
             throw new IllegalEntityException("Id can not be null!");
         }
-        if(car.getCarBrand() == null || car.getDescription() == null || car.getDailyPrice()== null) {
-            log.error("Some of the properties are null");
-            throw new ValidationException("Some of the properties are null!");
-        }
+        Validators.CAR.validate(car);
 
         if(jdbc.update("UPDATE cars set carBrand=?,description=?,dailyPrice=? where id=?",
                 car.getCarBrand(), car.getDescription(), car.getDailyPrice(), car.getId()) == 0) {
-            log.error("Car was not updated");
+            log.warn("updateCar id={} car was not updated", car.getId());
             throw new IllegalEntityException("Car was not updated!");
         }
-        log.debug("Car updated");
+        listeners.publish(EntityChangeEvent.Type.UPDATED, car);
+        log.debug("updateCar id={}", car.getId());
     }
 
     public void deleteCar(Car car) throws IllegalEntityException {
-        log.debug("Deleting car");
+        checkCarToDelete(car);
+
+        if(jdbc.update("DELETE FROM cars WHERE id=?", car.getId()) == 0){
+            log.warn("deleteCar id={} car was not deleted", car.getId());
+            throw new IllegalEntityException("Car was not deleted");
+        }
+        listeners.publish(EntityChangeEvent.Type.DELETED, car);
+        log.debug("deleteCar id={}", car.getId());
+    }
+
+    public List<Car> deleteCars(Collection<Car> cars) {
+        if(cars == null) {
+            log.error("deleteCars cars=null");
+            throw new IllegalArgumentException("Collection of cars can't be null!");
+        }
+        cars.forEach(this::checkCarToDelete);
+
+        List<Long> ids = cars.stream().map(Car::getId).collect(Collectors.toList());
+        Set<Long> deleted = transaction.execute(status -> BatchDelete.delete(jdbc, "cars", ids));
+        List<Car> notDeleted = new ArrayList<>();
+        for(Car car : cars) {
+            if(deleted.contains(car.getId())) {
+                listeners.publish(EntityChangeEvent.Type.DELETED, car);
+            } else {
+                notDeleted.add(car);
+            }
+        }
+        if(log.isDebugEnabled()) log.debug("deleteCars count={} notFound={}", cars.size(), notDeleted.size());
+        return notDeleted;
+    }
+
+    private void checkCarToDelete(Car car) {
         if(car == null) {
-            log.error("Car is null");
+            log.error("deleteCar car=null");
             throw new IllegalArgumentException("Car is null!");
         }
         if(car.getId() == null) {
-            log.error("Id is null");
+            log.error("deleteCar id=null");
             throw new IllegalEntityException("Id can not be null!");
         }
+    }
 
-        if(jdbc.update("DELETE FROM cars WHERE id=?", car.getId()) == 0){
-            log.error("Car was not deleted");
-            throw new IllegalEntityException("Car was not deleted");
-        }
-        log.debug("Car deleted");
+    public void addChangeListener(EntityChangeListener<Car> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(EntityChangeListener<Car> listener) {
+        listeners.remove(listener);
     }
 
     private RowMapper<Car> carMapper = (rs, rowNum) ->
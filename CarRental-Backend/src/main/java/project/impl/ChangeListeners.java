@@ -0,0 +1,46 @@
+package project.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listeners of one kind of entity. Events are delivered once the current
+ * transaction commits and are dropped when it rolls back.
+ * @author Daniel Jurca
+ */
+class ChangeListeners<T> {
+    private final static Logger log = LoggerFactory.getLogger(ChangeListeners.class);
+    private final List<EntityChangeListener<T>> listeners = new CopyOnWriteArrayList<>();
+
+    void add(EntityChangeListener<T> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener is null!");
+        }
+        listeners.add(listener);
+    }
+
+    void remove(EntityChangeListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    void publish(EntityChangeEvent.Type type, T entity) {
+        if (listeners.isEmpty()) return;
+        EntityChangeEvent<T> event = new EntityChangeEvent<>(type, entity);
+        Transactions.afterCommit(() -> fire(event));
+    }
+
+    private void fire(EntityChangeEvent<T> event) {
+        for (EntityChangeListener<T> listener : listeners) {
+            try {
+                listener.entityChanged(event);
+            } catch (RuntimeException e) {
+                log.error("Listener failed on {}", event, e);
+            }
+        }
+    }
+}
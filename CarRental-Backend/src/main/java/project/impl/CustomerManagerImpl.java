@@ -5,16 +5,33 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import project.CustomerManager;
+import project.Page;
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
 import project.exception.IllegalEntityException;
-import project.exception.ValidationException;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -22,129 +39,343 @@ import java.util.List;
  */
 public class CustomerManagerImpl implements CustomerManager {
     private JdbcTemplate jdbc;
+    private JdbcTemplate streamingJdbc;
+    private SimpleJdbcInsert insertCustomer;
+    private TransactionTemplate transaction;
+    private final ChangeListeners<Customer> listeners = new ChangeListeners<>();
+    private CustomerSearchIndex searchIndex;
+    /** load of the search index in progress, null when there is none */
+    private Loading loading;
     final static Logger log = LoggerFactory.getLogger(CustomerManagerImpl.class);
+    private final static SampledLog sampledLog = new SampledLog(log);
 
     public CustomerManagerImpl(DataSource dataSource) {
         this.jdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc = Streaming.template(dataSource);
+        this.insertCustomer = new SimpleJdbcInsert(jdbc)
+                .withTableName("customers").usingGeneratedKeyColumns("id");
+        this.transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
     }
 
     public void createCustomer(Customer customer) {
-        log.debug("Creating customer");
+        validateNewCustomer(customer);
+
+        Number id = insertCustomer.executeAndReturnKey(customerParameters(customer));
+        customer.setId(id.longValue());
+        indexCustomer(customer);
+        listeners.publish(EntityChangeEvent.Type.INSERTED, customer);
+        log.debug("createCustomer id={}", customer.getId());
+    }
+
+    public void createCustomers(List<Customer> customers) {
+        if(customers == null) {
+            log.error("createCustomers customers=null");
+            throw new IllegalArgumentException("List of customers can't be null!");
+        }
+        customers.forEach(this::checkNewCustomer);
+        Validators.CUSTOMER.checkAll(customers);
+        if(customers.isEmpty()) return;
+
+        long[] ids = transaction.execute(status -> {
+            // Derby reports one generated key per statement, that of the last row
+            // it inserted, so each customer is inserted by its own statement; all
+            // of them in one transaction, which locks only the new rows
+            long[] keys = new long[customers.size()];
+            for(int i = 0; i < keys.length; i++) {
+                keys[i] = insertCustomer.executeAndReturnKey(customerParameters(customers.get(i))).longValue();
+            }
+            return keys;
+        });
+        for(int i = 0; i < ids.length; i++) {
+            Customer customer = customers.get(i);
+            customer.setId(ids[i]);
+            indexCustomer(customer);
+            listeners.publish(EntityChangeEvent.Type.INSERTED, customer);
+        }
+        if(log.isDebugEnabled()) log.debug("createCustomers count={} lastId={}", customers.size(), ids[ids.length - 1]);
+    }
+
+    private void validateNewCustomer(Customer customer) {
+        checkNewCustomer(customer);
+        Validators.CUSTOMER.validate(customer);
+    }
+
+    private void checkNewCustomer(Customer customer) {
         if(customer == null) {
-            log.error("Customer is null");
+            log.error("createCustomer customer=null");
             throw new IllegalArgumentException("Customer can't be null!");
         }
-        if(customer.getFullName() == null || customer.getAddress() == null || customer.getPhoneNumber()== null) {
-            log.error("Some of the properties are null");
-            throw new ValidationException("Some of the properties are null!");
-        }
         if(customer.getId() != null) {
-            log.error("Customer already exists");
+            log.error("createCustomer id={} customer already exists", customer.getId());
             throw new IllegalEntityException("Customer already exists");
         }
-        if(customer.getFullName().isEmpty()|| customer.getAddress().isEmpty()|| customer.getPhoneNumber().isEmpty()) {
-            log.error("Some of the properties are empty");
-            throw new ValidationException("Some of the properties are empty!");
-        }
-
-        String phone = customer.getPhoneNumber();
-        if (!phone.matches("[0-9]+")) {
-            log.error("Wrong format of phone number");
-            throw new ValidationException("Wrong format of phone number");
-        }
-
-        SimpleJdbcInsert insertCustomer = new SimpleJdbcInsert(jdbc)
-                .withTableName("customers").usingGeneratedKeyColumns("id");
+    }
 
-        SqlParameterSource parameters = new MapSqlParameterSource()
+    private SqlParameterSource customerParameters(Customer customer) {
+        return new MapSqlParameterSource()
                 .addValue("fullName", customer.getFullName())
                 .addValue("address", customer.getAddress())
                 .addValue("phoneNumber", customer.getPhoneNumber());
-
-        Number id = insertCustomer.executeAndReturnKey(parameters);
-        customer.setId(id.longValue());
-        log.debug("Customer created");
     }
 
     public Customer getCustomerById(Long id) {
-        log.debug("Finding customer");
         if(id == null) {
-            log.error("Id is null");
+            log.error("getCustomerById id=null");
             throw new IllegalArgumentException("Id is null!");
         }
+        Customer customer;
         try{
-            log.debug("Customer found");
-            return jdbc.queryForObject("SELECT * FROM customers WHERE id=?", customerMapper, id);
+            customer = jdbc.queryForObject("SELECT * FROM customers WHERE id=?", customerMapper, id);
         }catch(EmptyResultDataAccessException e){
-            log.error("Customer not found");
-            return null;
+            // a miss is counted by Instrumented, it is no error
+            customer = null;
         }
+        sampledLog.debug("getCustomerById id={} found={}", id, customer != null);
+        return customer;
     }
 
     @Transactional
     public List<Customer> findAllCustomers() {
-        log.debug("Finding all customers");
-        return jdbc.query("SELECT * FROM customers", customerMapper);
+        List<Customer> customers = jdbc.query("SELECT * FROM customers", customerMapper);
+        if(sampledLog.isEnabled()) log.debug("findAllCustomers rows={}", customers.size());
+        return customers;
+    }
+
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        log.debug("streamAllCustomers");
+        streamingJdbc.query("SELECT * FROM customers ORDER BY id", Streaming.handler(customerMapper, consumer));
+    }
+
+    public int countCustomers() {
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM customers", Integer.class);
+        sampledLog.debug("countCustomers count={}", count);
+        return count;
+    }
+
+    public List<Customer> findCustomers(int offset, int limit) {
+        if(sampledLog.isEnabled()) log.debug("findCustomers offset={} limit={}", offset, limit);
+        return Keyset.range(jdbc, "SELECT * FROM customers", "id", new RowMapperResultSetExtractor<>(customerMapper),
+                offset, limit);
+    }
+
+    public Page<Customer> findCustomersAfter(Long afterId, int pageSize) {
+        if(sampledLog.isEnabled()) log.debug("findCustomersAfter afterId={} pageSize={}", afterId, pageSize);
+        return Keyset.after(jdbc, "SELECT * FROM customers", "id", new RowMapperResultSetExtractor<>(customerMapper),
+                Customer::getId, afterId, pageSize);
+    }
+
+    public Page<Customer> findCustomersBefore(Long beforeId, int pageSize) {
+        if(sampledLog.isEnabled()) log.debug("findCustomersBefore beforeId={} pageSize={}", beforeId, pageSize);
+        return Keyset.before(jdbc, "SELECT * FROM customers", "id", new RowMapperResultSetExtractor<>(customerMapper),
+                Customer::getId, beforeId, pageSize);
     }
 
     public List<Customer> findCustomerByName(String fullName){
-        log.debug("Finding Customer by name");
         if(fullName == null) {
-            log.error("Customer's name is null");
+            log.error("findCustomerByName fullName=null");
             throw new IllegalArgumentException("Name is null!");
         }
-        log.debug("Customer found");
-        return jdbc.query("SELECT * FROM customers WHERE fullname=?", customerMapper, fullName);
+        List<Customer> customers = jdbc.query("SELECT * FROM customers WHERE fullname=?", customerMapper, fullName);
+        if(sampledLog.isEnabled()) log.debug("findCustomerByName rows={}", customers.size());
+        return customers;
+    }
+
+    public List<Customer> searchCustomers(String query, int limit) {
+        if(query == null) {
+            log.error("searchCustomers query=null");
+            throw new IllegalArgumentException("Query is null!");
+        }
+        if(limit <= 0) {
+            log.error("searchCustomers limit={} limit is not positive", limit);
+            throw new IllegalArgumentException("Limit must be positive!");
+        }
+        List<Long> ids = searchIndex().search(query, limit);
+        if(sampledLog.isEnabled()) log.debug("searchCustomers limit={} found={}", limit, ids.size());
+        if(ids.isEmpty()) return new ArrayList<>();
+
+        String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Map<Long, Customer> found = jdbc.query("SELECT * FROM customers WHERE id IN (" + in + ")",
+                customerMapper, ids.toArray()).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+        return ids.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     public void updateCustomer(Customer customer) {
-        log.debug("Updating customer");
         if(customer == null) {
-            log.error("Customer is null");
+            log.error("updateCustomer customer=null");
             throw new IllegalArgumentException("Customer can not be null!");
         }
         if(customer.getId() == null) {
-            log.error("Id is null");
+            log.error("updateCustomer id=null");
             throw new IllegalEntityException("Id can not be null!");
         }
-        if(customer.getFullName() == null || customer.getAddress() == null || customer.getPhoneNumber()== null) {
-            log.error("Some of the properties are null");
-            throw new ValidationException("Some of the properties are null!");
-        }
-        if(customer.getFullName().isEmpty()|| customer.getAddress().isEmpty()|| customer.getPhoneNumber().isEmpty()) {
-            log.error("Some of the properties are empty");
-            throw new ValidationException("Some of the properties are empty!");
-        }
-        String phone = customer.getPhoneNumber();
-        if (!phone.matches("[0-9]+")) {
-            log.error("Wrong format of phone number");
-            throw new ValidationException("Wrong format of phone number");
-        }
+        Validators.CUSTOMER.validate(customer);
 
         if(jdbc.update("UPDATE customers set fullName=?,address=?,phoneNumber=? where id=?",
                 customer.getFullName(), customer.getAddress(), customer.getPhoneNumber(), customer.getId()) == 0){
-            log.error("Customer does not exist");
+            log.warn("updateCustomer id={} customer does not exist", customer.getId());
             throw new IllegalEntityException("Customer doesn't exist!");
         }
-        log.debug("Customer updated");
+        indexCustomer(customer);
+        listeners.publish(EntityChangeEvent.Type.UPDATED, customer);
+        log.debug("updateCustomer id={}", customer.getId());
     }
 
     public void deleteCustomer(Customer customer) {
-        log.debug("Deleting customer");
+        checkCustomerToDelete(customer);
+
+        if(jdbc.update("DELETE FROM customers WHERE id=?", customer.getId())== 0) {
+            log.warn("deleteCustomer id={} customer was not deleted", customer.getId());
+            throw new IllegalEntityException("Non existing customer!");
+        }
+        unindexCustomer(customer.getId());
+        listeners.publish(EntityChangeEvent.Type.DELETED, customer);
+        log.debug("deleteCustomer id={}", customer.getId());
+    }
+
+    public List<Customer> deleteCustomers(Collection<Customer> customers) {
+        if(customers == null) {
+            log.error("deleteCustomers customers=null");
+            throw new IllegalArgumentException("Collection of customers can't be null!");
+        }
+        customers.forEach(this::checkCustomerToDelete);
+
+        List<Long> ids = customers.stream().map(Customer::getId).collect(Collectors.toList());
+        Set<Long> deleted = transaction.execute(status -> BatchDelete.delete(jdbc, "customers", ids));
+        List<Customer> notDeleted = new ArrayList<>();
+        for(Customer customer : customers) {
+            if(deleted.contains(customer.getId())) {
+                unindexCustomer(customer.getId());
+                listeners.publish(EntityChangeEvent.Type.DELETED, customer);
+            } else {
+                notDeleted.add(customer);
+            }
+        }
+        if(log.isDebugEnabled()) log.debug("deleteCustomers count={} notFound={}", customers.size(), notDeleted.size());
+        return notDeleted;
+    }
+
+    private void checkCustomerToDelete(Customer customer) {
         if(customer == null) {
-            log.error("Customer is null");
+            log.error("deleteCustomer customer=null");
             throw new IllegalArgumentException("Customer can not be null!");
         }
         if(customer.getId() == null) {
-            log.error("Id is null");
+            log.error("deleteCustomer id=null");
             throw new IllegalEntityException("Id can not be null!");
         }
+    }
 
-        if(jdbc.update("DELETE FROM customers WHERE id=?", customer.getId())== 0) {
-            log.error("Customer does not exist");
-            throw new IllegalEntityException("Non existing customer!");
+    /**
+     * Index of customer words, loaded from the database on first use. The customers
+     * are read outside the monitor, so writes of customers meanwhile do not wait for
+     * the read; they are kept and replayed on the loaded index. A second caller
+     * waits for the same load.
+     */
+    private CustomerSearchIndex searchIndex() {
+        Loading load;
+        boolean reading = false;
+        synchronized(this) {
+            if(searchIndex != null) return searchIndex;
+            if(loading == null) {
+                loading = new Loading();
+                reading = true;
+            }
+            load = loading;
+        }
+        if(!reading) {
+            try {
+                return load.result.join();
+            } catch(CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        log.debug("Loading customer search index");
+        CustomerSearchIndex index = new CustomerSearchIndex();
+        try {
+            streamingJdbc.query("SELECT * FROM customers", Streaming.handler(customerMapper,
+                    customer -> index.put(customer.getId(), new CustomerSearchIndex.Entry(customer))));
+        } catch(RuntimeException e) {
+            synchronized(this) {
+                loading = null;
+            }
+            load.result.completeExceptionally(e);
+            throw e;
+        }
+        synchronized(this) {
+            loading = null;
+            load.writes.forEach((id, entry) -> {
+                if(entry == null) {
+                    index.remove(id);
+                } else {
+                    index.put(id, entry);
+                }
+            });
+            load.index = index;
+            if(!load.forgotten) searchIndex = index;
+        }
+        // the index may contain rows written by the current transaction
+        Transactions.onRollback(() -> forgetSearchIndex(index));
+        load.result.complete(index);
+        return index;
+    }
+
+    private synchronized void forgetSearchIndex(CustomerSearchIndex index) {
+        if(searchIndex == index) {
+            searchIndex = null;
         }
-        log.debug("Customer deleted");
+    }
+
+    /**
+     * Forget the index loaded with a write rolled back, the entry before the write is not known
+     */
+    private synchronized void forgetLoading(Loading load) {
+        load.forgotten = true;
+        if(load.index != null && searchIndex == load.index) {
+            searchIndex = null;
+        }
+    }
+
+    /**
+     * Reflect written customer in the index, or keep it for the index being loaded
+     */
+    private synchronized void indexCustomer(Customer customer) {
+        write(customer.getId(), new CustomerSearchIndex.Entry(customer));
+    }
+
+    private synchronized void unindexCustomer(long id) {
+        write(id, null);
+    }
+
+    /**
+     * @param entry - new entry of the customer, null when the customer was deleted
+     */
+    private void write(long id, CustomerSearchIndex.Entry entry) {
+        if(searchIndex != null) {
+            CustomerSearchIndex index = searchIndex;
+            CustomerSearchIndex.Entry previous = entry == null ? index.remove(id) : index.put(id, entry);
+            Transactions.onRollback(() -> restore(index, id, previous));
+        } else if(loading != null) {
+            Loading load = loading;
+            load.writes.put(id, entry);
+            Transactions.onRollback(() -> forgetLoading(load));
+        }
+    }
+
+    private static void restore(CustomerSearchIndex index, long id, CustomerSearchIndex.Entry entry) {
+        if(entry == null) {
+            index.remove(id);
+        } else {
+            index.put(id, entry);
+        }
+    }
+
+    public void addChangeListener(EntityChangeListener<Customer> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(EntityChangeListener<Customer> listener) {
+        listeners.remove(listener);
     }
 
     private RowMapper<Customer> customerMapper = (rs, rowNum) ->
@@ -152,4 +383,16 @@ public class CustomerManagerImpl implements CustomerManager {
                     rs.getString("fullName"),
                     rs.getString("address"),
                     rs.getString("phoneNumber"));
+
+    /**
+     * Load of the search index, with customers written during the read
+     */
+    private static final class Loading {
+        private final CompletableFuture<CustomerSearchIndex> result = new CompletableFuture<>();
+        /** latest entry of every customer written during the read, null for a deleted customer */
+        private final Map<Long, CustomerSearchIndex.Entry> writes = new LinkedHashMap<>();
+        /** index loaded, null until the read and the replay are done */
+        private CustomerSearchIndex index;
+        private boolean forgotten;
+    }
 }
@@ -0,0 +1,347 @@
+package project.impl;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of words of customer names, addresses and phone numbers.
+ * Words are compared in lower case without diacritics. A query matches
+ * customers having a word starting with every word of the query, found in
+ * a {@link PrefixTrie}. When there are not enough of them, customers sharing
+ * enough trigrams with the query are added, which tolerates typos.
+ * Customers are kept in slots, so postings are compact arrays of ints.
+ * Thread safe.
+ * @author Daniel Jurca
+ */
+class CustomerSearchIndex {
+    /** most customers examined by one search, bounds its time */
+    static final int MAX_CANDIDATES = 1_000;
+    /** least share of query trigrams a customer must have to match approximately */
+    static final double MIN_SIMILARITY = 0.4;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private long[] ids = new long[16];
+    private Entry[] entries = new Entry[16];
+    private int slotCount;
+    private final SortedInts freeSlots = new SortedInts();
+    private final PrefixTrie words = new PrefixTrie();
+    private final Map<Long, SortedInts> trigrams = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Words of one customer
+     */
+    static final class Entry {
+        /** words separated by spaces, one string takes less memory than an array of them */
+        private final String words;
+
+        Entry(Customer customer) {
+            Set<String> words = new LinkedHashSet<>();
+            words.addAll(Arrays.asList(words(customer.getFullName())));
+            words.addAll(Arrays.asList(words(customer.getAddress())));
+            words.addAll(Arrays.asList(words(customer.getPhoneNumber())));
+            this.words = String.join(" ", words);
+        }
+
+        private String[] split() {
+            return words.split(" ");
+        }
+
+        /**
+         * @return 2 if some word equals the term, 1 if some word starts with it, 0 otherwise
+         */
+        private int matchScore(String term) {
+            int score = 0;
+            for (int from = words.indexOf(term); from >= 0; from = words.indexOf(term, from + 1)) {
+                if (from == 0 || words.charAt(from - 1) == ' ') {
+                    int end = from + term.length();
+                    if (end == words.length() || words.charAt(end) == ' ') return 2;
+                    score = 1;
+                }
+            }
+            return score;
+        }
+    }
+
+    /**
+     * Add customer or replace the previous entry of the customer
+     * @return previous entry of the customer, null if there was none
+     */
+    Entry put(long id, Entry entry) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = removeEntry(id);
+            int slot = freeSlots.isEmpty() ? slotCount++ : takeFreeSlot();
+            if (slot == ids.length) {
+                ids = Arrays.copyOf(ids, slot * 2);
+                entries = Arrays.copyOf(entries, slot * 2);
+            }
+            ids[slot] = id;
+            entries[slot] = entry;
+            slotsById.put(id, slot);
+            String[] entryWords = entry.split();
+            for (String word : entryWords) {
+                words.add(word, slot);
+            }
+            for (long trigram : trigrams(entryWords)) {
+                trigrams.computeIfAbsent(trigram, t -> new SortedInts()).add(slot);
+            }
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the customer
+     * @return removed entry, null if the customer was not indexed
+     */
+    Entry remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeEntry(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of customers matching the query, best matches first
+     */
+    List<Long> search(String query, int limit) {
+        String[] terms = words(query);
+        if (terms.length == 0) return new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<Match> matches = prefixMatches(terms, limit);
+            if (matches.size() < limit) {
+                matches.addAll(similarMatches(terms, limit - matches.size(), matches));
+            }
+            List<Long> found = new ArrayList<>(Math.min(limit, matches.size()));
+            for (int i = 0; i < matches.size() && i < limit; i++) {
+                found.add(ids[matches.get(i).slot]);
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Customers having a word starting with every term, scored by number of terms equal to a word.
+     * Candidates come from the term matching the fewest words.
+     */
+    private List<Match> prefixMatches(String[] terms, int limit) {
+        int pivot = 0;
+        int pivotCount = words.countPrefix(terms[0]);
+        for (int i = 1; i < terms.length; i++) {
+            int count = words.countPrefix(terms[i]);
+            if (count < pivotCount) {
+                pivot = i;
+                pivotCount = count;
+            }
+        }
+        if (pivotCount == 0) return new ArrayList<>();
+        int pivotIndex = pivot;
+        // words are visited from the shortest, so once the pivot is not equal to the word,
+        // no customer can score more than this
+        int bestRemaining = 1 + 2 * (terms.length - 1);
+        int[] perfect = new int[1];
+        int[] unbeatable = new int[1];
+        Set<Integer> examined = new HashSet<>();
+        List<Match> matches = new ArrayList<>();
+        words.visitPrefix(terms[pivot], (slot, exact) -> {
+            if (!examined.add(slot)) return true;
+            int score = 0;
+            for (int i = 0; i < terms.length; i++) {
+                int termScore = i == pivotIndex ? (exact ? 2 : 1) : entries[slot].matchScore(terms[i]);
+                if (termScore == 0) {
+                    return examined.size() < MAX_CANDIDATES;
+                }
+                score += termScore;
+            }
+            matches.add(new Match(slot, score));
+            if (score == 2 * terms.length) perfect[0]++;
+            if (score >= bestRemaining) unbeatable[0]++;
+            return (exact ? perfect[0] : unbeatable[0]) < limit && examined.size() < MAX_CANDIDATES;
+        });
+        matches.sort(Comparator.comparingDouble((Match match) -> -match.score));
+        return matches;
+    }
+
+    /**
+     * Customers sharing at least {@link #MIN_SIMILARITY} of the trigrams of every term,
+     * scored by the average share. A customer sharing that many trigrams of the longest
+     * term has at least one of its rarest trigrams, so only their postings are read as a whole.
+     */
+    private List<Match> similarMatches(String[] terms, int limit, List<Match> found) {
+        List<List<SortedInts>> postings = new ArrayList<>(terms.length);
+        int[] required = new int[terms.length];
+        int pivot = 0;
+        for (int t = 0; t < terms.length; t++) {
+            long[] termTrigrams = trigrams(new String[]{terms[t]});
+            List<SortedInts> termPostings = new ArrayList<>(termTrigrams.length);
+            for (long trigram : termTrigrams) {
+                SortedInts posting = trigrams.get(trigram);
+                termPostings.add(posting != null ? posting : new SortedInts());
+            }
+            termPostings.sort(Comparator.comparingInt(SortedInts::size));
+            postings.add(termPostings);
+            required[t] = Math.max(1, (int) Math.ceil(termPostings.size() * MIN_SIMILARITY));
+            if (terms[t].length() > terms[pivot].length()) pivot = t;
+        }
+
+        int[] candidates = candidates(postings.get(pivot), required[pivot], found);
+        // candidates and postings are both ascending, so every posting is read forward once
+        double[] scores = new double[candidates.length];
+        for (int t = 0; t < terms.length; t++) {
+            int[] shared = new int[candidates.length];
+            for (SortedInts posting : postings.get(t)) {
+                int position = 0;
+                for (int c = 0; c < candidates.length && position < posting.size(); c++) {
+                    position = posting.lowerBound(candidates[c], position);
+                    if (position < posting.size() && posting.get(position) == candidates[c]) {
+                        shared[c]++;
+                    }
+                }
+            }
+            for (int c = 0; c < candidates.length; c++) {
+                scores[c] = shared[c] < required[t] || scores[c] < 0
+                        ? -1 : scores[c] + (double) shared[c] / postings.get(t).size();
+            }
+        }
+        List<Match> matches = new ArrayList<>();
+        for (int c = 0; c < candidates.length; c++) {
+            if (scores[c] >= 0) {
+                matches.add(new Match(candidates[c], scores[c] / terms.length));
+            }
+        }
+        matches.sort(Comparator.comparingDouble((Match match) -> -match.score));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Slots in the rarest postings, which a customer sharing enough trigrams must be in
+     * @return ascending slots not found already
+     */
+    private static int[] candidates(List<SortedInts> postings, int required, List<Match> found) {
+        Set<Integer> excluded = new HashSet<>();
+        for (Match match : found) {
+            excluded.add(match.slot);
+        }
+        int[] candidates = new int[0];
+        int count = 0;
+        for (int i = 0; i <= postings.size() - required; i++) {
+            SortedInts posting = postings.get(i);
+            int taken = Math.min(posting.size(), MAX_CANDIDATES);
+            candidates = Arrays.copyOf(candidates, count + taken);
+            for (int j = 0; j < taken; j++) {
+                candidates[count++] = posting.get(j);
+            }
+        }
+        Arrays.sort(candidates);
+        int distinct = 0;
+        for (int i = 0; i < count && distinct < MAX_CANDIDATES; i++) {
+            if ((i == 0 || candidates[i] != candidates[i - 1]) && !excluded.contains(candidates[i])) {
+                candidates[distinct++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, distinct);
+    }
+
+    private Entry removeEntry(long id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) return null;
+        Entry previous = entries[slot];
+        String[] previousWords = previous.split();
+        for (String word : previousWords) {
+            words.remove(word, slot);
+        }
+        for (long trigram : trigrams(previousWords)) {
+            SortedInts posting = trigrams.get(trigram);
+            posting.remove(slot);
+            if (posting.isEmpty()) {
+                trigrams.remove(trigram);
+            }
+        }
+        entries[slot] = null;
+        freeSlots.add(slot);
+        return previous;
+    }
+
+    private int takeFreeSlot() {
+        int slot = freeSlots.get(0);
+        freeSlots.remove(slot);
+        return slot;
+    }
+
+    /**
+     * @return words of the text in lower case without diacritics
+     */
+    static String[] words(String text) {
+        String plain = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String[] words = SEPARATORS.split(plain.toLowerCase(Locale.ROOT));
+        return Arrays.stream(words).filter(word -> !word.isEmpty()).distinct().toArray(String[]::new);
+    }
+
+    /**
+     * Distinct trigrams of the words enclosed in spaces, three chars packed in a long
+     */
+    private static long[] trigrams(String[] words) {
+        int count = 0;
+        for (String word : words) {
+            count += word.length();
+        }
+        long[] trigrams = new long[count];
+        count = 0;
+        for (String word : words) {
+            String padded = " " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                long packed = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+                // multiplying by an odd number keeps trigrams distinct and spreads the hash codes of the keys
+                trigrams[count++] = packed * 0x9E3779B97F4A7C15L;
+            }
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static final class Match {
+        private final int slot;
+        private final double score;
+
+        private Match(int slot, double score) {
+            this.slot = slot;
+            this.score = score;
+        }
+    }
+}
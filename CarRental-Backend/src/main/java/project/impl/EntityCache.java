@@ -0,0 +1,78 @@
+package project.impl;
+
+import project.CacheStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Size bounded cache of entities by id, evicting the least recently used
+ * entity. Entities are copied on the way in and out, so callers can modify
+ * what they get. Thread safe.
+ * @author Daniel Jurca
+ */
+class EntityCache<T> {
+    private final int maxSize;
+    private final UnaryOperator<T> copy;
+    private final Map<Long, T> entities;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    EntityCache(int maxSize, UnaryOperator<T> copy) {
+        if (maxSize < 1) throw new IllegalArgumentException("Size of cache must be positive!");
+        this.maxSize = maxSize;
+        this.copy = copy;
+        this.entities = new LinkedHashMap<Long, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return copy of cached entity, null on miss
+     */
+    synchronized T get(Long id) {
+        T entity = entities.get(id);
+        if (entity == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy.apply(entity);
+    }
+
+    /**
+     * Stamp to be taken before loading an entity and passed to {@link #put(Long, Object, long)}
+     */
+    synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Cache loaded entity unless some entity was invalidated since the load started,
+     * as the loaded state could be already stale
+     */
+    synchronized void put(Long id, T entity, long stamp) {
+        if (stamp == invalidations) {
+            entities.put(id, copy.apply(entity));
+        }
+    }
+
+    synchronized void invalidate(Long id) {
+        invalidations++;
+        entities.remove(id);
+    }
+
+    synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, evictions, entities.size(), maxSize);
+    }
+}
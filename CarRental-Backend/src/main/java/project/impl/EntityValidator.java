@@ -0,0 +1,114 @@
+package project.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks entities against a fixed list of rules. Checking a valid entity
+ * allocates nothing, so it is cheap for bulk imports. Invalid entities are
+ * errors of the caller, reported by the exception; they are logged only at
+ * sampled debug level. Thread safe.
+ * @author Daniel Jurca
+ * @see Validators
+ */
+public final class EntityValidator<T> {
+    private final static Logger log = LoggerFactory.getLogger(EntityValidator.class);
+    private final static SampledLog sampledLog = new SampledLog(log);
+    private final String entityName;
+    private final ValidationRule<T>[] rules;
+
+    /**
+     * @param entityName - name of the entity used in messages of batch validation
+     * @param rules - rules in order they are checked
+     */
+    @SafeVarargs
+    public EntityValidator(String entityName, ValidationRule<T>... rules) {
+        this.entityName = entityName;
+        this.rules = Arrays.copyOf(rules, rules.length);
+    }
+
+    /**
+     * @param entity - entity to check, not null
+     * @return first rule the entity breaks, null when it is valid
+     */
+    public ValidationRule<T> firstViolation(T entity) {
+        for (ValidationRule<T> rule : rules) {
+            if (!rule.isSatisfiedBy(entity)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param entity - entity to check, not null
+     * @throws ValidationException with the message of the first rule the entity breaks
+     */
+    public void validate(T entity) {
+        ValidationRule<T> violation = firstViolation(entity);
+        if (violation != null) {
+            sampledLog.debug("validate entity={} violation={}", entityName, violation.getMessage());
+            throw new ValidationException(violation.getMessage());
+        }
+    }
+
+    /**
+     * @param entity - entity to check, not null
+     * @return all rules the entity breaks, empty when it is valid
+     */
+    public List<ValidationRule<T>> violations(T entity) {
+        List<ValidationRule<T>> violations = null;
+        for (ValidationRule<T> rule : rules) {
+            if (!rule.isSatisfiedBy(entity)) {
+                if (violations == null) {
+                    violations = new ArrayList<>();
+                }
+                violations.add(rule);
+            }
+        }
+        return violations == null ? Collections.emptyList() : violations;
+    }
+
+    /**
+     * Check every entity against all rules
+     * @param entities - entities to check, none of them null
+     * @return rules broken by invalid entities, keyed by their position in the list
+     */
+    public Map<Integer, List<ValidationRule<T>>> validateAll(List<T> entities) {
+        Map<Integer, List<ValidationRule<T>>> violations = new LinkedHashMap<>();
+        for (int i = 0; i < entities.size(); i++) {
+            T entity = entities.get(i);
+            if (firstViolation(entity) != null) {
+                violations.put(i, violations(entity));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * @param entities - entities to check, none of them null
+     * @throws ValidationException listing all errors of all invalid entities
+     */
+    public void checkAll(List<T> entities) {
+        Map<Integer, List<ValidationRule<T>>> violations = validateAll(entities);
+        if (violations.isEmpty()) return;
+        List<String> errors = new ArrayList<>();
+        for (Map.Entry<Integer, List<ValidationRule<T>>> entityViolations : violations.entrySet()) {
+            for (ValidationRule<T> rule : entityViolations.getValue()) {
+                errors.add(entityName + " " + (entityViolations.getKey() + 1) + ": " + rule.getMessage());
+            }
+        }
+        if (sampledLog.isEnabled()) {
+            log.debug("checkAll entity={} invalid={} count={}", entityName, violations.size(), entities.size());
+        }
+        throw new ValidationException(errors);
+    }
+}
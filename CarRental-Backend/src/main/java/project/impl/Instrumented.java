@@ -0,0 +1,55 @@
+package project.impl;
+
+import project.LatencyTimer;
+import project.Metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wraps a manager so that every call of its interface methods is counted and timed
+ * in timer {Interface}.{method}, overloaded methods share their timer. A call returning
+ * null, such as a lookup of an id which does not exist, is counted as a miss of its timer.
+ * @author Daniel Jurca
+ */
+public final class Instrumented {
+
+    private Instrumented() {
+    }
+
+    /**
+     * @param type - interface of the manager, e.g. CarManager.class
+     * @param target - manager doing the work
+     * @return manager timing calls of the target
+     */
+    public static <T> T wrap(Class<T> type, T target, Metrics metrics) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target is null!");
+        }
+        Map<Method, LatencyTimer> timers = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            timers.put(method, metrics.timer(type.getSimpleName() + "." + method.getName()));
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            LatencyTimer timer = timers.get(method);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = method.invoke(target, args);
+                failed = false;
+                if (result == null && timer != null && method.getReturnType() != void.class) {
+                    timer.recordMiss();
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                // methods of Object have no timer
+                if (timer != null) timer.record(System.nanoTime() - start, failed);
+            }
+        }));
+    }
+}
@@ -0,0 +1,310 @@
+package project.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import project.LatencyTimer;
+import project.Metrics;
+import project.SlowQuery;
+import project.SlowQueryLog;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Data source timing execution of every SQL statement in timer "SQL {statement}".
+ * A query is timed until its result set is closed, so reading of rows is counted.
+ * Lists of parameters of IN are named as one parameter, so a statement has one timer
+ * whatever the length of the list.
+ * <p>
+ * With a slow query log, statements slower than its threshold are reported to it with
+ * their parameters and the number of rows read or written. Parameters are kept only
+ * with a slow query log.
+ * @author Daniel Jurca
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final static Logger log = LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+    private final Metrics metrics;
+    private final SlowQueryLog slowQueryLog;
+    /** timers by SQL as executed, saves naming statements on every execution */
+    private final ConcurrentMap<String, LatencyTimer> timers = new ConcurrentHashMap<>();
+    /** whether the database is Derby, null until the first connection */
+    private volatile Boolean derby;
+
+    public InstrumentedDataSource(DataSource dataSource, Metrics metrics) {
+        this(dataSource, metrics, null);
+    }
+
+    /**
+     * @param slowQueryLog - log of slow statements, null for none
+     */
+    public InstrumentedDataSource(DataSource dataSource, Metrics metrics, SlowQueryLog slowQueryLog) {
+        super(dataSource);
+        this.metrics = metrics;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(super.getConnection(username, password));
+    }
+
+    private Connection connection(Connection connection) throws SQLException {
+        boolean capturingPlans = slowQueryLog != null && slowQueryLog.isCapturingPlans() && isDerby(connection);
+        if (capturingPlans) {
+            // statistics of the last statement of the connection are kept only when turned on before it
+            try (CallableStatement call = connection.prepareCall("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)")) {
+                call.execute();
+            }
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (method.getName().equals("prepareStatement")) {
+                        String sql = (String) args[0];
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                new Class<?>[]{PreparedStatement.class},
+                                new StatementHandler((Statement) result, connection, capturingPlans, sql));
+                    }
+                    if (method.getName().equals("createStatement")) {
+                        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                                new StatementHandler((Statement) result, connection, capturingPlans, null));
+                    }
+                    return result;
+                });
+    }
+
+    private boolean isDerby(Connection connection) throws SQLException {
+        if (derby == null) {
+            derby = connection.getMetaData().getDatabaseProductName().startsWith("Apache Derby");
+        }
+        return derby;
+    }
+
+    private LatencyTimer timer(String sql) {
+        LatencyTimer timer = timers.get(sql);
+        if (timer == null) {
+            timer = metrics.timer("SQL " + name(sql));
+            timers.putIfAbsent(sql, timer);
+        }
+        return timer;
+    }
+
+    /**
+     * @return statement with whitespace collapsed and lists of parameters written as one parameter
+     */
+    static String name(String sql) {
+        return sql.trim().replaceAll("\\s+", " ").replaceAll("\\?(\\s?,\\s?\\?)+", "?...");
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Times executions of a statement, for a prepared statement with its SQL, otherwise with the SQL
+     * given to execute. Keeps parameters of a prepared statement when there is a slow query log.
+     * A query is timed until its result set is closed, as embedded Derby does most of the work of
+     * a query while the rows are read; closing the statement ends the query as well.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final Connection connection;
+        private final boolean capturingPlans;
+        private final String preparedSql;
+        private final LatencyTimer preparedTimer;
+        private Object[] parameters = new Object[0];
+        /** query whose result set is open, null when there is none */
+        private Query openQuery;
+
+        StatementHandler(Statement statement, Connection connection, boolean capturingPlans, String preparedSql) {
+            this.statement = statement;
+            this.connection = connection;
+            this.capturingPlans = capturingPlans;
+            this.preparedSql = preparedSql;
+            this.preparedTimer = preparedSql == null ? null : timer(preparedSql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                if (slowQueryLog != null && preparedSql != null) {
+                    keepParameter(name, args);
+                }
+                if (name.equals("close")) {
+                    // closing the statement closes its result set, which may not be closed by itself
+                    try {
+                        return InstrumentedDataSource.invoke(statement, method, args);
+                    } finally {
+                        finishOpenQuery();
+                    }
+                }
+                return InstrumentedDataSource.invoke(statement, method, args);
+            }
+            String sql = preparedSql != null ? preparedSql
+                    : args != null && args[0] instanceof String ? (String) args[0] : null;
+            if (sql == null) {
+                // executeBatch of a plain statement has no SQL, its statements were added before
+                return InstrumentedDataSource.invoke(statement, method, args);
+            }
+            // executing again closes the former result set
+            finishOpenQuery();
+            LatencyTimer timer = preparedTimer != null ? preparedTimer : timer(sql);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedDataSource.invoke(statement, method, args);
+            } catch (Throwable e) {
+                finish(timer, sql, parameters, -1, System.nanoTime() - start, true);
+                throw e;
+            }
+            if (result instanceof ResultSet) {
+                // parameters may be set for the next execution before the result set is closed
+                openQuery = new Query(timer, sql, slowQueryLog == null ? parameters : parameters.clone(), start);
+                return openQuery.resultSet((ResultSet) result);
+            }
+            finish(timer, sql, parameters, rows(result), System.nanoTime() - start, false);
+            return result;
+        }
+
+        private void finishOpenQuery() {
+            if (openQuery != null) {
+                openQuery.finish();
+            }
+        }
+
+        private void finish(LatencyTimer timer, String sql, Object[] parameters, long rows, long nanos,
+                            boolean failed) {
+            timer.record(nanos, failed);
+            if (slowQueryLog != null && nanos >= slowQueryLog.getThresholdNanos()) {
+                report(sql, parameters, rows, nanos, failed);
+            }
+        }
+
+        private void keepParameter(String name, Object[] args) {
+            if (name.equals("clearParameters")) {
+                parameters = new Object[0];
+            } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                int index = (Integer) args[0] - 1;
+                if (index >= parameters.length) {
+                    parameters = Arrays.copyOf(parameters, index + 1);
+                }
+                // setNull has the SQL type in place of a value
+                parameters[index] = name.equals("setNull") ? null : args[1];
+            }
+        }
+
+        private void report(String sql, Object[] parameters, long rows, long nanos, boolean failed) {
+            List<String> values = new ArrayList<>(parameters.length);
+            for (Object parameter : parameters) {
+                values.add(parameter == null ? null : parameter.toString());
+            }
+            slowQueryLog.record(new SlowQuery(sql, Collections.unmodifiableList(values), rows, nanos,
+                    System.currentTimeMillis(), failed, capturingPlans && !failed ? plan() : null));
+        }
+
+        /**
+         * @return runtime statistics of the last statement of the connection
+         */
+        private String plan() {
+            try (Statement plan = connection.createStatement();
+                 ResultSet resultSet = plan.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()")) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            } catch (SQLException e) {
+                log.debug("Cannot read runtime statistics", e);
+                return null;
+            }
+        }
+
+        /**
+         * Query of the statement from its execution until its result set is closed,
+         * counting rows read and whether reading them failed
+         */
+        private final class Query {
+            private final LatencyTimer timer;
+            private final String sql;
+            private final Object[] parameters;
+            private final long start;
+            private long rows;
+            private boolean failed;
+            private boolean finished;
+
+            Query(LatencyTimer timer, String sql, Object[] parameters, long start) {
+                this.timer = timer;
+                this.sql = sql;
+                this.parameters = parameters;
+                this.start = start;
+            }
+
+            ResultSet resultSet(ResultSet resultSet) {
+                return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                            Object result;
+                            try {
+                                result = InstrumentedDataSource.invoke(resultSet, method, args);
+                            } catch (Throwable e) {
+                                failed = true;
+                                throw e;
+                            }
+                            if (method.getName().equals("next") && (Boolean) result) {
+                                rows++;
+                            } else if (method.getName().equals("close")) {
+                                finish();
+                            }
+                            return result;
+                        });
+            }
+
+            /**
+             * Records the query once, close may be called more than once
+             */
+            void finish() {
+                if (finished) return;
+                finished = true;
+                if (openQuery == this) openQuery = null;
+                StatementHandler.this.finish(timer, sql, parameters, rows, System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof int[]) {
+            long rows = 0;
+            for (int count : (int[]) result) {
+                rows += Math.max(count, 0);
+            }
+            return rows;
+        }
+        return -1;
+    }
+}
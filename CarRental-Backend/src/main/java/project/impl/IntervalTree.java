@@ -0,0 +1,153 @@
+package project.impl;
+
+import java.util.Random;
+
+/**
+ * Set of half-open intervals [start, end) identified by id, answering overlap
+ * queries in logarithmic time. It is a randomized balanced search tree
+ * (treap) ordered by start, where every node keeps the greatest end of its
+ * subtree. Not thread safe.
+ * @author Daniel Jurca
+ */
+class IntervalTree {
+    private final Random random = new Random();
+    private Node root;
+    private int size;
+
+    private static final class Node {
+        private final long id;
+        private final long start;
+        private final long end;
+        private final int priority;
+        private long maxEnd;
+        private Node left;
+        private Node right;
+
+        private Node(long id, long start, long end, int priority) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        private int compareTo(long start, long id) {
+            int result = Long.compare(this.start, start);
+            return result != 0 ? result : Long.compare(this.id, id);
+        }
+    }
+
+    /**
+     * Add interval, interval with the same id and start must not be present
+     */
+    void add(long id, long start, long end) {
+        root = insert(root, new Node(id, start, end, random.nextInt()));
+        size++;
+    }
+
+    /**
+     * Remove interval with given id and start
+     * @return true when the interval was present
+     */
+    boolean remove(long id, long start) {
+        int before = size;
+        root = delete(root, id, start);
+        return size < before;
+    }
+
+    /**
+     * @return true when some interval has a common point with [from, to)
+     */
+    boolean overlaps(long from, long to) {
+        Node node = root;
+        while (node != null) {
+            if (node.start < to && node.end > from) {
+                return true;
+            }
+            // when the left subtree has no overlap although it reaches past from,
+            // all its intervals reaching past from start at or after to and so does
+            // everything on the right
+            node = node.left != null && node.left.maxEnd > from ? node.left : node.right;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (node.compareTo(added.start, added.id) > 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        return update(node);
+    }
+
+    private Node delete(Node node, long id, long start) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = node.compareTo(start, id);
+        if (cmp > 0) {
+            node.left = delete(node.left, id, start);
+        } else if (cmp < 0) {
+            node.right = delete(node.right, id, start);
+        } else {
+            size--;
+            return merge(node.left, node.right);
+        }
+        return update(node);
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = update(node);
+        return update(left);
+    }
+
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = update(node);
+        return update(right);
+    }
+
+    private Node update(Node node) {
+        long maxEnd = node.end;
+        if (node.left != null) maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        if (node.right != null) maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        node.maxEnd = maxEnd;
+        return node;
+    }
+}
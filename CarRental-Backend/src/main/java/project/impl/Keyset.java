@@ -0,0 +1,86 @@
+package project.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import project.Page;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pages of entities by their id. One row more than the page size is read
+ * to find out whether there is a further page.
+ * @author Daniel Jurca
+ */
+final class Keyset {
+
+    private Keyset() {
+    }
+
+    /**
+     * Page of entities with id greater than given one
+     * @param select - query selecting the entities, without WHERE and ORDER BY
+     * @param idColumn - column with id of the entity in the query
+     * @param after - id the page starts after, null for the first page
+     */
+    static <T> Page<T> after(JdbcTemplate jdbc, String select, String idColumn, ResultSetExtractor<List<T>> extractor,
+                             Function<T, Long> id, Long after, int pageSize) {
+        checkPageSize(pageSize);
+        List<T> items = after == null
+                ? jdbc.query(select + " ORDER BY " + idColumn + " FETCH FIRST ? ROWS ONLY",
+                        extractor, pageSize + 1)
+                : jdbc.query(select + " WHERE " + idColumn + " > ? ORDER BY " + idColumn + " FETCH FIRST ? ROWS ONLY",
+                        extractor, after, pageSize + 1);
+        boolean more = items.size() > pageSize;
+        if (more) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+        }
+        Long next = more ? id.apply(items.get(items.size() - 1)) : null;
+        Long previous = after == null ? null : items.isEmpty() ? after + 1 : id.apply(items.get(0));
+        return new Page<>(items, next, previous);
+    }
+
+    /**
+     * Page of entities with id lower than given one, still ordered from the lowest id
+     * @param before - id the page ends before
+     */
+    static <T> Page<T> before(JdbcTemplate jdbc, String select, String idColumn, ResultSetExtractor<List<T>> extractor,
+                              Function<T, Long> id, Long before, int pageSize) {
+        checkPageSize(pageSize);
+        if (before == null) {
+            throw new IllegalArgumentException("Cursor is null!");
+        }
+        List<T> items = jdbc.query(select + " WHERE " + idColumn + " < ? ORDER BY " + idColumn
+                + " DESC FETCH FIRST ? ROWS ONLY", extractor, before, pageSize + 1);
+        boolean more = items.size() > pageSize;
+        if (more) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+        }
+        Collections.reverse(items);
+        Long previous = more ? id.apply(items.get(0)) : null;
+        Long next = items.isEmpty() ? before - 1 : id.apply(items.get(items.size() - 1));
+        return new Page<>(items, next, previous);
+    }
+
+    private static void checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive!");
+        }
+    }
+
+    /**
+     * Entities at given positions when ordered by id. Skipped rows are still
+     * read by the database, prefer {@link #after} when the preceding id is known.
+     */
+    static <T> List<T> range(JdbcTemplate jdbc, String select, String idColumn, ResultSetExtractor<List<T>> extractor,
+                             int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset can't be negative!");
+        }
+        checkPageSize(limit);
+        return jdbc.query(select + " ORDER BY " + idColumn + " OFFSET ? ROWS FETCH NEXT ? ROWS ONLY",
+                extractor, offset, limit);
+    }
+}
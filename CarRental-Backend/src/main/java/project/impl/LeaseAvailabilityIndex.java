@@ -0,0 +1,202 @@
+package project.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of lease periods, one {@link IntervalTree} per car, used to
+ * answer availability queries without scanning the LEASES table. Rows of all cars
+ * of the fleet are kept as well, so that cars found need not be read again.
+ * Cars are added and replaced once their write commits, cars with ids above
+ * {@link #getLastCarId()} may exist in the database unknown to the index.
+ * A lease occupies its car from the start day until the day before its end.
+ * Thread safe.
+ * @author Daniel Jurca
+ */
+class LeaseAvailabilityIndex {
+    private final Map<Long, IntervalTree> periodsByCar = new HashMap<>();
+    private final Map<Long, Period> periodsByLease = new HashMap<>();
+    /** copies of the cars, by ascending id */
+    private final Map<Long, Car> fleet = new TreeMap<>();
+    private long lastCarId;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Period of one lease
+     */
+    static final class Period {
+        private final long carId;
+        private final long customerId;
+        private final long start;
+        private final long end;
+
+        Period(long carId, long customerId, LocalDate start, LocalDate end) {
+            this.carId = carId;
+            this.customerId = customerId;
+            this.start = start.toEpochDay();
+            this.end = end.toEpochDay();
+        }
+    }
+
+    /**
+     * Add lease period or replace the previous period of the lease
+     * @return previous period of the lease, null if there was none
+     */
+    Period put(long leaseId, Period period) {
+        lock.writeLock().lock();
+        try {
+            Period previous = removePeriod(leaseId);
+            periodsByLease.put(leaseId, period);
+            periodsByCar.computeIfAbsent(period.carId, id -> new IntervalTree()).add(leaseId, period.start, period.end);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove period of the lease
+     * @return removed period, null if the lease was not indexed
+     */
+    Period remove(long leaseId) {
+        lock.writeLock().lock();
+        try {
+            return removePeriod(leaseId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add car to the fleet or replace its previous row
+     */
+    void putCar(Car car) {
+        long carId = car.getId();
+        lock.writeLock().lock();
+        try {
+            fleet.put(carId, copy(car));
+            lastCarId = Math.max(lastCarId, carId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove car from the fleet together with periods of its leases
+     */
+    void removeCar(long carId) {
+        lock.writeLock().lock();
+        try {
+            fleet.remove(carId);
+            if (periodsByCar.remove(carId) != null) {
+                periodsByLease.values().removeIf(period -> period.carId == carId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove periods of leases of the customer
+     */
+    void removeCustomer(long customerId) {
+        lock.writeLock().lock();
+        try {
+            Iterator<Map.Entry<Long, Period>> leases = periodsByLease.entrySet().iterator();
+            while (leases.hasNext()) {
+                Map.Entry<Long, Period> lease = leases.next();
+                Period period = lease.getValue();
+                if (period.customerId == customerId) {
+                    leases.remove();
+                    removeFromCar(lease.getKey(), period);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return highest id of a car added to the fleet, 0 when there was none
+     */
+    long getLastCarId() {
+        lock.readLock().lock();
+        try {
+            return lastCarId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true when the car has a lease sharing at least one day with [from, to)
+     */
+    boolean isLeased(long carId, LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            IntervalTree periods = periodsByCar.get(carId);
+            return periods != null && periods.overlaps(from.toEpochDay(), to.toEpochDay());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return copies of cars of the fleet without any lease sharing a day with [from, to), by ascending id
+     */
+    List<Car> availableCars(LocalDate from, LocalDate to) {
+        return cars(from, to, false);
+    }
+
+    /**
+     * @return copies of cars of the fleet with a lease sharing a day with [from, to), by ascending id
+     */
+    List<Car> leasedCars(LocalDate from, LocalDate to) {
+        return cars(from, to, true);
+    }
+
+    private List<Car> cars(LocalDate from, LocalDate to, boolean leased) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        List<Car> cars = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Car car : fleet.values()) {
+                IntervalTree periods = periodsByCar.get(car.getId());
+                if ((periods != null && periods.overlaps(fromDay, toDay)) == leased) {
+                    cars.add(copy(car));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return cars;
+    }
+
+    private static Car copy(Car car) {
+        return new Car(car.getId(), car.getCarBrand(), car.getDescription(), car.getDailyPrice());
+    }
+
+    private Period removePeriod(long leaseId) {
+        Period previous = periodsByLease.remove(leaseId);
+        if (previous != null) {
+            removeFromCar(leaseId, previous);
+        }
+        return previous;
+    }
+
+    private void removeFromCar(long leaseId, Period period) {
+        IntervalTree periods = periodsByCar.get(period.carId);
+        periods.remove(leaseId, period.start);
+        if (periods.isEmpty()) {
+            periodsByCar.remove(period.carId);
+        }
+    }
+}
@@ -3,37 +3,103 @@ package project.impl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import project.CarManager;
+import project.Page;
 import project.CustomerManager;
 import project.LeaseManager;
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
 import project.exception.IllegalEntityException;
-import project.exception.ValidationException;
+import project.exception.LeaseConflictException;
 
 import javax.sql.DataSource;
-import java.math.BigDecimal;
 import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * Implementation of operations with Leases
+ * Implementation of operations with Leases.
+ * Available and leased cars are found in an in-memory index of lease periods,
+ * which learns about writes made through managers of this process only. It assumes
+ * this process is the single writer of the database; when other processes write
+ * it too, such as the Swing client and the web application sharing a network
+ * Derby, set system property {@code carRental.leaseIndex} to {@code false} and
+ * they are queried from the database instead.
  * @author Daniel Jurca
  */
 public class LeaseManagerImpl implements LeaseManager {
+    private static final String SELECT_LEASES =
+            "SELECT l.id, l.startdate, l.enddate, l.price, " +
+            "c.id AS car_id, c.carBrand, c.description, c.dailyPrice, " +
+            "u.id AS customer_id, u.fullName, u.address, u.phoneNumber " +
+            "FROM leases l " +
+            "JOIN cars c ON c.id = l.leasedcarid " +
+            "JOIN customers u ON u.id = l.customerid";
+    /** attempts to create a lease in own transaction when it fails on concurrent writers */
+    private static final int CREATE_ATTEMPTS = 3;
+    /** whether available and leased cars are found in the index rather than queried */
+    static final boolean INDEXED = Boolean.parseBoolean(System.getProperty("carRental.leaseIndex", "true"));
+    private static final String LEASED_IN_PERIOD =
+            "EXISTS (SELECT 1 FROM leases l WHERE l.leasedcarid = c.id AND l.startdate < ? AND l.enddate > ?)";
+
     private JdbcTemplate jdbc;
+    private JdbcTemplate streamingJdbc;
     private CustomerManager customerManager;
     private CarManager carManager;
+    private SimpleJdbcInsert insertLease;
+    private TransactionTemplate transaction;
+    /** guarded by this */
+    private LeaseAvailabilityIndex availability;
+    /** read of the index in progress, null when none, guarded by this */
+    private Loading loading;
+    private final boolean indexed;
+    private final ChangeListeners<Lease> listeners = new ChangeListeners<>();
     final static Logger log = LoggerFactory.getLogger(LeaseManagerImpl.class);
+    private final static SampledLog sampledLog = new SampledLog(log);
 
     public LeaseManagerImpl(DataSource dataSource, CustomerManager customerManager, CarManager carManager) {
+        this(dataSource, customerManager, carManager, INDEXED);
+    }
+
+    LeaseManagerImpl(DataSource dataSource, CustomerManager customerManager, CarManager carManager, boolean indexed) {
         this.jdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc = Streaming.template(dataSource);
+        this.insertLease = new SimpleJdbcInsert(jdbc)
+                .withTableName("leases").usingGeneratedKeyColumns("id");
+        this.transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
         this.customerManager = customerManager;
         this.carManager = carManager;
+        this.indexed = indexed;
+        if(indexed) {
+            // leases of deleted car or customer are deleted by cascade, unknown to the index
+            carManager.addChangeListener(this::carChanged);
+            customerManager.addChangeListener(this::customerChanged);
+        }
     }
 
     public CarManager getCarManager() {
@@ -45,159 +111,565 @@ public class LeaseManagerImpl implements LeaseManager {
     }
 
     public void createLease(Lease lease) {
-        log.debug("Creating new lease");
-        if(lease == null) {
-            log.error("Lease is null");
-            throw new IllegalArgumentException("Lease can't be null!");
+        validateNewLease(lease);
+
+        // a transaction of the caller can not be repeated, it is rolled back on failure
+        boolean ownTransaction = !TransactionSynchronizationManager.isActualTransactionActive();
+        for(int attempt = 1; ; attempt++) {
+            try {
+                transaction.execute(status -> {
+                    lockCar(lease.getLeasedCar());
+                    checkConflicts(lease);
+                    Number id = insertLease.executeAndReturnKey(leaseParameters(lease));
+                    lease.setId(id.longValue());
+                    return null;
+                });
+                break;
+            } catch(ConcurrencyFailureException e) {
+                // Derby gives up generating the id when many transactions insert at once
+                if(!ownTransaction || attempt == CREATE_ATTEMPTS) throw e;
+                if(log.isDebugEnabled()) log.debug("createLease retry attempt={} cause={}", attempt, e.toString());
+            }
         }
-        if(lease.getCustomer() == null || lease.getLeasedCar() == null || lease.getPrice()== null ||
-                lease.getStart() == null || lease.getEnd() == null) {
-            log.error("Some of the properties are null");
-            throw new ValidationException("Some of the properties are null!");
+        indexLease(lease);
+        listeners.publish(EntityChangeEvent.Type.INSERTED, lease);
+        log.debug("createLease id={}", lease.getId());
+    }
+
+    public void createLeases(List<Lease> leases) {
+        if(leases == null) {
+            log.error("createLeases leases=null");
+            throw new IllegalArgumentException("List of leases can't be null!");
         }
-        if(lease.getPrice().compareTo(BigDecimal.ZERO) < 0) {
-            log.error("Price is negative");
-            throw new ValidationException("Price can not be negative!");
+        leases.forEach(this::checkNewLease);
+        Validators.LEASE.checkAll(leases);
+        if(leases.isEmpty()) return;
+
+        long[] ids = transaction.execute(status -> {
+            checkConflicts(leases);
+            // Derby reports one generated key per statement, that of the last row
+            // it inserted, so each lease is inserted by its own statement
+            long[] keys = new long[leases.size()];
+            for(int i = 0; i < keys.length; i++) {
+                keys[i] = insertLease.executeAndReturnKey(leaseParameters(leases.get(i))).longValue();
+            }
+            return keys;
+        });
+        for(int i = 0; i < ids.length; i++) {
+            Lease lease = leases.get(i);
+            lease.setId(ids[i]);
+            indexLease(lease);
+            listeners.publish(EntityChangeEvent.Type.INSERTED, lease);
+        }
+        if(log.isDebugEnabled()) log.debug("createLeases count={} lastId={}", leases.size(), ids[ids.length - 1]);
+    }
+
+    private void validateNewLease(Lease lease) {
+        checkNewLease(lease);
+        Validators.LEASE.validate(lease);
+    }
+
+    private void checkNewLease(Lease lease) {
+        if(lease == null) {
+            log.error("createLease lease=null");
+            throw new IllegalArgumentException("Lease can't be null!");
         }
         if(lease.getId() != null) {
-            log.error("Id already exists");
+            log.error("createLease id={} lease already exists", lease.getId());
             throw new IllegalEntityException("Lease already exists");
         }
-        if(lease.getEnd().isBefore(lease.getStart())) throw new ValidationException("End of lease is before start!");
-
-        SimpleJdbcInsert insertLease = new SimpleJdbcInsert(jdbc)
-                .withTableName("leases").usingGeneratedKeyColumns("id");
+    }
 
-        SqlParameterSource parameters = new MapSqlParameterSource()
+    private SqlParameterSource leaseParameters(Lease lease) {
+        return new MapSqlParameterSource()
                 .addValue("LEASEDCARID", lease.getLeasedCar().getId())
                 .addValue("CUSTOMERID", lease.getCustomer().getId())
                 .addValue("STARTDATE", Date.valueOf(lease.getStart()))
                 .addValue("ENDDATE", Date.valueOf(lease.getEnd()))
                 .addValue("PRICE", lease.getPrice());
-
-        Number id = insertLease.executeAndReturnKey(parameters);
-        lease.setId(id.longValue());
-        log.debug("Lease created");
     }
 
 
     public Lease getLeaseById(Long id) {
-        log.debug("Finding lease");
         if(id == null) {
-            log.error("Id is null");
+            log.error("getLeaseById id=null");
             throw new IllegalArgumentException("Id is null!");
         }
-        try{
-            log.debug("Lease found");
-            return jdbc.queryForObject("SELECT * FROM leases WHERE id=?", leaseMapper, id);
-        }catch(EmptyResultDataAccessException e){
-            log.error("Lease not found");
-            return null;
-        }
+        List<Lease> leases = jdbc.query(SELECT_LEASES + " WHERE l.id=?", new LeaseExtractor(), id);
+        // a miss is counted by Instrumented, it is no error
+        Lease lease = leases.isEmpty() ? null : leases.get(0);
+        sampledLog.debug("getLeaseById id={} found={}", id, lease != null);
+        return lease;
     }
 
     public List<Lease> findAllLeases() {
-        log.debug("Finding all leases");
-        return jdbc.query("SELECT * FROM leases", leaseMapper);
+        List<Lease> leases = jdbc.query(SELECT_LEASES, new LeaseExtractor());
+        if(sampledLog.isEnabled()) log.debug("findAllLeases rows={}", leases.size());
+        return leases;
+    }
+
+    public void streamAllLeases(Consumer<Lease> consumer) {
+        log.debug("streamAllLeases");
+        // cars and customers are not shared between leases, that would keep all of them in memory
+        streamingJdbc.query(SELECT_LEASES + " ORDER BY l.id", Streaming.handler((rs, rowNum) ->
+                LeaseExtractor.lease(rs, LeaseExtractor.customer(rs), LeaseExtractor.car(rs)), consumer));
+    }
+
+    public int countLeases() {
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM leases", Integer.class);
+        sampledLog.debug("countLeases count={}", count);
+        return count;
+    }
+
+    public List<Lease> findLeases(int offset, int limit) {
+        if(sampledLog.isEnabled()) log.debug("findLeases offset={} limit={}", offset, limit);
+        return Keyset.range(jdbc, SELECT_LEASES, "l.id", new LeaseExtractor(), offset, limit);
+    }
+
+    public Page<Lease> findLeasesAfter(Long afterId, int pageSize) {
+        if(sampledLog.isEnabled()) log.debug("findLeasesAfter afterId={} pageSize={}", afterId, pageSize);
+        return Keyset.after(jdbc, SELECT_LEASES, "l.id", new LeaseExtractor(),
+                Lease::getId, afterId, pageSize);
+    }
+
+    public Page<Lease> findLeasesBefore(Long beforeId, int pageSize) {
+        if(sampledLog.isEnabled()) log.debug("findLeasesBefore beforeId={} pageSize={}", beforeId, pageSize);
+        return Keyset.before(jdbc, SELECT_LEASES, "l.id", new LeaseExtractor(),
+                Lease::getId, beforeId, pageSize);
     }
 
     public void updateLease(Lease lease) {
-        log.debug("Updating lease");
         if(lease == null) {
-            log.error("Lease is null");
+            log.error("updateLease lease=null");
             throw new IllegalArgumentException("Lease is null!");
         }
         if(lease.getId() == null) {
-            log.error("Id is null");
+            log.error("updateLease id=null");
             throw new IllegalEntityException("Id can not be null!");
         }
-        if(lease.getCustomer() == null || lease.getLeasedCar() == null || lease.getPrice()== null ||
-                lease.getStart() == null || lease.getEnd() == null) {
-            log.error("Some of the properties are null");
-            throw new ValidationException("Some of the properties are null!");
+        Validators.LEASE.validate(lease);
+        transaction.execute(status -> {
+            lockCar(lease.getLeasedCar());
+            checkConflicts(lease);
+            if(jdbc.update("UPDATE leases set LEASEDCARID=?,CUSTOMERID=?,STARTDATE=?, ENDDATE=?,PRICE=? where id=?",
+                    lease.getLeasedCar().getId(), lease.getCustomer().getId(),
+                    Date.valueOf(lease.getStart()), Date.valueOf(lease.getEnd()), lease.getPrice(), lease.getId()) == 0) {
+                log.warn("updateLease id={} lease was not updated", lease.getId());
+                throw new IllegalEntityException("Lease was not updated!");
+            }
+            return null;
+        });
+        indexLease(lease);
+        listeners.publish(EntityChangeEvent.Type.UPDATED, lease);
+        log.debug("updateLease id={}", lease.getId());
+    }
+
+    public void deleteLease(Lease lease) {
+        checkLeaseToDelete(lease);
+
+        if(jdbc.update("DELETE FROM leases WHERE id=?", lease.getId()) == 0){
+            log.warn("deleteLease id={} lease was not deleted", lease.getId());
+            throw new IllegalEntityException("Lease was not deleted");
         }
-        if(lease.getEnd().isBefore(lease.getStart())) throw new ValidationException("End of lease is before start!");
-        if(jdbc.update("UPDATE leases set LEASEDCARID=?,CUSTOMERID=?,STARTDATE=?, ENDDATE=?,PRICE=? where id=?",
-                lease.getLeasedCar().getId(), lease.getCustomer().getId(),
-                Date.valueOf(lease.getStart()), Date.valueOf(lease.getEnd()), lease.getPrice(), lease.getId()) == 0) {
-            log.error("Lease was not updated");
-            throw new IllegalEntityException("Lease was not updated!");
+        unindexLease(lease.getId());
+        listeners.publish(EntityChangeEvent.Type.DELETED, lease);
+        log.debug("deleteLease id={}", lease.getId());
+    }
+
+    public List<Lease> deleteLeases(Collection<Lease> leases) {
+        if(leases == null) {
+            log.error("deleteLeases leases=null");
+            throw new IllegalArgumentException("Collection of leases can't be null!");
         }
-        log.debug("Lease updated");
+        leases.forEach(this::checkLeaseToDelete);
+
+        List<Long> ids = leases.stream().map(Lease::getId).collect(Collectors.toList());
+        Set<Long> deleted = transaction.execute(status -> BatchDelete.delete(jdbc, "leases", ids));
+        List<Lease> notDeleted = new ArrayList<>();
+        for(Lease lease : leases) {
+            if(deleted.contains(lease.getId())) {
+                unindexLease(lease.getId());
+                listeners.publish(EntityChangeEvent.Type.DELETED, lease);
+            } else {
+                notDeleted.add(lease);
+            }
+        }
+        if(log.isDebugEnabled()) log.debug("deleteLeases count={} notFound={}", leases.size(), notDeleted.size());
+        return notDeleted;
     }
 
-    public void deleteLease(Lease lease) {
-        log.debug("Deleting lease");
+    private void checkLeaseToDelete(Lease lease) {
         if(lease == null) {
-            log.error("Lease is null");
+            log.error("deleteLease lease=null");
             throw new IllegalArgumentException("Lease is null!");
         }
         if(lease.getId() == null) {
-            log.error("Id is null");
+            log.error("deleteLease id=null");
             throw new IllegalEntityException("Id can not be null!");
         }
-
-        if(jdbc.update("DELETE FROM leases WHERE id=?", lease.getId()) == 0){
-            log.error("Lease was not deleted");
-            throw new IllegalEntityException("Lease was not deleted");
-        }
-        log.debug("Lease deleted");
     }
 
     public List<Lease> findLeasesForCustomer(Customer customer) {
-        log.debug("Finding all leases for customer");
         if(customer == null) {
-            log.error("Customer is null");
+            log.error("findLeasesForCustomer customer=null");
             throw new IllegalArgumentException("Customer can not be null!");
         }
         if(customer.getId() == null) {
-            log.error("Id is null");
+            log.error("findLeasesForCustomer customerId=null");
             throw new IllegalEntityException("ID can not be null");
         }
         if(customerManager.getCustomerById(customer.getId()) == null) {
-            log.error("Customer does not exists");
+            sampledLog.debug("findLeasesForCustomer customerId={} found={}", customer.getId(), false);
             return null;
         }
-        log.debug("All leases found");
-        return jdbc.query("SELECT * FROM leases WHERE CUSTOMERID=?", leaseMapper, customer.getId());
+        List<Lease> leases = jdbc.query(SELECT_LEASES + " WHERE l.customerid=?", new LeaseExtractor(), customer.getId());
+        if(sampledLog.isEnabled()) log.debug("findLeasesForCustomer customerId={} rows={}", customer.getId(), leases.size());
+        return leases;
     }
 
     public List<Lease> findLeasesForCar(Car car) {
-        log.debug("Finding all leases for car");
         if(car == null) {
-            log.error("Car is null");
+            log.error("findLeasesForCar car=null");
             throw new IllegalArgumentException("Car can not be null!");
         }
         if(car.getId() == null) {
-            log.error("Id is null");
+            log.error("findLeasesForCar carId=null");
             throw new IllegalEntityException("ID can not be null");
         }
         if(carManager.getCarById(car.getId()) == null) {
-            log.error("Car does not exists");
+            sampledLog.debug("findLeasesForCar carId={} found={}", car.getId(), false);
             return null;
         }
-        log.debug("All leases found");
-        return jdbc.query("SELECT * FROM leases WHERE leasedcarid=?", leaseMapper, car.getId());
+        List<Lease> leases = jdbc.query(SELECT_LEASES + " WHERE l.leasedcarid=?", new LeaseExtractor(), car.getId());
+        if(sampledLog.isEnabled()) log.debug("findLeasesForCar carId={} rows={}", car.getId(), leases.size());
+        return leases;
     }
 
     public List<Car> findUnleasedCars() {
-        log.debug("All unleased cars found");
-        return jdbc.query("SELECT * FROM cars WHERE id NOT IN (SELECT leasedcarid FROM leases WHERE startdate <= CURRENT DATE AND enddate > CURRENT DATE)", carMapper);
-
+        LocalDate today = LocalDate.now();
+        List<Car> cars = findCars(today, today.plusDays(1), false);
+        if(sampledLog.isEnabled()) log.debug("findUnleasedCars rows={}", cars.size());
+        return cars;
     }
 
     public List<Car> findLeasedCars() {
-        log.debug("All leased cars found");
-        return jdbc.query("SELECT * FROM cars WHERE id IN (SELECT leasedcarid FROM leases WHERE startdate <= CURRENT DATE AND enddate > CURRENT DATE)", carMapper);
+        LocalDate today = LocalDate.now();
+        List<Car> cars = findCars(today, today.plusDays(1), true);
+        if(sampledLog.isEnabled()) log.debug("findLeasedCars rows={}", cars.size());
+        return cars;
+    }
+
+    public List<Car> findAvailableCars(LocalDate from, LocalDate to) {
+        if(from == null || to == null) {
+            log.error("findAvailableCars from={} to={} period is null", from, to);
+            throw new IllegalArgumentException("Period can not be null!");
+        }
+        if(!to.isAfter(from)) {
+            log.error("findAvailableCars from={} to={} period is empty", from, to);
+            throw new IllegalArgumentException("End of period must be after its start!");
+        }
+        List<Car> cars = findCars(from, to, false);
+        if(sampledLog.isEnabled()) log.debug("findAvailableCars from={} to={} rows={}", from, to, cars.size());
+        return cars;
+    }
+
+    /**
+     * Find cars leased or available in [from, to) in the index, together with cars
+     * inserted by transactions not yet committed or reported to the index, like the
+     * current one. Without the index they are queried.
+     * @return cars in the order of ascending ids
+     */
+    private List<Car> findCars(LocalDate from, LocalDate to, boolean leased) {
+        if(!indexed) {
+            return jdbc.query("SELECT * FROM cars c WHERE " + (leased ? "" : "NOT ") + LEASED_IN_PERIOD +
+                    " ORDER BY id", carMapper, Date.valueOf(to), Date.valueOf(from));
+        }
+        LeaseAvailabilityIndex index = availability();
+        long lastCarId = index.getLastCarId();
+        List<Car> cars = leased ? index.leasedCars(from, to) : index.availableCars(from, to);
+        for(Car car : jdbc.query("SELECT * FROM cars WHERE id > ? ORDER BY id", carMapper, lastCarId)) {
+            if(index.isLeased(car.getId(), from, to) == leased) {
+                cars.add(car);
+            }
+        }
+        return cars;
+    }
+
+    /**
+     * Lock the row of the car until the end of current transaction, so that
+     * leases of one car are written one after another while leases of
+     * different cars are written concurrently.
+     */
+    private void lockCar(Car car) {
+        if(jdbc.update("UPDATE cars SET dailyPrice=dailyPrice WHERE id=?", car.getId()) == 0) {
+            log.warn("lockCar carId={} leased car does not exist", car.getId());
+            throw new IllegalEntityException("Leased car does not exist!");
+        }
+    }
+
+    /**
+     * Check that no other lease of the car shares a day with the lease,
+     * the car must be locked by {@link #lockCar(Car)}.
+     */
+    private void checkConflicts(Lease lease) {
+        Long id = lease.getId() == null ? -1L : lease.getId();
+        Integer conflicts = jdbc.queryForObject("SELECT COUNT(*) FROM leases " +
+                        "WHERE leasedcarid=? AND startdate < ? AND enddate > ? AND id <> ?", Integer.class,
+                lease.getLeasedCar().getId(), Date.valueOf(lease.getEnd()), Date.valueOf(lease.getStart()), id);
+        if(conflicts > 0) {
+            log.warn("checkConflicts carId={} car is already leased from={} to={}", lease.getLeasedCar().getId(), lease.getStart(), lease.getEnd());
+            throw new LeaseConflictException("Car is already leased in given period!");
+        }
+    }
+
+    /**
+     * Lock cars of the batch and check that its leases share no day with each
+     * other nor with stored leases of their cars. Cars are locked in ascending
+     * order of id, so batches sharing cars wait for each other instead of deadlocking.
+     */
+    private void checkConflicts(List<Lease> leases) {
+        Map<Long, List<Lease>> leasesByCar = leases.stream()
+                .collect(Collectors.groupingBy(lease -> lease.getLeasedCar().getId(), TreeMap::new, Collectors.toList()));
+        for(Map.Entry<Long, List<Lease>> entry : leasesByCar.entrySet()) {
+            lockCar(entry.getValue().get(0).getLeasedCar());
+            List<Lease> periods = new ArrayList<>(entry.getValue());
+            LocalDate from = periods.stream().map(Lease::getStart).min(LocalDate::compareTo).get();
+            LocalDate to = periods.stream().map(Lease::getEnd).max(LocalDate::compareTo).get();
+            jdbc.query("SELECT startdate, enddate FROM leases WHERE leasedcarid=? AND startdate < ? AND enddate > ?",
+                    (RowCallbackHandler) rs -> periods.add(new Lease(null, null, null,
+                            rs.getDate("startdate").toLocalDate(), rs.getDate("enddate").toLocalDate(), null)),
+                    entry.getKey(), Date.valueOf(to), Date.valueOf(from));
+
+            periods.sort(Comparator.comparing(Lease::getStart).thenComparing(Lease::getEnd));
+            LocalDate leasedUntil = LocalDate.MIN;
+            for(Lease period : periods) {
+                if(period.getStart().isBefore(leasedUntil)) {
+                    log.warn("checkConflicts carId={} car is already leased from={}", entry.getKey(), period.getStart());
+                    throw new LeaseConflictException("Car is already leased in given period!");
+                }
+                if(period.getEnd().isAfter(leasedUntil)) leasedUntil = period.getEnd();
+            }
+        }
+    }
+
+    /**
+     * Index of cars and lease periods, loaded from the database on first use. The
+     * index is read outside the monitor, so writers of leases never wait for it;
+     * a second caller asking for it meanwhile waits for the same read. Changes
+     * made during the read are kept and applied once it ends.
+     */
+    private LeaseAvailabilityIndex availability() {
+        Loading load;
+        boolean reading = false;
+        synchronized(this) {
+            if(availability != null) return availability;
+            if(loading == null) {
+                loading = new Loading();
+                reading = true;
+            }
+            load = loading;
+        }
+        if(!reading) {
+            try {
+                return load.result.join();
+            } catch(CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        log.debug("Loading lease periods");
+        LeaseAvailabilityIndex index = new LeaseAvailabilityIndex();
+        try {
+            jdbc.query("SELECT * FROM cars", (RowCallbackHandler) rs -> index.putCar(carMapper.mapRow(rs, 0)));
+            jdbc.query("SELECT id, leasedcarid, customerid, startdate, enddate FROM leases", rs -> {
+                index.put(rs.getLong("id"), new LeaseAvailabilityIndex.Period(rs.getLong("leasedcarid"),
+                        rs.getLong("customerid"), rs.getDate("startdate").toLocalDate(),
+                        rs.getDate("enddate").toLocalDate()));
+            });
+        } catch(RuntimeException e) {
+            synchronized(this) {
+                loading = null;
+            }
+            load.result.completeExceptionally(e);
+            throw e;
+        }
+        synchronized(this) {
+            loading = null;
+            load.changes.forEach(change -> change.accept(index));
+            load.index = index;
+            if(!load.forgotten) availability = index;
+        }
+        // the index may contain leases written by the current transaction
+        Transactions.onRollback(() -> forgetAvailability(index));
+        load.result.complete(index);
+        return index;
+    }
+
+    private synchronized void forgetAvailability(LeaseAvailabilityIndex index) {
+        if(availability == index) {
+            availability = null;
+        }
+    }
+
+    /**
+     * The index being read lost a change rolled back, it is returned but not kept
+     */
+    private synchronized void forgetLoading(Loading load) {
+        load.forgotten = true;
+        if(load.index != null && availability == load.index) {
+            availability = null;
+        }
+    }
+
+    /**
+     * Reflect written car in the index, a deleted one with the leases deleted with it
+     */
+    private void carChanged(EntityChangeEvent<Car> event) {
+        Car car = event.getEntity();
+        if(event.getType() == EntityChangeEvent.Type.DELETED) {
+            long carId = car.getId();
+            change(index -> index.removeCar(carId));
+        } else {
+            Car written = new Car(car.getId(), car.getCarBrand(), car.getDescription(), car.getDailyPrice());
+            change(index -> index.putCar(written));
+        }
+    }
+
+    /**
+     * Reflect leases deleted with the customer in the index
+     */
+    private void customerChanged(EntityChangeEvent<Customer> event) {
+        if(event.getType() == EntityChangeEvent.Type.DELETED) {
+            long customerId = event.getEntity().getId();
+            change(index -> index.removeCustomer(customerId));
+        }
+    }
+
+    /**
+     * Apply a committed change to the index, or keep it for the index being read
+     */
+    private synchronized void change(Consumer<LeaseAvailabilityIndex> change) {
+        if(availability != null) {
+            change.accept(availability);
+        } else if(loading != null) {
+            loading.changes.add(change);
+        }
+    }
+
+    /**
+     * Reflect written lease in the index, unless it is not loaded yet
+     */
+    private void indexLease(Lease lease) {
+        long leaseId = lease.getId();
+        LeaseAvailabilityIndex.Period period = new LeaseAvailabilityIndex.Period(
+                lease.getLeasedCar().getId(), lease.getCustomer().getId(), lease.getStart(), lease.getEnd());
+        write(leaseId, index -> index.put(leaseId, period));
     }
 
-    private RowMapper<Lease> leaseMapper = (rs, rowNum) ->
-            new Lease(rs.getLong("id"),
-                    customerManager.getCustomerById(rs.getLong("CUSTOMERID")),
-                    carManager.getCarById(rs.getLong("LEASEDCARID")),
-                    rs.getDate("STARTDATE").toLocalDate(),
-                    rs.getDate("ENDDATE").toLocalDate(),
-                    rs.getBigDecimal("PRICE"));
+    private void unindexLease(long leaseId) {
+        write(leaseId, index -> index.remove(leaseId));
+    }
+
+    /**
+     * Apply a write of the current transaction to the index, undone when it rolls back
+     * @param write - changes the lease in the index, returns its previous period
+     */
+    private synchronized void write(long leaseId, Function<LeaseAvailabilityIndex, LeaseAvailabilityIndex.Period> write) {
+        if(availability != null) {
+            LeaseAvailabilityIndex index = availability;
+            LeaseAvailabilityIndex.Period previous = write.apply(index);
+            Transactions.onRollback(() -> restore(index, leaseId, previous));
+        } else if(loading != null) {
+            Loading load = loading;
+            load.changes.add(write::apply);
+            Transactions.onRollback(() -> forgetLoading(load));
+        }
+    }
+
+    private static void restore(LeaseAvailabilityIndex index, long leaseId, LeaseAvailabilityIndex.Period period) {
+        if(period == null) {
+            index.remove(leaseId);
+        } else {
+            index.put(leaseId, period);
+        }
+    }
+
+    private static final class Loading {
+        private final CompletableFuture<LeaseAvailabilityIndex> result = new CompletableFuture<>();
+        /** changes made during the read, in their order */
+        private final List<Consumer<LeaseAvailabilityIndex>> changes = new ArrayList<>();
+        /** index loaded, null until the read and the replay are done */
+        private LeaseAvailabilityIndex index;
+        private boolean forgotten;
+    }
+
+    public void addChangeListener(EntityChangeListener<Lease> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(EntityChangeListener<Lease> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Maps rows of {@link #SELECT_LEASES} to leases. Cars and customers are
+     * read from the joined columns, so no further query is issued per row,
+     * and every car and customer is instantiated only once per result.
+     * Not thread safe, create a new instance for every query.
+     */
+    private static class LeaseExtractor implements ResultSetExtractor<List<Lease>> {
+        private final Map<Long, Car> cars = new HashMap<>();
+        private final Map<Long, Customer> customers = new HashMap<>();
+
+        @Override
+        public List<Lease> extractData(ResultSet rs) throws SQLException {
+            List<Lease> leases = new ArrayList<>();
+            while(rs.next()) {
+                leases.add(lease(rs, sharedCustomer(rs), sharedCar(rs)));
+            }
+            return leases;
+        }
+
+        private Car sharedCar(ResultSet rs) throws SQLException {
+            Car car = cars.get(rs.getLong("car_id"));
+            if(car == null) {
+                car = car(rs);
+                cars.put(car.getId(), car);
+            }
+            return car;
+        }
+
+        private Customer sharedCustomer(ResultSet rs) throws SQLException {
+            Customer customer = customers.get(rs.getLong("customer_id"));
+            if(customer == null) {
+                customer = customer(rs);
+                customers.put(customer.getId(), customer);
+            }
+            return customer;
+        }
+
+        static Lease lease(ResultSet rs, Customer customer, Car car) throws SQLException {
+            return new Lease(rs.getLong("id"),
+                    customer,
+                    car,
+                    rs.getDate("startdate").toLocalDate(),
+                    rs.getDate("enddate").toLocalDate(),
+                    rs.getBigDecimal("price"));
+        }
+
+        static Car car(ResultSet rs) throws SQLException {
+            return new Car(rs.getLong("car_id"),
+                    rs.getString("carBrand"),
+                    rs.getString("description"),
+                    rs.getBigDecimal("dailyPrice"));
+        }
+
+        static Customer customer(ResultSet rs) throws SQLException {
+            return new Customer(rs.getLong("customer_id"),
+                    rs.getString("fullName"),
+                    rs.getString("address"),
+                    rs.getString("phoneNumber"));
+        }
+    }
 
     private RowMapper<Car> carMapper = (rs, rowNum) ->
             new Car(rs.getLong("id"),
@@ -0,0 +1,176 @@
+package project.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import project.DailyOccupancy;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Access to table DAILY_OCCUPANCY and table OCCUPANCY_CHANGES, into which triggers
+ * on LEASES insert the periods of written leases. Writes of leases thus lock no
+ * shared rows, occupancy of a day is its stored row plus changes of periods
+ * containing it, until the changes are folded into the days by {@link #compact}.
+ * @author Daniel Jurca
+ */
+public final class OccupancyTable {
+    static final int BATCH_SIZE = 500;
+
+    private OccupancyTable() {
+    }
+
+    /**
+     * Must run in a transaction at isolation repeatable read. Changes are read first
+     * and stay locked, so a compaction either ends before they are read or waits
+     * until the transaction ends, the changes are never missed nor counted twice.
+     * @return occupancy of every day from the first day to the day before the last one
+     */
+    static List<DailyOccupancy> find(JdbcTemplate jdbc, LocalDate from, LocalDate to) {
+        Map<LocalDate, Day> days = new TreeMap<>();
+        jdbc.query("SELECT startdate, enddate, leasedcars, revenue FROM occupancy_changes " +
+                "WHERE startdate < ? AND enddate > ?", (RowCallbackHandler) rs -> {
+            LocalDate start = max(rs.getDate("startdate").toLocalDate(), from);
+            LocalDate end = min(rs.getDate("enddate").toLocalDate(), to);
+            int leasedCars = rs.getInt("leasedcars");
+            BigDecimal revenue = rs.getBigDecimal("revenue");
+            for (LocalDate day = start; day.isBefore(end); day = day.plusDays(1)) {
+                days.computeIfAbsent(day, d -> new Day()).add(leasedCars, revenue);
+            }
+        }, Date.valueOf(to), Date.valueOf(from));
+        jdbc.query("SELECT day, leasedcars, revenue FROM daily_occupancy WHERE day >= ? AND day < ?",
+                (RowCallbackHandler) rs -> days.computeIfAbsent(rs.getDate("day").toLocalDate(), d -> new Day())
+                        .add(rs.getInt("leasedcars"), rs.getBigDecimal("revenue")),
+                Date.valueOf(from), Date.valueOf(to));
+        List<DailyOccupancy> occupancy = new ArrayList<>((int) ChronoUnit.DAYS.between(from, to));
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            Day stored = days.get(day);
+            occupancy.add(stored != null ? new DailyOccupancy(day, stored.leasedCars, stored.revenue)
+                    : new DailyOccupancy(day, 0, BigDecimal.ZERO));
+        }
+        return occupancy;
+    }
+
+    /**
+     * Fold the changes into the rows of their days and delete them. Must run in
+     * a transaction, leases can not be written until it ends.
+     * @return number of days changed
+     */
+    static int compact(JdbcTemplate jdbc) {
+        jdbc.execute("LOCK TABLE occupancy_changes IN EXCLUSIVE MODE");
+        Map<LocalDate, Day> days = new TreeMap<>();
+        jdbc.query("SELECT startdate, enddate, leasedcars, revenue FROM occupancy_changes", (RowCallbackHandler) rs -> {
+            LocalDate end = rs.getDate("enddate").toLocalDate();
+            int leasedCars = rs.getInt("leasedcars");
+            BigDecimal revenue = rs.getBigDecimal("revenue");
+            for (LocalDate day = rs.getDate("startdate").toLocalDate(); day.isBefore(end); day = day.plusDays(1)) {
+                days.computeIfAbsent(day, d -> new Day()).add(leasedCars, revenue);
+            }
+        });
+        if (days.isEmpty()) return 0;
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (Map.Entry<LocalDate, Day> day : days.entrySet()) {
+            batch.add(new Object[]{day.getValue().leasedCars, day.getValue().revenue, Date.valueOf(day.getKey())});
+            if (batch.size() == BATCH_SIZE) {
+                addToDays(jdbc, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            addToDays(jdbc, batch);
+        }
+        jdbc.update("DELETE FROM occupancy_changes");
+        return days.size();
+    }
+
+    /**
+     * Add changes to the rows of their days, creating rows of days without one
+     */
+    private static void addToDays(JdbcTemplate jdbc, List<Object[]> changes) {
+        int[] updated = jdbc.batchUpdate("UPDATE daily_occupancy SET leasedcars = leasedcars + ?, revenue = revenue + ? " +
+                "WHERE day = ?", changes);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                Object[] change = changes.get(i);
+                missing.add(new Object[]{change[2], change[0], change[1]});
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO daily_occupancy (day, leasedcars, revenue) VALUES (?, ?, ?)", missing);
+        }
+    }
+
+    /**
+     * Compute the table again from all leases in one pass over them, dropping
+     * the changes. Must run in a transaction, leases can not be written until it ends.
+     * @return number of days with a lease
+     */
+    static int rebuild(JdbcTemplate jdbc, JdbcTemplate streamingJdbc) {
+        jdbc.execute("LOCK TABLE leases IN SHARE MODE");
+        jdbc.execute("LOCK TABLE occupancy_changes IN EXCLUSIVE MODE");
+        jdbc.update("DELETE FROM occupancy_changes");
+        return count(jdbc, streamingJdbc);
+    }
+
+    /**
+     * Count all leases of the database in table DAILY_OCCUPANCY, used by {@link project.SchemaMigration}
+     * when it creates the table. Must run in a transaction, leases can not be written until it ends.
+     * @return number of days with a lease
+     */
+    public static int count(DataSource dataSource) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("LOCK TABLE leases IN SHARE MODE");
+        return count(jdbc, Streaming.template(dataSource));
+    }
+
+    private static int count(JdbcTemplate jdbc, JdbcTemplate streamingJdbc) {
+        jdbc.execute("LOCK TABLE daily_occupancy IN EXCLUSIVE MODE");
+        Map<LocalDate, Day> days = new TreeMap<>();
+        streamingJdbc.query("SELECT startdate, enddate, price FROM leases", (RowCallbackHandler) rs -> {
+            LocalDate end = rs.getDate("enddate").toLocalDate();
+            BigDecimal price = rs.getBigDecimal("price");
+            for (LocalDate day = rs.getDate("startdate").toLocalDate(); day.isBefore(end); day = day.plusDays(1)) {
+                days.computeIfAbsent(day, d -> new Day()).add(1, price);
+            }
+        });
+        jdbc.update("DELETE FROM daily_occupancy");
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (Map.Entry<LocalDate, Day> day : days.entrySet()) {
+            batch.add(new Object[]{Date.valueOf(day.getKey()), day.getValue().leasedCars, day.getValue().revenue});
+            if (batch.size() == BATCH_SIZE) {
+                jdbc.batchUpdate("INSERT INTO daily_occupancy (day, leasedcars, revenue) VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO daily_occupancy (day, leasedcars, revenue) VALUES (?, ?, ?)", batch);
+        }
+        return days.size();
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static final class Day {
+        private int leasedCars;
+        private BigDecimal revenue = BigDecimal.ZERO;
+
+        void add(int cars, BigDecimal price) {
+            leasedCars += cars;
+            revenue = revenue.add(price);
+        }
+    }
+}
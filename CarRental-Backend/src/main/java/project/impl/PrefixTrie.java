@@ -0,0 +1,210 @@
+package project.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Radix trie of tokens, each token mapped to the set of slots it occurs in.
+ * Edges are labelled by whole substrings, so a node exists only where tokens
+ * branch or end. Not thread safe.
+ * @author Daniel Jurca
+ */
+final class PrefixTrie {
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+
+    /**
+     * Receives slots of tokens starting with searched prefix
+     */
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * @param exact - the token equals the prefix
+         * @return false to stop the search
+         */
+        boolean visit(int slot, boolean exact);
+    }
+
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private SortedInts slots;
+        /** number of slots of all tokens in the subtree */
+        private int count;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private int childIndex(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char c = children[middle].label.charAt(0);
+                if (c < first) {
+                    low = middle + 1;
+                } else if (c > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        private void insertChild(int index, Node child) {
+            Node[] grown = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(grown, index, grown, index + 1, children.length - index);
+            grown[index] = child;
+            children = grown;
+        }
+
+        private void removeChild(int index) {
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, index);
+            System.arraycopy(children, index + 1, shrunk, index, shrunk.length - index);
+            children = shrunk;
+        }
+    }
+
+    void add(String token, int slot) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (i < token.length()) {
+            path.add(node);
+            int index = node.childIndex(token.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(token.substring(i));
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                break;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, token, i);
+            if (common < child.label.length()) {
+                // split the edge where the token leaves it
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[]{child};
+                middle.count = child.count;
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.slots == null) {
+            node.slots = new SortedInts();
+        }
+        if (node.slots.add(slot)) {
+            node.count++;
+            for (Node ancestor : path) {
+                ancestor.count++;
+            }
+        }
+    }
+
+    void remove(String token, int slot) {
+        List<Node> path = new ArrayList<>();
+        Node parent = null;
+        int indexInParent = -1;
+        Node node = root;
+        int i = 0;
+        while (i < token.length()) {
+            int index = node.childIndex(token.charAt(i));
+            if (index < 0) return;
+            Node child = node.children[index];
+            if (!token.startsWith(child.label, i)) return;
+            path.add(node);
+            parent = node;
+            indexInParent = index;
+            node = child;
+            i += child.label.length();
+        }
+        if (node.slots == null || !node.slots.remove(slot)) return;
+        node.count--;
+        for (Node ancestor : path) {
+            ancestor.count--;
+        }
+        if (node.slots.isEmpty()) {
+            node.slots = null;
+            if (node.children.length == 0 && parent != null) {
+                parent.removeChild(indexInParent);
+            }
+        }
+    }
+
+    /**
+     * @return number of slots of all tokens starting with the prefix, a slot counted once per token
+     */
+    int countPrefix(String prefix) {
+        Cursor cursor = find(prefix);
+        return cursor == null ? 0 : cursor.node.count;
+    }
+
+    /**
+     * Visit slots of all tokens starting with the prefix, shorter tokens first
+     */
+    void visitPrefix(String prefix, Visitor visitor) {
+        Cursor found = find(prefix);
+        if (found == null) return;
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparingInt(cursor -> cursor.length));
+        queue.add(found);
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            SortedInts slots = cursor.node.slots;
+            if (slots != null) {
+                boolean exact = cursor.length == prefix.length();
+                for (int i = 0; i < slots.size(); i++) {
+                    if (!visitor.visit(slots.get(i), exact)) return;
+                }
+            }
+            for (Node child : cursor.node.children) {
+                queue.add(new Cursor(child, cursor.length + child.label.length()));
+            }
+        }
+    }
+
+    /**
+     * @return the highest node whose tokens all start with the prefix, null if there is none
+     */
+    private Cursor find(String prefix) {
+        Node node = root;
+        int length = 0;
+        while (length < prefix.length()) {
+            int index = node.childIndex(prefix.charAt(length));
+            if (index < 0) return null;
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, prefix, length);
+            if (length + common < prefix.length() && common < child.label.length()) return null;
+            node = child;
+            length += child.label.length();
+        }
+        return new Cursor(node, length);
+    }
+
+    private static final class Cursor {
+        private final Node node;
+        private final int length;
+
+        private Cursor(Node node, int length) {
+            this.node = node;
+            this.length = length;
+        }
+    }
+
+    private static int commonPrefix(String label, String token, int from) {
+        int max = Math.min(label.length(), token.length() - from);
+        int i = 0;
+        while (i < max && label.charAt(i) == token.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,406 @@
+package project.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import project.CacheStatistics;
+import project.DailyOccupancy;
+import project.EntityChangeEvent;
+import project.LeaseManager;
+import project.ReportManager;
+import project.UsageReport;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Implementation of reports over leases. A report of a period is computed
+ * in one pass over leases sharing a day with it and kept in memory, changes
+ * of leases are then applied to kept reports, so asking again for the same
+ * period reads nothing from the database. Every kept report holds the share
+ * of each of its leases, so applying a change twice or applying a change
+ * already read from the database has no effect.
+ * <p>
+ * A period is read without holding the monitor of the manager, so that writers
+ * of leases, which apply their changes under it, never wait for a report.
+ * Changes arriving while a period is read are kept with it and applied once
+ * the read ends.
+ * @author Daniel Jurca
+ */
+public class ReportManagerImpl implements ReportManager {
+    private final static Logger log = LoggerFactory.getLogger(ReportManagerImpl.class);
+    private final static SampledLog sampledLog = new SampledLog(log);
+    /** number of periods kept in memory */
+    static final int MAX_PERIODS = 16;
+    /** number of writes of leases after which changes of occupancy are folded into the days */
+    static final int COMPACT_AFTER_WRITES = 1000;
+
+    private final JdbcTemplate jdbc;
+    private final JdbcTemplate streamingJdbc;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate occupancyTransaction;
+    private final Map<DateRange, PeriodUsage> periods = new LinkedHashMap<DateRange, PeriodUsage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DateRange, PeriodUsage> eldest) {
+            if (size() <= MAX_PERIODS) return false;
+            evictions++;
+            return true;
+        }
+    };
+    /** periods being read, guarded by this */
+    private final Map<DateRange, Loading> loading = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    /** writes of leases since changes of occupancy were folded, guarded by this */
+    private int writesSinceCompaction;
+
+    public ReportManagerImpl(DataSource dataSource, LeaseManager leaseManager) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc = Streaming.template(dataSource);
+        this.transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.occupancyTransaction = new TransactionTemplate(transaction.getTransactionManager());
+        occupancyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        occupancyTransaction.setReadOnly(true);
+        leaseManager.addChangeListener(this::leaseChanged);
+        // a new car changes the fleet, leases of deleted car or customer are deleted by cascade
+        leaseManager.getCarManager().addChangeListener(event -> {
+            if (event.getType() != EntityChangeEvent.Type.UPDATED) forgetPeriods();
+        });
+        leaseManager.getCustomerManager().addChangeListener(event -> {
+            if (event.getType() == EntityChangeEvent.Type.DELETED) forgetPeriods();
+        });
+    }
+
+    public Map<Long, UsageReport> reportByCar(LocalDate from, LocalDate to) {
+        sampledLog.debug("reportByCar from={} to={}", from, to);
+        PeriodUsage usage = usage(from, to);
+        synchronized (this) {
+            return usage.report(usage.byCar, totals -> usage.days);
+        }
+    }
+
+    public Map<Long, UsageReport> reportByCustomer(LocalDate from, LocalDate to) {
+        sampledLog.debug("reportByCustomer from={} to={}", from, to);
+        PeriodUsage usage = usage(from, to);
+        synchronized (this) {
+            return usage.report(usage.byCustomer, totals -> usage.fleetDays());
+        }
+    }
+
+    public Map<YearMonth, UsageReport> reportByMonth(LocalDate from, LocalDate to) {
+        sampledLog.debug("reportByMonth from={} to={}", from, to);
+        PeriodUsage usage = usage(from, to);
+        synchronized (this) {
+            return usage.report(usage.byMonth, totals -> usage.byCar.size() * totals.availableDays);
+        }
+    }
+
+    public UsageReport reportFleet(LocalDate from, LocalDate to) {
+        sampledLog.debug("reportFleet from={} to={}", from, to);
+        PeriodUsage usage = usage(from, to);
+        synchronized (this) {
+            return usage.fleet.report(usage.fleetDays());
+        }
+    }
+
+    public List<DailyOccupancy> findOccupancy(LocalDate from, LocalDate to) {
+        sampledLog.debug("findOccupancy from={} to={}", from, to);
+        checkPeriod(from, to);
+        boolean compact;
+        synchronized (this) {
+            compact = writesSinceCompaction >= COMPACT_AFTER_WRITES;
+        }
+        if (compact) compactOccupancy();
+        return occupancyTransaction.execute(status -> OccupancyTable.find(jdbc, from, to));
+    }
+
+    public int compactOccupancy() {
+        synchronized (this) {
+            writesSinceCompaction = 0;
+        }
+        int days = transaction.execute(status -> OccupancyTable.compact(jdbc));
+        if (log.isDebugEnabled()) log.debug("compactOccupancy days={}", days);
+        return days;
+    }
+
+    public int rebuildOccupancy() {
+        synchronized (this) {
+            writesSinceCompaction = 0;
+        }
+        int days = transaction.execute(status -> OccupancyTable.rebuild(jdbc, streamingJdbc));
+        if (log.isDebugEnabled()) log.debug("rebuildOccupancy days={}", days);
+        return days;
+    }
+
+    public synchronized CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(hits, misses, evictions, periods.size(), MAX_PERIODS);
+    }
+
+    /**
+     * Report of the period, read from the database when it is not kept yet. The period
+     * is read outside the monitor, a second caller asking for it meanwhile waits for
+     * the same read.
+     */
+    private PeriodUsage usage(LocalDate from, LocalDate to) {
+        checkPeriod(from, to);
+        DateRange range = new DateRange(from, to);
+        Loading load;
+        boolean reading = false;
+        synchronized (this) {
+            PeriodUsage usage = periods.get(range);
+            if (usage != null) {
+                hits++;
+                return usage;
+            }
+            load = loading.get(range);
+            if (load == null) {
+                misses++;
+                load = new Loading();
+                loading.put(range, load);
+                reading = true;
+            }
+        }
+        if (!reading) {
+            try {
+                return load.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        PeriodUsage loaded;
+        try {
+            loaded = read(range);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(range);
+            }
+            load.result.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (this) {
+            loading.remove(range);
+            load.changes.forEach(loaded::put);
+            if (!load.forgotten) periods.put(range, loaded);
+        }
+        load.result.complete(loaded);
+        return loaded;
+    }
+
+    /**
+     * Leases of the period and cars of the fleet, read from the database
+     */
+    private PeriodUsage read(DateRange range) {
+        LocalDate from = range.from;
+        LocalDate to = range.to;
+        log.debug("readLeases from={} to={}", from, to);
+        PeriodUsage loaded = new PeriodUsage(range);
+        jdbc.query("SELECT id FROM cars", (RowCallbackHandler) rs -> loaded.byCar.put(rs.getLong("id"), new Totals(0)));
+        streamingJdbc.query("SELECT id, leasedcarid, customerid, startdate, enddate, price FROM leases " +
+                        "WHERE enddate > ? AND startdate < ?",
+                (RowCallbackHandler) rs -> loaded.put(rs.getLong("id"), range.share(rs.getLong("leasedcarid"),
+                        rs.getLong("customerid"), rs.getDate("startdate").toLocalDate(),
+                        rs.getDate("enddate").toLocalDate(), rs.getBigDecimal("price"))),
+                Date.valueOf(from), Date.valueOf(to));
+        return loaded;
+    }
+
+    private static void checkPeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Period can not be null!");
+        }
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("End of period must be after its start!");
+        }
+    }
+
+    private synchronized void leaseChanged(EntityChangeEvent<Lease> event) {
+        Lease lease = event.getEntity();
+        writesSinceCompaction++;
+        for (PeriodUsage usage : periods.values()) {
+            usage.put(lease.getId(), share(usage.range, event));
+        }
+        for (Map.Entry<DateRange, Loading> load : loading.entrySet()) {
+            load.getValue().changes.put(lease.getId(), share(load.getKey(), event));
+        }
+    }
+
+    private static LeaseShare share(DateRange range, EntityChangeEvent<Lease> event) {
+        Lease lease = event.getEntity();
+        return event.getType() == EntityChangeEvent.Type.DELETED ? null
+                : range.share(lease.getLeasedCar().getId(), lease.getCustomer().getId(),
+                lease.getStart(), lease.getEnd(), lease.getPrice());
+    }
+
+    private synchronized void forgetPeriods() {
+        periods.clear();
+        // periods being read may miss the change of the fleet, they are returned but not kept
+        loading.values().forEach(load -> load.forgotten = true);
+    }
+
+    /**
+     * Read of a period in progress, guarded by the manager
+     */
+    private static final class Loading {
+        private final CompletableFuture<PeriodUsage> result = new CompletableFuture<>();
+        /** latest share of every lease changed during the read, null for a deleted lease */
+        private final Map<Long, LeaseShare> changes = new HashMap<>();
+        private boolean forgotten;
+    }
+
+    /**
+     * Days from the first day of a period to the day after its last day
+     */
+    private static final class DateRange {
+        private final LocalDate from;
+        private final LocalDate to;
+
+        DateRange(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return part of the lease within the range, null when it shares no day with the range
+         */
+        LeaseShare share(long carId, long customerId, LocalDate start, LocalDate end, BigDecimal price) {
+            LocalDate shareStart = start.isBefore(from) ? from : start;
+            LocalDate shareEnd = end.isAfter(to) ? to : end;
+            if (!shareEnd.isAfter(shareStart)) return null;
+            return new LeaseShare(carId, customerId, shareStart, shareEnd, price);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DateRange)) return false;
+            DateRange range = (DateRange) o;
+            return from.equals(range.from) && to.equals(range.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * from.hashCode() + to.hashCode();
+        }
+    }
+
+    /**
+     * Days of one lease within a period
+     */
+    private static final class LeaseShare {
+        private final long carId;
+        private final long customerId;
+        private final LocalDate start;
+        private final LocalDate end;
+        private final BigDecimal price;
+
+        LeaseShare(long carId, long customerId, LocalDate start, LocalDate end, BigDecimal price) {
+            this.carId = carId;
+            this.customerId = customerId;
+            this.start = start;
+            this.end = end;
+            this.price = price;
+        }
+    }
+
+    /**
+     * Running sums of leases, not thread safe
+     */
+    private static final class Totals {
+        private final long availableDays;
+        private int leases;
+        private long leasedDays;
+        private BigDecimal revenue = BigDecimal.ZERO;
+
+        Totals(long availableDays) {
+            this.availableDays = availableDays;
+        }
+
+        void add(int sign, long days, BigDecimal price) {
+            leases += sign;
+            leasedDays += sign * days;
+            BigDecimal amount = price.multiply(BigDecimal.valueOf(days));
+            revenue = sign > 0 ? revenue.add(amount) : revenue.subtract(amount);
+        }
+
+        UsageReport report(long availableDays) {
+            return new UsageReport(leases, leasedDays, revenue, availableDays);
+        }
+    }
+
+    /**
+     * Sums of leases of one period by car, customer and month, guarded by the manager
+     */
+    private static final class PeriodUsage {
+        private final DateRange range;
+        private final long days;
+        private final Map<Long, LeaseShare> leases = new HashMap<>();
+        private final Map<Long, Totals> byCar = new HashMap<>();
+        private final Map<Long, Totals> byCustomer = new HashMap<>();
+        private final Map<YearMonth, Totals> byMonth = new HashMap<>();
+        private final Totals fleet = new Totals(0);
+
+        PeriodUsage(DateRange range) {
+            this.range = range;
+            this.days = ChronoUnit.DAYS.between(range.from, range.to);
+            for (YearMonth month = YearMonth.from(range.from); month.atDay(1).isBefore(range.to); month = month.plusMonths(1)) {
+                LocalDate start = month.atDay(1).isBefore(range.from) ? range.from : month.atDay(1);
+                LocalDate end = month.plusMonths(1).atDay(1).isAfter(range.to) ? range.to : month.plusMonths(1).atDay(1);
+                byMonth.put(month, new Totals(ChronoUnit.DAYS.between(start, end)));
+            }
+        }
+
+        long fleetDays() {
+            return byCar.size() * days;
+        }
+
+        /**
+         * Replace share of the lease, null removes it
+         */
+        void put(long leaseId, LeaseShare share) {
+            LeaseShare previous = share == null ? leases.remove(leaseId) : leases.put(leaseId, share);
+            if (previous != null) add(previous, -1);
+            if (share != null) add(share, 1);
+        }
+
+        private void add(LeaseShare share, int sign) {
+            long shareDays = ChronoUnit.DAYS.between(share.start, share.end);
+            fleet.add(sign, shareDays, share.price);
+            byCar.computeIfAbsent(share.carId, id -> new Totals(0)).add(sign, shareDays, share.price);
+            Totals customer = byCustomer.computeIfAbsent(share.customerId, id -> new Totals(0));
+            customer.add(sign, shareDays, share.price);
+            if (customer.leases == 0) byCustomer.remove(share.customerId);
+
+            LocalDate start = share.start;
+            while (start.isBefore(share.end)) {
+                YearMonth month = YearMonth.from(start);
+                LocalDate monthEnd = month.plusMonths(1).atDay(1);
+                LocalDate end = monthEnd.isAfter(share.end) ? share.end : monthEnd;
+                byMonth.get(month).add(sign, ChronoUnit.DAYS.between(start, end), share.price);
+                start = end;
+            }
+        }
+
+        <K extends Comparable<K>> Map<K, UsageReport> report(Map<K, Totals> totals, Function<Totals, Long> availableDays) {
+            Map<K, UsageReport> report = new TreeMap<>();
+            totals.forEach((key, value) -> report.put(key, value.report(availableDays.apply(value))));
+            return report;
+        }
+    }
+}
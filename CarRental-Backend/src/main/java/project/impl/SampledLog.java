@@ -0,0 +1,40 @@
+package project.impl;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Debug log of frequent events of the managers, such as reads by id and pages, which
+ * logs about one of every {@link #RATE} events. The level is checked first, so with
+ * debug off an event costs one check and allocates nothing; the overloads with fixed
+ * arguments avoid the array of varargs. Messages are written as {@code event key={}}
+ * so that sampled lines can still be counted by event.
+ * <p>
+ * The rate is set by system property {@code carRental.logSampleRate}, 1 logs every event.
+ * @author Daniel Jurca
+ */
+final class SampledLog {
+    static final int RATE = Math.max(1, Integer.getInteger("carRental.logSampleRate", 100));
+
+    private final Logger log;
+
+    SampledLog(Logger log) {
+        this.log = log;
+    }
+
+    /**
+     * @return whether this event is logged, decided independently in every thread without contention
+     */
+    boolean isEnabled() {
+        return log.isDebugEnabled() && (RATE == 1 || ThreadLocalRandom.current().nextInt(RATE) == 0);
+    }
+
+    void debug(String format, Object arg) {
+        if (isEnabled()) log.debug(format, arg);
+    }
+
+    void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled()) log.debug(format, arg1, arg2);
+    }
+}
@@ -0,0 +1,80 @@
+package project.impl;
+
+import java.util.Arrays;
+
+/**
+ * Growable set of ints kept in a sorted array, compact for the postings of
+ * an index and searchable by bisection. Not thread safe.
+ * @author Daniel Jurca
+ */
+final class SortedInts {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values = EMPTY;
+    private int size;
+
+    /**
+     * @return false if the value was already present
+     */
+    boolean add(int value) {
+        int index;
+        if (size == 0 || values[size - 1] < value) {
+            // values mostly come in ascending order
+            index = size;
+        } else {
+            index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) return false;
+            index = -index - 1;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return false if the value was not present
+     */
+    boolean remove(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) return false;
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Galloping search for ascending values, cheap when the value is near the start
+     * @return index of the first value not less than given value, not before from
+     */
+    int lowerBound(int value, int from) {
+        int step = 1;
+        int high = from;
+        while (high < size && values[high] < value) {
+            from = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int index = Arrays.binarySearch(values, from, Math.min(high, size), value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,48 @@
+package project.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Helpers handing rows of a query to a consumer one by one. The result set
+ * is read forward only in chunks of {@link #FETCH_SIZE} rows, so memory used
+ * does not depend on number of rows.
+ * @author Daniel Jurca
+ */
+final class Streaming {
+    static final int FETCH_SIZE = 500;
+
+    private Streaming() {
+    }
+
+    static JdbcTemplate template(DataSource dataSource) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.setFetchSize(FETCH_SIZE);
+        return jdbc;
+    }
+
+    /**
+     * Exception thrown by the consumer propagates out of the query, which closes
+     * the result set and releases the connection right away.
+     */
+    static <T> RowCallbackHandler handler(RowMapper<T> mapper, Consumer<T> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer is null!");
+        }
+        return new RowCallbackHandler() {
+            // ResultSet.getRow() is not supported on forward only cursors
+            private int rowNum;
+
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                consumer.accept(mapper.mapRow(rs, rowNum++));
+            }
+        };
+    }
+}
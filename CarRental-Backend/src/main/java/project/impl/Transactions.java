@@ -0,0 +1,50 @@
+package project.impl;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers keeping in-memory state of the managers in line with the transaction
+ * the managers' JdbcTemplate takes part in.
+ * @author Daniel Jurca
+ */
+final class Transactions {
+
+    private Transactions() {
+    }
+
+    /**
+     * Run the action if the current transaction rolls back. Does nothing when
+     * there is no Spring managed transaction, statements are auto-committed then.
+     */
+    static void onRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == TransactionSynchronization.STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Run the action once the current transaction commits, or right away when
+     * there is no Spring managed transaction.
+     */
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
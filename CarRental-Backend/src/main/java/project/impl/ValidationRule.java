@@ -0,0 +1,20 @@
+package project.impl;
+
+/**
+ * Rule an entity has to satisfy before it is stored. A rule is satisfied by
+ * null properties it does not check for null, so rules can be tested independently.
+ * @author Daniel Jurca
+ */
+public interface ValidationRule<T> {
+
+    /**
+     * @param entity - entity to check, not null
+     * @return true when the entity satisfies the rule
+     */
+    boolean isSatisfiedBy(T entity);
+
+    /**
+     * @return message explaining the rule when it is broken
+     */
+    String getMessage();
+}
@@ -0,0 +1,129 @@
+package project.impl;
+
+/**
+ * Validators of entities and their rules, created once and shared by the managers
+ * @author Daniel Jurca
+ */
+public final class Validators {
+    public static final EntityValidator<Customer> CUSTOMER = new EntityValidator<>("Customer", CustomerRule.values());
+    public static final EntityValidator<Car> CAR = new EntityValidator<>("Car", CarRule.values());
+    public static final EntityValidator<Lease> LEASE = new EntityValidator<>("Lease", LeaseRule.values());
+
+    private Validators() {
+    }
+
+    public enum CustomerRule implements ValidationRule<Customer> {
+        PROPERTIES_NOT_NULL("Some of the properties are null!") {
+            @Override
+            public boolean isSatisfiedBy(Customer customer) {
+                return customer.getFullName() != null && customer.getAddress() != null
+                        && customer.getPhoneNumber() != null;
+            }
+        },
+        PROPERTIES_NOT_EMPTY("Some of the properties are empty!") {
+            @Override
+            public boolean isSatisfiedBy(Customer customer) {
+                return !isEmpty(customer.getFullName()) && !isEmpty(customer.getAddress())
+                        && !isEmpty(customer.getPhoneNumber());
+            }
+        },
+        PHONE_NUMBER_DIGITS("Wrong format of phone number") {
+            @Override
+            public boolean isSatisfiedBy(Customer customer) {
+                String phone = customer.getPhoneNumber();
+                return phone == null || phone.isEmpty() || isDigits(phone);
+            }
+        };
+
+        private final String message;
+
+        CustomerRule(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public enum CarRule implements ValidationRule<Car> {
+        PROPERTIES_NOT_NULL("Some of the properties are null!") {
+            @Override
+            public boolean isSatisfiedBy(Car car) {
+                return car.getCarBrand() != null && car.getDescription() != null && car.getDailyPrice() != null;
+            }
+        },
+        PRICE_NOT_NEGATIVE("Price can't be lower than 0!") {
+            @Override
+            public boolean isSatisfiedBy(Car car) {
+                return car.getDailyPrice() == null || car.getDailyPrice().signum() >= 0;
+            }
+        },
+        BRAND_NOT_EMPTY("Car Brand can't be empty!") {
+            @Override
+            public boolean isSatisfiedBy(Car car) {
+                return !isEmpty(car.getCarBrand());
+            }
+        };
+
+        private final String message;
+
+        CarRule(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    public enum LeaseRule implements ValidationRule<Lease> {
+        PROPERTIES_NOT_NULL("Some of the properties are null!") {
+            @Override
+            public boolean isSatisfiedBy(Lease lease) {
+                return lease.getCustomer() != null && lease.getLeasedCar() != null && lease.getPrice() != null
+                        && lease.getStart() != null && lease.getEnd() != null;
+            }
+        },
+        PRICE_NOT_NEGATIVE("Price can not be negative!") {
+            @Override
+            public boolean isSatisfiedBy(Lease lease) {
+                return lease.getPrice() == null || lease.getPrice().signum() >= 0;
+            }
+        },
+        END_NOT_BEFORE_START("End of lease is before start!") {
+            @Override
+            public boolean isSatisfiedBy(Lease lease) {
+                return lease.getStart() == null || lease.getEnd() == null || !lease.getEnd().isBefore(lease.getStart());
+            }
+        };
+
+        private final String message;
+
+        LeaseRule(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * @return false for null, which is reported by another rule
+     */
+    private static boolean isEmpty(String value) {
+        return value != null && value.isEmpty();
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+-- overlap check of leases of one car when writing a lease; not in version 1,
+-- which is the schema of createTables.sql that existing databases are taken as
+CREATE INDEX "LEASES_CAR_PERIOD" ON "LEASES" ("LEASEDCARID", "STARTDATE", "ENDDATE");
+
+-- findCustomerByName
+CREATE INDEX "CUSTOMERS_FULLNAME" ON "CUSTOMERS" ("FULLNAME");
+
+-- leases running on a date, most leases are finished so end date goes first;
+-- the car id makes the index cover findLeasedCars and findUnleasedCars
+CREATE INDEX "LEASES_END_START" ON "LEASES" ("ENDDATE", "STARTDATE", "LEASEDCARID");
@@ -0,0 +1,31 @@
+-- number of cars leased and their revenue on every day with a lease;
+-- rows of days are created by LeaseManagerImpl before a lease is written,
+-- the triggers then count the lease in the same transaction, including
+-- leases deleted by cascade with their car or customer
+CREATE TABLE "DAILY_OCCUPANCY" (
+  "DAY" DATE PRIMARY KEY,
+  "LEASEDCARS" INT NOT NULL,
+  "REVENUE" DECIMAL(31,0) NOT NULL
+);
+
+CREATE TRIGGER "LEASES_INSERTED_OCCUPANCY" AFTER INSERT ON "LEASES"
+REFERENCING NEW AS NEWROW FOR EACH ROW
+UPDATE "DAILY_OCCUPANCY" SET "LEASEDCARS" = "LEASEDCARS" + 1, "REVENUE" = "REVENUE" + NEWROW."PRICE"
+WHERE "DAY" >= NEWROW."STARTDATE" AND "DAY" < NEWROW."ENDDATE";
+
+CREATE TRIGGER "LEASES_DELETED_OCCUPANCY" AFTER DELETE ON "LEASES"
+REFERENCING OLD AS OLDROW FOR EACH ROW
+UPDATE "DAILY_OCCUPANCY" SET "LEASEDCARS" = "LEASEDCARS" - 1, "REVENUE" = "REVENUE" - OLDROW."PRICE"
+WHERE "DAY" >= OLDROW."STARTDATE" AND "DAY" < OLDROW."ENDDATE";
+
+-- fired by every update, Derby fails to read the old and new rows
+-- in triggers limited to columns by UPDATE OF
+CREATE TRIGGER "LEASES_UPDATED_OLD_OCCUPANCY" AFTER UPDATE ON "LEASES"
+REFERENCING OLD AS OLDROW FOR EACH ROW
+UPDATE "DAILY_OCCUPANCY" SET "LEASEDCARS" = "LEASEDCARS" - 1, "REVENUE" = "REVENUE" - OLDROW."PRICE"
+WHERE "DAY" >= OLDROW."STARTDATE" AND "DAY" < OLDROW."ENDDATE";
+
+CREATE TRIGGER "LEASES_UPDATED_NEW_OCCUPANCY" AFTER UPDATE ON "LEASES"
+REFERENCING NEW AS NEWROW FOR EACH ROW
+UPDATE "DAILY_OCCUPANCY" SET "LEASEDCARS" = "LEASEDCARS" + 1, "REVENUE" = "REVENUE" + NEWROW."PRICE"
+WHERE "DAY" >= NEWROW."STARTDATE" AND "DAY" < NEWROW."ENDDATE";
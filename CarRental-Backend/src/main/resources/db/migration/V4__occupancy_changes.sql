@@ -0,0 +1,38 @@
+-- changes of occupancy written by leases and not yet folded into DAILY_OCCUPANCY;
+-- the triggers only insert a row of the changed period, so transactions writing
+-- leases of different cars sharing days do not lock each other's days. Occupancy
+-- of a day is its row of DAILY_OCCUPANCY plus the changes of periods containing
+-- it, OccupancyTable folds the changes into the days from time to time
+CREATE TABLE "OCCUPANCY_CHANGES" (
+  "STARTDATE" DATE NOT NULL,
+  "ENDDATE" DATE NOT NULL,
+  "LEASEDCARS" INT NOT NULL,
+  "REVENUE" DECIMAL(31,0) NOT NULL
+);
+
+DROP TRIGGER "LEASES_INSERTED_OCCUPANCY";
+DROP TRIGGER "LEASES_DELETED_OCCUPANCY";
+DROP TRIGGER "LEASES_UPDATED_OLD_OCCUPANCY";
+DROP TRIGGER "LEASES_UPDATED_NEW_OCCUPANCY";
+
+CREATE TRIGGER "LEASES_INSERTED_OCCUPANCY" AFTER INSERT ON "LEASES"
+REFERENCING NEW AS NEWROW FOR EACH ROW
+INSERT INTO "OCCUPANCY_CHANGES" ("STARTDATE", "ENDDATE", "LEASEDCARS", "REVENUE")
+VALUES (NEWROW."STARTDATE", NEWROW."ENDDATE", 1, NEWROW."PRICE");
+
+CREATE TRIGGER "LEASES_DELETED_OCCUPANCY" AFTER DELETE ON "LEASES"
+REFERENCING OLD AS OLDROW FOR EACH ROW
+INSERT INTO "OCCUPANCY_CHANGES" ("STARTDATE", "ENDDATE", "LEASEDCARS", "REVENUE")
+VALUES (OLDROW."STARTDATE", OLDROW."ENDDATE", -1, -OLDROW."PRICE");
+
+-- fired by every update, Derby fails to read the old and new rows
+-- in triggers limited to columns by UPDATE OF
+CREATE TRIGGER "LEASES_UPDATED_OLD_OCCUPANCY" AFTER UPDATE ON "LEASES"
+REFERENCING OLD AS OLDROW FOR EACH ROW
+INSERT INTO "OCCUPANCY_CHANGES" ("STARTDATE", "ENDDATE", "LEASEDCARS", "REVENUE")
+VALUES (OLDROW."STARTDATE", OLDROW."ENDDATE", -1, -OLDROW."PRICE");
+
+CREATE TRIGGER "LEASES_UPDATED_NEW_OCCUPANCY" AFTER UPDATE ON "LEASES"
+REFERENCING NEW AS NEWROW FOR EACH ROW
+INSERT INTO "OCCUPANCY_CHANGES" ("STARTDATE", "ENDDATE", "LEASEDCARS", "REVENUE")
+VALUES (NEWROW."STARTDATE", NEWROW."ENDDATE", 1, NEWROW."PRICE");
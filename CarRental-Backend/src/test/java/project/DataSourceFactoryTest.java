@@ -0,0 +1,89 @@
+package project;
+
+import org.apache.derby.jdbc.EmbeddedDriver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.prefs.Preferences;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for pooled data source factory
+ * @author Daniel Jurca
+ */
+public class DataSourceFactoryTest {
+    private Preferences preferences;
+    private PooledDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        preferences = Preferences.userRoot().node("carrental-test-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        preferences.removeNode();
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void defaultsWhenPreferencesAreMissing() {
+        DataSourceFactory factory = DataSourceFactory.fromPreferences(preferences);
+
+        assertThat(factory.getPoolSize()).isEqualTo(DataSourceFactory.DEFAULT_POOL_SIZE);
+        assertThat(factory.getIdleTimeoutMillis()).isEqualTo(DataSourceFactory.DEFAULT_IDLE_TIMEOUT);
+        assertThat(factory.getValidationQuery()).isEqualTo(DataSourceFactory.DEFAULT_VALIDATION_QUERY);
+        assertThat(factory.getStatementCacheSize()).isEqualTo(DataSourceFactory.DEFAULT_STATEMENT_CACHE_SIZE);
+        assertThat(factory.getInitialSize()).isEqualTo(DataSourceFactory.DEFAULT_INITIAL_SIZE);
+    }
+
+    @Test
+    public void settingsFromPreferences() {
+        preferences.putInt(DataSourceFactory.POOL_SIZE, 3);
+        preferences.putLong(DataSourceFactory.IDLE_TIMEOUT, 1000);
+        preferences.put(DataSourceFactory.VALIDATION_QUERY, "SELECT 1 FROM SYSIBM.SYSDUMMY1");
+        preferences.putInt(DataSourceFactory.STATEMENT_CACHE_SIZE, 10);
+
+        dataSource = DataSourceFactory.fromPreferences(preferences)
+                .createNetworkDataSource("localhost", 1527, "CarRentalDatabase");
+
+        assertThat(dataSource.getUrl()).isEqualTo("jdbc:derby://localhost:1527/CarRentalDatabase");
+        assertThat(dataSource.getMaxTotal()).isEqualTo(3);
+        assertThat(dataSource.getMinEvictableIdleTimeMillis()).isEqualTo(1000);
+        assertThat(dataSource.getValidationQuery()).isEqualTo("SELECT 1 FROM SYSIBM.SYSDUMMY1");
+        assertThat(dataSource.isPoolPreparedStatements()).isTrue();
+        assertThat(dataSource.getMaxOpenPreparedStatements()).isEqualTo(10);
+    }
+
+    @Test
+    public void embeddedDatabaseOpensInitialConnections() throws Exception {
+        preferences.putInt(DataSourceFactory.INITIAL_SIZE, 3);
+        dataSource = DataSourceFactory.fromPreferences(preferences).createEmbeddedDataSource("memory:EmbeddedTestDB");
+
+        assertThat(dataSource.getUrl()).isEqualTo("jdbc:derby:memory:EmbeddedTestDB;create=true");
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(dataSource.getStatistics().getIdle()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void statisticsOfPool() throws Exception {
+        dataSource = DataSourceFactory.fromPreferences(preferences)
+                .createDataSource(EmbeddedDriver.class.getName(), "jdbc:derby:memory:PoolTestDB;create=true");
+        assertThat(dataSource.getStatistics().getActive()).isZero();
+
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            assertThat(dataSource.getStatistics().getActive()).isEqualTo(2);
+        }
+        PoolStatistics statistics = dataSource.getStatistics();
+        assertThat(statistics.getActive()).isZero();
+        assertThat(statistics.getIdle()).isEqualTo(2);
+        assertThat(statistics.getBorrowed()).isEqualTo(2);
+        assertThat(statistics.getMaxTotal()).isEqualTo(DataSourceFactory.DEFAULT_POOL_SIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package project;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of latency histogram and timer
+ * @author Daniel Jurca
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverValuesWithoutGaps() {
+        for (int index = 1; index <= LatencyHistogram.index((1L << 40) - 1); index++) {
+            assertThat(LatencyHistogram.lowestValue(index)).isEqualTo(LatencyHistogram.highestValue(index - 1) + 1);
+        }
+    }
+
+    @Test
+    public void valuesFallIntoTheirBucket() {
+        for (long value : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789, (1L << 40) - 1}) {
+            int index = LatencyHistogram.index(value);
+            assertThat(value).isBetween(LatencyHistogram.lowestValue(index), LatencyHistogram.highestValue(index));
+            assertThat(LatencyHistogram.highestValue(index) - LatencyHistogram.lowestValue(index))
+                    .isLessThanOrEqualTo(value / 16);
+        }
+    }
+
+    @Test
+    public void percentilesOfRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        long[] counts = histogram.snapshot();
+
+        assertThat(LatencyHistogram.valueAt(counts, 0.5)).isBetween(500_000L, 500_000L + 500_000 / 16);
+        assertThat(LatencyHistogram.valueAt(counts, 0.99)).isBetween(990_000L, 990_000L + 990_000 / 16);
+        assertThat(LatencyHistogram.valueAt(counts, 1)).isBetween(1_000_000L, 1_000_000L + 1_000_000 / 16);
+        assertThat(LatencyHistogram.valueAt(new LatencyHistogram().snapshot(), 0.5)).isZero();
+    }
+
+    @Test
+    public void timerCountsCallsAndErrors() {
+        LatencyTimer timer = new Metrics().timer("test");
+        timer.record(2000, false);
+        timer.record(4000, true);
+
+        TimerStatistics statistics = timer.getStatistics();
+        assertThat(statistics.getCount()).isEqualTo(2);
+        assertThat(statistics.getErrors()).isEqualTo(1);
+        assertThat(statistics.getMeanNanos()).isEqualTo(3000);
+        assertThat(statistics.getMaxNanos()).isEqualTo(4000);
+    }
+}
@@ -0,0 +1,117 @@
+package project;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests of schema migration
+ * @author Daniel Jurca
+ */
+public class SchemaMigrationTest {
+    private EmbeddedDatabase database;
+    private SchemaMigration migration;
+    private JdbcTemplate jdbc;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        migration = new SchemaMigration(database);
+        jdbc = new JdbcTemplate(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void emptyDatabaseIsMigratedToLatestVersion() {
+        assertThat(migration.currentVersion()).isZero();
+
+        assertThat(migration.migrate()).isEqualTo(4);
+
+        assertThat(migration.currentVersion()).isEqualTo(4);
+        assertThat(indexExists("CUSTOMERS_FULLNAME")).isTrue();
+        assertThat(indexExists("LEASES_END_START")).isTrue();
+        assertThat(indexExists("LEASES_CAR_PERIOD")).isTrue();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class)).isEqualTo(4);
+    }
+
+    @Test
+    public void migrationIsAppliedOnce() {
+        migration.migrate();
+
+        assertThat(new SchemaMigration(database).migrate()).isEqualTo(4);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM schema_version", Integer.class)).isEqualTo(4);
+    }
+
+    @Test
+    public void migrateToTargetVersion() {
+        assertThat(migration.migrate(1)).isEqualTo(1);
+        assertThat(indexExists("CUSTOMERS_FULLNAME")).isFalse();
+        assertThat(indexExists("LEASES_CAR_PERIOD")).isFalse();
+
+        assertThat(migration.migrate()).isEqualTo(4);
+        assertThat(indexExists("CUSTOMERS_FULLNAME")).isTrue();
+    }
+
+    @Test
+    public void unversionedSchemaIsTakenAsVersionOne() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__create_tables.sql")).execute(database);
+        jdbc.update("INSERT INTO customers (fullname, address, phonenumber) VALUES ('Jack Black', 'Minnesota', '602463193')");
+
+        assertThat(migration.migrate()).isEqualTo(4);
+
+        assertThat(jdbc.queryForObject("SELECT description FROM schema_version WHERE version = 1", String.class))
+                .isEqualTo("baseline");
+        assertThat(indexExists("CUSTOMERS_FULLNAME")).isTrue();
+        assertThat(indexExists("LEASES_CAR_PERIOD")).isTrue();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM customers", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    public void existingLeasesAreCountedInOccupancy() {
+        migration.migrate(2);
+        jdbc.update("INSERT INTO cars (carbrand, description, dailyprice) VALUES ('BMW', 'fast', 100)");
+        jdbc.update("INSERT INTO customers (fullname, address, phonenumber) VALUES ('Jack Black', 'Minnesota', '602463193')");
+        jdbc.update("INSERT INTO leases (leasedcarid, customerid, startdate, enddate, price) " +
+                "SELECT c.id, u.id, DATE('2017-03-01'), DATE('2017-03-04'), 300 FROM cars c, customers u");
+
+        assertThat(migration.migrate()).isEqualTo(4);
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM daily_occupancy WHERE leasedcars = 1", Integer.class))
+                .isEqualTo(3);
+        assertThat(jdbc.queryForObject("SELECT SUM(revenue) FROM daily_occupancy", Integer.class)).isEqualTo(900);
+    }
+
+    @Test
+    public void leasesWrittenAfterVersionFourAreRecordedAsChanges() {
+        migration.migrate();
+        jdbc.update("INSERT INTO cars (carbrand, description, dailyprice) VALUES ('BMW', 'fast', 100)");
+        jdbc.update("INSERT INTO customers (fullname, address, phonenumber) VALUES ('Jack Black', 'Minnesota', '602463193')");
+        jdbc.update("INSERT INTO leases (leasedcarid, customerid, startdate, enddate, price) " +
+                "SELECT c.id, u.id, DATE('2017-03-01'), DATE('2017-03-04'), 300 FROM cars c, customers u");
+        jdbc.update("UPDATE leases SET enddate = DATE('2017-03-05')");
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM daily_occupancy", Integer.class)).isZero();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM occupancy_changes", Integer.class)).isEqualTo(3);
+        assertThat(jdbc.queryForObject("SELECT SUM(leasedcars) FROM occupancy_changes", Integer.class)).isEqualTo(1);
+    }
+
+    private boolean indexExists(String name) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM sys.sysconglomerates WHERE conglomeratename = ?",
+                Integer.class, name) > 0;
+    }
+}
@@ -0,0 +1,120 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.SchemaMigration;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests of caching car and customer managers
+ * @author Daniel Jurca
+ */
+public class CachingManagersTest {
+    private EmbeddedDatabase database;
+    private CountingDataSource dataSource;
+    private CachingCarManager carManager;
+    private CachingCustomerManager customerManager;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        dataSource = new CountingDataSource(database);
+        carManager = new CachingCarManager(new CarManagerImpl(dataSource), 2);
+        customerManager = new CachingCustomerManager(new CustomerManagerImpl(dataSource), 2);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private Car newCar(String brand) {
+        Car car = new CarBuilder().carBrand(brand).description("fast").dailyPrice(new BigDecimal(1000)).build();
+        carManager.createCar(car);
+        return car;
+    }
+
+    @Test
+    public void getCarByIdReadsDatabaseOnce() {
+        Car bmw = newCar("BMW");
+        dataSource.reset();
+
+        assertThat(carManager.getCarById(bmw.getId())).isEqualToComparingFieldByField(bmw);
+        assertThat(carManager.getCarById(bmw.getId())).isEqualToComparingFieldByField(bmw);
+
+        assertThat(dataSource.getStatementCount()).isEqualTo(1);
+        assertThat(carManager.getCacheStatistics().getHits()).isEqualTo(1);
+        assertThat(carManager.getCacheStatistics().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachedCarCannotBeChangedByCaller() {
+        Car bmw = newCar("BMW");
+        carManager.getCarById(bmw.getId()).setCarBrand("Trabant");
+
+        assertThat(carManager.getCarById(bmw.getId()).getCarBrand()).isEqualTo("BMW");
+    }
+
+    @Test
+    public void updateCarInvalidatesCache() {
+        Car bmw = newCar("BMW");
+        carManager.getCarById(bmw.getId());
+        bmw.setCarBrand("Audi");
+        carManager.updateCar(bmw);
+
+        assertThat(carManager.getCarById(bmw.getId()).getCarBrand()).isEqualTo("Audi");
+    }
+
+    @Test
+    public void deleteCarInvalidatesCache() {
+        Car bmw = newCar("BMW");
+        carManager.getCarById(bmw.getId());
+        carManager.deleteCar(bmw);
+
+        assertThat(carManager.getCarById(bmw.getId())).isNull();
+    }
+
+    @Test
+    public void leastRecentlyUsedCarIsEvicted() {
+        Car bmw = newCar("BMW");
+        Car audi = newCar("Audi");
+        Car skoda = newCar("Skoda");
+        carManager.getCarById(bmw.getId());
+        carManager.getCarById(audi.getId());
+        carManager.getCarById(bmw.getId());
+        carManager.getCarById(skoda.getId());
+        dataSource.reset();
+
+        carManager.getCarById(bmw.getId());
+        assertThat(dataSource.getStatementCount()).isEqualTo(0);
+        carManager.getCarById(audi.getId());
+        assertThat(dataSource.getStatementCount()).isEqualTo(1);
+        assertThat(carManager.getCacheStatistics().getEvictions()).isEqualTo(2);
+        assertThat(carManager.getCacheStatistics().getSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void updateCustomerInvalidatesCache() {
+        Customer james = new CustomerBuilder().fullName("James Bond").address("tajemna 762 10")
+                .phoneNumber("007007007").build();
+        customerManager.createCustomer(james);
+        customerManager.getCustomerById(james.getId());
+        james.setAddress("London");
+        customerManager.updateCustomer(james);
+
+        assertThat(customerManager.getCustomerById(james.getId())).isEqualToComparingFieldByField(james);
+        assertThat(customerManager.getCustomerById(james.getId()).getAddress()).isEqualTo("London");
+        assertThat(customerManager.getCacheStatistics().getHits()).isEqualTo(1);
+    }
+}
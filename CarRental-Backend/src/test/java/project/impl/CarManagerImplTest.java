@@ -9,9 +9,13 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 import project.CarManager;
+import project.Page;
 import project.exception.IllegalEntityException;
 import project.exception.ValidationException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -117,6 +121,34 @@ public class CarManagerImplTest {
                 .isInstanceOf(ValidationException.class);
     }
 
+    @Test
+    public void createCars() {
+        Car bmw = sampleBMWCarBuilder().build();
+        Car astonMartin = sampleAstonMartinCarBuilder().build();
+        manager.createCars(Arrays.asList(bmw, astonMartin));
+
+        assertThat(bmw.getId()).isNotNull();
+        assertThat(astonMartin.getId()).isNotNull().isNotEqualTo(bmw.getId());
+        assertThat(manager.getCarById(bmw.getId())).isEqualToComparingFieldByField(bmw);
+        assertThat(manager.getCarById(astonMartin.getId())).isEqualToComparingFieldByField(astonMartin);
+    }
+
+    @Test
+    public void createCarsWithInvalidCar() {
+        Car bmw = sampleBMWCarBuilder().build();
+        Car invalid = sampleAstonMartinCarBuilder().dailyPrice(new BigDecimal(-1)).build();
+
+        assertThatThrownBy(() -> manager.createCars(Arrays.asList(bmw, invalid)))
+                .isInstanceOf(ValidationException.class);
+        assertThat(bmw.getId()).isNull();
+        assertThat(manager.findAllCars()).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createNullCars() {
+        manager.createCars(null);
+    }
+
     @Test
     public void getCarById() {
         Car car = sampleBMWCarBuilder().build();
@@ -148,6 +180,99 @@ public class CarManagerImplTest {
                 .containsOnly(bmw,astonMartin);
     }
 
+    @Test
+    public void streamAllCars() {
+        Car bmw = sampleBMWCarBuilder().build();
+        Car astonMartin = sampleAstonMartinCarBuilder().build();
+        manager.createCar(bmw);
+        manager.createCar(astonMartin);
+
+        List<Car> streamed = new ArrayList<>();
+        manager.streamAllCars(streamed::add);
+
+        assertThat(streamed)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(bmw, astonMartin);
+    }
+
+    @Test
+    public void streamAllCarsStoppedByConsumer() {
+        manager.createCar(sampleBMWCarBuilder().build());
+        manager.createCar(sampleAstonMartinCarBuilder().build());
+
+        List<Car> streamed = new ArrayList<>();
+        assertThatThrownBy(() -> manager.streamAllCars(car -> {
+            streamed.add(car);
+            throw new IllegalStateException("enough");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(streamed).hasSize(1);
+        assertThat(manager.findAllCars()).hasSize(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void streamAllCarsWithNullConsumer() {
+        manager.streamAllCars(null);
+    }
+
+    @Test
+    public void countAndFindCarsByPosition() {
+        assertThat(manager.countCars()).isEqualTo(0);
+        Car[] cars = new Car[4];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = sampleBMWCarBuilder().description("car " + i).build();
+        }
+        manager.createCars(Arrays.asList(cars));
+
+        assertThat(manager.countCars()).isEqualTo(4);
+        assertThat(manager.findCars(1, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(cars[1], cars[2]);
+        assertThat(manager.findCars(3, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(cars[3]);
+        assertThat(manager.findCars(4, 2)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findCarsWithNegativeOffset() {
+        manager.findCars(-1, 10);
+    }
+
+    @Test
+    public void findCarsByPages() {
+        Car[] cars = new Car[5];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = sampleBMWCarBuilder().description("car " + i).build();
+            manager.createCar(cars[i]);
+        }
+
+        Page<Car> first = manager.findCarsAfter(null, 2);
+        assertThat(first.getItems()).usingFieldByFieldElementComparator().containsExactly(cars[0], cars[1]);
+        assertThat(first.hasPrevious()).isFalse();
+
+        Page<Car> second = manager.findCarsAfter(first.getNextCursor(), 2);
+        assertThat(second.getItems()).usingFieldByFieldElementComparator().containsExactly(cars[2], cars[3]);
+
+        Page<Car> last = manager.findCarsAfter(second.getNextCursor(), 2);
+        assertThat(last.getItems()).usingFieldByFieldElementComparator().containsExactly(cars[4]);
+        assertThat(last.hasNext()).isFalse();
+
+        Page<Car> back = manager.findCarsBefore(last.getPreviousCursor(), 2);
+        assertThat(back.getItems()).usingFieldByFieldElementComparator().containsExactly(cars[2], cars[3]);
+        assertThat(back.getNextCursor()).isEqualTo(second.getNextCursor());
+        assertThat(manager.findCarsBefore(back.getPreviousCursor(), 2).hasPrevious()).isFalse();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findCarsWithInvalidPageSize() {
+        manager.findCarsAfter(null, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findCarsBeforeNullCursor() {
+        manager.findCarsBefore(null, 10);
+    }
+
     @Test
     public void updateCarBrand() {
         Car carForUpdate = sampleBMWCarBuilder().build();
@@ -257,6 +382,47 @@ public class CarManagerImplTest {
     }
 
 
+    @Test
+    public void deleteCars() {
+        Car bmw = sampleBMWCarBuilder().build();
+        Car astonMartin = sampleAstonMartinCarBuilder().build();
+        Car kept = sampleBMWCarBuilder().build();
+        manager.createCars(Arrays.asList(bmw, astonMartin, kept));
+        manager.deleteCar(astonMartin);
+
+        assertThat(manager.deleteCars(Arrays.asList(bmw, astonMartin))).containsExactly(astonMartin);
+        assertThat(manager.findAllCars())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(kept);
+    }
+
+    @Test
+    public void deleteCarsInChunks() {
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < 1201; i++) {
+            cars.add(sampleBMWCarBuilder().build());
+        }
+        manager.createCars(cars);
+
+        assertThat(manager.deleteCars(cars)).isEmpty();
+        assertThat(manager.countCars()).isEqualTo(0);
+    }
+
+    @Test
+    public void deleteCarsWithNullId() {
+        Car bmw = sampleBMWCarBuilder().build();
+        manager.createCar(bmw);
+
+        assertThatThrownBy(() -> manager.deleteCars(Arrays.asList(bmw, sampleAstonMartinCarBuilder().build())))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(manager.getCarById(bmw.getId())).isNotNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deleteNullCars() {
+        manager.deleteCars(null);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void deleteNullCar() {
         manager.deleteCar(null);
@@ -0,0 +1,60 @@
+package project.impl;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source for tests which counts statements prepared on its connections
+ * @author Daniel Jurca
+ */
+public class CountingDataSource extends DelegatingDataSource {
+    private final AtomicInteger statements = new AtomicInteger();
+
+    public CountingDataSource(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    /**
+     * @return number of statements created since the last reset
+     */
+    public int getStatementCount() {
+        return statements.get();
+    }
+
+    public void reset() {
+        statements.set(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countStatements(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countStatements(super.getConnection(username, password));
+    }
+
+    private Connection countStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createStatement":
+                        case "prepareStatement":
+                        case "prepareCall":
+                            statements.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
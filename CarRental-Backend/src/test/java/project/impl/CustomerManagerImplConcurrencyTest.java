@@ -0,0 +1,94 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.CustomerManager;
+import project.SchemaMigration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Writes customers while the search index is being loaded and checks that they
+ * neither wait for the load nor get lost
+ * @author Daniel Jurca
+ */
+public class CustomerManagerImplConcurrencyTest {
+    private EmbeddedDatabase database;
+    /** when set, the next connection waits until the load is released */
+    private final AtomicBoolean blockNext = new AtomicBoolean();
+    private final CountDownLatch reading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CustomerManager manager;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        manager = new CustomerManagerImpl(new DelegatingDataSource(database) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (blockNext.compareAndSet(true, false)) {
+                    reading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                }
+                return super.getConnection();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        database.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void customersAreWrittenWhileIndexIsLoaded() throws Exception {
+        Customer jan = new CustomerBuilder().fullName("Jan Novák").address("Brno").phoneNumber("602111222").build();
+        Customer petr = new CustomerBuilder().fullName("Petr Nowak").address("Brno").phoneNumber("777000111").build();
+        manager.createCustomer(jan);
+        manager.createCustomer(petr);
+        blockNext.set(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Customer>> found = executor.submit(() -> manager.searchCustomers("brno", 10));
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            jan.setFullName("Karel Dvořák");
+            manager.updateCustomer(jan);
+            manager.deleteCustomer(petr);
+            Customer jana = new CustomerBuilder().fullName("Jana Nováková").address("Praha").phoneNumber("603333444").build();
+            manager.createCustomer(jana);
+            release.countDown();
+
+            assertThat(found.get()).containsExactly(jan);
+            assertThat(manager.searchCustomers("dvorak", 10)).containsExactly(jan);
+            assertThat(manager.searchCustomers("nowak", 10)).isEmpty();
+            assertThat(manager.searchCustomers("novakova", 10)).containsExactly(jana);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -10,9 +10,14 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
 import project.CustomerManager;
+import project.Page;
 import project.exception.IllegalEntityException;
 import project.exception.ValidationException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -61,6 +66,29 @@ public class CustomerManagerImplTest {
                 .isEqualToComparingFieldByField(customer);
     }
 
+    @Test
+    public void createCustomers() {
+        Customer zero = sampleZeroBuilder().build();
+        Customer one = sampleOneBuilder().build();
+        manager.createCustomers(Arrays.asList(zero, one));
+
+        assertThat(zero.getId()).isNotNull();
+        assertThat(one.getId()).isNotNull().isNotEqualTo(zero.getId());
+        assertThat(manager.getCustomerById(zero.getId())).isEqualToComparingFieldByField(zero);
+        assertThat(manager.getCustomerById(one.getId())).isEqualToComparingFieldByField(one);
+    }
+
+    @Test
+    public void createCustomersWithInvalidCustomer() {
+        Customer zero = sampleZeroBuilder().build();
+        Customer invalid = sampleOneBuilder().phoneNumber("one").build();
+
+        assertThatThrownBy(() -> manager.createCustomers(Arrays.asList(zero, invalid)))
+                .isInstanceOf(ValidationException.class);
+        assertThat(zero.getId()).isNull();
+        assertThat(manager.findAllCustomers()).isEmpty();
+    }
+
     @Test
     public void findAllCustomers() {
         assertThat(manager.findAllCustomers()).isEmpty();
@@ -76,6 +104,49 @@ public class CustomerManagerImplTest {
                 .containsOnly(c1, c2);
     }
 
+    @Test
+    public void streamAllCustomers() {
+        Customer c1 = sampleOneBuilder().build();
+        Customer c2 = sampleZeroBuilder().build();
+        manager.createCustomers(Arrays.asList(c1, c2));
+
+        List<Customer> streamed = new ArrayList<>();
+        manager.streamAllCustomers(streamed::add);
+
+        assertThat(streamed)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1, c2);
+    }
+
+    @Test
+    public void countAndFindCustomersByPosition() {
+        Customer c1 = sampleOneBuilder().build();
+        Customer c2 = sampleZeroBuilder().build();
+        manager.createCustomers(Arrays.asList(c1, c2));
+
+        assertThat(manager.countCustomers()).isEqualTo(2);
+        assertThat(manager.findCustomers(1, 5))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c2);
+    }
+
+    @Test
+    public void findCustomersByPages() {
+        Customer c1 = sampleOneBuilder().build();
+        Customer c2 = sampleZeroBuilder().build();
+        Customer c3 = sampleOneBuilder().build();
+        manager.createCustomers(Arrays.asList(c1, c2, c3));
+
+        Page<Customer> first = manager.findCustomersAfter(null, 2);
+        assertThat(first.getItems()).usingFieldByFieldElementComparator().containsExactly(c1, c2);
+        Page<Customer> second = manager.findCustomersAfter(first.getNextCursor(), 2);
+        assertThat(second.getItems()).usingFieldByFieldElementComparator().containsExactly(c3);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(manager.findCustomersBefore(second.getPreviousCursor(), 2).getItems())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1, c2);
+    }
+
     @Test
     public void findCustomerByName() {
         Customer c1 = sampleOneBuilder().fullName("a").build();
@@ -89,6 +160,46 @@ public class CustomerManagerImplTest {
                 .containsOnly(c1, c2);
     }
 
+    @Test
+    public void searchCustomers() {
+        Customer novak = sampleOneBuilder().fullName("Jan Novák").address("Brno, Botanická 68a").build();
+        Customer novotny = sampleOneBuilder().fullName("Petr Novotný").address("Praha, Dlouhá 1").build();
+        manager.createCustomer(novak);
+        manager.createCustomer(novotny);
+
+        assertThat(manager.searchCustomers("nov", 10))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(novak, novotny);
+        assertThat(manager.searchCustomers("novak brno", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(novak);
+    }
+
+    @Test
+    public void searchCustomersAfterUpdateAndDelete() {
+        Customer customer = sampleOneBuilder().fullName("Jan Novák").build();
+        manager.createCustomer(customer);
+        assertThat(manager.searchCustomers("novak", 10)).hasSize(1);
+
+        customer.setFullName("Karel Dvořák");
+        manager.updateCustomer(customer);
+        assertThat(manager.searchCustomers("jan", 10)).isEmpty();
+        assertThat(manager.searchCustomers("dvorak", 10))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(customer);
+
+        manager.deleteCustomer(customer);
+        assertThat(manager.searchCustomers("dvorak", 10)).isEmpty();
+    }
+
+    @Test
+    public void searchCustomersWithInvalidArguments() {
+        assertThatThrownBy(() -> manager.searchCustomers(null, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.searchCustomers("a", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void createNullCustomer() {
         manager.createCustomer(null);
@@ -253,6 +364,19 @@ public class CustomerManagerImplTest {
                 .isInstanceOf(ValidationException.class);
     }
 
+    @Test
+    public void deleteCustomers() {
+        Customer c1 = sampleOneBuilder().build();
+        Customer c2 = sampleZeroBuilder().build();
+        Customer kept = sampleOneBuilder().build();
+        manager.createCustomers(Arrays.asList(c1, c2, kept));
+
+        assertThat(manager.deleteCustomers(Arrays.asList(c1, c2))).isEmpty();
+        assertThat(manager.findAllCustomers())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(kept);
+    }
+
     @Test
     public void deleteCustomer() {
         Customer g1 = sampleZeroBuilder().build();
@@ -0,0 +1,95 @@
+package project.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for customer search index
+ * @author Daniel Jurca
+ */
+public class CustomerSearchIndexTest {
+    private CustomerSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new CustomerSearchIndex();
+        put(1, "Jan Novák", "Brno, Botanická 68a", "602111222");
+        put(2, "Jana Nováková", "Praha, Vodičkova 12", "603333444");
+        put(3, "Petr Nowak", "Brno, Kounicova 5", "777000111");
+        put(4, "Novotný Jan", "Ostrava, Dlouhá 1", "602999888");
+    }
+
+    private void put(long id, String fullName, String address, String phoneNumber) {
+        index.put(id, new CustomerSearchIndex.Entry(new Customer(id, fullName, address, phoneNumber)));
+    }
+
+    @Test
+    public void wordsIgnoreCaseAndDiacritics() {
+        assertThat(CustomerSearchIndex.words("Jana NOVÁKOVÁ, Vodičkova 12/3"))
+                .containsExactly("jana", "novakova", "vodickova", "12", "3");
+    }
+
+    @Test
+    public void prefixOfName() {
+        assertThat(index.search("nov", 10)).containsExactlyInAnyOrder(1L, 2L, 4L);
+    }
+
+    @Test
+    public void exactWordRanksFirst() {
+        assertThat(index.search("jan", 10)).containsExactly(1L, 4L, 2L);
+    }
+
+    @Test
+    public void everyWordMustMatch() {
+        assertThat(index.search("jan brno", 10)).containsExactly(1L);
+        assertThat(index.search("Novak Praha", 10)).containsExactly(2L);
+    }
+
+    @Test
+    public void phoneNumberPrefix() {
+        assertThat(index.search("602", 10)).containsExactlyInAnyOrder(1L, 4L);
+    }
+
+    @Test
+    public void similarWordsWhenPrefixDoesNotMatch() {
+        assertThat(index.search("nowak", 10)).startsWith(3L).contains(1L);
+    }
+
+    @Test
+    public void limitResults() {
+        assertThat(index.search("n", 2)).hasSize(2);
+    }
+
+    @Test
+    public void updateAndRemove() {
+        CustomerSearchIndex.Entry previous = index.put(1, new CustomerSearchIndex.Entry(
+                new Customer(1L, "Karel Dvořák", "Brno, Botanická 68a", "602111222")));
+
+        assertThat(previous).isNotNull();
+        assertThat(index.search("jan brno", 10)).isEmpty();
+        assertThat(index.search("dvorak", 10)).containsExactly(1L);
+
+        assertThat(index.remove(1)).isNotNull();
+        assertThat(index.remove(1)).isNull();
+        assertThat(index.search("dvorak", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void emptyQuery() {
+        assertThat(index.search(" ,", 10)).isEmpty();
+    }
+
+    @Test
+    public void manyCustomers() {
+        for (long id = 10; id < 20_000; id++) {
+            put(id, "Customer " + id, "Street " + id, String.valueOf(600000000 + id));
+        }
+
+        assertThat(index.search("customer 1234", 10)).startsWith(1234L);
+        assertThat(index.search("street", 5)).hasSize(5);
+        assertThat(index.search("600012345", 10)).startsWith(12345L);
+    }
+}
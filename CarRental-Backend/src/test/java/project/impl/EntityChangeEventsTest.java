@@ -0,0 +1,127 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
+import project.SchemaMigration;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+import static project.EntityChangeEvent.Type.DELETED;
+import static project.EntityChangeEvent.Type.INSERTED;
+import static project.EntityChangeEvent.Type.UPDATED;
+
+/**
+ * Tests of change events published by the managers
+ * @author Daniel Jurca
+ */
+public class EntityChangeEventsTest {
+    private EmbeddedDatabase database;
+    private CarManagerImpl carManager;
+    private CustomerManagerImpl customerManager;
+    private LeaseManagerImpl leaseManager;
+    private TransactionTemplate transaction;
+    private List<EntityChangeEvent<Car>> carEvents = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        carManager = new CarManagerImpl(database);
+        customerManager = new CustomerManagerImpl(database);
+        leaseManager = new LeaseManagerImpl(database, customerManager, carManager);
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(database));
+        carManager.addChangeListener(carEvents::add);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private Car sampleCar() {
+        return new CarBuilder().carBrand("BMW").description("I'm german.").dailyPrice(new BigDecimal(1350)).build();
+    }
+
+    @Test
+    public void carChangesArePublished() {
+        Car car = sampleCar();
+        carManager.createCar(car);
+        car.setCarBrand("Audi");
+        carManager.updateCar(car);
+        carManager.deleteCar(car);
+
+        assertThat(carEvents).extracting(EntityChangeEvent::getType).containsExactly(INSERTED, UPDATED, DELETED);
+        assertThat(carEvents).extracting(EntityChangeEvent::getEntity).containsOnly(car);
+    }
+
+    @Test
+    public void changesArePublishedAfterCommit() {
+        Car car = sampleCar();
+        transaction.execute(status -> {
+            carManager.createCar(car);
+            assertThat(carEvents).isEmpty();
+            return null;
+        });
+
+        assertThat(carEvents).extracting(EntityChangeEvent::getType).containsExactly(INSERTED);
+    }
+
+    @Test
+    public void rolledBackChangesAreNotPublished() {
+        transaction.execute(status -> {
+            carManager.createCar(sampleCar());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(carEvents).isEmpty();
+    }
+
+    @Test
+    public void removedListenerIsNotNotified() {
+        List<EntityChangeEvent<Customer>> customerEvents = new ArrayList<>();
+        EntityChangeListener<Customer> listener = customerEvents::add;
+        customerManager.addChangeListener(listener);
+        customerManager.removeChangeListener(listener);
+
+        customerManager.createCustomer(new CustomerBuilder().fullName("James Bond").address("tajemna 762 10")
+                .phoneNumber("007007007").build());
+
+        assertThat(customerEvents).isEmpty();
+    }
+
+    @Test
+    public void carIsAvailableAfterCustomerWithLeaseIsDeleted() {
+        Car car = sampleCar();
+        carManager.createCar(car);
+        Customer james = new CustomerBuilder().fullName("James Bond").address("tajemna 762 10")
+                .phoneNumber("007007007").build();
+        customerManager.createCustomer(james);
+        LocalDate start = LocalDate.of(2018, 2, 10);
+        LocalDate end = LocalDate.of(2018, 3, 25);
+        leaseManager.createLease(new LeaseBuilder().customer(james).leasedCar(car).start(start).end(end)
+                .price(new BigDecimal(1350)).build());
+        assertThat(leaseManager.findAvailableCars(start, end)).isEmpty();
+
+        customerManager.deleteCustomer(james);
+
+        assertThat(leaseManager.findAvailableCars(start, end))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(car);
+    }
+}
@@ -0,0 +1,119 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.CarManager;
+import project.Metrics;
+import project.SchemaMigration;
+import project.TimerStatistics;
+import project.exception.ValidationException;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests of timing of manager methods and SQL statements
+ * @author Daniel Jurca
+ */
+public class InstrumentedTest {
+    private EmbeddedDatabase database;
+    private Metrics metrics;
+    private CarManager carManager;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        metrics = new Metrics();
+        carManager = Instrumented.wrap(CarManager.class,
+                new CarManagerImpl(new InstrumentedDataSource(database, metrics)), metrics);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void callsOfManagerMethodsAreTimed() {
+        Car car = new CarBuilder().carBrand("BMW").description("fast").dailyPrice(new BigDecimal(1000)).build();
+        carManager.createCar(car);
+        carManager.getCarById(car.getId());
+        carManager.getCarById(car.getId());
+
+        Map<String, TimerStatistics> snapshot = metrics.snapshot();
+        assertThat(snapshot.get("CarManager.createCar").getCount()).isEqualTo(1);
+        assertThat(snapshot.get("CarManager.getCarById").getCount()).isEqualTo(2);
+        assertThat(snapshot.get("CarManager.getCarById").getP50Nanos()).isPositive();
+        assertThat(snapshot.get("CarManager.findAllCars").getCount()).isZero();
+    }
+
+    @Test
+    public void exceptionsAreCountedAsErrors() {
+        assertThatThrownBy(() -> carManager.createCar(new Car(null, "", "fast", BigDecimal.ONE)))
+                .isInstanceOf(ValidationException.class);
+
+        TimerStatistics createCar = metrics.snapshot().get("CarManager.createCar");
+        assertThat(createCar.getCount()).isEqualTo(1);
+        assertThat(createCar.getErrors()).isEqualTo(1);
+    }
+
+    @Test
+    public void callsFindingNothingAreCountedAsMisses() {
+        Car car = new CarBuilder().carBrand("BMW").description("fast").dailyPrice(new BigDecimal(1000)).build();
+        carManager.createCar(car);
+        carManager.getCarById(car.getId());
+        carManager.getCarById(car.getId() + 1);
+
+        TimerStatistics getCarById = metrics.snapshot().get("CarManager.getCarById");
+        assertThat(getCarById.getCount()).isEqualTo(2);
+        assertThat(getCarById.getMisses()).isEqualTo(1);
+        assertThat(getCarById.getErrors()).isZero();
+        assertThat(metrics.snapshot().get("CarManager.createCar").getMisses()).isZero();
+    }
+
+    @Test
+    public void statementsAreTimedByTheirSql() {
+        Car car = new CarBuilder().carBrand("BMW").description("fast").dailyPrice(new BigDecimal(1000)).build();
+        carManager.createCar(car);
+        carManager.getCarById(car.getId());
+
+        assertThat(metrics.snapshot().keySet()).anyMatch(name -> name.startsWith("SQL SELECT")
+                && name.contains("cars"));
+        assertThat(metrics.snapshot().entrySet()).filteredOn(entry -> entry.getKey().startsWith("SQL "))
+                .allMatch(entry -> entry.getValue().getCount() > 0);
+    }
+
+    @Test
+    public void listsOfParametersShareName() {
+        assertThat(InstrumentedDataSource.name("SELECT * FROM cars WHERE id IN (?, ?, ?)"))
+                .isEqualTo(InstrumentedDataSource.name("SELECT * FROM cars\n  WHERE id IN (?,?)"))
+                .isEqualTo("SELECT * FROM cars WHERE id IN (?...)");
+    }
+
+    @Test
+    public void timersArePublishedInJmx() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.registerMBeans(server, "carRental");
+        carManager.countCars();
+
+        ObjectName name = new ObjectName("carRental:type=Metrics,name=" + ObjectName.quote("CarManager.countCars"));
+        assertThat(server.getAttribute(name, "Count")).isEqualTo(1L);
+
+        metrics.unregisterMBeans();
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
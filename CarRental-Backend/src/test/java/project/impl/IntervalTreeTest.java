@@ -0,0 +1,73 @@
+package project.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for interval tree used by lease availability index
+ * @author Daniel Jurca
+ */
+public class IntervalTreeTest {
+
+    @Test
+    public void emptyTreeHasNoOverlap() {
+        IntervalTree tree = new IntervalTree();
+        assertThat(tree.overlaps(0, 100)).isFalse();
+        assertThat(tree.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void intervalsAreHalfOpen() {
+        IntervalTree tree = new IntervalTree();
+        tree.add(1, 10, 20);
+
+        assertThat(tree.overlaps(5, 10)).isFalse();
+        assertThat(tree.overlaps(20, 25)).isFalse();
+        assertThat(tree.overlaps(5, 11)).isTrue();
+        assertThat(tree.overlaps(19, 25)).isTrue();
+        assertThat(tree.overlaps(12, 13)).isTrue();
+    }
+
+    @Test
+    public void removeInterval() {
+        IntervalTree tree = new IntervalTree();
+        tree.add(1, 10, 20);
+        tree.add(2, 10, 12);
+
+        assertThat(tree.remove(1, 10)).isTrue();
+        assertThat(tree.remove(1, 10)).isFalse();
+        assertThat(tree.size()).isEqualTo(1);
+        assertThat(tree.overlaps(15, 16)).isFalse();
+        assertThat(tree.overlaps(11, 12)).isTrue();
+    }
+
+    @Test
+    public void overlapsMatchesLinearScan() {
+        Random random = new Random(42);
+        IntervalTree tree = new IntervalTree();
+        List<long[]> intervals = new ArrayList<>();
+        for (int id = 0; id < 2000; id++) {
+            long start = random.nextInt(10000);
+            long[] interval = {id, start, start + random.nextInt(50)};
+            intervals.add(interval);
+            tree.add(interval[0], interval[1], interval[2]);
+            if (random.nextInt(4) == 0) {
+                long[] removed = intervals.remove(random.nextInt(intervals.size()));
+                assertThat(tree.remove(removed[0], removed[1])).isTrue();
+            }
+        }
+        assertThat(tree.size()).isEqualTo(intervals.size());
+
+        for (int i = 0; i < 2000; i++) {
+            long from = random.nextInt(10100);
+            long to = from + 1 + random.nextInt(30);
+            boolean expected = intervals.stream().anyMatch(interval -> interval[1] < to && interval[2] > from);
+            assertThat(tree.overlaps(from, to)).as("[%d, %d)", from, to).isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+import project.SchemaMigration;
+import project.exception.LeaseConflictException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Books cars from many threads at once and checks that no overlapping leases are stored
+ * and that bookings of different cars do not wait for each other
+ * @author Daniel Jurca
+ */
+public class LeaseManagerImplConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int BOOKINGS_PER_THREAD = 40;
+    private static final int CARS = 3;
+
+    private EmbeddedDatabase database;
+    private TransactionTemplate transaction;
+    private LeaseManager manager;
+    private List<Car> cars = new ArrayList<>();
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(database));
+        CarManager carManager = new CarManagerImpl(database);
+        CustomerManager customerManager = new CustomerManagerImpl(database);
+        manager = new LeaseManagerImpl(database, customerManager, carManager);
+
+        for (int i = 0; i < CARS; i++) {
+            Car car = new CarBuilder().carBrand("Car " + i).description("shared").dailyPrice(new BigDecimal(100)).build();
+            carManager.createCar(car);
+            cars.add(car);
+        }
+        customer = new CustomerBuilder().fullName("James Bond").address("tajemna 762 10").phoneNumber("007007007").build();
+        customerManager.createCustomer(customer);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void parallelBookingsDoNotOverlap() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(t);
+            results.add(executor.submit((Callable<int[]>) () -> {
+                start.await();
+                int created = 0;
+                int rejected = 0;
+                for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+                    LocalDate from = LocalDate.of(2018, 1, 1).plusDays(random.nextInt(60));
+                    Lease lease = new LeaseBuilder()
+                            .customer(customer)
+                            .leasedCar(cars.get(random.nextInt(CARS)))
+                            .start(from)
+                            .end(from.plusDays(1 + random.nextInt(5)))
+                            .price(new BigDecimal(100))
+                            .build();
+                    try {
+                        manager.createLease(lease);
+                        created++;
+                    } catch (LeaseConflictException e) {
+                        rejected++;
+                    }
+                }
+                return new int[]{created, rejected};
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+
+        int created = 0;
+        int rejected = 0;
+        for (Future<int[]> result : results) {
+            created += result.get()[0];
+            rejected += result.get()[1];
+        }
+        assertThat(created + rejected).isEqualTo(THREADS * BOOKINGS_PER_THREAD);
+        assertThat(created).isPositive();
+        assertThat(rejected).isPositive();
+        assertThat(manager.findAllLeases()).hasSize(created);
+
+        Integer overlaps = new JdbcTemplate(database).queryForObject("SELECT COUNT(*) FROM leases a " +
+                "JOIN leases b ON a.leasedcarid = b.leasedcarid AND a.id < b.id " +
+                "WHERE a.startdate < b.enddate AND b.startdate < a.enddate", Integer.class);
+        assertThat(overlaps).isZero();
+    }
+
+    @Test(timeout = 30_000)
+    public void leasesOfOtherCarsSharingDaysDoNotWait() throws Exception {
+        LocalDate from = LocalDate.of(2018, 1, 1);
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // keeps the transaction writing a lease of the first car open
+            Future<?> first = executor.submit(() -> transaction.execute(status -> {
+                manager.createLease(lease(cars.get(0), from, from.plusDays(10)));
+                written.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            }));
+            assertThat(written.await(10, TimeUnit.SECONDS)).isTrue();
+
+            manager.createLease(lease(cars.get(1), from.plusDays(2), from.plusDays(5)));
+            commit.countDown();
+            first.get();
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+        assertThat(manager.findAllLeases()).hasSize(2);
+    }
+
+    @Test(timeout = 30_000)
+    public void batchOfLeasesDoesNotLockLeasesOfOtherCars() throws Exception {
+        LocalDate from = LocalDate.of(2018, 1, 1);
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Lease> batch = Arrays.asList(lease(cars.get(0), from, from.plusDays(2)),
+                lease(cars.get(0), from.plusDays(5), from.plusDays(7)));
+        try {
+            Future<?> first = executor.submit(() -> transaction.execute(status -> {
+                manager.createLeases(batch);
+                written.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return null;
+            }));
+            assertThat(written.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Lease other = lease(cars.get(1), from, from.plusDays(7));
+            manager.createLease(other);
+            commit.countDown();
+            first.get();
+
+            assertThat(batch).extracting(Lease::getId).doesNotContainNull().doesNotContain(other.getId());
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+        assertThat(manager.findLeasesForCar(cars.get(0))).containsExactlyInAnyOrderElementsOf(batch);
+    }
+
+    private Lease lease(Car car, LocalDate start, LocalDate end) {
+        return new LeaseBuilder().customer(customer).leasedCar(car).start(start).end(end)
+                .price(new BigDecimal(100)).build();
+    }
+}
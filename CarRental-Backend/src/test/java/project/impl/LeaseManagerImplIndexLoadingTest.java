@@ -0,0 +1,118 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+import project.SchemaMigration;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Writes leases and cars while the availability index is being loaded and checks
+ * that they neither wait for the load nor get lost
+ * @author Daniel Jurca
+ */
+public class LeaseManagerImplIndexLoadingTest {
+    private static final LocalDate START = LocalDate.of(2017, 3, 1);
+    private static final LocalDate END = LocalDate.of(2017, 3, 5);
+
+    private EmbeddedDatabase database;
+    /** when set, the next connection waits until the load is released */
+    private final AtomicBoolean blockNext = new AtomicBoolean();
+    private final CountDownLatch reading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CarManager carManager;
+    private LeaseManager manager;
+    private Customer customer;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        DataSource dataSource = new DelegatingDataSource(database) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (blockNext.compareAndSet(true, false)) {
+                    reading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                }
+                return super.getConnection();
+            }
+        };
+        carManager = new CarManagerImpl(dataSource);
+        CustomerManager customerManager = new CustomerManagerImpl(dataSource);
+        manager = new LeaseManagerImpl(dataSource, customerManager, carManager);
+        customer = new CustomerBuilder().fullName("James Bond").address("tajemna 762 10").phoneNumber("007007007").build();
+        customerManager.createCustomer(customer);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        database.shutdown();
+    }
+
+    @Test(timeout = 10_000)
+    public void leasesAreWrittenWhileIndexIsLoaded() throws Exception {
+        Car leased = car("Škoda");
+        Car free = car("Audi");
+        Car deleted = car("Tatra");
+        Lease returned = lease(leased);
+        manager.createLease(returned);
+        blockNext.set(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<Car>> found = executor.submit(() -> manager.findAvailableCars(START, END));
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            manager.deleteLease(returned);
+            manager.createLease(lease(free));
+            carManager.deleteCar(deleted);
+            Car added = car("Volvo");
+            release.countDown();
+
+            assertThat(found.get()).containsExactly(leased, added);
+            assertThat(manager.findAvailableCars(START, END)).containsExactly(leased, added);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Car car(String brand) {
+        Car car = new CarBuilder().carBrand(brand).description("sedan").dailyPrice(new BigDecimal(100)).build();
+        carManager.createCar(car);
+        return car;
+    }
+
+    private Lease lease(Car car) {
+        return new LeaseBuilder().customer(customer).leasedCar(car).start(START).end(END)
+                .price(new BigDecimal(100)).build();
+    }
+}
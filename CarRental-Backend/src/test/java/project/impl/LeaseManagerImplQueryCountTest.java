@@ -0,0 +1,186 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+import project.SchemaMigration;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Checks that leases are loaded without a query per car and customer, and that
+ * available cars are found in the index
+ * @author Daniel Jurca
+ */
+public class LeaseManagerImplQueryCountTest {
+    private static final int LEASES_PER_CAR = 5;
+
+    private EmbeddedDatabase database;
+    private CountingDataSource dataSource;
+    private CarManager carManager;
+    private CustomerManager customerManager;
+    private LeaseManager manager;
+    private Car bmw;
+    private Car astonMartin;
+    private Customer james;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        dataSource = new CountingDataSource(database);
+        carManager = new CarManagerImpl(dataSource);
+        customerManager = new CustomerManagerImpl(dataSource);
+        manager = new LeaseManagerImpl(dataSource, customerManager, carManager);
+
+        bmw = new CarBuilder().carBrand("BMW").description("I'm german.").dailyPrice(new BigDecimal(1350)).build();
+        astonMartin = new CarBuilder().carBrand("Aston Martin").description("James Bond is my father!")
+                .dailyPrice(new BigDecimal(2000)).build();
+        carManager.createCar(bmw);
+        carManager.createCar(astonMartin);
+        james = new CustomerBuilder().fullName("James Bond").address("tajemna 762 10").phoneNumber("007007007").build();
+        customerManager.createCustomer(james);
+
+        LocalDate start = LocalDate.of(2018, 1, 1);
+        for (int i = 0; i < LEASES_PER_CAR; i++) {
+            for (Car car : new Car[]{bmw, astonMartin}) {
+                manager.createLease(new LeaseBuilder()
+                        .customer(james)
+                        .leasedCar(car)
+                        .start(start.plusDays(i))
+                        .end(start.plusDays(i + 1))
+                        .price(car.getDailyPrice())
+                        .build());
+            }
+        }
+        dataSource.reset();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void findAllLeasesIssuesSingleStatement() {
+        List<Lease> leases = manager.findAllLeases();
+
+        assertThat(leases).hasSize(2 * LEASES_PER_CAR);
+        assertThat(dataSource.getStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void findAllLeasesSharesCarsAndCustomers() {
+        List<Lease> leases = manager.findAllLeases();
+        Map<Long, Car> cars = new HashMap<>();
+
+        assertThat(leases).extracting(Lease::getCustomer).containsOnly(james);
+        for (Lease lease : leases) {
+            assertThat(lease.getCustomer()).isSameAs(leases.get(0).getCustomer());
+            cars.putIfAbsent(lease.getLeasedCar().getId(), lease.getLeasedCar());
+            assertThat(lease.getLeasedCar()).isSameAs(cars.get(lease.getLeasedCar().getId()));
+        }
+        assertThat(cars.values()).containsOnly(bmw, astonMartin);
+    }
+
+    @Test
+    public void findLeasesForCarDoesNotQueryPerRow() {
+        assertThat(manager.findLeasesForCar(bmw)).hasSize(LEASES_PER_CAR);
+        assertThat(dataSource.getStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void findLeasesForCustomerDoesNotQueryPerRow() {
+        assertThat(manager.findLeasesForCustomer(james)).hasSize(2 * LEASES_PER_CAR);
+        assertThat(dataSource.getStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void findAvailableCarsReadsOnlyAvailableCars() {
+        LocalDate start = LocalDate.of(2018, 1, 1);
+        manager.findAvailableCars(start, start.plusDays(1));
+        manager.deleteLease(manager.findLeasesForCar(bmw).get(0));
+        dataSource.reset();
+
+        assertThat(manager.findAvailableCars(start, start.plusDays(1))).containsExactly(bmw);
+        assertThat(manager.findAvailableCars(start.plusDays(LEASES_PER_CAR), start.plusDays(LEASES_PER_CAR + 1)))
+                .containsExactly(bmw, astonMartin);
+        assertThat(manager.findUnleasedCars()).containsExactly(bmw, astonMartin);
+        assertThat(manager.findLeasedCars()).isEmpty();
+        // only cars newer than the index
+        assertThat(dataSource.getStatementCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void findAvailableCarsReturnsUpdatedCars() {
+        LocalDate start = LocalDate.of(2018, 1, 1);
+        manager.findAvailableCars(start, start.plusDays(LEASES_PER_CAR + 1));
+        astonMartin.setDailyPrice(new BigDecimal(2500));
+        carManager.updateCar(astonMartin);
+        dataSource.reset();
+
+        assertThat(manager.findAvailableCars(start.plusDays(LEASES_PER_CAR), start.plusDays(LEASES_PER_CAR + 1)))
+                .containsExactly(bmw, astonMartin);
+        assertThat(dataSource.getStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void findAvailableCarsWithoutIndexSeesLeasesOfOtherWriters() {
+        LeaseManager unindexed = new LeaseManagerImpl(dataSource, customerManager, carManager, false);
+        LocalDate start = LocalDate.of(2018, 1, 1);
+        LocalDate free = start.plusDays(LEASES_PER_CAR);
+        assertThat(unindexed.findAvailableCars(free, free.plusDays(1))).containsExactly(bmw, astonMartin);
+
+        // written by another process, unknown to this one
+        new JdbcTemplate(database).update("INSERT INTO leases (customerid, leasedcarid, startdate, enddate, price) " +
+                "VALUES (?, ?, ?, ?, ?)", james.getId(), bmw.getId(), Date.valueOf(free), Date.valueOf(free.plusDays(1)), 1350);
+        dataSource.reset();
+
+        assertThat(unindexed.findAvailableCars(free, free.plusDays(1))).containsExactly(astonMartin);
+        assertThat(unindexed.findAvailableCars(start, start.plusDays(1))).isEmpty();
+        assertThat(unindexed.findLeasedCars()).isEmpty();
+        assertThat(dataSource.getStatementCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void deletingCarOrCustomerKeepsIndex() {
+        LocalDate start = LocalDate.of(2018, 1, 1);
+        Car audi = new CarBuilder().carBrand("Audi").description("Me too.").dailyPrice(new BigDecimal(200)).build();
+        carManager.createCar(audi);
+        Customer jack = new CustomerBuilder().fullName("Jack Black").address("Minnesota").phoneNumber("602463193").build();
+        customerManager.createCustomer(jack);
+        manager.createLease(new LeaseBuilder().customer(jack).leasedCar(audi)
+                .start(start).end(start.plusDays(1)).price(audi.getDailyPrice()).build());
+        assertThat(manager.findAvailableCars(start, start.plusDays(1))).isEmpty();
+
+        customerManager.deleteCustomer(jack);
+        dataSource.reset();
+        assertThat(manager.findAvailableCars(start, start.plusDays(1))).containsExactly(audi);
+        assertThat(dataSource.getStatementCount()).isEqualTo(1);
+
+        carManager.deleteCar(audi);
+        carManager.deleteCar(bmw);
+        dataSource.reset();
+        assertThat(manager.findAvailableCars(start, start.plusDays(1))).isEmpty();
+        assertThat(manager.findAvailableCars(start.plusDays(LEASES_PER_CAR), start.plusDays(LEASES_PER_CAR + 1)))
+                .containsExactly(astonMartin);
+        assertThat(dataSource.getStatementCount()).isEqualTo(2);
+    }
+}
@@ -12,11 +12,16 @@ import org.springframework.transaction.annotation.Transactional;
 import project.CarManager;
 import project.CustomerManager;
 import project.LeaseManager;
+import project.Page;
 import project.exception.IllegalEntityException;
+import project.exception.LeaseConflictException;
 import project.exception.ValidationException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -200,6 +205,97 @@ public class LeaseManagerImplTest {
     }
 
 
+    @Test
+    public void createOverlappingLease() {
+        Lease lease = sampleLeaseFirstLeaseBuilder().build();
+        manager.createLease(lease);
+        Lease overlapping = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(lease.getLeasedCar())
+                .start(LocalDate.of(2018, 3, 24))
+                .end(LocalDate.of(2018, 4, 2))
+                .build();
+
+        assertThatThrownBy(() -> manager.createLease(overlapping))
+                .isInstanceOf(LeaseConflictException.class);
+        assertThat(manager.findLeasesForCar(lease.getLeasedCar()))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(lease);
+    }
+
+    @Test
+    public void createFollowingLease() {
+        Lease lease = sampleLeaseFirstLeaseBuilder().build();
+        manager.createLease(lease);
+        Lease following = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(lease.getLeasedCar())
+                .start(lease.getEnd())
+                .end(lease.getEnd().plusDays(3))
+                .build();
+        manager.createLease(following);
+
+        assertThat(manager.findLeasesForCar(lease.getLeasedCar()))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(lease, following);
+    }
+
+    @Test
+    public void createLeaseOfNonExistingCar() {
+        Lease lease = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(sampleBMWCarBuilder().id(1L).build())
+                .build();
+        expectedException.expect(IllegalEntityException.class);
+        manager.createLease(lease);
+    }
+
+    @Test
+    public void createLeases() {
+        Lease first = sampleLeaseFirstLeaseBuilder().build();
+        Lease following = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(first.getLeasedCar())
+                .start(first.getEnd())
+                .end(first.getEnd().plusDays(3))
+                .build();
+        Lease second = sampleLeaseSecondLeaseBuilder().build();
+        manager.createLeases(Arrays.asList(first, following, second));
+
+        assertThat(manager.findAllLeases())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(first, following, second);
+        assertThat(manager.getLeaseById(following.getId())).isEqualToComparingFieldByField(following);
+    }
+
+    @Test
+    public void createLeasesOverlappingEachOther() {
+        Lease first = sampleLeaseFirstLeaseBuilder().build();
+        Lease overlapping = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(first.getLeasedCar())
+                .start(first.getEnd().minusDays(1))
+                .end(first.getEnd().plusDays(3))
+                .build();
+
+        assertThatThrownBy(() -> manager.createLeases(Arrays.asList(first, overlapping)))
+                .isInstanceOf(LeaseConflictException.class);
+        assertThat(manager.findAllLeases()).isEmpty();
+    }
+
+    @Test
+    public void createLeasesOverlappingStoredLease() {
+        Lease stored = sampleLeaseFirstLeaseBuilder().build();
+        manager.createLease(stored);
+        Lease second = sampleLeaseSecondLeaseBuilder().build();
+        Lease overlapping = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(stored.getLeasedCar())
+                .start(stored.getStart().minusDays(3))
+                .end(stored.getStart().plusDays(1))
+                .build();
+
+        assertThatThrownBy(() -> manager.createLeases(Arrays.asList(second, overlapping)))
+                .isInstanceOf(LeaseConflictException.class);
+        assertThat(manager.findAllLeases())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(stored);
+    }
+
     @Test
     public void getLeaseById() {
         Lease lease = sampleLeaseFirstLeaseBuilder().build();
@@ -217,6 +313,51 @@ public class LeaseManagerImplTest {
     }
 
 
+    @Test
+    public void streamAllLeases() {
+        Lease leaseFirst = sampleLeaseFirstLeaseBuilder().build();
+        Lease leaseSecond = sampleLeaseSecondLeaseBuilder().build();
+        manager.createLease(leaseFirst);
+        manager.createLease(leaseSecond);
+
+        List<Lease> streamed = new ArrayList<>();
+        manager.streamAllLeases(streamed::add);
+
+        assertThat(streamed)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(leaseFirst, leaseSecond);
+    }
+
+    @Test
+    public void countAndFindLeasesByPosition() {
+        Lease leaseFirst = sampleLeaseFirstLeaseBuilder().build();
+        Lease leaseSecond = sampleLeaseSecondLeaseBuilder().build();
+        manager.createLease(leaseFirst);
+        manager.createLease(leaseSecond);
+
+        assertThat(manager.countLeases()).isEqualTo(2);
+        assertThat(manager.findLeases(0, 1))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(leaseFirst);
+    }
+
+    @Test
+    public void findLeasesByPages() {
+        Lease leaseFirst = sampleLeaseFirstLeaseBuilder().build();
+        Lease leaseSecond = sampleLeaseSecondLeaseBuilder().build();
+        manager.createLease(leaseFirst);
+        manager.createLease(leaseSecond);
+
+        Page<Lease> first = manager.findLeasesAfter(null, 1);
+        assertThat(first.getItems()).usingFieldByFieldElementComparator().containsExactly(leaseFirst);
+        Page<Lease> second = manager.findLeasesAfter(first.getNextCursor(), 1);
+        assertThat(second.getItems()).usingFieldByFieldElementComparator().containsExactly(leaseSecond);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(manager.findLeasesBefore(second.getPreviousCursor(), 1).getItems())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(leaseFirst);
+    }
+
     @Test
     public void findAllLeases() {
         assertThat(manager.findAllLeases()).isEmpty();
@@ -312,6 +453,22 @@ public class LeaseManagerImplTest {
                 .isEqualTo(leaseForUpdate.getPrice());
     }
 
+    @Test
+    public void updateLeaseToOverlap() {
+        Lease first = sampleLeaseFirstLeaseBuilder().build();
+        manager.createLease(first);
+        Lease second = sampleLeaseFirstLeaseBuilder()
+                .leasedCar(first.getLeasedCar())
+                .start(first.getEnd())
+                .end(first.getEnd().plusDays(3))
+                .build();
+        manager.createLease(second);
+
+        second.setStart(first.getEnd().minusDays(1));
+        expectedException.expect(LeaseConflictException.class);
+        manager.updateLease(second);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void updateNullLease() {
         manager.updateLease(null);
@@ -383,6 +540,21 @@ public class LeaseManagerImplTest {
     }
 
 
+    @Test
+    public void deleteLeases() {
+        Lease leaseFirst = sampleLeaseFirstLeaseBuilder().build();
+        Lease leaseSecond = sampleLeaseSecondLeaseBuilder().build();
+        manager.createLease(leaseFirst);
+        manager.createLease(leaseSecond);
+        manager.deleteLease(leaseSecond);
+
+        assertThat(manager.deleteLeases(Arrays.asList(leaseFirst, leaseSecond))).containsExactly(leaseSecond);
+        assertThat(manager.findAllLeases()).isEmpty();
+        assertThat(manager.findAvailableCars(leaseFirst.getStart(), leaseFirst.getEnd()))
+                .usingFieldByFieldElementComparator()
+                .contains(leaseFirst.getLeasedCar());
+    }
+
     @Test
     public void deleteLease() {
         Lease first = sampleLeaseFirstLeaseBuilder().build();
@@ -547,4 +719,55 @@ public class LeaseManagerImplTest {
         assertThat(manager.findLeasedCars()).isEmpty();
     }
 
+    @Test
+    public void findAvailableCars() {
+        Car free = sampleBMWCarBuilder().build();
+        carManager.createCar(free);
+        Lease lease = sampleLeaseFirstLeaseBuilder().build();
+        manager.createLease(lease);
+
+        assertThat(manager.findAvailableCars(LocalDate.of(2018, 3, 1), LocalDate.of(2018, 3, 5)))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(free);
+        assertThat(manager.findAvailableCars(LocalDate.of(2018, 2, 1), LocalDate.of(2018, 2, 11)))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(free);
+        assertThat(manager.findAvailableCars(LocalDate.of(2018, 3, 25), LocalDate.of(2018, 3, 30)))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(free, lease.getLeasedCar());
+    }
+
+    @Test
+    public void findAvailableCarsAfterUpdateAndDelete() {
+        Lease lease = sampleLeaseFirstLeaseBuilder().build();
+        manager.createLease(lease);
+        LocalDate from = LocalDate.of(2018, 3, 1);
+        LocalDate to = LocalDate.of(2018, 3, 5);
+        assertThat(manager.findAvailableCars(from, to)).isEmpty();
+
+        lease.setEnd(from);
+        manager.updateLease(lease);
+        assertThat(manager.findAvailableCars(from, to))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(lease.getLeasedCar());
+
+        lease.setEnd(to);
+        manager.updateLease(lease);
+        assertThat(manager.findAvailableCars(from, to)).isEmpty();
+
+        manager.deleteLease(lease);
+        assertThat(manager.findAvailableCars(from, to))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(lease.getLeasedCar());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findAvailableCarsWithNullStart() {
+        manager.findAvailableCars(null, LocalDate.of(2018, 3, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void findAvailableCarsWithEmptyPeriod() {
+        manager.findAvailableCars(LocalDate.of(2018, 3, 5), LocalDate.of(2018, 3, 5));
+    }
 }
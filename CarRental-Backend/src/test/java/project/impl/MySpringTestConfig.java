@@ -9,6 +9,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import project.CarManager;
 import project.CustomerManager;
 import project.LeaseManager;
+import project.SchemaMigration;
 
 import javax.sql.DataSource;
 
@@ -23,11 +24,11 @@ public class MySpringTestConfig {
 
     @Bean
     public DataSource dataSource() {
-        return new EmbeddedDatabaseBuilder()
+        DataSource dataSource = new EmbeddedDatabaseBuilder()
                 .setType(DERBY)
-                .setScriptEncoding("utf-8")
-                .addScript("classpath:createTables.sql")
                 .build();
+        new SchemaMigration(dataSource).migrate();
+        return dataSource;
     }
 
     @Bean
@@ -0,0 +1,299 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.DailyOccupancy;
+import project.ReportManager;
+import project.SchemaMigration;
+import project.UsageReport;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests for Report Manager, changes are committed so that reports follow them
+ * @author Daniel Jurca
+ */
+public class ReportManagerImplTest {
+    private static final LocalDate MARCH = LocalDate.of(2017, 3, 1);
+    private static final LocalDate APRIL = LocalDate.of(2017, 4, 1);
+
+    private EmbeddedDatabase database;
+    private CarManagerImpl carManager;
+    private CustomerManagerImpl customerManager;
+    private LeaseManagerImpl leaseManager;
+    private ReportManager manager;
+    private Car bmw;
+    private Car audi;
+    private Customer james;
+    private Customer jack;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+        carManager = new CarManagerImpl(database);
+        customerManager = new CustomerManagerImpl(database);
+        leaseManager = new LeaseManagerImpl(database, customerManager, carManager);
+        manager = new ReportManagerImpl(database, leaseManager);
+
+        bmw = new CarBuilder().carBrand("BMW").description("I'm german.").dailyPrice(new BigDecimal(100)).build();
+        audi = new CarBuilder().carBrand("Audi").description("Me too.").dailyPrice(new BigDecimal(200)).build();
+        carManager.createCar(bmw);
+        carManager.createCar(audi);
+        james = new CustomerBuilder().fullName("James Bond").address("London").phoneNumber("007007007").build();
+        jack = new CustomerBuilder().fullName("Jack Black").address("Minnesota").phoneNumber("602463193").build();
+        customerManager.createCustomer(james);
+        customerManager.createCustomer(jack);
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private Lease lease(Customer customer, Car car, LocalDate start, int days) {
+        Lease lease = new Lease(null, customer, car, start, start.plusDays(days), car.getDailyPrice());
+        leaseManager.createLease(lease);
+        return lease;
+    }
+
+    @Test
+    public void reportByCar() {
+        lease(james, bmw, MARCH, 3);
+        lease(jack, bmw, MARCH.plusDays(10), 2);
+
+        Map<Long, UsageReport> report = manager.reportByCar(MARCH, APRIL);
+
+        assertThat(report).containsOnlyKeys(bmw.getId(), audi.getId());
+        UsageReport bmwUsage = report.get(bmw.getId());
+        assertThat(bmwUsage.getLeases()).isEqualTo(2);
+        assertThat(bmwUsage.getLeasedDays()).isEqualTo(5);
+        assertThat(bmwUsage.getRevenue()).isEqualByComparingTo("500");
+        assertThat(bmwUsage.getAvailableDays()).isEqualTo(31);
+        assertThat(bmwUsage.getUtilization()).isEqualTo(5 / 31.0);
+        assertThat(report.get(audi.getId()).getLeasedDays()).isZero();
+    }
+
+    @Test
+    public void reportByCustomer() {
+        lease(james, bmw, MARCH, 3);
+        lease(james, audi, MARCH, 1);
+
+        Map<Long, UsageReport> report = manager.reportByCustomer(MARCH, APRIL);
+
+        assertThat(report).containsOnlyKeys(james.getId());
+        assertThat(report.get(james.getId()).getRevenue()).isEqualByComparingTo("500");
+        assertThat(report.get(james.getId()).getAvailableDays()).isEqualTo(2 * 31);
+    }
+
+    @Test
+    public void leaseIsCutToPeriodAndSplitByMonth() {
+        lease(james, bmw, MARCH.minusDays(2), 5);
+        lease(jack, audi, APRIL.minusDays(1), 4);
+
+        Map<YearMonth, UsageReport> report = manager.reportByMonth(MARCH.plusDays(1), APRIL.plusDays(2));
+
+        assertThat(report).containsOnlyKeys(YearMonth.of(2017, 3), YearMonth.of(2017, 4));
+        UsageReport march = report.get(YearMonth.of(2017, 3));
+        assertThat(march.getLeasedDays()).isEqualTo(2 + 1);
+        assertThat(march.getRevenue()).isEqualByComparingTo("400");
+        assertThat(march.getAvailableDays()).isEqualTo(2 * 30);
+        UsageReport april = report.get(YearMonth.of(2017, 4));
+        assertThat(april.getLeases()).isEqualTo(1);
+        assertThat(april.getLeasedDays()).isEqualTo(2);
+        assertThat(april.getAvailableDays()).isEqualTo(2 * 2);
+        assertThat(manager.reportFleet(MARCH.plusDays(1), APRIL.plusDays(2)).getRevenue()).isEqualByComparingTo("800");
+    }
+
+    @Test
+    public void keptReportFollowsChangesOfLeases() {
+        Lease lease = lease(james, bmw, MARCH, 3);
+        assertThat(manager.reportFleet(MARCH, APRIL).getLeasedDays()).isEqualTo(3);
+
+        Lease other = lease(jack, audi, MARCH, 1);
+        lease.setEnd(MARCH.plusDays(5));
+        leaseManager.updateLease(lease);
+        leaseManager.deleteLease(other);
+        lease(jack, bmw, APRIL, 3);
+
+        UsageReport fleet = manager.reportFleet(MARCH, APRIL);
+        assertThat(fleet.getLeases()).isEqualTo(1);
+        assertThat(fleet.getLeasedDays()).isEqualTo(5);
+        assertThat(fleet.getRevenue()).isEqualByComparingTo("500");
+        assertThat(manager.reportByCustomer(MARCH, APRIL)).containsOnlyKeys(james.getId());
+        assertThat(manager.getCacheStatistics().getMisses()).isEqualTo(1);
+        assertThat(manager.getCacheStatistics().getHits()).isEqualTo(2);
+    }
+
+    @Test(timeout = 10_000)
+    public void leasesAreWrittenWhileReportIsRead() throws Exception {
+        lease(james, bmw, MARCH, 3);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReportManager blocked = new ReportManagerImpl(new DelegatingDataSource(database) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                return super.getConnection();
+            }
+        }, leaseManager);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<UsageReport> report = executor.submit(() -> blocked.reportFleet(MARCH, APRIL));
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            lease(jack, audi, MARCH, 2);
+            release.countDown();
+
+            assertThat(report.get().getLeases()).isEqualTo(2);
+            assertThat(blocked.reportFleet(MARCH, APRIL).getLeasedDays()).isEqualTo(5);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void newCarIsReported() {
+        manager.reportByCar(MARCH, APRIL);
+        Car skoda = new CarBuilder().carBrand("Skoda").description("Simply clever.").dailyPrice(BigDecimal.TEN).build();
+        carManager.createCar(skoda);
+
+        assertThat(manager.reportByCar(MARCH, APRIL)).containsKey(skoda.getId());
+        assertThat(manager.reportFleet(MARCH, APRIL).getAvailableDays()).isEqualTo(3 * 31);
+    }
+
+    @Test
+    public void leasesOfDeletedCustomerAreNotReported() {
+        lease(james, bmw, MARCH, 3);
+        manager.reportFleet(MARCH, APRIL);
+        customerManager.deleteCustomer(james);
+
+        assertThat(manager.reportFleet(MARCH, APRIL).getLeases()).isZero();
+    }
+
+    private static DailyOccupancy occupancy(LocalDate day, int leasedCars, int revenue) {
+        return new DailyOccupancy(day, leasedCars, new BigDecimal(revenue));
+    }
+
+    @Test
+    public void occupancyFollowsWritesOfLeases() {
+        Lease lease = lease(james, bmw, MARCH, 2);
+        lease(jack, audi, MARCH.plusDays(1), 2);
+
+        assertThat(manager.findOccupancy(MARCH.minusDays(1), MARCH.plusDays(4))).containsExactly(
+                occupancy(MARCH.minusDays(1), 0, 0),
+                occupancy(MARCH, 1, 100),
+                occupancy(MARCH.plusDays(1), 2, 300),
+                occupancy(MARCH.plusDays(2), 1, 200),
+                occupancy(MARCH.plusDays(3), 0, 0));
+
+        lease.setStart(MARCH.plusDays(2));
+        lease.setEnd(MARCH.plusDays(4));
+        leaseManager.updateLease(lease);
+        assertThat(manager.findOccupancy(MARCH, MARCH.plusDays(4))).extracting(DailyOccupancy::getLeasedCars)
+                .containsExactly(0, 1, 2, 1);
+
+        leaseManager.deleteLease(lease);
+        assertThat(manager.findOccupancy(MARCH, MARCH.plusDays(4))).extracting(DailyOccupancy::getLeasedCars)
+                .containsExactly(0, 1, 1, 0);
+    }
+
+    @Test
+    public void occupancyOfLeasesCreatedInBatch() {
+        leaseManager.createLeases(Arrays.asList(
+                new Lease(null, james, bmw, MARCH.plusDays(1), MARCH.plusDays(3), bmw.getDailyPrice()),
+                new Lease(null, jack, audi, MARCH, MARCH.plusDays(2), audi.getDailyPrice())));
+
+        assertThat(manager.findOccupancy(MARCH, MARCH.plusDays(3))).containsExactly(
+                occupancy(MARCH, 1, 200),
+                occupancy(MARCH.plusDays(1), 2, 300),
+                occupancy(MARCH.plusDays(2), 1, 100));
+    }
+
+    @Test
+    public void leasesDeletedWithCarLeaveOccupancy() {
+        lease(james, bmw, MARCH, 2);
+        lease(jack, audi, MARCH, 1);
+
+        carManager.deleteCar(bmw);
+
+        assertThat(manager.findOccupancy(MARCH, MARCH.plusDays(2))).containsExactly(
+                occupancy(MARCH, 1, 200),
+                occupancy(MARCH.plusDays(1), 0, 0));
+    }
+
+    @Test
+    public void compactedOccupancyIsKept() {
+        Lease lease = lease(james, bmw, MARCH, 2);
+        lease(jack, audi, MARCH.plusDays(1), 2);
+        assertThat(manager.compactOccupancy()).isEqualTo(3);
+        leaseManager.deleteLease(lease);
+
+        assertThat(manager.findOccupancy(MARCH, MARCH.plusDays(4))).containsExactly(
+                occupancy(MARCH, 0, 0),
+                occupancy(MARCH.plusDays(1), 1, 200),
+                occupancy(MARCH.plusDays(2), 1, 200),
+                occupancy(MARCH.plusDays(3), 0, 0));
+        assertThat(manager.compactOccupancy()).isEqualTo(2);
+        assertThat(manager.compactOccupancy()).isZero();
+        assertThat(manager.findOccupancy(MARCH, MARCH.plusDays(4))).extracting(DailyOccupancy::getLeasedCars)
+                .containsExactly(0, 1, 1, 0);
+    }
+
+    @Test
+    public void rebuildOccupancy() {
+        lease(james, bmw, MARCH, 2);
+        new JdbcTemplate(database).update("INSERT INTO leases (leasedcarid, customerid, startdate, enddate, price) " +
+                "VALUES (?, ?, ?, ?, ?)", audi.getId(), jack.getId(), Date.valueOf(APRIL), Date.valueOf(APRIL.plusDays(1)), 200);
+
+        assertThat(manager.rebuildOccupancy()).isEqualTo(3);
+
+        List<DailyOccupancy> occupancy = manager.findOccupancy(MARCH, APRIL.plusDays(1));
+        assertThat(occupancy).hasSize(32);
+        assertThat(occupancy).filteredOn(day -> day.getLeasedCars() > 0).containsExactly(
+                occupancy(MARCH, 1, 100),
+                occupancy(MARCH.plusDays(1), 1, 100),
+                occupancy(APRIL, 1, 200));
+    }
+
+    @Test
+    public void emptyPeriod() {
+        assertThatThrownBy(() -> manager.reportFleet(MARCH, MARCH))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.reportByCar(null, MARCH))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> manager.findOccupancy(APRIL, MARCH))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,147 @@
+package project.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import project.CarManager;
+import project.Metrics;
+import project.SchemaMigration;
+import project.SlowQuery;
+import project.SlowQueryLog;
+import project.TimerStatistics;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.DERBY;
+
+/**
+ * Tests of logging of slow SQL statements
+ * @author Daniel Jurca
+ */
+public class SlowQueryLogTest {
+    private EmbeddedDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(DERBY)
+                .build();
+        new SchemaMigration(database).migrate();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    private CarManager carManager(SlowQueryLog slowQueryLog) {
+        return new CarManagerImpl(new InstrumentedDataSource(database, new Metrics(), slowQueryLog));
+    }
+
+    private static Car car(String brand) {
+        return new CarBuilder().carBrand(brand).description("fast").dailyPrice(new BigDecimal(1000)).build();
+    }
+
+    @Test
+    public void slowStatementsAreLoggedWithParametersAndRows() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(0, 100, false);
+        CarManager carManager = carManager(slowQueryLog);
+        Car car = car("BMW");
+        carManager.createCar(car);
+        carManager.createCar(car("Audi"));
+        carManager.getCarById(car.getId());
+        carManager.findAllCars();
+
+        List<SlowQuery> queries = slowQueryLog.getSlowest();
+        assertThat(queries).anySatisfy(query -> {
+            assertThat(query.getSql()).startsWith("INSERT");
+            assertThat(query.getParameters()).contains("BMW", "fast");
+            assertThat(query.getRows()).isEqualTo(1);
+        });
+        assertThat(queries).anySatisfy(query -> {
+            assertThat(query.getSql()).startsWith("SELECT").contains("WHERE");
+            assertThat(query.getParameters()).containsExactly(car.getId().toString());
+            assertThat(query.getRows()).isEqualTo(1);
+        });
+        assertThat(queries).anySatisfy(query -> {
+            assertThat(query.getParameters()).isEmpty();
+            assertThat(query.getRows()).isEqualTo(2);
+        });
+        assertThat(queries).allSatisfy(query -> assertThat(query.getPlan()).isNull());
+        assertThat(slowQueryLog.getCount()).isEqualTo(queries.size());
+    }
+
+    @Test
+    public void plansOfSlowQueriesAreCapturedOnDerby() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(0, 100, true);
+        CarManager carManager = carManager(slowQueryLog);
+        Car car = car("BMW");
+        carManager.createCar(car);
+        carManager.getCarById(car.getId());
+
+        assertThat(slowQueryLog.getSlowest())
+                .filteredOn(query -> query.getSql().startsWith("SELECT"))
+                .isNotEmpty()
+                .allSatisfy(query -> assertThat(query.getPlan()).contains("Statement Name"));
+    }
+
+    @Test
+    public void readingOfRowsIsTimed() {
+        carManager(null).createCar(car("BMW"));
+        SlowQueryLog slowQueryLog = new SlowQueryLog(50, 100, false);
+        Metrics metrics = new Metrics();
+        JdbcTemplate jdbc = new JdbcTemplate(new InstrumentedDataSource(database, metrics, slowQueryLog));
+
+        jdbc.query("SELECT * FROM cars", (RowCallbackHandler) rs -> {
+            try {
+                Thread.sleep(60);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(slowQueryLog.getSlowest()).hasSize(1).allSatisfy(query -> {
+            assertThat(query.getSql()).isEqualTo("SELECT * FROM cars");
+            assertThat(query.getRows()).isEqualTo(1);
+            assertThat(query.getNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(60));
+        });
+        TimerStatistics select = metrics.snapshot().get("SQL SELECT * FROM cars");
+        assertThat(select.getMaxNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(60));
+    }
+
+    @Test
+    public void fastStatementsAreNotLogged() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(60_000, 100, false);
+        carManager(slowQueryLog).createCar(car("BMW"));
+
+        assertThat(slowQueryLog.getSlowest()).isEmpty();
+        assertThat(slowQueryLog.getCount()).isZero();
+    }
+
+    @Test
+    public void onlyTheSlowestAreKept() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(0, 2, false);
+        for (long nanos : new long[]{5, 1, 7, 3}) {
+            slowQueryLog.record(new SlowQuery("VALUES 1", Collections.emptyList(), 1, nanos, 0, false, null));
+        }
+
+        assertThat(slowQueryLog.getSlowest()).extracting(SlowQuery::getNanos).containsExactly(7L, 5L);
+        assertThat(slowQueryLog.getCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> new SlowQueryLog(-1, 10, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SlowQueryLog(100, 0, false)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,116 @@
+package project.impl;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import project.exception.ValidationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for validators of entities
+ * @author Daniel Jurca
+ */
+public class ValidatorsTest {
+
+    private static Customer customer(String fullName, String address, String phoneNumber) {
+        return new Customer(null, fullName, address, phoneNumber);
+    }
+
+    @Test
+    public void validCustomer() {
+        assertThat(Validators.CUSTOMER.firstViolation(customer("Jack Black", "Minnesota", "602463193"))).isNull();
+    }
+
+    @Test
+    public void customerRules() {
+        assertThat(Validators.CUSTOMER.firstViolation(customer(null, "Minnesota", "602463193")))
+                .isEqualTo(Validators.CustomerRule.PROPERTIES_NOT_NULL);
+        assertThat(Validators.CUSTOMER.firstViolation(customer("", "Minnesota", "602463193")))
+                .isEqualTo(Validators.CustomerRule.PROPERTIES_NOT_EMPTY);
+        assertThat(Validators.CUSTOMER.firstViolation(customer("Jack Black", "Minnesota", "+420 602")))
+                .isEqualTo(Validators.CustomerRule.PHONE_NUMBER_DIGITS);
+    }
+
+    @Test
+    public void allViolationsOfEntity() {
+        assertThat(Validators.CUSTOMER.violations(customer("", "Minnesota", "602-463")))
+                .containsExactly(Validators.CustomerRule.PROPERTIES_NOT_EMPTY, Validators.CustomerRule.PHONE_NUMBER_DIGITS);
+        assertThat(Validators.CUSTOMER.violations(customer("Jack Black", "Minnesota", "602463193"))).isEmpty();
+    }
+
+    @Test
+    public void carRules() {
+        assertThat(Validators.CAR.violations(new Car(null, "", "fast", new BigDecimal(-1))))
+                .containsExactly(Validators.CarRule.PRICE_NOT_NEGATIVE, Validators.CarRule.BRAND_NOT_EMPTY);
+        assertThat(Validators.CAR.firstViolation(new Car(null, "Skoda", null, BigDecimal.ONE)))
+                .isEqualTo(Validators.CarRule.PROPERTIES_NOT_NULL);
+    }
+
+    @Test
+    public void leaseRules() {
+        Customer customer = customer("Jack Black", "Minnesota", "602463193");
+        Car car = new Car(1L, "Skoda", "fast", BigDecimal.TEN);
+        LocalDate today = LocalDate.now();
+
+        assertThat(Validators.LEASE.firstViolation(new Lease(null, customer, car, today, today, BigDecimal.ZERO))).isNull();
+        assertThat(Validators.LEASE.violations(new Lease(null, customer, car, today, today.minusDays(1), new BigDecimal(-5))))
+                .containsExactly(Validators.LeaseRule.PRICE_NOT_NEGATIVE, Validators.LeaseRule.END_NOT_BEFORE_START);
+    }
+
+    @Test
+    public void validateThrowsFirstViolation() {
+        assertThatThrownBy(() -> Validators.CUSTOMER.validate(customer("Jack Black", "Minnesota", "one")))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Wrong format of phone number");
+    }
+
+    @Test
+    public void validateAllReportsEveryInvalidEntity() {
+        List<Customer> customers = Arrays.asList(
+                customer("Jack Black", "Minnesota", "602463193"),
+                customer("", "Minnesota", "one"),
+                customer("Jack White", "Minnesota", "602463194"),
+                customer("Jack Gray", null, "602463195"));
+
+        Map<Integer, List<ValidationRule<Customer>>> violations = Validators.CUSTOMER.validateAll(customers);
+
+        assertThat(violations).containsOnlyKeys(1, 3);
+        assertThat(violations.get(1)).hasSize(2);
+
+        assertThatThrownBy(() -> Validators.CUSTOMER.checkAll(customers))
+                .isInstanceOf(ValidationException.class)
+                .satisfies(e -> assertThat(((ValidationException) e).getErrors()).containsExactly(
+                        "Customer 2: Some of the properties are empty!",
+                        "Customer 2: Wrong format of phone number",
+                        "Customer 4: Some of the properties are null!"));
+    }
+
+    @Test
+    public void invalidEntitiesAreNotLoggedAsErrors() {
+        Logger logger = (Logger) LoggerFactory.getLogger(EntityValidator.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            assertThatThrownBy(() -> Validators.CUSTOMER.validate(customer("", "Minnesota", "602463193")))
+                    .isInstanceOf(ValidationException.class);
+            assertThatThrownBy(() -> Validators.CUSTOMER.checkAll(Arrays.asList(customer(null, "", "one"))))
+                    .isInstanceOf(ValidationException.class);
+        } finally {
+            logger.detachAppender(appender);
+        }
+
+        assertThat(appender.list).allSatisfy(event -> assertThat(event.getLevel()).isEqualTo(Level.DEBUG));
+    }
+}
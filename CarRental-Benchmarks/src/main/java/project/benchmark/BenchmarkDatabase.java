@@ -0,0 +1,170 @@
+package project.benchmark;
+
+import org.apache.derby.jdbc.EmbeddedDriver;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import project.CarManager;
+import project.CustomerManager;
+import project.DataSourceFactory;
+import project.LeaseManager;
+import project.PooledDataSource;
+import project.SchemaMigration;
+import project.impl.Car;
+import project.impl.CarManagerImpl;
+import project.impl.Customer;
+import project.impl.CustomerManagerImpl;
+import project.impl.Lease;
+import project.impl.LeaseManagerImpl;
+import project.impl.ReportManagerImpl;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded in-memory Derby database seeded with given number of leases,
+ * shared by all threads of one benchmark trial.
+ * Every car has a hundred consecutive leases, some of them running today.
+ * @author Daniel Jurca
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+    private static final int LEASES_PER_CAR = 100;
+    private static final int LEASES_PER_CUSTOMER = 20;
+    private static final int LEASE_DAYS = 3;
+    private static final int BATCH_SIZE = 5000;
+    private static final AtomicLong databases = new AtomicLong();
+    /** schema version creating the occupancy of days */
+    private static final int OCCUPANCY_VERSION = 3;
+
+    @Param({"1000", "100000", "1000000"})
+    public int leases;
+
+    private String url;
+    private PooledDataSource dataSource;
+    private CarManager carManager;
+    private CustomerManager customerManager;
+    private LeaseManager leaseManager;
+    private ReportManagerImpl reportManager;
+    private List<Car> cars;
+    private List<Customer> customers;
+    private final AtomicLong createdLeases = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void seed() {
+        url = "jdbc:derby:memory:CarRentalBenchmark" + databases.incrementAndGet();
+        dataSource = new DataSourceFactory().createDataSource(EmbeddedDriver.class.getName(), url + ";create=true");
+        new SchemaMigration(dataSource).migrate(schemaVersion());
+        carManager = new CarManagerImpl(dataSource);
+        customerManager = new CustomerManagerImpl(dataSource);
+        leaseManager = new LeaseManagerImpl(dataSource, customerManager, carManager);
+        if (schemaVersion() >= OCCUPANCY_VERSION) {
+            reportManager = new ReportManagerImpl(dataSource, leaseManager);
+        }
+
+        cars = new ArrayList<>();
+        for (int i = 0; i < Math.max(10, leases / LEASES_PER_CAR); i++) {
+            cars.add(new Car(null, "Car " + i, "Benchmark car number " + i, new BigDecimal(1000 + i % 50)));
+        }
+        carManager.createCars(cars);
+
+        customers = new ArrayList<>();
+        for (int i = 0; i < Math.max(10, leases / LEASES_PER_CUSTOMER); i++) {
+            customers.add(new Customer(null, "Customer " + i, "Street " + i, String.valueOf(600000000 + i)));
+        }
+        customerManager.createCustomers(customers);
+
+        seedLeases();
+        if (reportManager != null) {
+            reportManager.rebuildOccupancy();
+        }
+    }
+
+    /**
+     * @return version the schema is migrated to
+     */
+    protected int schemaVersion() {
+        return Integer.MAX_VALUE;
+    }
+
+    private void seedLeases() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        LocalDate firstStart = LocalDate.now().minusDays(LEASES_PER_CAR * (LEASE_DAYS + 1) / 2);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < leases; i++) {
+            Car car = cars.get(i % cars.size());
+            LocalDate start = firstStart.plusDays((i / cars.size()) * (LEASE_DAYS + 1));
+            batch.add(new Object[]{car.getId(), customers.get(i % customers.size()).getId(),
+                    Date.valueOf(start), Date.valueOf(start.plusDays(LEASE_DAYS)), car.getDailyPrice()});
+            if (batch.size() == BATCH_SIZE || i == leases - 1) {
+                jdbc.batchUpdate("INSERT INTO leases (leasedcarid, customerid, startdate, enddate, price) " +
+                        "VALUES (?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void drop() throws SQLException {
+        dataSource.close();
+        try {
+            new EmbeddedDriver().connect(url + ";drop=true", null);
+        } catch (SQLException e) {
+            // dropping a database is reported by an exception
+        }
+    }
+
+    /**
+     * @return report manager, null when the schema has no occupancy of days
+     */
+    public ReportManagerImpl getReportManager() {
+        return reportManager;
+    }
+
+    public CarManager getCarManager() {
+        return carManager;
+    }
+
+    public CustomerManager getCustomerManager() {
+        return customerManager;
+    }
+
+    public LeaseManager getLeaseManager() {
+        return leaseManager;
+    }
+
+    public Car randomCar() {
+        return cars.get(ThreadLocalRandom.current().nextInt(cars.size()));
+    }
+
+    public Customer randomCustomer() {
+        return customers.get(ThreadLocalRandom.current().nextInt(customers.size()));
+    }
+
+    /**
+     * @return id of a seeded lease, leases are seeded before anything else so their ids start at one
+     */
+    public long randomLeaseId() {
+        return 1 + ThreadLocalRandom.current().nextInt(leases);
+    }
+
+    /**
+     * @return one day lease which does not overlap any other lease of its car
+     */
+    public Lease newLease() {
+        long n = createdLeases.getAndIncrement();
+        Car car = cars.get((int) (n % cars.size()));
+        LocalDate start = LocalDate.of(2100, 1, 1).plusDays(n / cars.size());
+        return new Lease(null, randomCustomer(), car, start, start.plusDays(1), car.getDailyPrice());
+    }
+}
@@ -0,0 +1,43 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import project.impl.Car;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of car manager operations
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarManagerBenchmark {
+
+    @Benchmark
+    public Car createCar(BenchmarkDatabase database) {
+        Car car = new Car(null, "Skoda Superb", "Made in CZ, diesel", new BigDecimal(1500));
+        database.getCarManager().createCar(car);
+        return car;
+    }
+
+    @Benchmark
+    public Car getCarById(BenchmarkDatabase database) {
+        return database.getCarManager().getCarById(database.randomCar().getId());
+    }
+
+    @Benchmark
+    public List<Car> findAllCars(BenchmarkDatabase database) {
+        return database.getCarManager().findAllCars();
+    }
+}
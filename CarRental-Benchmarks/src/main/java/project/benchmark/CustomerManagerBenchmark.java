@@ -0,0 +1,54 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import project.impl.Customer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of customer manager operations
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerManagerBenchmark {
+
+    @Benchmark
+    public Customer createCustomer(BenchmarkDatabase database) {
+        Customer customer = new Customer(null, "Jack Black", "Minnesota, Avelanche 16", "602463193");
+        database.getCustomerManager().createCustomer(customer);
+        return customer;
+    }
+
+    @Benchmark
+    public Customer getCustomerById(BenchmarkDatabase database) {
+        return database.getCustomerManager().getCustomerById(database.randomCustomer().getId());
+    }
+
+    @Benchmark
+    public List<Customer> findAllCustomers(BenchmarkDatabase database) {
+        return database.getCustomerManager().findAllCustomers();
+    }
+
+    @Benchmark
+    public List<Customer> searchCustomersByPrefix(BenchmarkDatabase database) {
+        String fullName = database.randomCustomer().getFullName();
+        return database.getCustomerManager().searchCustomers(fullName.substring(0, fullName.length() - 1), 10);
+    }
+
+    @Benchmark
+    public List<Customer> searchCustomersWithTypo(BenchmarkDatabase database) {
+        String fullName = database.randomCustomer().getFullName();
+        return database.getCustomerManager().searchCustomers(fullName.replace("ome", "mo"), 10);
+    }
+}
@@ -0,0 +1,56 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import project.impl.Car;
+import project.impl.Customer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries depending on the indexes of schema version 2, measured against
+ * schema version 1 without them and version 2 with them
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class VersionedDatabase extends BenchmarkDatabase {
+        @Param({"1", "2"})
+        public int schemaVersion;
+
+        @Override
+        protected int schemaVersion() {
+            return schemaVersion;
+        }
+    }
+
+    @Benchmark
+    public List<Customer> findCustomerByName(VersionedDatabase database) {
+        return database.getCustomerManager().findCustomerByName(database.randomCustomer().getFullName());
+    }
+
+    @Benchmark
+    public List<Car> findLeasedCars(VersionedDatabase database) {
+        return database.getLeaseManager().findLeasedCars();
+    }
+
+    @Benchmark
+    public List<Car> findUnleasedCars(VersionedDatabase database) {
+        return database.getLeaseManager().findUnleasedCars();
+    }
+}
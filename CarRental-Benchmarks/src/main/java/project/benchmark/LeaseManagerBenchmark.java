@@ -0,0 +1,78 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import project.impl.Car;
+import project.impl.Lease;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of lease manager operations
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaseManagerBenchmark {
+
+    @Benchmark
+    public Lease createLease(BenchmarkDatabase database) {
+        Lease lease = database.newLease();
+        database.getLeaseManager().createLease(lease);
+        return lease;
+    }
+
+    /**
+     * Leases created one after another are of different cars and share days,
+     * their writers record occupancy without waiting for each other
+     */
+    @Benchmark
+    @Threads(4)
+    public Lease createLeaseConcurrently(BenchmarkDatabase database) {
+        Lease lease = database.newLease();
+        database.getLeaseManager().createLease(lease);
+        return lease;
+    }
+
+    @Benchmark
+    public Lease getLeaseById(BenchmarkDatabase database) {
+        return database.getLeaseManager().getLeaseById(database.randomLeaseId());
+    }
+
+    @Benchmark
+    public List<Lease> findAllLeases(BenchmarkDatabase database) {
+        return database.getLeaseManager().findAllLeases();
+    }
+
+    @Benchmark
+    public List<Lease> findLeasesForCar(BenchmarkDatabase database) {
+        return database.getLeaseManager().findLeasesForCar(database.randomCar());
+    }
+
+    @Benchmark
+    public List<Lease> findLeasesForCustomer(BenchmarkDatabase database) {
+        return database.getLeaseManager().findLeasesForCustomer(database.randomCustomer());
+    }
+
+    @Benchmark
+    public List<Car> findUnleasedCars(BenchmarkDatabase database) {
+        return database.getLeaseManager().findUnleasedCars();
+    }
+
+    @Benchmark
+    public List<Car> findAvailableCars(BenchmarkDatabase database) {
+        LocalDate today = LocalDate.now();
+        return database.getLeaseManager().findAvailableCars(today, today.plusDays(7));
+    }
+}
@@ -0,0 +1,123 @@
+package project.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.impl.Car;
+import project.impl.CarManagerImpl;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of getCarById of an existing and a missing car with the current logging of
+ * the managers, compared with the former logging: two debug messages per call, the first
+ * logged before the query, and an error for every miss. The former messages are logged
+ * around the current manager, whose sampled messages add little. Log lines are formatted
+ * by the usual pattern and written to a stream discarding them, so the console adds no
+ * cost; level INFO is the configuration of the web application, DEBUG the former default
+ * of logback without a configuration.
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private static final Logger formerLog = LoggerFactory.getLogger(CarManagerImpl.class);
+    /** added to ids of cars to get ids which do not exist */
+    private static final long MISSING = 1_000_000_000L;
+
+    @Param({"INFO", "DEBUG"})
+    public String level;
+
+    private ch.qos.logback.classic.Logger root;
+    private Appender<ILoggingEvent> formerAppender;
+    private Appender<ILoggingEvent> appender;
+
+    @Setup
+    public void configureLogging() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> discarding = new OutputStreamAppender<>();
+        discarding.setContext(context);
+        discarding.setEncoder(encoder);
+        discarding.setOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        discarding.start();
+        root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        formerAppender = root.getAppender("CONSOLE");
+        if (formerAppender != null) root.detachAppender(formerAppender);
+        root.addAppender(discarding);
+        appender = discarding;
+        context.getLogger("project").setLevel(Level.toLevel(level));
+    }
+
+    @TearDown
+    public void restoreLogging() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.getLogger("project").setLevel(null);
+        root.detachAppender(appender);
+        appender.stop();
+        if (formerAppender != null) root.addAppender(formerAppender);
+    }
+
+    @Benchmark
+    public Car getCarById(BenchmarkDatabase database) {
+        return database.getCarManager().getCarById(database.randomCar().getId());
+    }
+
+    @Benchmark
+    public Car getMissingCarById(BenchmarkDatabase database) {
+        return database.getCarManager().getCarById(database.randomCar().getId() + MISSING);
+    }
+
+    @Benchmark
+    public Car getCarByIdFormerLogging(BenchmarkDatabase database) {
+        return formerGetCarById(database, database.randomCar().getId());
+    }
+
+    @Benchmark
+    public Car getMissingCarByIdFormerLogging(BenchmarkDatabase database) {
+        return formerGetCarById(database, database.randomCar().getId() + MISSING);
+    }
+
+    private static Car formerGetCarById(BenchmarkDatabase database, Long id) {
+        formerLog.debug("Finding car");
+        formerLog.debug("Car found");
+        Car car = database.getCarManager().getCarById(id);
+        if (car == null) {
+            formerLog.error("Car not found");
+        }
+        return car;
+    }
+}
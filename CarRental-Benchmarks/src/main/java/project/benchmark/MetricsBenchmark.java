@@ -0,0 +1,67 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import project.CarManager;
+import project.LatencyTimer;
+import project.Metrics;
+import project.impl.Car;
+import project.impl.Instrumented;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of timing calls: recording into a timer alone and from several threads,
+ * and getCarById of the plain manager compared with the manager timed by
+ * {@link Instrumented}.
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private LatencyTimer timer;
+    private CarManager instrumentedCarManager;
+    private long nanos;
+
+    @Setup
+    public void createMetrics(BenchmarkDatabase database) {
+        Metrics metrics = new Metrics();
+        timer = metrics.timer("benchmark");
+        instrumentedCarManager = Instrumented.wrap(CarManager.class, database.getCarManager(), metrics);
+    }
+
+    @Benchmark
+    public void record() {
+        timer.record(nanos++ & 0xFFFFF, false);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordFromThreads() {
+        timer.record(System.nanoTime() & 0xFFFFF, false);
+    }
+
+    @Benchmark
+    public Car getCarById(BenchmarkDatabase database) {
+        return database.getCarManager().getCarById(database.randomCar().getId());
+    }
+
+    @Benchmark
+    public Car getCarByIdInstrumented(BenchmarkDatabase database) {
+        return instrumentedCarManager.getCarById(database.randomCar().getId());
+    }
+}
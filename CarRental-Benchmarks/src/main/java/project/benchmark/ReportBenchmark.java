@@ -0,0 +1,70 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import project.DailyOccupancy;
+import project.ReportManager;
+import project.UsageReport;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports of a period kept in memory, compared with reports of periods read
+ * from the database, and occupancy of days of a year
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+    /** more periods than the report manager keeps, so random periods are mostly read */
+    private static final int PERIODS = 365;
+
+    @State(Scope.Benchmark)
+    public static class Reports {
+        private ReportManager reportManager;
+        private LocalDate today;
+
+        @Setup
+        public void createManager(BenchmarkDatabase database) {
+            reportManager = database.getReportManager();
+            today = LocalDate.now();
+        }
+    }
+
+    @Benchmark
+    public Map<YearMonth, UsageReport> reportByMonthKept(Reports reports) {
+        return reports.reportManager.reportByMonth(reports.today.minusYears(1), reports.today);
+    }
+
+    @Benchmark
+    public Map<YearMonth, UsageReport> reportByMonthRead(Reports reports) {
+        LocalDate from = reports.today.minusYears(1).plusDays(ThreadLocalRandom.current().nextInt(PERIODS));
+        return reports.reportManager.reportByMonth(from, from.plusYears(1));
+    }
+
+    @Benchmark
+    public List<DailyOccupancy> findOccupancy(Reports reports) {
+        return reports.reportManager.findOccupancy(reports.today.minusYears(1), reports.today);
+    }
+
+    @Benchmark
+    public Map<Long, UsageReport> reportByCarKept(Reports reports) {
+        return reports.reportManager.reportByCar(reports.today.minusYears(1), reports.today);
+    }
+}
@@ -0,0 +1,82 @@
+package project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import project.exception.ValidationException;
+import project.impl.Customer;
+import project.impl.Validators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a batch of customers by the shared validator, compared with
+ * the checks the customer manager did before, which matched the phone number
+ * by a regular expression compiled on every call. Runs without a database,
+ * run with -prof gc to see allocations.
+ * @author Daniel Jurca
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+    private static final int CUSTOMERS = 1000;
+
+    private List<Customer> customers;
+
+    @Setup
+    public void createCustomers() {
+        customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customers.add(new Customer(null, "Customer " + i, "Street " + i, String.valueOf(600000000 + i)));
+        }
+    }
+
+    @Benchmark
+    public void regularExpression(Blackhole blackhole) {
+        for (Customer customer : customers) {
+            blackhole.consume(validateByRegularExpression(customer));
+        }
+    }
+
+    @Benchmark
+    public void validator(Blackhole blackhole) {
+        for (Customer customer : customers) {
+            blackhole.consume(Validators.CUSTOMER.firstViolation(customer));
+        }
+    }
+
+    @Benchmark
+    public void validatorBatch() {
+        Validators.CUSTOMER.checkAll(customers);
+    }
+
+    /**
+     * Checks of customer properties as they were written in the customer manager
+     */
+    private static Customer validateByRegularExpression(Customer customer) {
+        if (customer.getFullName() == null || customer.getAddress() == null || customer.getPhoneNumber() == null) {
+            throw new ValidationException("Some of the properties are null!");
+        }
+        if (customer.getFullName().isEmpty() || customer.getAddress().isEmpty() || customer.getPhoneNumber().isEmpty()) {
+            throw new ValidationException("Some of the properties are empty!");
+        }
+        if (!customer.getPhoneNumber().matches("[0-9]+")) {
+            throw new ValidationException("Wrong format of phone number");
+        }
+        return customer;
+    }
+}
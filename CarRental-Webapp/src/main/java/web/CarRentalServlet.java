@@ -4,10 +4,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import project.CarManager;
 import project.CustomerManager;
+import project.LeaseManager;
+import project.Page;
 import project.exception.IllegalEntityException;
+import project.exception.LeaseConflictException;
 import project.exception.ValidationException;
 import project.impl.Car;
 import project.impl.Customer;
+import project.impl.Lease;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -16,6 +20,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.function.BiFunction;
 
 /**
  * Servlet for CarRental.
@@ -26,6 +33,7 @@ import java.math.BigDecimal;
 public class CarRentalServlet extends HttpServlet {
 
     private static final String LIST_JSP = "/list.jsp";
+    private static final int PAGE_SIZE = 50;
     public static final String URL_MAPPING = "/CarRental";
 
     private final static Logger log = LoggerFactory.getLogger(web.CarRentalServlet.class);
@@ -55,8 +63,16 @@ public class CarRentalServlet extends HttpServlet {
                 addCustomer(request, response);
                 break;
             case "/deleteCustomer":
+                deleteCustomer(request, response);
                 break;
             case "/updateCustomer":
+                editCustomer(request, response);
+                break;
+            case "/addLease":
+                addLease(request, response);
+                break;
+            case "/endLease":
+                endLease(request, response);
                 break;
             default:
                 log.error("Unknown action " + action);
@@ -72,11 +88,35 @@ public class CarRentalServlet extends HttpServlet {
         return (CustomerManager) getServletContext().getAttribute("customerManager");
     }
 
+    private LeaseManager getLeaseManager() {
+        return (LeaseManager) getServletContext().getAttribute("leaseManager");
+    }
+
     private void showData(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         try {
             log.debug("showing table of cars");
-            request.setAttribute("cars", getCarManager().findAllCars());
+            Page<Car> page = page(request, "", getCarManager()::findCarsAfter, getCarManager()::findCarsBefore);
+            request.setAttribute("cars", page.getItems());
+            request.setAttribute("carsPage", page);
+            request.setAttribute("customersPage", page(request, "customers",
+                    getCustomerManager()::findCustomersAfter, getCustomerManager()::findCustomersBefore));
+            request.setAttribute("leasesPage", page(request, "leases",
+                    getLeaseManager()::findLeasesAfter, getLeaseManager()::findLeasesBefore));
+            String from = request.getParameter("from");
+            String to = request.getParameter("to");
+            if (from != null && !from.isEmpty() && to != null && !to.isEmpty()) {
+                try {
+                    request.setAttribute("availableCars",
+                            getLeaseManager().findAvailableCars(LocalDate.parse(from), LocalDate.parse(to)));
+                } catch (DateTimeParseException | IllegalArgumentException e) {
+                    log.debug("invalid period", e);
+                    request.setAttribute("chyba", "Zadejte období jako RRRR-MM-DD, konec po začátku !");
+                }
+            }
             request.getRequestDispatcher(LIST_JSP).forward(request, response);
+        } catch (NumberFormatException e) {
+            log.debug("invalid page cursor", e);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
         } catch (IllegalEntityException | ValidationException e) {
             log.error("Cannot show cars", e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
@@ -124,8 +164,30 @@ public class CarRentalServlet extends HttpServlet {
     }
 
     private void editCar(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
-        Long id = Long.valueOf(request.getParameter("carId"));
-
+        try {
+            Car car = getCarManager().getCarById(Long.valueOf(request.getParameter("carId")));
+            if (car == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "No car " + request.getParameter("carId"));
+                return;
+            }
+            car.setCarBrand(request.getParameter("carBrand"));
+            car.setDescription(request.getParameter("description"));
+            car.setDailyPrice(new BigDecimal(request.getParameter("dailyPrice")));
+            getCarManager().updateCar(car);
+            log.debug("redirecting after POST");
+            response.sendRedirect(request.getContextPath()+URL_MAPPING);
+        } catch (NumberFormatException | NullPointerException e) {
+            log.debug("form data invalid", e);
+            request.setAttribute("chyba", "Je nutné vyplnit všechny hodnoty !");
+            showData(request, response);
+        } catch (ValidationException e) {
+            log.debug("Invalid car", e);
+            request.setAttribute("chyba", String.join(", ", e.getErrors()));
+            showData(request, response);
+        } catch (IllegalEntityException e) {
+            log.error("Cannot update car", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
     }
 
     private void addCustomer(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
@@ -153,4 +215,129 @@ public class CarRentalServlet extends HttpServlet {
             return;
         }
     }
+
+    private void deleteCustomer(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
+        try {
+            Customer customer = getCustomerManager().getCustomerById(Long.valueOf(request.getParameter("customerId")));
+            if (customer == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "No customer " + request.getParameter("customerId"));
+                return;
+            }
+            getCustomerManager().deleteCustomer(customer);
+            log.debug("redirecting after POST");
+            response.sendRedirect(request.getContextPath()+URL_MAPPING);
+        } catch (NumberFormatException e) {
+            log.debug("invalid customer id", e);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid customer id");
+        } catch (IllegalEntityException | ValidationException e) {
+            log.error("Cannot delete customer", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    private void editCustomer(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
+        try {
+            Customer customer = getCustomerManager().getCustomerById(Long.valueOf(request.getParameter("customerId")));
+            if (customer == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "No customer " + request.getParameter("customerId"));
+                return;
+            }
+            customer.setFullName(request.getParameter("fullName"));
+            customer.setAddress(request.getParameter("address"));
+            customer.setPhoneNumber(request.getParameter("phoneNumber"));
+            getCustomerManager().updateCustomer(customer);
+            log.debug("redirecting after POST");
+            response.sendRedirect(request.getContextPath()+URL_MAPPING);
+        } catch (NumberFormatException e) {
+            log.debug("invalid customer id", e);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid customer id");
+        } catch (ValidationException e) {
+            log.debug("Invalid customer", e);
+            request.setAttribute("chyba", String.join(", ", e.getErrors()));
+            showData(request, response);
+        } catch (IllegalEntityException e) {
+            log.error("Cannot update customer", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Lease car to customer, price per day is the daily price of the car when not given
+     */
+    private void addLease(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
+        try {
+            Customer customer = getCustomerManager().getCustomerById(Long.valueOf(request.getParameter("customerId")));
+            Car car = getCarManager().getCarById(Long.valueOf(request.getParameter("carId")));
+            if (customer == null || car == null) {
+                request.setAttribute("chyba", customer == null ? "Zákazník neexistuje !" : "Auto neexistuje !");
+                showData(request, response);
+                return;
+            }
+            String price = request.getParameter("price");
+            Lease lease = new Lease(null, customer, car, LocalDate.parse(request.getParameter("start")),
+                    LocalDate.parse(request.getParameter("end")),
+                    price == null || price.isEmpty() ? car.getDailyPrice() : new BigDecimal(price));
+            getLeaseManager().createLease(lease);
+            log.debug("redirecting after POST");
+            response.sendRedirect(request.getContextPath()+URL_MAPPING);
+        } catch (NumberFormatException | NullPointerException | DateTimeParseException e) {
+            log.debug("form data invalid", e);
+            request.setAttribute("chyba", "Je nutné vyplnit všechny hodnoty !");
+            showData(request, response);
+        } catch (LeaseConflictException e) {
+            log.debug("Car is leased", e);
+            request.setAttribute("chyba", "Auto je v zadaném období pronajaté !");
+            showData(request, response);
+        } catch (ValidationException e) {
+            log.debug("Invalid lease", e);
+            request.setAttribute("chyba", String.join(", ", e.getErrors()));
+            showData(request, response);
+        } catch (IllegalEntityException e) {
+            log.error("Cannot add lease", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * End lease on the given day, today when not given, the car is available from that day
+     */
+    private void endLease(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException{
+        try {
+            Lease lease = getLeaseManager().getLeaseById(Long.valueOf(request.getParameter("leaseId")));
+            if (lease == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "No lease " + request.getParameter("leaseId"));
+                return;
+            }
+            String end = request.getParameter("end");
+            lease.setEnd(end == null || end.isEmpty() ? LocalDate.now() : LocalDate.parse(end));
+            getLeaseManager().updateLease(lease);
+            log.debug("redirecting after POST");
+            response.sendRedirect(request.getContextPath()+URL_MAPPING);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            log.debug("form data invalid", e);
+            request.setAttribute("chyba", "Zadejte konec jako RRRR-MM-DD !");
+            showData(request, response);
+        } catch (ValidationException e) {
+            log.debug("Invalid end of lease", e);
+            request.setAttribute("chyba", String.join(", ", e.getErrors()));
+            showData(request, response);
+        } catch (IllegalEntityException e) {
+            log.error("Cannot end lease", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Page of entities by cursor parameters {prefix}After or {prefix}Before, after and before without prefix
+     * @throws NumberFormatException when the cursor is not a number
+     */
+    private static <T> Page<T> page(HttpServletRequest request, String prefix,
+                                    BiFunction<Long, Integer, Page<T>> findAfter,
+                                    BiFunction<Long, Integer, Page<T>> findBefore) {
+        String after = request.getParameter(prefix.isEmpty() ? "after" : prefix + "After");
+        String before = request.getParameter(prefix.isEmpty() ? "before" : prefix + "Before");
+        return before != null && !before.isEmpty()
+                ? findBefore.apply(Long.valueOf(before), PAGE_SIZE)
+                : findAfter.apply(after == null || after.isEmpty() ? null : Long.valueOf(after), PAGE_SIZE);
+    }
 }
@@ -0,0 +1,107 @@
+package web;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.DataSourceFactory;
+import project.Main;
+import project.SchemaMigration;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.servlet.ServletContext;
+import javax.sql.DataSource;
+
+/**
+ * Data source of the web application chosen by context parameter carRental.database:
+ * <pre>
+ * memory    in-memory Derby filled with sample data, lost on restart (default)
+ * embedded  Derby in files of directory carRental.database.path
+ * network   Derby network server carRental.database.server, .port and .name
+ * jndi      data source of the container named carRental.database.jndiName
+ * </pre>
+ * Pools of embedded and network data sources are sized by carRental.database.poolSize,
+ * carRental.database.statementCacheSize and carRental.database.initialSize.
+ * The schema is migrated before the data source is returned.
+ *
+ * @author Daniel Jurca
+ */
+final class DataSourceConfig {
+
+    private final static Logger log = LoggerFactory.getLogger(DataSourceConfig.class);
+    public static final String DATABASE = "carRental.database";
+    public static final String PATH = DATABASE + ".path";
+    public static final String SERVER = DATABASE + ".server";
+    public static final String PORT = DATABASE + ".port";
+    public static final String NAME = DATABASE + ".name";
+    public static final String JNDI_NAME = DATABASE + ".jndiName";
+    public static final String POOL_SIZE = DATABASE + ".poolSize";
+    public static final String STATEMENT_CACHE_SIZE = DATABASE + ".statementCacheSize";
+    public static final String INITIAL_SIZE = DATABASE + ".initialSize";
+
+    private DataSourceConfig() {
+    }
+
+    /**
+     * @throws IllegalStateException when the database is unknown or the JNDI name is not bound
+     */
+    static DataSource create(ServletContext context) {
+        String database = parameter(context, DATABASE, "memory");
+        log.info("databáze {}", database);
+        if (database.equals("memory")) {
+            return Main.createMemoryDatabase();
+        }
+        DataSource dataSource;
+        switch (database) {
+            case "embedded":
+                dataSource = factory(context).createEmbeddedDataSource(parameter(context, PATH, "CarRentalDB"));
+                break;
+            case "network":
+                dataSource = factory(context).createNetworkDataSource(parameter(context, SERVER, "localhost"),
+                        Integer.parseInt(parameter(context, PORT, "1527")),
+                        parameter(context, NAME, "CarRentalDatabase"));
+                break;
+            case "jndi":
+                String jndiName = parameter(context, JNDI_NAME, "java:comp/env/jdbc/CarRental");
+                try {
+                    dataSource = (DataSource) new InitialContext().lookup(jndiName);
+                } catch (NamingException e) {
+                    throw new IllegalStateException("No data source " + jndiName, e);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown database " + database
+                        + ", expected memory, embedded, network or jndi");
+        }
+        new SchemaMigration(dataSource).migrate();
+        return dataSource;
+    }
+
+    /**
+     * @return number of connections the pool opens at start, to be warmed up; one for a
+     * data source of the container, whose pool is unknown
+     */
+    static int warmConnections(DataSource dataSource) {
+        if (!(dataSource instanceof BasicDataSource)) return 1;
+        BasicDataSource pool = (BasicDataSource) dataSource;
+        int connections = Math.max(1, Math.max(pool.getInitialSize(), pool.getMinIdle()));
+        return pool.getMaxTotal() > 0 ? Math.min(connections, pool.getMaxTotal()) : connections;
+    }
+
+    private static DataSourceFactory factory(ServletContext context) {
+        DataSourceFactory factory = new DataSourceFactory();
+        factory.setPoolSize(Integer.parseInt(parameter(context, POOL_SIZE,
+                Integer.toString(DataSourceFactory.DEFAULT_POOL_SIZE))));
+        factory.setStatementCacheSize(Integer.parseInt(parameter(context, STATEMENT_CACHE_SIZE,
+                Integer.toString(DataSourceFactory.DEFAULT_STATEMENT_CACHE_SIZE))));
+        // the whole pool is opened during warm-up, not by the first requests
+        factory.setInitialSize(Integer.parseInt(parameter(context, INITIAL_SIZE,
+                Integer.toString(factory.getPoolSize()))));
+        return factory;
+    }
+
+    private static String parameter(ServletContext context, String name, String defaultValue) {
+        String value = context.getInitParameter(name);
+        return value == null ? defaultValue : value.trim();
+    }
+}
@@ -0,0 +1,405 @@
+package web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.CarManager;
+import project.CustomerManager;
+import project.EntityChangeEvent;
+import project.LeaseManager;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends change events of cars, customers and leases to subscribed clients as
+ * Server-Sent Events. Managers only put an event to the inbox, one fan-out
+ * thread keeps the last events for replay and hands them to queues of
+ * subscribers, a few writer threads drain those queues to the clients.
+ * A subscriber whose queue is full is disconnected instead of slowing down
+ * the others, it catches up by the replay when it reconnects.
+ * <p>
+ * Event ids are {@code {run}-{number}}, where the run is random for every start of the
+ * application. A client reconnecting with an id of another run, whose number would mean
+ * an unrelated event of this run, gets event reset as for events no longer kept.
+ * <p>
+ * Writes to a client block while the client does not read. A subscriber whose
+ * write lasts longer than {@link #WRITE_TIMEOUT_MILLIS} is disconnected by a
+ * watchdog and a spare writer thread takes the place of the blocked one, so the
+ * other subscribers are delayed at most by the deadline. The blocked thread ends
+ * when the container gives up the write; up to {@link #MAX_SPARE_WRITERS} writers
+ * are replaced at once, beyond them the other subscribers wait for a free writer.
+ *
+ * @author Daniel Jurca
+ */
+class EventBroadcaster {
+
+    private final static Logger log = LoggerFactory.getLogger(EventBroadcaster.class);
+    public static final int DEFAULT_REPLAY_SIZE = 1024;
+    /** events waiting for one subscriber before it is disconnected */
+    public static final int SUBSCRIBER_QUEUE_SIZE = 256;
+    private static final int WRITER_THREADS = 2;
+    /** milliseconds one write to a client may block before the client is disconnected */
+    static final long WRITE_TIMEOUT_MILLIS = 5000;
+    /** most writer threads blocked past the deadline which are replaced by spare ones */
+    static final int MAX_SPARE_WRITERS = 8;
+    private static final long WATCHDOG_MILLIS = 1000;
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final String HEARTBEAT = ":\n\n";
+    private static final Frame STOP = new Frame(0, "");
+
+    private final int replaySize;
+    /** distinguishes ids of events of this run from ids of previous runs, which start from zero too */
+    private final String run = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, Character.MAX_RADIX);
+    private final long writeTimeoutNanos;
+    private final BlockingQueue<Frame> inbox = new LinkedBlockingQueue<>();
+    /** guarded by this, together with subscribing */
+    private final ArrayDeque<Frame> replay = new ArrayDeque<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService watchdog;
+    private final Thread fanOut;
+    /** writer threads added in place of blocked ones, guarded by writers */
+    private int spareWriters;
+    /** guarded by this */
+    private long lastId;
+
+    /**
+     * @param replaySize - number of last events sent again to a reconnecting client
+     */
+    EventBroadcaster(CarManager carManager, CustomerManager customerManager, LeaseManager leaseManager,
+                     int replaySize) {
+        this(carManager, customerManager, leaseManager, replaySize, WRITE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param writeTimeoutMillis - milliseconds one write to a client may block before the client is disconnected
+     */
+    EventBroadcaster(CarManager carManager, CustomerManager customerManager, LeaseManager leaseManager,
+                     int replaySize, long writeTimeoutMillis) {
+        this.replaySize = replaySize;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        long watchdogMillis = Math.min(WATCHDOG_MILLIS, writeTimeoutMillis);
+        AtomicInteger count = new AtomicInteger();
+        writers = new ThreadPoolExecutor(WRITER_THREADS, WRITER_THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "carRental-events-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "carRental-events-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::disconnectBlocked, watchdogMillis, watchdogMillis,
+                TimeUnit.MILLISECONDS);
+        fanOut = new Thread(this::fanOut, "carRental-events");
+        fanOut.setDaemon(true);
+        fanOut.start();
+        carManager.addChangeListener(event -> publish("car", event));
+        customerManager.addChangeListener(event -> publish("customer", event));
+        leaseManager.addChangeListener(event -> publish("lease", event));
+    }
+
+    /**
+     * Start sending events to the client of the async context
+     * @param lastEventId - id of the last event the client has got, null for a new client
+     */
+    void subscribe(AsyncContext async, String lastEventId) {
+        Subscriber subscriber = new Subscriber(async);
+        async.addListener(subscriber);
+        Long last = eventNumber(lastEventId);
+        synchronized (this) {
+            if (lastEventId != null) {
+                Frame oldest = replay.peekFirst();
+                long firstKept = oldest == null ? lastId + 1 : oldest.id;
+                if (last == null || last + 1 < firstKept || last > lastId) {
+                    // events were missed or are of a previous run, the client has to read everything again
+                    subscriber.offer(new Frame(lastId, "id: " + id(lastId) + "\nevent: reset\ndata: {}\n\n"));
+                } else {
+                    for (Frame frame : replay) {
+                        if (frame.id > last) subscriber.offer(frame);
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        subscriber.offer(new Frame(0, HEARTBEAT));
+        log.debug("Subscribed client after event {}, {} subscribers", lastEventId, subscribers.size());
+    }
+
+    /**
+     * @return number of the event of this run, null when the id is of another run or is not valid
+     */
+    private Long eventNumber(String id) {
+        if (id == null || !id.startsWith(run + "-")) return null;
+        try {
+            return Long.valueOf(id.substring(run.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String id(long number) {
+        return run + "-" + number;
+    }
+
+    /**
+     * Disconnect all clients and stop threads. Writers blocked on a client end when
+     * the container gives up the write, they do not keep the application running.
+     */
+    void shutdown() {
+        inbox.add(STOP);
+        watchdog.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        writers.shutdownNow();
+    }
+
+    /**
+     * Disconnect subscribers whose write has lasted past the deadline
+     */
+    private void disconnectBlocked() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isBlocked(now)) {
+                log.debug("Write to subscriber timed out, disconnecting it");
+                subscriber.abandon();
+            }
+        }
+    }
+
+    /**
+     * Add a writer thread in place of one blocked on an abandoned subscriber
+     * @return false when too many writers are replaced already
+     */
+    private boolean addSpareWriter() {
+        synchronized (writers) {
+            if (spareWriters == MAX_SPARE_WRITERS) return false;
+            spareWriters++;
+            writers.setMaximumPoolSize(WRITER_THREADS + spareWriters);
+            writers.setCorePoolSize(WRITER_THREADS + spareWriters);
+            return true;
+        }
+    }
+
+    private void removeSpareWriter() {
+        synchronized (writers) {
+            spareWriters--;
+            writers.setCorePoolSize(WRITER_THREADS + spareWriters);
+            writers.setMaximumPoolSize(WRITER_THREADS + spareWriters);
+        }
+    }
+
+    /**
+     * Called by managers after commit, only formats the event, so it does not delay the writer
+     */
+    private void publish(String name, EntityChangeEvent<?> event) {
+        StringWriter data = new StringWriter();
+        try {
+            JsonWriter writer = new JsonWriter(data);
+            writer.beginObject().field("type", event.getType().name()).name(name);
+            RestServlet.writeEntity(writer, event.getEntity());
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("StringWriter does not fail", e);
+        }
+        inbox.add(new Frame(-1, "event: " + name + "\ndata: " + data + "\n\n"));
+    }
+
+    private void fanOut() {
+        try {
+            while (true) {
+                Frame frame = inbox.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (frame == STOP) return;
+                if (frame == null) {
+                    // finds clients which have gone away
+                    deliver(new Frame(0, HEARTBEAT));
+                    continue;
+                }
+                // within the lock, so a subscriber gets the event either by replay or by delivery
+                synchronized (this) {
+                    lastId++;
+                    frame = new Frame(lastId, "id: " + id(lastId) + "\n" + frame.text);
+                    replay.addLast(frame);
+                    if (replay.size() > replaySize) replay.removeFirst();
+                    deliver(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Event fan-out interrupted");
+        }
+    }
+
+    private void deliver(Frame frame) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    private static final class Frame {
+        private final long id;
+        private final String text;
+
+        Frame(long id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private final class Subscriber implements AsyncListener {
+        private final AsyncContext async;
+        /** guarded by this */
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        /** true while a writer drains the queue, guarded by this */
+        private boolean draining;
+        /** true while a frame is written to the client, since writeStarted, changed to false under this */
+        private volatile boolean writing;
+        private volatile long writeStarted;
+        /** true once the write past the deadline was given up, guarded by this */
+        private boolean abandoned;
+        /** true when a spare writer was added for this subscriber, guarded by this */
+        private boolean spared;
+        private volatile boolean closed;
+
+        Subscriber(AsyncContext async) {
+            this.async = async;
+        }
+
+        /**
+         * Put the frame to the queue without waiting for the client
+         */
+        void offer(Frame frame) {
+            synchronized (this) {
+                if (closed) return;
+                if (queue.size() < SUBSCRIBER_QUEUE_SIZE) {
+                    queue.addLast(frame);
+                    if (draining) return;
+                    try {
+                        writers.execute(this::drain);
+                        draining = true;
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        log.debug("Broadcaster is shut down");
+                    }
+                } else {
+                    log.debug("Subscriber is too slow, disconnecting it");
+                }
+            }
+            close();
+        }
+
+        private void drain() {
+            try {
+                PrintWriter out = async.getResponse().getWriter();
+                while (true) {
+                    Frame frame;
+                    synchronized (this) {
+                        frame = queue.pollFirst();
+                        if (frame == null || closed) {
+                            draining = false;
+                            return;
+                        }
+                    }
+                    writeStarted = System.nanoTime();
+                    writing = true;
+                    try {
+                        out.write(frame.text);
+                        // flushes, PrintWriter of the response does not throw, it only remembers failure
+                        if (out.checkError()) {
+                            throw new IOException("Client has gone away");
+                        }
+                    } finally {
+                        writeDone();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Cannot send event", e);
+                synchronized (this) {
+                    draining = false;
+                }
+                close();
+            }
+        }
+
+        boolean isBlocked(long now) {
+            return writing && now - writeStarted > writeTimeoutNanos;
+        }
+
+        /**
+         * Disconnect the subscriber whose write is blocked, a spare writer serves the others
+         */
+        void abandon() {
+            synchronized (this) {
+                if (abandoned || !writing) return;
+                abandoned = true;
+                spared = addSpareWriter();
+            }
+            close();
+        }
+
+        /**
+         * End the write, giving up the spare writer added while it was blocked
+         */
+        private void writeDone() {
+            boolean release;
+            synchronized (this) {
+                writing = false;
+                release = spared;
+                spared = false;
+            }
+            if (release) removeSpareWriter();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                log.debug("Subscriber already completed", e);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
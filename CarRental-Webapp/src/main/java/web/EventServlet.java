@@ -0,0 +1,46 @@
+package web;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Server-Sent Events of changes of cars, customers and leases.
+ * <pre>
+ * GET /api/events   stream of events car, customer and lease with data {"type":..., "car"|"customer"|"lease":{...}}
+ * </pre>
+ * A client reconnecting with Last-Event-ID gets the events it has missed, or event
+ * reset when they are no longer kept or are of a previous run of the application,
+ * and it has to read the collections again.
+ *
+ * @author Daniel Jurca
+ */
+@WebServlet(value = RestServlet.URL_MAPPING + "/events", asyncSupported = true)
+public class EventServlet extends HttpServlet {
+
+    /** milliseconds a client waits before it reconnects */
+    private static final int RECONNECT_DELAY = 3000;
+
+    private EventBroadcaster getEventBroadcaster() {
+        return (EventBroadcaster) getServletContext().getAttribute("eventBroadcaster");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String header = request.getHeader("Last-Event-ID");
+        String lastEventId = header == null || header.trim().isEmpty() ? null : header.trim();
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("utf-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write("retry: " + RECONNECT_DELAY + "\n\n");
+        response.flushBuffer();
+        AsyncContext async = request.startAsync();
+        // the stream lasts until the client goes away
+        async.setTimeout(0);
+        getEventBroadcaster().subscribe(async, lastEventId);
+    }
+}
@@ -0,0 +1,227 @@
+package web;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a JSON document of a request body. Objects are read as maps,
+ * arrays as lists and numbers as BigDecimal. Objects and arrays nested
+ * deeper than {@link #MAX_DEPTH} are rejected, so a malicious document
+ * can not exhaust the stack.
+ *
+ * @author Daniel Jurca
+ */
+final class JsonReader {
+
+    /** deepest nesting of objects and arrays accepted */
+    static final int MAX_DEPTH = 32;
+
+    private final String text;
+    private int position;
+    /** objects and arrays being read */
+    private int depth;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text - JSON document
+     * @return the object the document consists of
+     * @throws IllegalArgumentException when the text is not a JSON object
+     */
+    static Map<String, Object> parseObject(String text) {
+        JsonReader reader = new JsonReader(text);
+        reader.skipWhitespace();
+        if (reader.peek() != '{') {
+            throw reader.error("Expected object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) reader.value();
+        reader.skipWhitespace();
+        if (reader.position < text.length()) {
+            throw reader.error("Unexpected text after object");
+        }
+        return object;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        char c = peek();
+        switch (c) {
+            case '{':
+                nest();
+                Map<String, Object> object = object();
+                depth--;
+                return object;
+            case '[':
+                nest();
+                List<Object> array = array();
+                depth--;
+                return array;
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return number();
+                }
+                throw error("Unexpected character");
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected name");
+            }
+            String name = string();
+            skipWhitespace();
+            expect(':');
+            object.put(name, value());
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            expect(',');
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            expect(',');
+        }
+    }
+
+    private void nest() {
+        if (++depth > MAX_DEPTH) {
+            throw error("Nesting deeper than " + MAX_DEPTH);
+        }
+    }
+
+    private String string() {
+        position++;
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("Unfinished escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    sb.append(escaped);
+            }
+        }
+    }
+
+    private BigDecimal number() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            return new BigDecimal(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object literal(String literal, Object value) {
+        if (!text.startsWith(literal, position)) {
+            throw error("Unexpected character");
+        }
+        position += literal.length();
+        return value;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            position--;
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("Unexpected end");
+        }
+        return text.charAt(position);
+    }
+
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " of JSON");
+    }
+}
@@ -0,0 +1,139 @@
+package web;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON straight to a writer token by token, so a long list is never
+ * held in memory as a whole. Commas between values are added automatically.
+ *
+ * @author Daniel Jurca
+ */
+final class JsonWriter {
+
+    private final Writer out;
+    /** true when the next value is the first one of its object or array, or follows a name */
+    private boolean first = true;
+
+    JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        separate();
+        out.write('{');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        out.write('}');
+        first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        first = true;
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        out.write(']');
+        first = false;
+        return this;
+    }
+
+    JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        first = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(Number value) throws IOException {
+        separate();
+        out.write(value == null ? "null" : value.toString());
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter value(Object value) throws IOException {
+        return value(value == null ? null : value.toString());
+    }
+
+    JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, Number value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, Object value) throws IOException {
+        return name(name).value(value);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    private void separate() throws IOException {
+        if (!first) {
+            out.write(',');
+        }
+        first = false;
+    }
+
+    private void string(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,63 @@
+package web;
+
+import project.Metrics;
+import project.TimerStatistics;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Calls, errors, misses and latencies of manager methods and SQL statements in the text
+ * format of Prometheus, as summaries labeled by the name of the method or statement.
+ * Methods and statements not called yet are left out.
+ *
+ * @author Daniel Jurca
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private Metrics getMetrics() {
+        return (Metrics) getServletContext().getAttribute("metrics");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("utf-8");
+        PrintWriter out = response.getWriter();
+        out.println("# HELP carrental_latency_seconds Latency of manager methods and SQL statements");
+        out.println("# TYPE carrental_latency_seconds summary");
+        out.println("# HELP carrental_errors_total Calls ended by an exception");
+        out.println("# TYPE carrental_errors_total counter");
+        out.println("# HELP carrental_misses_total Calls which found nothing");
+        out.println("# TYPE carrental_misses_total counter");
+        for (Map.Entry<String, TimerStatistics> entry : getMetrics().snapshot().entrySet()) {
+            TimerStatistics statistics = entry.getValue();
+            if (statistics.getCount() == 0) continue;
+            String name = "name=\"" + escape(entry.getKey()) + "\"";
+            out.println("carrental_latency_seconds{" + name + ",quantile=\"0.5\"} " + seconds(statistics.getP50Nanos()));
+            out.println("carrental_latency_seconds{" + name + ",quantile=\"0.9\"} " + seconds(statistics.getP90Nanos()));
+            out.println("carrental_latency_seconds{" + name + ",quantile=\"0.99\"} " + seconds(statistics.getP99Nanos()));
+            out.println("carrental_latency_seconds{" + name + ",quantile=\"1\"} " + seconds(statistics.getMaxNanos()));
+            out.println("carrental_latency_seconds_sum{" + name + "} " + seconds(statistics.getTotalNanos()));
+            out.println("carrental_latency_seconds_count{" + name + "} " + statistics.getCount());
+            out.println("carrental_errors_total{" + name + "} " + statistics.getErrors());
+            out.println("carrental_misses_total{" + name + "} " + statistics.getMisses());
+        }
+        out.flush();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,104 @@
+package web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+import project.Page;
+import project.ReportManager;
+import project.impl.Car;
+import project.impl.Customer;
+import project.impl.Lease;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Readiness of the application to serve requests. It is ready once the warm-up has
+ * run the frequent queries of the managers, which compiles the statements in the
+ * statement cache of Derby, shared by all connections, and loads in-memory indexes.
+ * The queries run on every connection the pool opens at start, each held by a
+ * transaction of its own, so that the prepared statements pooled per connection
+ * are ready as well and the first requests after a deploy are not slower than the others.
+ *
+ * @author Daniel Jurca
+ */
+class Readiness {
+
+    private final static Logger log = LoggerFactory.getLogger(Readiness.class);
+
+    /** seconds a warm-up thread waits for the others to borrow their connections */
+    private static final int BORROW_TIMEOUT_SECONDS = 10;
+
+    private volatile boolean ready;
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Run the frequent queries once on each of the connections, on threads of their
+     * own, and become ready, even when a query fails, since requests would fail the same way
+     * @param dataSource - data source the managers use
+     * @param connections - number of pooled connections to warm up, at least one
+     */
+    void warmUp(CarManager carManager, CustomerManager customerManager, LeaseManager leaseManager,
+                ReportManager reportManager, DataSource dataSource, int connections) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        int count = Math.max(1, connections);
+        CountDownLatch borrowed = new CountDownLatch(count);
+        AtomicInteger running = new AtomicInteger(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    transaction.execute(status -> {
+                        // no connection is returned to the pool until all are borrowed
+                        borrowed.countDown();
+                        try {
+                            borrowed.await(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        runQueries(carManager, customerManager, leaseManager, reportManager);
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    borrowed.countDown();
+                    log.error("Warm-up failed", e);
+                }
+                if (running.decrementAndGet() == 0) {
+                    ready = true;
+                    log.info("aplikace připravena po {} ms, připojení {}", (System.nanoTime() - start) / 1_000_000, count);
+                }
+            }, "carRental-warm-up-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static void runQueries(CarManager carManager, CustomerManager customerManager, LeaseManager leaseManager,
+                                   ReportManager reportManager) {
+        Page<Car> cars = carManager.findCarsAfter(null, 20);
+        Page<Customer> customers = customerManager.findCustomersAfter(null, 20);
+        Page<Lease> leases = leaseManager.findLeasesAfter(null, 20);
+        if (!cars.getItems().isEmpty()) carManager.getCarById(cars.getItems().get(0).getId());
+        if (!customers.getItems().isEmpty()) {
+            customerManager.getCustomerById(customers.getItems().get(0).getId());
+        }
+        if (!leases.getItems().isEmpty()) leaseManager.getLeaseById(leases.getItems().get(0).getId());
+        carManager.countCars();
+        customerManager.countCustomers();
+        leaseManager.countLeases();
+        customerManager.searchCustomers("a", 10);
+        LocalDate today = LocalDate.now();
+        leaseManager.findAvailableCars(today, today.plusDays(1));
+        reportManager.findOccupancy(today, today.plusMonths(1));
+    }
+}
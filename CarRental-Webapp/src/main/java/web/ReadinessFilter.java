@@ -0,0 +1,62 @@
+package web;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Answers 503 with Retry-After until the warm-up is done, so a load balancer keeps
+ * sending requests to the previous deployment. GET /ready answers 200 once ready.
+ * Requests under /api get the error as JSON, like other errors of /api.
+ *
+ * @author Daniel Jurca
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class ReadinessFilter implements Filter {
+
+    public static final String READY_PATH = "/ready";
+
+    private Readiness readiness;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        readiness = (Readiness) filterConfig.getServletContext().getAttribute("readiness");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        if (!readiness.isReady()) {
+            httpResponse.setHeader("Retry-After", "1");
+            if (isApi((HttpServletRequest) request)) {
+                RestServlet.sendError(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Application is warming up");
+            } else {
+                httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Application is warming up");
+            }
+            return;
+        }
+        if (READY_PATH.equals(((HttpServletRequest) request).getServletPath())) {
+            httpResponse.setContentType("text/plain");
+            httpResponse.getWriter().write("ready");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static boolean isApi(HttpServletRequest request) {
+        String path = request.getServletPath() + (request.getPathInfo() == null ? "" : request.getPathInfo());
+        return path.equals(RestServlet.URL_MAPPING) || path.startsWith(RestServlet.URL_MAPPING + "/");
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
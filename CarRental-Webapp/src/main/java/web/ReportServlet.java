@@ -0,0 +1,165 @@
+package web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.DailyOccupancy;
+import project.ReportManager;
+import project.UsageReport;
+import web.TableVersions.Table;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JSON reports over leases of a period, from the first day to the day after the last day.
+ * <pre>
+ * GET /api/reports/cars?from=&amp;to=        usage of every car by its id
+ * GET /api/reports/customers?from=&amp;to=   usage by customers by their id
+ * GET /api/reports/months?from=&amp;to=      usage by months
+ * GET /api/reports/fleet?from=&amp;to=       usage of all cars together
+ * GET /api/reports/occupancy?from=&amp;to=   leased cars and revenue of every day
+ * </pre>
+ * Reports of a period not kept by the report manager read all its leases, so they
+ * are answered by a thread of {@link RequestExecutor} within a timeout of their own.
+ * Conditional GET and errors are answered the way of {@link RestServlet}.
+ *
+ * @author Daniel Jurca
+ */
+@WebServlet(value = ReportServlet.URL_MAPPING + "/*", asyncSupported = true)
+public class ReportServlet extends HttpServlet {
+
+    public static final String URL_MAPPING = RestServlet.URL_MAPPING + "/reports";
+    private static final Table[] TABLES = {Table.LEASES, Table.CARS, Table.CUSTOMERS};
+    private static final Set<String> REPORTS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("cars", "customers", "months", "fleet", "occupancy")));
+
+    private final static Logger log = LoggerFactory.getLogger(ReportServlet.class);
+
+    private long reportTimeout;
+    private long occupancyTimeout;
+
+    @Override
+    public void init() throws ServletException {
+        reportTimeout = RequestExecutor.timeout(getServletContext(), "reports", 60_000);
+        occupancyTimeout = RequestExecutor.timeout(getServletContext(), "occupancy", 10_000);
+    }
+
+    private ReportManager getReportManager() {
+        return (ReportManager) getServletContext().getAttribute("reportManager");
+    }
+
+    private TableVersions getTableVersions() {
+        return (TableVersions) getServletContext().getAttribute("tableVersions");
+    }
+
+    private RequestExecutor getRequestExecutor() {
+        return (RequestExecutor) getServletContext().getAttribute("requestExecutor");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String report = request.getPathInfo() == null ? "" : request.getPathInfo().substring(1);
+        log.debug("GET report {}", report);
+        if (!REPORTS.contains(report)) {
+            RestServlet.sendError(response, HttpServletResponse.SC_NOT_FOUND, "Unknown report " + report);
+            return;
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = LocalDate.parse(request.getParameter("from"));
+            to = LocalDate.parse(request.getParameter("to"));
+        } catch (DateTimeParseException | NullPointerException e) {
+            RestServlet.sendError(response, HttpServletResponse.SC_BAD_REQUEST,
+                    "Parameters from and to are required dates");
+            return;
+        }
+        if (!to.isAfter(from)) {
+            RestServlet.sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Parameter to has to be after from");
+            return;
+        }
+        String etag = getTableVersions().etag(TABLES);
+        long lastModified = getTableVersions().lastModified(TABLES);
+        if (TableVersions.notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+            return;
+        }
+        response.setHeader("ETag", etag);
+        // changes within the current second would not change Last-Modified
+        if (System.currentTimeMillis() - lastModified >= 1000) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        long timeout = report.equals("occupancy") ? occupancyTimeout : reportTimeout;
+        getRequestExecutor().execute(request, response, timeout, async -> writeReport(report, from, to, async));
+    }
+
+    private void writeReport(String report, LocalDate from, LocalDate to, HttpServletResponse response)
+            throws IOException {
+        ReportManager reportManager = getReportManager();
+        // read the whole report before writing, so that a failure is answered by an error
+        Object result;
+        switch (report) {
+            case "cars":
+                result = reportManager.reportByCar(from, to);
+                break;
+            case "customers":
+                result = reportManager.reportByCustomer(from, to);
+                break;
+            case "months":
+                result = reportManager.reportByMonth(from, to);
+                break;
+            case "fleet":
+                result = reportManager.reportFleet(from, to);
+                break;
+            default:
+                result = reportManager.findOccupancy(from, to);
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("utf-8");
+        JsonWriter writer = new JsonWriter(response.getWriter());
+        if (result instanceof UsageReport) {
+            writeUsage(writer, (UsageReport) result);
+        } else if (result instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) result).entrySet()) {
+                writer.name(entry.getKey().toString());
+                writeUsage(writer, (UsageReport) entry.getValue());
+            }
+            writer.endObject();
+        } else {
+            writer.beginArray();
+            for (Object day : (Iterable<?>) result) {
+                DailyOccupancy occupancy = (DailyOccupancy) day;
+                writer.beginObject()
+                        .field("day", occupancy.getDay())
+                        .field("leasedCars", occupancy.getLeasedCars())
+                        .field("revenue", occupancy.getRevenue())
+                        .endObject();
+            }
+            writer.endArray();
+        }
+        writer.flush();
+    }
+
+    private static void writeUsage(JsonWriter writer, UsageReport usage) throws IOException {
+        writer.beginObject()
+                .field("leases", usage.getLeases())
+                .field("leasedDays", usage.getLeasedDays())
+                .field("revenue", usage.getRevenue())
+                .field("availableDays", usage.getAvailableDays())
+                .field("utilization", usage.getUtilization())
+                .endObject();
+    }
+}
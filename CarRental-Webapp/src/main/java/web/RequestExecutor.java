@@ -0,0 +1,391 @@
+package web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs slow database work of requests on its own bounded pool of threads,
+ * so that container threads stay free for fast requests. A request which
+ * does not fit into the queue, or is not answered in time, gets 503 with
+ * Retry-After. The first {@link #PAGE_SIZE} characters of the body are kept
+ * until the work ends, a request timing out meanwhile still gets 503. A
+ * request timing out later is completed, closing its stream, and the next
+ * write of its work fails, which stops reading the database. Errors are
+ * answered as JSON, like other errors of /api.
+ *
+ * @author Daniel Jurca
+ */
+class RequestExecutor {
+
+    private final static Logger log = LoggerFactory.getLogger(RequestExecutor.class);
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+    /** seconds a client should wait before it repeats a rejected request */
+    public static final int RETRY_AFTER = 5;
+    /** Context parameter prefix of timeouts of endpoints in milliseconds */
+    public static final String TIMEOUT_PREFIX = "carRental.timeout.";
+    /** characters of the body kept before the response is committed */
+    static final int PAGE_SIZE = 32 * 1024;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads - number of requests worked on at once, should not exceed the connection pool
+     * @param queueSize - number of requests waiting for a thread
+     */
+    RequestExecutor(int threads, int queueSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "carRental-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @FunctionalInterface
+    interface Work {
+        void run(HttpServletResponse response) throws IOException, ServletException;
+    }
+
+    /**
+     * Answer the request by the work on a thread of the pool
+     * @param timeout - milliseconds from now the work has to finish in, including waiting in the queue
+     */
+    void execute(HttpServletRequest request, HttpServletResponse response, long timeout, Work work) {
+        AsyncContext async = request.startAsync(request, response);
+        async.setTimeout(timeout);
+        GuardedResponse guarded = new GuardedResponse(response);
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                log.debug("Request timed out after {} ms", timeout);
+                if (guarded.finish(true)) {
+                    async.complete();
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                guarded.abandon();
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        try {
+            executor.execute(() -> {
+                if (guarded.isFinished()) return;
+                try {
+                    work.run(guarded);
+                } catch (IOException | ServletException | RuntimeException e) {
+                    if (guarded.isFinished()) {
+                        log.debug("Request abandoned", e);
+                        return;
+                    }
+                    log.error("Request failed", e);
+                    guarded.fail();
+                }
+                try {
+                    if (guarded.finish(false)) {
+                        async.complete();
+                    }
+                } catch (IOException e) {
+                    log.debug("Cannot answer request", e);
+                    async.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("Request rejected, {} requests are waiting", executor.getQueue().size());
+            try {
+                guarded.finish(true);
+            } catch (IOException ioe) {
+                log.debug("Cannot answer request", ioe);
+            }
+            async.complete();
+        }
+    }
+
+    /**
+     * @param endpoint - name of the endpoint in context parameter carRental.timeout.{endpoint}
+     * @param defaultTimeout - milliseconds used when the parameter is not given
+     * @return milliseconds requests of the endpoint have to be answered in
+     */
+    static long timeout(ServletContext context, String endpoint, long defaultTimeout) {
+        String param = context.getInitParameter(TIMEOUT_PREFIX + endpoint);
+        return param == null ? defaultTimeout : Long.parseLong(param.trim());
+    }
+
+    /**
+     * Stop accepting requests, requests in the queue are not answered
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Response which can be written only until it is finished, either by the
+     * work or by the timeout, whichever comes first. The body is kept until a
+     * page is full, so a timeout before that still answers 503. A page is sent
+     * outside the lock, a timeout never waits for a slow client.
+     */
+    private static final class GuardedResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        /** body not sent yet, guarded by this */
+        private final StringBuilder page = new StringBuilder();
+        /** true once a page was given to the response, guarded by this */
+        private boolean sent;
+        /** guarded by this */
+        private PrintWriter writer;
+        /** writer of the response, used only by the thread of the work */
+        private Writer out;
+
+        GuardedResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        boolean isFinished() {
+            return finished.get();
+        }
+
+        /**
+         * @param unavailable - answer 503 unless a part of the body was sent, otherwise the
+         *                    rest of the body is dropped and completing the request closes the stream
+         * @return true when the response was finished now, false when it was finished before
+         */
+        boolean finish(boolean unavailable) throws IOException {
+            if (!finished.compareAndSet(false, true)) return false;
+            String rest;
+            synchronized (this) {
+                if (unavailable) {
+                    page.setLength(0);
+                    if (!sent && !response.isCommitted()) {
+                        response.reset();
+                        response.setHeader("Retry-After", Integer.toString(RETRY_AFTER));
+                        RestServlet.sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                                "Server is busy, try again later");
+                    }
+                    return true;
+                }
+                rest = takePage();
+            }
+            if (rest != null) {
+                out().write(rest);
+            }
+            if (out != null) out.flush();
+            return true;
+        }
+
+        /**
+         * Forbid further writes of the response the container gave up
+         */
+        void abandon() {
+            finished.set(true);
+        }
+
+        synchronized void fail() {
+            if (!finished.get() && !sent && !response.isCommitted()) {
+                try {
+                    page.setLength(0);
+                    response.reset();
+                    RestServlet.sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Request failed");
+                } catch (IOException e) {
+                    log.debug("Cannot answer request", e);
+                }
+            }
+        }
+
+        private void check() throws IOException {
+            if (finished.get()) {
+                throw new IOException("Request timed out");
+            }
+        }
+
+        /**
+         * Keep the text, send the page once it is full
+         */
+        void write(char[] buf, int off, int len) throws IOException {
+            String full;
+            synchronized (this) {
+                check();
+                page.append(buf, off, len);
+                if (page.length() < PAGE_SIZE) return;
+                full = takePage();
+            }
+            // may block on a slow client, the timeout only marks the response finished meanwhile
+            out().write(full);
+            check();
+        }
+
+        /**
+         * @return text of the page, null when empty; the response is committed to it
+         */
+        private String takePage() {
+            if (page.length() == 0) return null;
+            String text = page.toString();
+            page.setLength(0);
+            sent = true;
+            return text;
+        }
+
+        private Writer out() throws IOException {
+            if (out == null) {
+                out = response.getWriter();
+            }
+            return out;
+        }
+
+        @Override
+        public synchronized PrintWriter getWriter() throws IOException {
+            check();
+            if (writer == null) {
+                Writer guarded = new GuardedWriter(this);
+                // PrintWriter would swallow the exception of a timed out request
+                writer = new PrintWriter(guarded) {
+                    @Override
+                    public void write(char[] buf, int off, int len) {
+                        try {
+                            guarded.write(buf, off, len);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+
+                    @Override
+                    public void write(String s, int off, int len) {
+                        try {
+                            guarded.write(s, off, len);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+
+                    @Override
+                    public void write(int c) {
+                        try {
+                            guarded.write(c);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                };
+            }
+            return writer;
+        }
+
+        @Override
+        public synchronized void flushBuffer() {
+            // the page is sent when it is full or when the work ends
+        }
+
+        @Override
+        public synchronized void resetBuffer() {
+            if (!finished.get() && !sent) {
+                page.setLength(0);
+                super.resetBuffer();
+            }
+        }
+
+        @Override
+        public synchronized void reset() {
+            if (!finished.get() && !sent) {
+                page.setLength(0);
+                super.reset();
+            }
+        }
+
+        @Override
+        public synchronized boolean isCommitted() {
+            return sent || super.isCommitted();
+        }
+
+        @Override
+        public synchronized void setStatus(int sc) {
+            if (!finished.get()) super.setStatus(sc);
+        }
+
+        @Override
+        public synchronized void setHeader(String name, String value) {
+            if (!finished.get()) super.setHeader(name, value);
+        }
+
+        @Override
+        public synchronized void setDateHeader(String name, long date) {
+            if (!finished.get()) super.setDateHeader(name, date);
+        }
+
+        @Override
+        public synchronized void setContentType(String type) {
+            if (!finished.get()) super.setContentType(type);
+        }
+
+        @Override
+        public synchronized void setCharacterEncoding(String charset) {
+            if (!finished.get()) super.setCharacterEncoding(charset);
+        }
+
+        @Override
+        public synchronized void sendError(int sc, String msg) throws IOException {
+            check();
+            page.setLength(0);
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public synchronized void sendError(int sc) throws IOException {
+            check();
+            page.setLength(0);
+            super.sendError(sc);
+        }
+    }
+
+    private static final class GuardedWriter extends Writer {
+        private final GuardedResponse response;
+
+        GuardedWriter(GuardedResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(char[] buf, int off, int len) throws IOException {
+            response.write(buf, off, len);
+        }
+
+        @Override
+        public void flush() {
+            // the page is sent when it is full or when the work ends
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
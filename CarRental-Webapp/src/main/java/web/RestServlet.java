@@ -0,0 +1,492 @@
+package web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+import project.exception.IllegalEntityException;
+import project.exception.LeaseConflictException;
+import project.exception.ValidationException;
+import project.impl.Car;
+import project.impl.Customer;
+import project.impl.Lease;
+import web.TableVersions.Table;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON REST interface for cars, customers and leases.
+ * <pre>
+ * GET    /api/{cars|customers|leases}        all entities, ordered by id
+ * GET    /api/{cars|customers|leases}/{id}   one entity
+ * GET    /api/cars/available?from=&amp;to=       cars without lease in the period, to is the day after its last day
+ * POST   /api/{cars|customers|leases}        create entity from the body, answers it with its id
+ * PUT    /api/{cars|customers|leases}/{id}   update entity from the body
+ * DELETE /api/{cars|customers|leases}/{id}   delete entity
+ * </pre>
+ * Responses to GET carry an ETag and Last-Modified of the tables they are read from,
+ * a conditional GET of unchanged tables is answered by 304 without reading the database.
+ * A request body longer than {@link #MAX_BODY_LENGTH} is answered by 413 without parsing it.
+ * Errors of every endpoint under /api are answered as JSON {"errors":["message", ...]},
+ * see {@link #sendErrors(HttpServletResponse, int, List)}.
+ * Lists are written to the response while they are read from the database, by
+ * a thread of {@link RequestExecutor}, so they do not hold threads of the container.
+ *
+ * @author Daniel Jurca
+ */
+@WebServlet(value = RestServlet.URL_MAPPING + "/*", asyncSupported = true)
+public class RestServlet extends HttpServlet {
+
+    public static final String URL_MAPPING = "/api";
+    private static final String JSON = "application/json";
+    /** longest request body accepted, in bytes of Content-Length and in characters read */
+    static final int MAX_BODY_LENGTH = 16 * 1024;
+
+    private final static Logger log = LoggerFactory.getLogger(RestServlet.class);
+
+    private long listTimeout;
+    private long availableTimeout;
+
+    @Override
+    public void init() throws ServletException {
+        listTimeout = RequestExecutor.timeout(getServletContext(), "lists", 30_000);
+        availableTimeout = RequestExecutor.timeout(getServletContext(), "available", 10_000);
+    }
+
+    private CarManager getCarManager() {
+        return (CarManager) getServletContext().getAttribute("carManager");
+    }
+
+    private CustomerManager getCustomerManager() {
+        return (CustomerManager) getServletContext().getAttribute("customerManager");
+    }
+
+    private LeaseManager getLeaseManager() {
+        return (LeaseManager) getServletContext().getAttribute("leaseManager");
+    }
+
+    private TableVersions getTableVersions() {
+        return (TableVersions) getServletContext().getAttribute("tableVersions");
+    }
+
+    private RequestExecutor getRequestExecutor() {
+        return (RequestExecutor) getServletContext().getAttribute("requestExecutor");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Resource resource = resource(request, response);
+        if (resource == null) return;
+        log.debug("GET {}", request.getPathInfo());
+        LocalDate from = null;
+        LocalDate to = null;
+        if (resource.available) {
+            try {
+                from = LocalDate.parse(request.getParameter("from"));
+                to = LocalDate.parse(request.getParameter("to"));
+            } catch (DateTimeParseException | NullPointerException e) {
+                sendErrors(response, HttpServletResponse.SC_BAD_REQUEST,
+                        Collections.singletonList("Parameters from and to are required dates"));
+                return;
+            }
+            if (!to.isAfter(from)) {
+                sendErrors(response, HttpServletResponse.SC_BAD_REQUEST,
+                        Collections.singletonList("Parameter to has to be after from"));
+                return;
+            }
+        }
+        Table[] tables = resource.tables();
+        // read before the data, so that a change made meanwhile is seen by the next request
+        String etag = getTableVersions().etag(tables);
+        long lastModified = getTableVersions().lastModified(tables);
+        if (TableVersions.notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+            return;
+        }
+        response.setHeader("ETag", etag);
+        // changes within the current second would not change Last-Modified
+        if (System.currentTimeMillis() - lastModified >= 1000) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        if (resource.available) {
+            LocalDate first = from;
+            LocalDate end = to;
+            getRequestExecutor().execute(request, response, availableTimeout,
+                    async -> writeAvailable(first, end, async));
+        } else if (resource.id == null) {
+            getRequestExecutor().execute(request, response, listTimeout, async -> writeList(resource.type, async));
+        } else {
+            writeOne(resource, response);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Resource resource = resource(request, response);
+        if (resource == null) return;
+        log.debug("POST {}", request.getPathInfo());
+        if (resource.id != null) {
+            sendError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Entity is created by POST to its collection");
+            return;
+        }
+        write(request, response, resource, HttpServletResponse.SC_CREATED);
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Resource resource = resource(request, response);
+        if (resource == null) return;
+        log.debug("PUT {}", request.getPathInfo());
+        if (resource.id == null) {
+            sendError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Collection can not be replaced");
+            return;
+        }
+        write(request, response, resource, HttpServletResponse.SC_OK);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Resource resource = resource(request, response);
+        if (resource == null) return;
+        log.debug("DELETE {}", request.getPathInfo());
+        if (resource.id == null) {
+            sendError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Collection can not be deleted");
+            return;
+        }
+        try {
+            Object entity = find(resource);
+            if (entity == null) {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "No " + resource.type.singular + " " + resource.id);
+                return;
+            }
+            switch (resource.type) {
+                case CARS:
+                    getCarManager().deleteCar((Car) entity);
+                    break;
+                case CUSTOMERS:
+                    getCustomerManager().deleteCustomer((Customer) entity);
+                    break;
+                case LEASES:
+                    getLeaseManager().deleteLease((Lease) entity);
+                    break;
+            }
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } catch (IllegalEntityException e) {
+            log.debug("Cannot delete {} {}", resource.type.singular, resource.id, e);
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        }
+    }
+
+    /**
+     * Create or update entity from the request body and answer it
+     */
+    private void write(HttpServletRequest request, HttpServletResponse response, Resource resource, int status)
+            throws IOException {
+        try {
+            Map<String, Object> json = JsonReader.parseObject(body(request));
+            Object entity;
+            switch (resource.type) {
+                case CARS:
+                    Car car = car(json, resource.id);
+                    if (resource.id == null) {
+                        getCarManager().createCar(car);
+                    } else {
+                        getCarManager().updateCar(car);
+                    }
+                    entity = car;
+                    break;
+                case CUSTOMERS:
+                    Customer customer = customer(json, resource.id);
+                    if (resource.id == null) {
+                        getCustomerManager().createCustomer(customer);
+                    } else {
+                        getCustomerManager().updateCustomer(customer);
+                    }
+                    entity = customer;
+                    break;
+                default:
+                    Lease lease = lease(json, resource.id);
+                    if (resource.id == null) {
+                        getLeaseManager().createLease(lease);
+                    } else {
+                        getLeaseManager().updateLease(lease);
+                    }
+                    entity = lease;
+            }
+            response.setStatus(status);
+            if (resource.id == null) {
+                response.setHeader("Location", request.getContextPath() + URL_MAPPING + "/" + resource.type.path
+                        + "/" + id(entity));
+            }
+            JsonWriter writer = jsonWriter(response);
+            writeEntity(writer, entity);
+            writer.flush();
+        } catch (BodyTooLargeException e) {
+            sendErrors(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    Collections.singletonList(e.getMessage()));
+        } catch (IllegalArgumentException | DateTimeParseException | ClassCastException | ArithmeticException e) {
+            log.debug("Invalid request body", e);
+            sendErrors(response, HttpServletResponse.SC_BAD_REQUEST, Collections.singletonList(e.getMessage()));
+        } catch (LeaseConflictException e) {
+            sendErrors(response, HttpServletResponse.SC_CONFLICT, Collections.singletonList(e.getMessage()));
+        } catch (ValidationException e) {
+            log.debug("Invalid {}", resource.type.singular, e);
+            sendErrors(response, HttpServletResponse.SC_BAD_REQUEST, e.getErrors());
+        } catch (IllegalEntityException e) {
+            log.debug("Cannot write {} {}", resource.type.singular, resource.id, e);
+            sendErrors(response, HttpServletResponse.SC_NOT_FOUND, Collections.singletonList(e.getMessage()));
+        }
+    }
+
+    private void writeList(Type type, HttpServletResponse response) throws IOException {
+        JsonWriter writer = jsonWriter(response);
+        writer.beginArray();
+        switch (type) {
+            case CARS:
+                getCarManager().streamAllCars(car -> writeUnchecked(writer, car));
+                break;
+            case CUSTOMERS:
+                getCustomerManager().streamAllCustomers(customer -> writeUnchecked(writer, customer));
+                break;
+            case LEASES:
+                getLeaseManager().streamAllLeases(lease -> writeUnchecked(writer, lease));
+                break;
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    private void writeAvailable(LocalDate from, LocalDate to, HttpServletResponse response) throws IOException {
+        List<Car> cars = getLeaseManager().findAvailableCars(from, to);
+        JsonWriter writer = jsonWriter(response);
+        writer.beginArray();
+        for (Car car : cars) {
+            writeEntity(writer, car);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    private void writeOne(Resource resource, HttpServletResponse response) throws IOException {
+        Object entity = find(resource);
+        if (entity == null) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "No " + resource.type.singular + " " + resource.id);
+            return;
+        }
+        JsonWriter writer = jsonWriter(response);
+        writeEntity(writer, entity);
+        writer.flush();
+    }
+
+    private Object find(Resource resource) {
+        switch (resource.type) {
+            case CARS:
+                return getCarManager().getCarById(resource.id);
+            case CUSTOMERS:
+                return getCustomerManager().getCustomerById(resource.id);
+            default:
+                return getLeaseManager().getLeaseById(resource.id);
+        }
+    }
+
+    /**
+     * @return resource addressed by the path, null when the path is not valid and error was sent
+     */
+    private static Resource resource(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getPathInfo();
+        String[] parts = path == null ? new String[0] : path.substring(1).split("/");
+        Type type = parts.length == 0 ? null : Type.of(parts[0]);
+        if (type == null || parts.length > 2) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Unknown resource " + path);
+            return null;
+        }
+        if (parts.length == 1) {
+            return new Resource(type, null, false);
+        }
+        if (type == Type.CARS && parts[1].equals("available") && request.getMethod().equals("GET")) {
+            return new Resource(type, null, true);
+        }
+        try {
+            return new Resource(type, Long.valueOf(parts[1]), false);
+        } catch (NumberFormatException e) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Invalid id " + parts[1]);
+            return null;
+        }
+    }
+
+    /**
+     * @throws BodyTooLargeException when the body is longer than {@link #MAX_BODY_LENGTH}
+     */
+    private static String body(HttpServletRequest request) throws IOException {
+        if (request.getContentLength() > MAX_BODY_LENGTH) {
+            throw new BodyTooLargeException();
+        }
+        request.setCharacterEncoding("utf-8");
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = request.getReader()) {
+            char[] buffer = new char[1024];
+            for (int read; (read = reader.read(buffer)) != -1; ) {
+                sb.append(buffer, 0, read);
+                // the length may be unknown, with chunked transfer
+                if (sb.length() > MAX_BODY_LENGTH) {
+                    throw new BodyTooLargeException();
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private Car car(Map<String, Object> json, Long id) {
+        return new Car(id, (String) json.get("carBrand"), (String) json.get("description"),
+                (BigDecimal) json.get("dailyPrice"));
+    }
+
+    private Customer customer(Map<String, Object> json, Long id) {
+        return new Customer(id, (String) json.get("fullName"), (String) json.get("address"),
+                (String) json.get("phoneNumber"));
+    }
+
+    private Lease lease(Map<String, Object> json, Long id) {
+        Customer customer = null;
+        if (json.get("customerId") != null) {
+            customer = getCustomerManager().getCustomerById(((BigDecimal) json.get("customerId")).longValueExact());
+            if (customer == null) throw new IllegalArgumentException("Unknown customer " + json.get("customerId"));
+        }
+        Car car = null;
+        if (json.get("carId") != null) {
+            car = getCarManager().getCarById(((BigDecimal) json.get("carId")).longValueExact());
+            if (car == null) throw new IllegalArgumentException("Unknown car " + json.get("carId"));
+        }
+        String start = (String) json.get("start");
+        String end = (String) json.get("end");
+        return new Lease(id, customer, car, start == null ? null : LocalDate.parse(start),
+                end == null ? null : LocalDate.parse(end), (BigDecimal) json.get("price"));
+    }
+
+    private static Long id(Object entity) {
+        if (entity instanceof Car) return ((Car) entity).getId();
+        if (entity instanceof Customer) return ((Customer) entity).getId();
+        return ((Lease) entity).getId();
+    }
+
+    private static JsonWriter jsonWriter(HttpServletResponse response) throws IOException {
+        response.setContentType(JSON);
+        response.setCharacterEncoding("utf-8");
+        return new JsonWriter(response.getWriter());
+    }
+
+    static void sendError(HttpServletResponse response, int status, String error) throws IOException {
+        sendErrors(response, status, Collections.singletonList(error));
+    }
+
+    /**
+     * Answer the errors as JSON {"errors":[...]}, the way of every endpoint under /api
+     */
+    static void sendErrors(HttpServletResponse response, int status, List<String> errors) throws IOException {
+        response.setStatus(status);
+        JsonWriter writer = jsonWriter(response);
+        writer.beginObject().name("errors").beginArray();
+        for (String error : errors) {
+            writer.value(error);
+        }
+        writer.endArray().endObject();
+        writer.flush();
+    }
+
+    private static void writeUnchecked(JsonWriter writer, Object entity) {
+        try {
+            writeEntity(writer, entity);
+        } catch (IOException e) {
+            // stops reading of the database, the client has gone away
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void writeEntity(JsonWriter writer, Object entity) throws IOException {
+        writer.beginObject();
+        if (entity instanceof Car) {
+            Car car = (Car) entity;
+            writer.field("id", car.getId())
+                    .field("carBrand", car.getCarBrand())
+                    .field("description", car.getDescription())
+                    .field("dailyPrice", car.getDailyPrice());
+        } else if (entity instanceof Customer) {
+            Customer customer = (Customer) entity;
+            writer.field("id", customer.getId())
+                    .field("fullName", customer.getFullName())
+                    .field("address", customer.getAddress())
+                    .field("phoneNumber", customer.getPhoneNumber());
+        } else {
+            Lease lease = (Lease) entity;
+            writer.field("id", lease.getId())
+                    .field("customerId", lease.getCustomer().getId())
+                    .field("carId", lease.getLeasedCar().getId())
+                    .field("start", lease.getStart())
+                    .field("end", lease.getEnd())
+                    .field("price", lease.getPrice());
+        }
+        writer.endObject();
+    }
+
+    private enum Type {
+        CARS("cars", "car", Table.CARS),
+        CUSTOMERS("customers", "customer", Table.CUSTOMERS),
+        // leases of deleted cars and customers are deleted with them
+        LEASES("leases", "lease", Table.LEASES, Table.CARS, Table.CUSTOMERS);
+
+        private final String path;
+        private final String singular;
+        private final Table[] tables;
+
+        Type(String path, String singular, Table... tables) {
+            this.path = path;
+            this.singular = singular;
+            this.tables = tables;
+        }
+
+        static Type of(String path) {
+            for (Type type : values()) {
+                if (type.path.equals(path)) return type;
+            }
+            return null;
+        }
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        BodyTooLargeException() {
+            super("Request body is longer than " + MAX_BODY_LENGTH + " characters");
+        }
+    }
+
+    private static final class Resource {
+        private final Type type;
+        private final Long id;
+        /** cars available in a period, which depend on leases too */
+        private final boolean available;
+
+        Resource(Type type, Long id, boolean available) {
+            this.type = type;
+            this.id = id;
+            this.available = available;
+        }
+
+        Table[] tables() {
+            return available ? Type.LEASES.tables : type.tables;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package web;
+
+import project.SlowQuery;
+import project.SlowQueryLog;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slowest SQL statements kept by the slow query log, the slowest first, as JSON
+ * with their parameters, rows read or written, time in milliseconds, the time
+ * they ended at and the runtime statistics of Derby when captured.
+ *
+ * @author Daniel Jurca
+ */
+@WebServlet(SlowQueryServlet.URL_MAPPING)
+public class SlowQueryServlet extends HttpServlet {
+
+    public static final String URL_MAPPING = RestServlet.URL_MAPPING + "/slow-queries";
+
+    private SlowQueryLog getSlowQueryLog() {
+        return (SlowQueryLog) getServletContext().getAttribute("slowQueryLog");
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        SlowQueryLog slowQueryLog = getSlowQueryLog();
+        response.setContentType("application/json");
+        response.setCharacterEncoding("utf-8");
+        JsonWriter writer = new JsonWriter(response.getWriter());
+        writer.beginObject()
+                .field("thresholdMillis", TimeUnit.NANOSECONDS.toMillis(slowQueryLog.getThresholdNanos()))
+                .field("count", slowQueryLog.getCount())
+                .name("queries").beginArray();
+        for (SlowQuery query : slowQueryLog.getSlowest()) {
+            writer.beginObject()
+                    .field("sql", query.getSql())
+                    .name("parameters").beginArray();
+            for (String parameter : query.getParameters()) {
+                writer.value(parameter);
+            }
+            writer.endArray()
+                    .field("rows", query.getRows())
+                    .field("millis", query.getNanos() / 1e6)
+                    .field("time", Instant.ofEpochMilli(query.getTimeMillis()).toString())
+                    .field("failed", query.isFailed())
+                    .field("plan", query.getPlan())
+                    .endObject();
+        }
+        writer.endArray().endObject().flush();
+    }
+}
@@ -2,33 +2,124 @@ package web;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import project.Main;
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+import project.Metrics;
+import project.PooledDataSource;
+import project.ReportManager;
+import project.SlowQueryLog;
+import project.impl.CachingCarManager;
+import project.impl.CachingCustomerManager;
 import project.impl.CarManagerImpl;
 import project.impl.CustomerManagerImpl;
+import project.impl.Instrumented;
+import project.impl.InstrumentedDataSource;
+import project.impl.LeaseManagerImpl;
+import project.impl.ReportManagerImpl;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 
 @WebListener
 public class StartListener implements ServletContextListener {
 
     private final static Logger log = LoggerFactory.getLogger(StartListener.class);
+    /** Context parameter with number of cars and customers each kept in memory, caching is off without it */
+    public static final String ENTITY_CACHE_SIZE = "carRental.entityCacheSize";
+    /** Context parameter with number of threads answering slow requests, at most the size of the connection pool */
+    public static final String REQUEST_THREADS = "carRental.requestThreads";
+    /** Context parameter with number of slow requests waiting for a thread, more are answered by 503 */
+    public static final String REQUEST_QUEUE_SIZE = "carRental.requestQueueSize";
+    /** Context parameter with number of last change events sent again to reconnecting clients */
+    public static final String EVENT_REPLAY_SIZE = "carRental.eventReplaySize";
+    /** Context parameter with milliseconds an SQL statement takes at least to be logged as slow */
+    public static final String SLOW_QUERY_THRESHOLD = "carRental.slowQuery.thresholdMillis";
+    /** Context parameter with number of the slowest SQL statements kept for /api/slow-queries */
+    public static final String SLOW_QUERY_SIZE = "carRental.slowQuery.size";
+    /** Context parameter turning on runtime statistics of Derby for slow SQL statements, slows down all of them */
+    public static final String SLOW_QUERY_PLANS = "carRental.slowQuery.plans";
 
     @Override
     public void contextInitialized(ServletContextEvent ev) {
         log.info("webová aplikace inicializována");
         ServletContext servletContext = ev.getServletContext();
-        DataSource dataSource = Main.createMemoryDatabase();
-        servletContext.setAttribute("customerManager", new CustomerManagerImpl(dataSource));
-        servletContext.setAttribute("carManager", new CarManagerImpl(dataSource));
+        Readiness readiness = new Readiness();
+        servletContext.setAttribute("readiness", readiness);
+        Metrics metrics = new Metrics();
+        metrics.registerMBeans(ManagementFactory.getPlatformMBeanServer(), "carRental" + servletContext.getContextPath());
+        servletContext.setAttribute("metrics", metrics);
+        DataSource pooledDataSource = DataSourceConfig.create(servletContext);
+        servletContext.setAttribute("dataSource", pooledDataSource);
+        SlowQueryLog slowQueryLog = new SlowQueryLog(intParameter(servletContext, SLOW_QUERY_THRESHOLD, 200),
+                intParameter(servletContext, SLOW_QUERY_SIZE, 20),
+                Boolean.parseBoolean(servletContext.getInitParameter(SLOW_QUERY_PLANS)));
+        servletContext.setAttribute("slowQueryLog", slowQueryLog);
+        DataSource dataSource = new InstrumentedDataSource(pooledDataSource, metrics, slowQueryLog);
+        CustomerManager customerManager = new CustomerManagerImpl(dataSource);
+        CarManager carManager = new CarManagerImpl(dataSource);
+        int cacheSize = intParameter(servletContext, ENTITY_CACHE_SIZE, 0);
+        if (cacheSize > 0) {
+            customerManager = new CachingCustomerManager(customerManager, cacheSize);
+            carManager = new CachingCarManager(carManager, cacheSize);
+            log.info("zapnuta cache aut a zákazníků o velikosti {}", cacheSize);
+        }
+        LeaseManager leaseManager = new LeaseManagerImpl(dataSource, customerManager, carManager);
+        ReportManager reportManager = new ReportManagerImpl(dataSource, leaseManager);
+        // calls among managers are left out, only calls of the application are timed
+        customerManager = Instrumented.wrap(CustomerManager.class, customerManager, metrics);
+        carManager = Instrumented.wrap(CarManager.class, carManager, metrics);
+        leaseManager = Instrumented.wrap(LeaseManager.class, leaseManager, metrics);
+        reportManager = Instrumented.wrap(ReportManager.class, reportManager, metrics);
+        servletContext.setAttribute("customerManager", customerManager);
+        servletContext.setAttribute("carManager", carManager);
+        servletContext.setAttribute("leaseManager", leaseManager);
+        servletContext.setAttribute("reportManager", reportManager);
+        servletContext.setAttribute("tableVersions", new TableVersions(carManager, customerManager, leaseManager));
+        int threads = intParameter(servletContext, REQUEST_THREADS, RequestExecutor.DEFAULT_THREADS);
+        int queueSize = intParameter(servletContext, REQUEST_QUEUE_SIZE, RequestExecutor.DEFAULT_QUEUE_SIZE);
+        servletContext.setAttribute("requestExecutor", new RequestExecutor(threads, queueSize));
+        int replaySize = intParameter(servletContext, EVENT_REPLAY_SIZE, EventBroadcaster.DEFAULT_REPLAY_SIZE);
+        servletContext.setAttribute("eventBroadcaster",
+                new EventBroadcaster(carManager, customerManager, leaseManager, replaySize));
         log.info("vytvořeny manažery a uloženy do atributů servletContextu");
+        readiness.warmUp(carManager, customerManager, leaseManager, reportManager, dataSource,
+                DataSourceConfig.warmConnections(pooledDataSource));
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent ev) {
+        RequestExecutor requestExecutor = (RequestExecutor) ev.getServletContext().getAttribute("requestExecutor");
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+        EventBroadcaster eventBroadcaster = (EventBroadcaster) ev.getServletContext().getAttribute("eventBroadcaster");
+        if (eventBroadcaster != null) {
+            eventBroadcaster.shutdown();
+        }
+        Metrics metrics = (Metrics) ev.getServletContext().getAttribute("metrics");
+        if (metrics != null) {
+            metrics.unregisterMBeans();
+        }
+        // a data source of the container is closed by the container
+        Object dataSource = ev.getServletContext().getAttribute("dataSource");
+        if (dataSource instanceof PooledDataSource) {
+            try {
+                ((PooledDataSource) dataSource).close();
+            } catch (SQLException e) {
+                log.error("Cannot close data source", e);
+            }
+        }
         log.info("aplikace končí");
     }
+
+    private static int intParameter(ServletContext servletContext, String name, int defaultValue) {
+        String param = servletContext.getInitParameter(name);
+        return param == null ? defaultValue : Integer.parseInt(param.trim());
+    }
 }
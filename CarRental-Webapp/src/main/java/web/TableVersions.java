@@ -0,0 +1,99 @@
+package web;
+
+import project.CarManager;
+import project.CustomerManager;
+import project.LeaseManager;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version and time of the last change of tables of cars, customers and leases,
+ * counted from change events of the managers. Tell clients whether their copy
+ * of a collection is current without asking the database. Only changes made
+ * through the managers of this application are seen.
+ *
+ * @author Daniel Jurca
+ */
+class TableVersions {
+
+    enum Table {
+        CARS, CUSTOMERS, LEASES
+    }
+
+    /** distinguishes versions of this run from versions of previous runs, which start from zero too */
+    private final String run = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLongArray versions = new AtomicLongArray(Table.values().length);
+    private final AtomicLongArray lastModified = new AtomicLongArray(Table.values().length);
+
+    TableVersions(CarManager carManager, CustomerManager customerManager, LeaseManager leaseManager) {
+        long now = System.currentTimeMillis();
+        for (Table table : Table.values()) {
+            lastModified.set(table.ordinal(), now);
+        }
+        carManager.addChangeListener(event -> changed(Table.CARS));
+        customerManager.addChangeListener(event -> changed(Table.CUSTOMERS));
+        leaseManager.addChangeListener(event -> changed(Table.LEASES));
+    }
+
+    private void changed(Table table) {
+        versions.incrementAndGet(table.ordinal());
+        lastModified.accumulateAndGet(table.ordinal(), System.currentTimeMillis(), Math::max);
+    }
+
+    /**
+     * @param tables - tables the response is read from
+     * @return strong entity tag changing with every change of the tables
+     */
+    String etag(Table... tables) {
+        StringBuilder sb = new StringBuilder("\"").append(run);
+        for (Table table : tables) {
+            sb.append('-').append(versions.get(table.ordinal()));
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * @param tables - tables the response is read from
+     * @return time of the last change of the tables in milliseconds
+     */
+    long lastModified(Table... tables) {
+        long last = 0;
+        for (Table table : tables) {
+            last = Math.max(last, lastModified.get(table.ordinal()));
+        }
+        return last;
+    }
+
+    /**
+     * @return true when the client sent the current tag, or the time of
+     * the last change when it sent no tag
+     */
+    static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            ifModifiedSince = -1;
+        }
+        return notModified(request.getHeader("If-None-Match"), ifModifiedSince, etag, lastModified,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @param ifNoneMatch - header If-None-Match, null when it was not sent
+     * @param ifModifiedSince - time of header If-Modified-Since, -1 when it was not sent or is invalid
+     * @param now - current time, a change within its second does not change Last-Modified
+     */
+    static boolean notModified(String ifNoneMatch, long ifModifiedSince, String etag, long lastModified, long now) {
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.equals(etag) || trimmed.equals("*")) return true;
+            }
+            return false;
+        }
+        return ifModifiedSince >= 0 && now - lastModified >= 1000
+                && lastModified / 1000 * 1000 <= ifModifiedSince;
+    }
+}
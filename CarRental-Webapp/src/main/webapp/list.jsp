@@ -31,11 +31,70 @@
         </table>
         <input type="Submit" value="Zadat" />
     </form>
+    <h2>Zadejte zákazníka</h2>
+    <form action="${pageContext.request.contextPath}/CarRental/addCustomer" method="post">
+        <table>
+            <tr>
+                <th>Full name:</th>
+                <td><input type="text" name="fullName" value="<c:out value='${param.fullName}'/>"/></td>
+            </tr>
+            <tr>
+                <th>Address:</th>
+                <td><input type="text" name="address" value="<c:out value='${param.address}'/>"/></td>
+            </tr>
+            <tr>
+                <th>Phone:</th>
+                <td><input type="text" name="phoneNumber" value="<c:out value='${param.phoneNumber}'/>"/></td>
+            </tr>
+        </table>
+        <input type="Submit" value="Zadat" />
+    </form>
+    <h2>Pronájem</h2>
+    <form action="${pageContext.request.contextPath}/CarRental/addLease" method="post">
+        <table>
+            <tr>
+                <th>Customer id:</th>
+                <td><input type="text" name="customerId" value="<c:out value='${param.customerId}'/>"/></td>
+            </tr>
+            <tr>
+                <th>Car id:</th>
+                <td><input type="text" name="carId" value="<c:out value='${param.carId}'/>"/></td>
+            </tr>
+            <tr>
+                <th>Start:</th>
+                <td><input type="date" name="start" value="<c:out value='${param.start}'/>"/></td>
+            </tr>
+            <tr>
+                <th>End:</th>
+                <td><input type="date" name="end" value="<c:out value='${param.end}'/>"/></td>
+            </tr>
+            <tr>
+                <th>CZK/day:</th>
+                <td><input type="text" name="price" placeholder="cena auta" value="<c:out value='${param.price}'/>"/></td>
+            </tr>
+        </table>
+        <input type="Submit" value="Pronajmout" />
+    </form>
+    <h2>Volná auta</h2>
+    <form action="${pageContext.request.contextPath}/CarRental" method="get">
+        <table>
+            <tr>
+                <th>From:</th>
+                <td><input type="date" name="from" value="<c:out value='${param.from}'/>"/></td>
+            </tr>
+            <tr>
+                <th>To:</th>
+                <td><input type="date" name="to" value="<c:out value='${param.to}'/>"/></td>
+            </tr>
+        </table>
+        <input type="Submit" value="Hledat" />
+    </form>
 </div>
 <div class="tabulka">
     <table border="1">
         <thead>
         <tr>
+            <th width="50">Id</th>
             <th width="200">Car brand</th>
             <th width="200">Description</th>
             <th width="200">CZK/day</th>
@@ -43,14 +102,102 @@
         </thead>
         <c:forEach items="${cars}" var="car">
             <tr>
-                <td><c:out value="${car.carBrand}"/></td>
-                <td><c:out value="${car.description}"/></td>
-                <td><c:out value="${car.dailyPrice}"/></td>
+                <td><c:out value="${car.id}"/></td>
+                <td><input form="car-${car.id}" type="text" name="carBrand" value="<c:out value='${car.carBrand}'/>"/></td>
+                <td><input form="car-${car.id}" type="text" name="description" value="<c:out value='${car.description}'/>"/></td>
+                <td><input form="car-${car.id}" type="text" name="dailyPrice" value="<c:out value='${car.dailyPrice}'/>"/></td>
+                <td><form id="car-${car.id}" method="post" action="${pageContext.request.contextPath}/CarRental/updateCar?carId=${car.id}"
+                          style="margin-bottom: 0;"><input type="submit" value="Uložit"></form></td>
                 <td><form method="post" action="${pageContext.request.contextPath}/CarRental/deleteCar?carId=${car.id}"
                           style="margin-bottom: 0;"><input type="submit" value="Smazat"></form></td>
             </tr>
         </c:forEach>
     </table>
+    <c:if test="${not empty carsPage.previousCursor}">
+        <a href="${pageContext.request.contextPath}/CarRental?before=${carsPage.previousCursor}">&laquo; Předchozí</a>
+    </c:if>
+    <c:if test="${not empty carsPage.nextCursor}">
+        <a href="${pageContext.request.contextPath}/CarRental?after=${carsPage.nextCursor}">Další &raquo;</a>
+    </c:if>
+    <c:if test="${not empty availableCars}">
+        <h2>Volná auta <c:out value="${param.from}"/> &ndash; <c:out value="${param.to}"/></h2>
+        <table border="1">
+            <c:forEach items="${availableCars}" var="car">
+                <tr>
+                    <td><c:out value="${car.id}"/></td>
+                    <td><c:out value="${car.carBrand}"/></td>
+                    <td><c:out value="${car.description}"/></td>
+                    <td><c:out value="${car.dailyPrice}"/></td>
+                    <td><form method="post" action="${pageContext.request.contextPath}/CarRental/addLease" style="margin-bottom: 0;">
+                        <input type="hidden" name="carId" value="${car.id}"/>
+                        <input type="hidden" name="start" value="<c:out value='${param.from}'/>"/>
+                        <input type="hidden" name="end" value="<c:out value='${param.to}'/>"/>
+                        <input type="text" name="customerId" placeholder="id zákazníka" size="8"/>
+                        <input type="submit" value="Pronajmout"></form></td>
+                </tr>
+            </c:forEach>
+        </table>
+    </c:if>
+    <h2>Zákazníci</h2>
+    <table border="1">
+        <thead>
+        <tr>
+            <th width="50">Id</th>
+            <th width="200">Full name</th>
+            <th width="200">Address</th>
+            <th width="200">Phone</th>
+        </tr>
+        </thead>
+        <c:forEach items="${customersPage.items}" var="customer">
+            <tr>
+                <td><c:out value="${customer.id}"/></td>
+                <td><input form="customer-${customer.id}" type="text" name="fullName" value="<c:out value='${customer.fullName}'/>"/></td>
+                <td><input form="customer-${customer.id}" type="text" name="address" value="<c:out value='${customer.address}'/>"/></td>
+                <td><input form="customer-${customer.id}" type="text" name="phoneNumber" value="<c:out value='${customer.phoneNumber}'/>"/></td>
+                <td><form id="customer-${customer.id}" method="post" action="${pageContext.request.contextPath}/CarRental/updateCustomer?customerId=${customer.id}"
+                          style="margin-bottom: 0;"><input type="submit" value="Uložit"></form></td>
+                <td><form method="post" action="${pageContext.request.contextPath}/CarRental/deleteCustomer?customerId=${customer.id}"
+                          style="margin-bottom: 0;"><input type="submit" value="Smazat"></form></td>
+            </tr>
+        </c:forEach>
+    </table>
+    <c:if test="${not empty customersPage.previousCursor}">
+        <a href="${pageContext.request.contextPath}/CarRental?customersBefore=${customersPage.previousCursor}">&laquo; Předchozí</a>
+    </c:if>
+    <c:if test="${not empty customersPage.nextCursor}">
+        <a href="${pageContext.request.contextPath}/CarRental?customersAfter=${customersPage.nextCursor}">Další &raquo;</a>
+    </c:if>
+    <h2>Pronájmy</h2>
+    <table border="1">
+        <thead>
+        <tr>
+            <th width="50">Id</th>
+            <th width="200">Customer</th>
+            <th width="200">Car</th>
+            <th width="100">Start</th>
+            <th width="100">End</th>
+            <th width="100">CZK/day</th>
+        </tr>
+        </thead>
+        <c:forEach items="${leasesPage.items}" var="lease">
+            <tr>
+                <td><c:out value="${lease.id}"/></td>
+                <td><c:out value="${lease.customer.fullName}"/></td>
+                <td><c:out value="${lease.leasedCar.carBrand}"/></td>
+                <td><c:out value="${lease.start}"/></td>
+                <td><c:out value="${lease.end}"/></td>
+                <td><c:out value="${lease.price}"/></td>
+                <td><form method="post" action="${pageContext.request.contextPath}/CarRental/endLease?leaseId=${lease.id}"
+                          style="margin-bottom: 0;"><input type="date" name="end"/><input type="submit" value="Ukončit"></form></td>
+            </tr>
+        </c:forEach>
+    </table>
+    <c:if test="${not empty leasesPage.previousCursor}">
+        <a href="${pageContext.request.contextPath}/CarRental?leasesBefore=${leasesPage.previousCursor}">&laquo; Předchozí</a>
+    </c:if>
+    <c:if test="${not empty leasesPage.nextCursor}">
+        <a href="${pageContext.request.contextPath}/CarRental?leasesAfter=${leasesPage.nextCursor}">Další &raquo;</a>
+    </c:if>
 </div>
 <div style="clear: both">
 </div>
@@ -0,0 +1,285 @@
+package web;
+
+import org.junit.After;
+import org.junit.Test;
+import project.CarManager;
+import project.CustomerManager;
+import project.EntityChangeEvent;
+import project.EntityChangeListener;
+import project.LeaseManager;
+import project.impl.Car;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static web.EventBroadcaster.DEFAULT_REPLAY_SIZE;
+import static web.EventBroadcaster.WRITE_TIMEOUT_MILLIS;
+
+/**
+ * Tests of delivery of events to clients of the stream
+ * @author Daniel Jurca
+ */
+public class EventBroadcasterTest {
+    private static final Pattern ID = Pattern.compile("^id: (.*)$", Pattern.MULTILINE);
+
+    private final List<EventBroadcaster> broadcasters = new ArrayList<>();
+    private final List<Client> clients = new ArrayList<>();
+    /** listener of the last started broadcaster */
+    private EntityChangeListener<Car> carListener;
+    private long lastCarId;
+
+    @After
+    public void tearDown() {
+        for (Client client : clients) {
+            client.resume();
+        }
+        for (EventBroadcaster broadcaster : broadcasters) {
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void reconnectingClientGetsMissedEvents() throws Exception {
+        EventBroadcaster broadcaster = start(DEFAULT_REPLAY_SIZE, WRITE_TIMEOUT_MILLIS);
+        Client client = subscribe(broadcaster, null);
+        publishCars(3);
+        await(() -> client.ids().size() == 3);
+
+        Client reconnected = subscribe(broadcaster, client.ids().get(0));
+        await(() -> reconnected.ids().size() == 2);
+        assertThat(reconnected.ids()).containsExactlyElementsOf(client.ids().subList(1, 3));
+        assertThat(reconnected.received()).doesNotContain("event: reset");
+    }
+
+    @Test(timeout = 10_000)
+    public void clientMissingEventsNoLongerKeptGetsReset() throws Exception {
+        EventBroadcaster broadcaster = start(2, WRITE_TIMEOUT_MILLIS);
+        Client client = subscribe(broadcaster, null);
+        publishCars(4);
+        await(() -> client.ids().size() == 4);
+
+        Client reconnected = subscribe(broadcaster, client.ids().get(0));
+        await(() -> reconnected.received().contains("event: reset"));
+        assertThat(reconnected.ids()).containsExactly(client.ids().get(3));
+        assertThat(reconnected.received()).doesNotContain("event: car");
+    }
+
+    @Test(timeout = 10_000)
+    public void clientWithFullQueueIsDisconnected() throws Exception {
+        EventBroadcaster broadcaster = start(DEFAULT_REPLAY_SIZE, 60_000);
+        Client stalled = subscribe(broadcaster, null, true);
+        Client client = subscribe(broadcaster, null);
+        // in parts the other client keeps up with, so only the queue of the stalled one fills
+        int events = EventBroadcaster.SUBSCRIBER_QUEUE_SIZE + 2;
+        for (int published = 0; published < events; ) {
+            int part = Math.min(64, events - published);
+            publishCars(part);
+            published += part;
+            int sent = published;
+            await(() -> client.ids().size() == sent);
+        }
+
+        await(stalled::isCompleted);
+        assertThat(client.isCompleted()).isFalse();
+    }
+
+    @Test(timeout = 10_000)
+    public void stalledClientsDoNotDelayOthers() throws Exception {
+        EventBroadcaster broadcaster = start(DEFAULT_REPLAY_SIZE, 200);
+        // more stalled clients than writer threads
+        List<Client> stalled = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            stalled.add(subscribe(broadcaster, null, true));
+        }
+        Client client = subscribe(broadcaster, null);
+        publishCars(1);
+
+        await(() -> client.ids().size() == 1);
+        await(() -> stalled.stream().allMatch(Client::isCompleted));
+        assertThat(client.isCompleted()).isFalse();
+
+        // writers blocked on the disconnected clients are replaced, new events still go out
+        publishCars(1);
+        await(() -> client.ids().size() == 2);
+    }
+
+    @Test(timeout = 10_000)
+    public void clientOfPreviousRunGetsReset() throws Exception {
+        EventBroadcaster before = start(DEFAULT_REPLAY_SIZE, WRITE_TIMEOUT_MILLIS);
+        Client client = subscribe(before, null);
+        publishCars(2);
+        await(() -> client.ids().size() == 2);
+        before.shutdown();
+
+        // the new run numbers events from one again, past the id the client has got
+        EventBroadcaster after = start(DEFAULT_REPLAY_SIZE, WRITE_TIMEOUT_MILLIS);
+        Client watcher = subscribe(after, null);
+        publishCars(3);
+        await(() -> watcher.ids().size() == 3);
+        Client reconnected = subscribe(after, client.ids().get(1));
+
+        await(() -> reconnected.received().contains("event: reset"));
+        assertThat(reconnected.ids()).containsExactly(watcher.ids().get(2));
+        assertThat(reconnected.received()).doesNotContain("event: car");
+        assertThat(watcher.ids().get(2)).isNotEqualTo(client.ids().get(1));
+    }
+
+    private EventBroadcaster start(int replaySize, long writeTimeoutMillis) {
+        CarManager carManager = proxy(CarManager.class, (method, args) -> {
+            if (method.getName().equals("addChangeListener")) {
+                @SuppressWarnings("unchecked")
+                EntityChangeListener<Car> listener = (EntityChangeListener<Car>) args[0];
+                carListener = listener;
+            }
+            return null;
+        });
+        EventBroadcaster broadcaster = new EventBroadcaster(carManager,
+                proxy(CustomerManager.class, (method, args) -> null),
+                proxy(LeaseManager.class, (method, args) -> null), replaySize, writeTimeoutMillis);
+        broadcasters.add(broadcaster);
+        return broadcaster;
+    }
+
+    private Client subscribe(EventBroadcaster broadcaster, String lastEventId) {
+        return subscribe(broadcaster, lastEventId, false);
+    }
+
+    private Client subscribe(EventBroadcaster broadcaster, String lastEventId, boolean stalled) {
+        Client client = new Client(stalled);
+        clients.add(client);
+        broadcaster.subscribe(client.async, lastEventId);
+        return client;
+    }
+
+    private void publishCars(int count) {
+        for (int i = 0; i < count; i++) {
+            Car car = new Car(++lastCarId, "Škoda", "Octavia", new BigDecimal("1000.00"));
+            carListener.entityChanged(new EntityChangeEvent<>(EntityChangeEvent.Type.INSERTED, car));
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    return handler.invoke(method, args);
+            }
+        }));
+    }
+
+    /**
+     * Client of the stream, a stalled one does not read until it is resumed
+     */
+    private static final class Client {
+        private final StringBuffer received = new StringBuffer();
+        private final CountDownLatch resumed;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+        private final AsyncContext async;
+
+        Client(boolean stalled) {
+            resumed = new CountDownLatch(stalled ? 1 : 0);
+            PrintWriter out = new PrintWriter(new Writer() {
+                @Override
+                public void write(char[] buffer, int offset, int length) throws IOException {
+                    try {
+                        resumed.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    received.append(buffer, offset, length);
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            HttpServletResponse response = proxy(HttpServletResponse.class,
+                    (method, args) -> method.getName().equals("getWriter") ? out : null);
+            async = proxy(AsyncContext.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "getResponse":
+                        return response;
+                    case "addListener":
+                        listeners.add((AsyncListener) args[0]);
+                        return null;
+                    case "complete":
+                        complete();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private void complete() throws IOException {
+            if (!completed.compareAndSet(false, true)) throw new IllegalStateException("Already completed");
+            for (AsyncListener listener : listeners) {
+                listener.onComplete(new AsyncEvent(async));
+            }
+        }
+
+        void resume() {
+            resumed.countDown();
+        }
+
+        boolean isCompleted() {
+            return completed.get();
+        }
+
+        String received() {
+            return received.toString();
+        }
+
+        List<String> ids() {
+            List<String> ids = new ArrayList<>();
+            Matcher matcher = ID.matcher(received());
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package web;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of parsing of request bodies and of documents written by {@link JsonWriter}
+ * @author Daniel Jurca
+ */
+public class JsonReaderTest {
+
+    @Test
+    public void valuesOfObject() {
+        Map<String, Object> object = JsonReader.parseObject(
+                " {\"text\": \"a\\\"b\\\\c\\n\\u00e9\", \"price\": -12.50, \"big\": 1e3, \"yes\": true," +
+                " \"no\": false, \"none\": null, \"list\": [1, [], {}]} ");
+
+        assertThat(object).containsOnlyKeys("text", "price", "big", "yes", "no", "none", "list");
+        assertThat(object.get("text")).isEqualTo("a\"b\\c\né");
+        assertThat(object.get("price")).isEqualTo(new BigDecimal("-12.50"));
+        assertThat((BigDecimal) object.get("big")).isEqualByComparingTo("1000");
+        assertThat(object.get("yes")).isEqualTo(Boolean.TRUE);
+        assertThat(object.get("no")).isEqualTo(Boolean.FALSE);
+        assertThat(object.get("none")).isNull();
+        assertThat(object.get("list")).isEqualTo(Arrays.asList(BigDecimal.ONE, Collections.emptyList(),
+                Collections.emptyMap()));
+    }
+
+    @Test
+    public void writtenDocumentIsReadBack() throws IOException {
+        StringWriter text = new StringWriter();
+        JsonWriter writer = new JsonWriter(text);
+        writer.beginObject()
+                .field("name", "Jan \"Honza\" Novák\t\\ \u0001")
+                .field("price", new BigDecimal("1350.00"))
+                .field("leased", true)
+                .field("note", (String) null)
+                .name("ids").beginArray().value(1).value(2).endArray()
+                .name("car").beginObject().field("carBrand", "BMW").endObject()
+                .endObject();
+        writer.flush();
+
+        Map<String, Object> object = JsonReader.parseObject(text.toString());
+
+        Map<String, Object> car = new LinkedHashMap<>();
+        car.put("carBrand", "BMW");
+        assertThat(object).containsExactly(
+                entry("name", "Jan \"Honza\" Novák\t\\ \u0001"),
+                entry("price", new BigDecimal("1350.00")),
+                entry("leased", true),
+                entry("note", null),
+                entry("ids", Arrays.asList(BigDecimal.ONE, new BigDecimal(2))),
+                entry("car", car));
+    }
+
+    private static Map.Entry<String, Object> entry(String name, Object value) {
+        return new AbstractMap.SimpleEntry<>(name, value);
+    }
+
+    @Test
+    public void invalidDocumentsAreRejected() {
+        for (String text : new String[]{"", "[]", "{", "{\"a\" 1}", "{\"a\": 1,}", "{\"a\": tru}",
+                "{\"a\": 1} x", "{\"a\": \"\\u12\"}", "{\"a\": 1.2.3}", "{a: 1}"}) {
+            assertThatThrownBy(() -> JsonReader.parseObject(text)).as(text)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void deepNestingIsRejected() {
+        assertThat(JsonReader.parseObject(nested(JsonReader.MAX_DEPTH))).containsKey("a");
+
+        assertThatThrownBy(() -> JsonReader.parseObject(nested(JsonReader.MAX_DEPTH + 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Nesting deeper than " + JsonReader.MAX_DEPTH);
+        assertThatThrownBy(() -> JsonReader.parseObject(nested(100_000)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * @return object with an array in member "a", nested to given depth of objects and arrays
+     */
+    private static String nested(int depth) {
+        StringBuilder sb = new StringBuilder("{\"a\":");
+        for (int i = 1; i < depth; i++) {
+            sb.append('[');
+        }
+        for (int i = 1; i < depth; i++) {
+            sb.append(']');
+        }
+        return sb.append('}').toString();
+    }
+
+    @Test
+    public void numbersOfArraysAreKept() {
+        List<?> list = (List<?>) JsonReader.parseObject("{\"a\": [0, -1, 2.5]}").get("a");
+        assertThat(list).containsExactly(BigDecimal.ZERO, new BigDecimal(-1), new BigDecimal("2.5"));
+    }
+}
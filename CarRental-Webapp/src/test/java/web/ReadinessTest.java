@@ -0,0 +1,83 @@
+package web;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import project.CarManager;
+import project.CustomerManager;
+import project.DataSourceFactory;
+import project.LeaseManager;
+import project.PooledDataSource;
+import project.SchemaMigration;
+import project.impl.CarManagerImpl;
+import project.impl.CustomerManagerImpl;
+import project.impl.LeaseManagerImpl;
+import project.impl.ReportManagerImpl;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the warm-up runs on every connection the pool opens at start
+ * @author Daniel Jurca
+ */
+public class ReadinessTest {
+    private static final int CONNECTIONS = 3;
+    private static final String URL = "jdbc:derby:memory:readinessTest";
+
+    private PooledDataSource pool;
+
+    @Before
+    public void setUp() {
+        DataSourceFactory factory = new DataSourceFactory();
+        factory.setPoolSize(CONNECTIONS + 1);
+        factory.setInitialSize(CONNECTIONS);
+        pool = factory.createDataSource("org.apache.derby.jdbc.EmbeddedDriver", URL + ";create=true");
+        new SchemaMigration(pool).migrate();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        pool.close();
+        try {
+            DriverManager.getConnection(URL + ";drop=true");
+        } catch (SQLNonTransientConnectionException e) {
+            // dropping the database is reported as an exception
+        }
+    }
+
+    @Test(timeout = 20_000)
+    public void warmUpHoldsEveryInitialConnection() throws Exception {
+        assertThat(DataSourceConfig.warmConnections(pool)).isEqualTo(CONNECTIONS);
+        AtomicInteger mostActive = new AtomicInteger();
+        DataSource dataSource = new DelegatingDataSource(pool) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                mostActive.accumulateAndGet(pool.getStatistics().getActive(), Math::max);
+                return connection;
+            }
+        };
+        CarManager carManager = new CarManagerImpl(dataSource);
+        CustomerManager customerManager = new CustomerManagerImpl(dataSource);
+        LeaseManager leaseManager = new LeaseManagerImpl(dataSource, customerManager, carManager);
+        Readiness readiness = new Readiness();
+
+        readiness.warmUp(carManager, customerManager, leaseManager, new ReportManagerImpl(dataSource, leaseManager),
+                dataSource, CONNECTIONS);
+        while (!readiness.isReady()) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        assertThat(mostActive.get()).isEqualTo(CONNECTIONS);
+        assertThat(pool.getStatistics().getActive()).isZero();
+    }
+}
@@ -0,0 +1,355 @@
+package web;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of answering requests on the pool, with a fake container timing out requests
+ * @author Daniel Jurca
+ */
+public class RequestExecutorTest {
+    private static final long TIMEOUT = 200;
+
+    private final ScheduledExecutorService container = Executors.newSingleThreadScheduledExecutor();
+    private final List<CountDownLatch> latches = new ArrayList<>();
+    private final RequestExecutor executor = new RequestExecutor(1, 1);
+
+    @After
+    public void tearDown() {
+        latches.forEach(CountDownLatch::countDown);
+        executor.shutdown();
+        container.shutdownNow();
+    }
+
+    @Test(timeout = 10_000)
+    public void fullQueueAnswersUnavailable() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch queried = latch();
+        Exchange running = new Exchange(false);
+        Exchange waiting = new Exchange(false);
+        Exchange rejected = new Exchange(false);
+        executor.execute(running.request, running.response, 5000, response -> {
+            started.countDown();
+            await(queried);
+            response.getWriter().write("[1]");
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(waiting.request, waiting.response, 5000, response -> response.getWriter().write("[2]"));
+
+        executor.execute(rejected.request, rejected.response, 5000, response -> response.getWriter().write("[3]"));
+
+        assertThat(rejected.completed.getCount()).isZero();
+        assertThat(rejected.status).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertThat(rejected.headers).containsEntry("Retry-After", String.valueOf(RequestExecutor.RETRY_AFTER));
+        assertThat(rejected.body.toString()).contains("Server is busy");
+
+        queried.countDown();
+        assertThat(running.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(waiting.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(running.body.toString()).isEqualTo("[1]");
+        assertThat(waiting.body.toString()).isEqualTo("[2]");
+        assertThat(rejected.body.toString()).doesNotContain("[3]");
+    }
+
+    @Test(timeout = 10_000)
+    public void endpointTimeoutIsTakenFromContext() throws Exception {
+        ServletContext context = proxy(ServletContext.class, (method, args) ->
+                (RequestExecutor.TIMEOUT_PREFIX + "reports").equals(args[0]) ? " 150 " : null);
+        long timeout = RequestExecutor.timeout(context, "reports", 60_000);
+        assertThat(timeout).isEqualTo(150);
+        assertThat(RequestExecutor.timeout(context, "lists", 30_000)).isEqualTo(30_000);
+
+        CountDownLatch queried = latch();
+        Exchange exchange = new Exchange(false);
+        long start = System.nanoTime();
+        executor.execute(exchange.request, exchange.response, timeout, response -> await(queried));
+
+        assertThat(exchange.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(150);
+        assertThat(exchange.timeout).isEqualTo(150);
+        assertThat(exchange.status).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    @Test(timeout = 10_000)
+    public void callerIsFreeWhilePoolIsSaturated() throws Exception {
+        CountDownLatch queried = latch();
+        List<Exchange> exchanges = new ArrayList<>();
+        // the calling thread of the container answers fast endpoints right after each call
+        for (int i = 0; i < 5; i++) {
+            Exchange exchange = new Exchange(false);
+            exchanges.add(exchange);
+            long start = System.nanoTime();
+            executor.execute(exchange.request, exchange.response, 5000, response -> await(queried));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        }
+
+        assertThat(exchanges).filteredOn(exchange -> exchange.completed.getCount() == 0)
+                .extracting(exchange -> exchange.status)
+                .containsOnly(HttpServletResponse.SC_SERVICE_UNAVAILABLE)
+                .hasSize(3);
+        queried.countDown();
+        for (Exchange exchange : exchanges) {
+            assertThat(exchange.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void timeoutBeforeFirstPageAnswersUnavailable() throws Exception {
+        CountDownLatch queried = latch();
+        CountDownLatch aborted = new CountDownLatch(1);
+        Exchange exchange = new Exchange(false);
+
+        executor.execute(exchange.request, exchange.response, TIMEOUT, response -> {
+            PrintWriter out = response.getWriter();
+            out.write("[1,");
+            await(queried);
+            writeAborted(out, "2]", aborted);
+        });
+
+        assertThat(exchange.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(exchange.status).isEqualTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertThat(exchange.headers).containsEntry("Retry-After", String.valueOf(RequestExecutor.RETRY_AFTER));
+        assertThat(exchange.body.toString()).contains("Server is busy").doesNotContain("[1,");
+
+        queried.countDown();
+        assertThat(aborted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test(timeout = 10_000)
+    public void timeoutAfterFirstPageClosesStream() throws Exception {
+        CountDownLatch queried = latch();
+        CountDownLatch aborted = new CountDownLatch(1);
+        Exchange exchange = new Exchange(false);
+
+        executor.execute(exchange.request, exchange.response, TIMEOUT, response -> {
+            PrintWriter out = response.getWriter();
+            out.write(page('a'));
+            await(queried);
+            writeAborted(out, "b", aborted);
+        });
+
+        assertThat(exchange.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(exchange.status).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(exchange.body.toString()).isEqualTo(page('a'));
+
+        queried.countDown();
+        assertThat(aborted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(exchange.body.toString()).isEqualTo(page('a'));
+    }
+
+    @Test(timeout = 10_000)
+    public void timeoutDoesNotWaitForSlowClient() throws Exception {
+        CountDownLatch aborted = new CountDownLatch(1);
+        Exchange exchange = new Exchange(true);
+
+        executor.execute(exchange.request, exchange.response, TIMEOUT, response -> {
+            PrintWriter out = response.getWriter();
+            // fails once the blocked write returns
+            writeAborted(out, page('a'), aborted);
+            out.write("b");
+        });
+
+        // the page is being written to the client which does not read
+        assertThat(exchange.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(aborted.getCount()).isEqualTo(1);
+
+        exchange.resume();
+        assertThat(aborted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test(timeout = 10_000)
+    public void bodyIsSentWhenWorkEnds() throws Exception {
+        Exchange exchange = new Exchange(false);
+
+        executor.execute(exchange.request, exchange.response, 5000, response -> {
+            response.setHeader("ETag", "\"1\"");
+            PrintWriter out = response.getWriter();
+            out.write(page('a'));
+            out.write("[]");
+            out.flush();
+        });
+
+        assertThat(exchange.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(exchange.status).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(exchange.headers).containsEntry("ETag", "\"1\"");
+        assertThat(exchange.body.toString()).isEqualTo(page('a') + "[]");
+    }
+
+    private CountDownLatch latch() {
+        CountDownLatch latch = new CountDownLatch(1);
+        latches.add(latch);
+        return latch;
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Write the text, counting down the latch when the write fails as the request has timed out
+     */
+    private static void writeAborted(PrintWriter out, String text, CountDownLatch aborted) {
+        try {
+            out.write(text);
+        } catch (UncheckedIOException e) {
+            aborted.countDown();
+            throw e;
+        }
+    }
+
+    private static String page(char c) {
+        StringBuilder page = new StringBuilder(RequestExecutor.PAGE_SIZE);
+        for (int i = 0; i < RequestExecutor.PAGE_SIZE; i++) {
+            page.append(c);
+        }
+        return page.toString();
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    return handler.invoke(method, args);
+            }
+        }));
+    }
+
+    /**
+     * Request and response of a client, a slow client does not read until it is resumed
+     */
+    private final class Exchange {
+        private final CountDownLatch resumed;
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+        private final Map<String, String> headers = new ConcurrentHashMap<>();
+        private final StringBuffer body = new StringBuffer();
+        private volatile int status = HttpServletResponse.SC_OK;
+        private volatile boolean committed;
+        private volatile long timeout;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+
+        Exchange(boolean slow) {
+            resumed = new CountDownLatch(slow ? 1 : 0);
+            latches.add(resumed);
+            PrintWriter out = new PrintWriter(new Writer() {
+                @Override
+                public void write(char[] buffer, int offset, int length) throws IOException {
+                    committed = true;
+                    RequestExecutorTest.await(resumed);
+                    body.append(buffer, offset, length);
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            response = proxy(HttpServletResponse.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "getWriter":
+                        return out;
+                    case "isCommitted":
+                        return committed;
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "getStatus":
+                        return status;
+                    case "setHeader":
+                        headers.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "reset":
+                        if (committed) throw new IllegalStateException("Committed");
+                        status = HttpServletResponse.SC_OK;
+                        headers.clear();
+                        body.setLength(0);
+                        return null;
+                    case "setContentType":
+                    case "setCharacterEncoding":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            AsyncContext async = proxy(AsyncContext.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "setTimeout":
+                        timeout = (Long) args[0];
+                        container.schedule(this::timeout, (Long) args[0], TimeUnit.MILLISECONDS);
+                        return null;
+                    case "addListener":
+                        listeners.add((AsyncListener) args[0]);
+                        return null;
+                    case "complete":
+                        completed.countDown();
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+            request = proxy(HttpServletRequest.class, (method, args) -> {
+                if (method.getName().equals("startAsync")) return async;
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private void timeout() {
+            if (completed.getCount() == 0) return;
+            for (AsyncListener listener : listeners) {
+                try {
+                    listener.onTimeout(new AsyncEvent(null));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void resume() {
+            resumed.countDown();
+        }
+    }
+}
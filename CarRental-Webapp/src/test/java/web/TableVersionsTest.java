@@ -0,0 +1,52 @@
+package web;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests of the rules of conditional GET
+ * @author Daniel Jurca
+ */
+public class TableVersionsTest {
+    private static final String ETAG = "\"run-1-2\"";
+    private static final long LAST_MODIFIED = 1_500_000_000_500L;
+    private static final long LATER = LAST_MODIFIED + 5000;
+
+    @Test
+    public void matchingTagIsNotModified() {
+        assertThat(TableVersions.notModified(ETAG, -1, ETAG, LAST_MODIFIED, LATER)).isTrue();
+        assertThat(TableVersions.notModified("\"old\", " + ETAG, -1, ETAG, LAST_MODIFIED, LATER)).isTrue();
+        assertThat(TableVersions.notModified("*", -1, ETAG, LAST_MODIFIED, LATER)).isTrue();
+    }
+
+    @Test
+    public void otherTagIsModified() {
+        assertThat(TableVersions.notModified("\"run-1-3\"", -1, ETAG, LAST_MODIFIED, LATER)).isFalse();
+        // a tag containing the current one is a different tag
+        assertThat(TableVersions.notModified("W/" + ETAG + "x", -1, ETAG, LAST_MODIFIED, LATER)).isFalse();
+    }
+
+    @Test
+    public void tagTakesPrecedenceOverTime() {
+        assertThat(TableVersions.notModified("\"old\"", LATER, ETAG, LAST_MODIFIED, LATER)).isFalse();
+    }
+
+    @Test
+    public void timeIsComparedInWholeSeconds() {
+        long second = LAST_MODIFIED / 1000 * 1000;
+        assertThat(TableVersions.notModified(null, second, ETAG, LAST_MODIFIED, LATER)).isTrue();
+        assertThat(TableVersions.notModified(null, second - 1000, ETAG, LAST_MODIFIED, LATER)).isFalse();
+    }
+
+    @Test
+    public void changeWithinCurrentSecondIsModified() {
+        assertThat(TableVersions.notModified(null, LAST_MODIFIED, ETAG, LAST_MODIFIED, LAST_MODIFIED + 999))
+                .isFalse();
+    }
+
+    @Test
+    public void noConditionIsModified() {
+        assertThat(TableVersions.notModified(null, -1, ETAG, LAST_MODIFIED, LATER)).isFalse();
+    }
+}